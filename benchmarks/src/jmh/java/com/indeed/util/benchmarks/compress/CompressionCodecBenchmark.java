@@ -0,0 +1,115 @@
+package com.indeed.util.benchmarks.compress;
+
+import com.indeed.util.compress.CompressionCodec;
+import com.indeed.util.compress.CompressionOutputStream;
+import com.indeed.util.compress.Compressor;
+import com.indeed.util.compress.Decompressor;
+import com.indeed.util.compress.GzipCodec;
+import com.indeed.util.compress.SnappyCodec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compression and decompression throughput of {@link SnappyCodec} (backed by SnappyCompressor) and
+ * {@link GzipCodec} (backed by ZlibCompressor). Compressors are reused across invocations so that
+ * native allocation is not part of the measurement. Multiply ops/s by {@code size} for bytes/s.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionCodecBenchmark {
+    private static final String[] WORDS = {
+        "q", "l", "jobs", "software", "engineer", "austin", "tx", "remote", "sales", "nurse",
+        "start", "100", "radius", "25", "sort", "date", "fromage", "last", "indeed", "search"
+    };
+
+    @Param({"snappy", "gzip"})
+    public String codecName;
+
+    @Param({"65536", "4194304"})
+    public int size;
+
+    private CompressionCodec codec;
+    private Compressor compressor;
+    private Decompressor decompressor;
+    private byte[] uncompressed;
+    private byte[] compressed;
+    private ByteArrayOutputStream out;
+    private byte[] readBuffer;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = "snappy".equals(codecName) ? new SnappyCodec() : new GzipCodec();
+        compressor = codec.createCompressor();
+        decompressor = codec.createDecompressor();
+        uncompressed = generateQueryStrings(size);
+        out = new ByteArrayOutputStream(size);
+        compressed = compress();
+        readBuffer = new byte[64 * 1024];
+    }
+
+    @TearDown
+    public void tearDown() {
+        compressor.end();
+        decompressor.end();
+    }
+
+    @Benchmark
+    public byte[] compress() throws IOException {
+        out.reset();
+        compressor.reset();
+        final CompressionOutputStream compressionOut = codec.createOutputStream(out, compressor);
+        compressionOut.write(uncompressed);
+        compressionOut.finish();
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public long decompress() throws IOException {
+        decompressor.reset();
+        final InputStream in =
+                codec.createInputStream(new ByteArrayInputStream(compressed), decompressor);
+        long total = 0;
+        int n;
+        while ((n = in.read(readBuffer)) > 0) {
+            total += n;
+        }
+        return total;
+    }
+
+    /** Log-like, moderately compressible input so that both codecs do representative work. */
+    static byte[] generateQueryStrings(final int size) {
+        final Random random = new Random(0);
+        final StringBuilder sb = new StringBuilder(size + 64);
+        while (sb.length() < size) {
+            final int pairs = 2 + random.nextInt(6);
+            for (int i = 0; i < pairs; i++) {
+                if (i > 0) {
+                    sb.append('&');
+                }
+                sb.append(WORDS[random.nextInt(WORDS.length)])
+                        .append('=')
+                        .append(WORDS[random.nextInt(WORDS.length)])
+                        .append(random.nextInt(1000));
+            }
+            sb.append('\n');
+        }
+        sb.setLength(size);
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,58 @@
+package com.indeed.util.benchmarks.core;
+
+import com.indeed.util.core.sort.RadixSort;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** {@link RadixSort} against {@link Arrays#sort(int[])} on random ints. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RadixSortBenchmark {
+    @Param({"1024", "1048576"})
+    public int size;
+
+    private int[] original;
+    private int[] input;
+    private int[] scratch;
+    private final int[] countScratch = new int[65536];
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(0);
+        original = new int[size];
+        for (int i = 0; i < size; i++) {
+            original[i] = random.nextInt();
+        }
+        input = new int[size];
+        scratch = new int[size];
+    }
+
+    @Setup(Level.Invocation)
+    public void copyInput() {
+        System.arraycopy(original, 0, input, 0, size);
+    }
+
+    @Benchmark
+    public int[] radixSort() {
+        RadixSort.radixSort(input, size, scratch, countScratch);
+        return input;
+    }
+
+    @Benchmark
+    public int[] arraysSort() {
+        Arrays.sort(input);
+        return input;
+    }
+}
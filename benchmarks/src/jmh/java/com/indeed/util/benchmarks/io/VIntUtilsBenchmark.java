@@ -0,0 +1,105 @@
+package com.indeed.util.benchmarks.io;
+
+import com.indeed.util.io.UnsafeByteArrayOutputStream;
+import com.indeed.util.io.VIntUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Per-value cost of {@link VIntUtils} encode/decode for small and mixed-width values. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class VIntUtilsBenchmark {
+    private static final int NUM_VALUES = 4096;
+
+    /** "small" values all fit in one byte, "mixed" values are spread over 1 to 5 bytes. */
+    @Param({"small", "mixed"})
+    public String distribution;
+
+    private int[] ints;
+    private long[] longs;
+    private UnsafeByteArrayOutputStream out;
+    private byte[] encodedInts;
+    private byte[] encodedLongs;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Random random = new Random(0);
+        ints = new int[NUM_VALUES];
+        longs = new long[NUM_VALUES];
+        for (int i = 0; i < NUM_VALUES; i++) {
+            if ("small".equals(distribution)) {
+                ints[i] = random.nextInt(128);
+                longs[i] = random.nextInt(128);
+            } else {
+                ints[i] = random.nextInt() >>> random.nextInt(32);
+                longs[i] = random.nextLong() >>> random.nextInt(64);
+            }
+        }
+        out = new UnsafeByteArrayOutputStream(NUM_VALUES * 10);
+        writeVInt();
+        encodedInts = copyOf(out);
+        writeVInt64();
+        encodedLongs = copyOf(out);
+    }
+
+    private static byte[] copyOf(final UnsafeByteArrayOutputStream out) {
+        final byte[] ret = new byte[out.size()];
+        System.arraycopy(out.getByteArray(), 0, ret, 0, ret.length);
+        return ret;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public int writeVInt() throws IOException {
+        out.reset();
+        for (int i = 0; i < NUM_VALUES; i++) {
+            VIntUtils.writeVInt(out, ints[i]);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public int readVInt() throws IOException {
+        final ByteArrayInputStream in = new ByteArrayInputStream(encodedInts);
+        int sum = 0;
+        for (int i = 0; i < NUM_VALUES; i++) {
+            sum += VIntUtils.readVInt(in);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public int writeVInt64() throws IOException {
+        out.reset();
+        for (int i = 0; i < NUM_VALUES; i++) {
+            VIntUtils.writeVInt64(out, longs[i]);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_VALUES)
+    public long readVInt64() throws IOException {
+        final ByteArrayInputStream in = new ByteArrayInputStream(encodedLongs);
+        long sum = 0;
+        for (int i = 0; i < NUM_VALUES; i++) {
+            sum += VIntUtils.readVInt64(in);
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,100 @@
+package com.indeed.util.benchmarks.mmap;
+
+import com.indeed.util.mmap.DirectMemory;
+import com.indeed.util.mmap.NativeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single element get/put throughput of {@link DirectMemory} in native and reversed byte order,
+ * with and without per access bounds checks ({@link DirectMemory#unchecked()}).
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DirectMemoryBenchmark {
+    private static final int NUM_LONGS = 64 * 1024;
+
+    @Param({"LITTLE_ENDIAN", "BIG_ENDIAN"})
+    public String order;
+
+    @Param({"true", "false"})
+    public boolean checked;
+
+    private NativeBuffer buffer;
+    private DirectMemory memory;
+
+    @Setup
+    public void setUp() {
+        final ByteOrder byteOrder =
+                "LITTLE_ENDIAN".equals(order) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        buffer = new NativeBuffer(NUM_LONGS * 8L, byteOrder);
+        memory = checked ? buffer.memory() : buffer.memory().unchecked();
+        for (int i = 0; i < NUM_LONGS; i++) {
+            memory.putLong(i * 8L, i);
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        buffer.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LONGS * 2)
+    public int getInt() {
+        int sum = 0;
+        for (int i = 0; i < NUM_LONGS * 2; i++) {
+            sum += memory.getInt(i * 4L);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LONGS * 2)
+    public void putInt() {
+        for (int i = 0; i < NUM_LONGS * 2; i++) {
+            memory.putInt(i * 4L, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LONGS)
+    public long getLong() {
+        long sum = 0;
+        for (int i = 0; i < NUM_LONGS; i++) {
+            sum += memory.getLong(i * 8L);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LONGS)
+    public void putLong() {
+        for (int i = 0; i < NUM_LONGS; i++) {
+            memory.putLong(i * 8L, i);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_LONGS * 8)
+    public int getByte() {
+        int sum = 0;
+        for (int i = 0; i < NUM_LONGS * 8; i++) {
+            sum += memory.getByte(i);
+        }
+        return sum;
+    }
+}
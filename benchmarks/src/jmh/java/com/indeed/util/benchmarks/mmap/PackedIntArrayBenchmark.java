@@ -0,0 +1,115 @@
+package com.indeed.util.benchmarks.mmap;
+
+import com.indeed.util.mmap.DynamicMMapBufferDataOutputStream;
+import com.indeed.util.mmap.IntArray;
+import com.indeed.util.mmap.MMapBuffer;
+import com.indeed.util.mmap.PackedIntArray;
+import com.indeed.util.mmap.PackedIntArrayWriter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode throughput of a sorted doc id list stored as a {@link PackedIntArray} against reading the
+ * same list from a raw {@link IntArray}, in ints per second.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PackedIntArrayBenchmark {
+    private static final int LENGTH = 1 << 20;
+
+    /** Upper bound of the gaps between consecutive doc ids. */
+    @Param({"16", "256", "2048"})
+    public int maxGap;
+
+    private File packedFile;
+    private File rawFile;
+    private MMapBuffer packedBuffer;
+    private MMapBuffer rawBuffer;
+    private PackedIntArray packed;
+    private PackedIntArray.Cursor cursor;
+    private IntArray raw;
+    private final int[] block = new int[PackedIntArray.BLOCK_SIZE];
+
+    @Setup
+    public void setUp() throws IOException {
+        final ByteOrder order = ByteOrder.nativeOrder();
+        packedFile = File.createTempFile("PackedIntArrayBenchmark", ".packed");
+        rawFile = File.createTempFile("PackedIntArrayBenchmark", ".raw");
+        final Random random = new Random(0);
+        try (DynamicMMapBufferDataOutputStream packedOut =
+                        DynamicMMapBufferDataOutputStream.builder(packedFile)
+                                .setByteOrder(order)
+                                .setTruncateOnClose(true)
+                                .build();
+                DynamicMMapBufferDataOutputStream rawOut =
+                        DynamicMMapBufferDataOutputStream.builder(rawFile)
+                                .setByteOrder(order)
+                                .setTruncateOnClose(true)
+                                .build()) {
+            final PackedIntArrayWriter writer = new PackedIntArrayWriter(packedOut, true);
+            int docId = 0;
+            for (int i = 0; i < LENGTH; i++) {
+                docId += 1 + random.nextInt(maxGap);
+                writer.add(docId);
+                rawOut.writeInt(docId);
+            }
+            writer.finish();
+        }
+        packedBuffer = new MMapBuffer(packedFile, FileChannel.MapMode.READ_ONLY, order);
+        rawBuffer = new MMapBuffer(rawFile, FileChannel.MapMode.READ_ONLY, order);
+        packed = new PackedIntArray(packedBuffer.memory());
+        cursor = packed.cursor();
+        raw = rawBuffer.memory().intArray(0, LENGTH);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        packedBuffer.close();
+        rawBuffer.close();
+        Files.delete(packedFile.toPath());
+        Files.delete(rawFile.toPath());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int packedDecodeBlocks() {
+        int sum = 0;
+        for (int b = 0; b < packed.getBlockCount(); b++) {
+            final int n = cursor.decodeBlock(b, block, 0);
+            for (int i = 0; i < n; i++) {
+                sum += block[i];
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LENGTH)
+    public int rawBulkGet() {
+        int sum = 0;
+        for (int off = 0; off < LENGTH; off += block.length) {
+            raw.get(off, block);
+            for (int i = 0; i < block.length; i++) {
+                sum += block[i];
+            }
+        }
+        return sum;
+    }
+}
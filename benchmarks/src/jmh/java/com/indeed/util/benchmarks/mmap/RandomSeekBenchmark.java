@@ -0,0 +1,96 @@
+package com.indeed.util.benchmarks.mmap;
+
+import com.indeed.util.io.BufferedFileDataInputStream;
+import com.indeed.util.mmap.MMapFileDataInputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of a seek followed by a small read at a random position of a file in the page cache, with
+ * {@link BufferedFileDataInputStream} against {@link MMapFileDataInputStream}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class RandomSeekBenchmark {
+    private static final int NUM_SEEKS = 4096;
+
+    @Param({"67108864"})
+    public long fileSize;
+
+    /** Number of longs read after every seek. */
+    @Param({"1", "16"})
+    public int readLongs;
+
+    private Path file;
+    private long[] positions;
+    private BufferedFileDataInputStream buffered;
+    private MMapFileDataInputStream mapped;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("RandomSeekBenchmark", ".bin");
+        try (DataOutputStream out =
+                new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            for (long i = 0; i < fileSize / 8; i++) {
+                out.writeLong(i);
+            }
+        }
+        final Random random = new Random(0);
+        positions = new long[NUM_SEEKS];
+        for (int i = 0; i < NUM_SEEKS; i++) {
+            positions[i] = (long) random.nextInt((int) (fileSize / 8 - readLongs)) * 8;
+        }
+        buffered = new BufferedFileDataInputStream(file);
+        mapped = new MMapFileDataInputStream(file);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        buffered.close();
+        mapped.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SEEKS)
+    public long buffered() throws IOException {
+        long sum = 0;
+        for (final long position : positions) {
+            buffered.seek(position);
+            for (int i = 0; i < readLongs; i++) {
+                sum += buffered.readLong();
+            }
+        }
+        return sum;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NUM_SEEKS)
+    public long mapped() throws IOException {
+        long sum = 0;
+        for (final long position : positions) {
+            mapped.seek(position);
+            for (int i = 0; i < readLongs; i++) {
+                sum += mapped.readLong();
+            }
+        }
+        return sum;
+    }
+}
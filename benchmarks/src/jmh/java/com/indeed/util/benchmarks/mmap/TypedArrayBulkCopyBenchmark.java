@@ -0,0 +1,83 @@
+package com.indeed.util.benchmarks.mmap;
+
+import com.indeed.util.mmap.IntArray;
+import com.indeed.util.mmap.LongArray;
+import com.indeed.util.mmap.NativeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/** Bulk copies between {@link IntArray}/{@link LongArray} and heap arrays. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TypedArrayBulkCopyBenchmark {
+    @Param({"1024", "1048576"})
+    public int length;
+
+    @Param({"LITTLE_ENDIAN", "BIG_ENDIAN"})
+    public String order;
+
+    private NativeBuffer intBuffer;
+    private NativeBuffer longBuffer;
+    private IntArray intArray;
+    private LongArray longArray;
+    private int[] ints;
+    private long[] longs;
+
+    @Setup
+    public void setUp() {
+        final ByteOrder byteOrder =
+                "LITTLE_ENDIAN".equals(order) ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+        intBuffer = new NativeBuffer(length * 4L, byteOrder);
+        longBuffer = new NativeBuffer(length * 8L, byteOrder);
+        intArray = intBuffer.memory().intArray(0, length);
+        longArray = longBuffer.memory().longArray(0, length);
+        ints = new int[length];
+        longs = new long[length];
+        for (int i = 0; i < length; i++) {
+            ints[i] = i;
+            longs[i] = i;
+        }
+        intArray.set(0, ints);
+        longArray.set(0, longs);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        intBuffer.close();
+        longBuffer.close();
+    }
+
+    @Benchmark
+    public int[] intArrayGet() {
+        intArray.get(0, ints);
+        return ints;
+    }
+
+    @Benchmark
+    public void intArraySet() {
+        intArray.set(0, ints);
+    }
+
+    @Benchmark
+    public long[] longArrayGet() {
+        longArray.get(0, longs);
+        return longs;
+    }
+
+    @Benchmark
+    public void longArraySet() {
+        longArray.set(0, longs);
+    }
+}
@@ -0,0 +1,113 @@
+package com.indeed.util.benchmarks.mmap;
+
+import com.indeed.util.mmap.IntArray;
+import com.indeed.util.mmap.NativeBuffer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lookups in a sorted {@link IntArray}, comparing a binary search written against {@link
+ * IntArray#get(long)} with the search methods on the array, and intersecting two posting lists.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class TypedArraySearchBenchmark {
+    private static final int KEYS = 1024;
+
+    @Param({"4096", "16777216"})
+    public int length;
+
+    private NativeBuffer buffer;
+    private NativeBuffer sparseBuffer;
+    private IntArray array;
+    private IntArray sparse;
+    private int[] keys;
+    private int[] out;
+
+    @Setup
+    public void setUp() {
+        buffer = new NativeBuffer(length * 4L, ByteOrder.LITTLE_ENDIAN);
+        array = buffer.memory().intArray(0, length);
+        for (int i = 0; i < length; i++) {
+            array.set(i, i * 3);
+        }
+        final int sparseLength = Math.max(1, length / 64);
+        sparseBuffer = new NativeBuffer(sparseLength * 4L, ByteOrder.LITTLE_ENDIAN);
+        sparse = sparseBuffer.memory().intArray(0, sparseLength);
+        for (int i = 0; i < sparseLength; i++) {
+            sparse.set(i, i * 64 * 3 + (i & 1));
+        }
+        final Random random = new Random(0);
+        keys = new int[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = random.nextInt(length * 3);
+        }
+        out = new int[sparseLength];
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        buffer.close();
+        sparseBuffer.close();
+    }
+
+    @Benchmark
+    public long getBasedBinarySearch() {
+        long sum = 0;
+        for (final int key : keys) {
+            long low = 0;
+            long high = array.length() - 1;
+            long found = -1;
+            while (low <= high) {
+                final long mid = (low + high) >>> 1;
+                final int value = array.get(mid);
+                if (value < key) {
+                    low = mid + 1;
+                } else if (value > key) {
+                    high = mid - 1;
+                } else {
+                    found = mid;
+                    break;
+                }
+            }
+            sum += found;
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long binarySearch() {
+        long sum = 0;
+        for (final int key : keys) {
+            sum += array.binarySearch(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long lowerBound() {
+        long sum = 0;
+        for (final int key : keys) {
+            sum += array.lowerBound(key);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int intersect() {
+        return IntArray.intersect(array, sparse, out);
+    }
+}
@@ -0,0 +1,83 @@
+package com.indeed.util.benchmarks.serialization;
+
+import com.google.common.io.ByteArrayDataInput;
+import com.google.common.io.ByteArrayDataOutput;
+import com.google.common.io.ByteStreams;
+import com.indeed.util.serialization.IntSerializer;
+import com.indeed.util.serialization.StringSerializer;
+import com.indeed.util.serialization.map.MapSerializer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/** Round trip cost of {@link StringSerializer} and {@link MapSerializer}. */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SerializerBenchmark {
+    @Param({"16", "1024"})
+    public int size;
+
+    private final StringSerializer stringSerializer = new StringSerializer();
+    private final MapSerializer<String, Integer> mapSerializer =
+            MapSerializer.hashMapSerializer(new StringSerializer(), new IntSerializer());
+
+    private String string;
+    private Map<String, Integer> map;
+    private byte[] serializedString;
+    private byte[] serializedMap;
+
+    @Setup
+    public void setUp() throws IOException {
+        final Random random = new Random(0);
+        final StringBuilder sb = new StringBuilder(size);
+        for (int i = 0; i < size; i++) {
+            // mostly ascii with the occasional multi-byte character
+            sb.append(random.nextInt(16) == 0 ? 'é' : (char) ('a' + random.nextInt(26)));
+        }
+        string = sb.toString();
+        map = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            map.put("key" + i, random.nextInt());
+        }
+        serializedString = writeString();
+        serializedMap = writeMap();
+    }
+
+    @Benchmark
+    public byte[] writeString() throws IOException {
+        final ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        stringSerializer.write(string, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public String readString() throws IOException {
+        final ByteArrayDataInput in = ByteStreams.newDataInput(serializedString);
+        return stringSerializer.read(in);
+    }
+
+    @Benchmark
+    public byte[] writeMap() throws IOException {
+        final ByteArrayDataOutput out = ByteStreams.newDataOutput();
+        mapSerializer.write(map, out);
+        return out.toByteArray();
+    }
+
+    @Benchmark
+    public Map<String, Integer> readMap() throws IOException {
+        final ByteArrayDataInput in = ByteStreams.newDataInput(serializedMap);
+        return mapSerializer.read(in);
+    }
+}
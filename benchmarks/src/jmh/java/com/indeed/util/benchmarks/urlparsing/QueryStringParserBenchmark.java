@@ -0,0 +1,137 @@
+package com.indeed.util.benchmarks.urlparsing;
+
+import com.indeed.util.urlparsing.ParseUtils;
+import com.indeed.util.urlparsing.QueryStringParser;
+import com.indeed.util.urlparsing.QueryStringParserCallback;
+import com.indeed.util.urlparsing.QueryStringParserCallbackBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a typical job search log entry with {@link QueryStringParser}, decoding the query and
+ * parsing a few numeric fields. Replaces the Stopwatch based KeyValueParsingBenchmark.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class QueryStringParserBenchmark {
+    private static final String LOG_ENTRY =
+            "uid=18ehbmp2p0k5o3hl&type=jobsearch&v=1&tk=18ehbmp2p0k5o3hl"
+                    + "&q=software+engineer%2C+java&l=Austin%2C+TX&start=20&radius=25"
+                    + "&rq=1&searchTime=137&totCnt=4233&page=3&ctk=18ehbj3om0k5o1n8"
+                    + "&ua=Mozilla%2F5.0+%28X11%3B+Linux+x86_64%29&lang=en&country=US";
+
+    static final class ParsedEntry {
+        final StringBuilder query = new StringBuilder();
+        final StringBuilder location = new StringBuilder();
+        int start;
+        int searchTime;
+        long totalCount;
+
+        void reset() {
+            query.setLength(0);
+            location.setLength(0);
+            start = 0;
+            searchTime = 0;
+            totalCount = 0;
+        }
+    }
+
+    private QueryStringParserCallback<ParsedEntry> callback;
+    private final ParsedEntry entry = new ParsedEntry();
+
+    @Setup
+    public void setUp() {
+        final QueryStringParserCallbackBuilder<ParsedEntry> builder =
+                new QueryStringParserCallbackBuilder<ParsedEntry>();
+        builder.addCallback(
+                "q",
+                new QueryStringParserCallback<ParsedEntry>() {
+                    @Override
+                    public void parseKeyValuePair(
+                            String queryString,
+                            int keyStart,
+                            int keyEnd,
+                            int valueStart,
+                            int valueEnd,
+                            ParsedEntry storage) {
+                        ParseUtils.urlDecodeInto(queryString, valueStart, valueEnd, storage.query);
+                    }
+                });
+        builder.addCallback(
+                "l",
+                new QueryStringParserCallback<ParsedEntry>() {
+                    @Override
+                    public void parseKeyValuePair(
+                            String queryString,
+                            int keyStart,
+                            int keyEnd,
+                            int valueStart,
+                            int valueEnd,
+                            ParsedEntry storage) {
+                        ParseUtils.urlDecodeInto(
+                                queryString, valueStart, valueEnd, storage.location);
+                    }
+                });
+        builder.addCallback(
+                "start",
+                new QueryStringParserCallback<ParsedEntry>() {
+                    @Override
+                    public void parseKeyValuePair(
+                            String queryString,
+                            int keyStart,
+                            int keyEnd,
+                            int valueStart,
+                            int valueEnd,
+                            ParsedEntry storage) {
+                        storage.start =
+                                ParseUtils.parseUnsignedInt(queryString, valueStart, valueEnd);
+                    }
+                });
+        builder.addCallback(
+                "searchTime",
+                new QueryStringParserCallback<ParsedEntry>() {
+                    @Override
+                    public void parseKeyValuePair(
+                            String queryString,
+                            int keyStart,
+                            int keyEnd,
+                            int valueStart,
+                            int valueEnd,
+                            ParsedEntry storage) {
+                        storage.searchTime =
+                                ParseUtils.parseUnsignedInt(queryString, valueStart, valueEnd);
+                    }
+                });
+        builder.addCallback(
+                "totCnt",
+                new QueryStringParserCallback<ParsedEntry>() {
+                    @Override
+                    public void parseKeyValuePair(
+                            String queryString,
+                            int keyStart,
+                            int keyEnd,
+                            int valueStart,
+                            int valueEnd,
+                            ParsedEntry storage) {
+                        storage.totalCount =
+                                ParseUtils.parseUnsignedLong(queryString, valueStart, valueEnd);
+                    }
+                });
+        callback = builder.buildCallback();
+    }
+
+    @Benchmark
+    public ParsedEntry parseQueryString() {
+        entry.reset();
+        QueryStringParser.parseQueryString(LOG_ENTRY, callback, entry);
+        return entry;
+    }
+}
@@ -9,6 +9,7 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
@@ -68,6 +69,24 @@ public class Files {
      */
     public static void writeObjectToFileOrDie2(
             @Nonnull final Object obj, @Nonnull final String file) throws IOException {
+        writeObjectToFileOrDie2(obj, file, null);
+    }
+
+    /**
+     * Serializes an object to a file, throws an exception if it fails
+     *
+     * @param obj object to write to a file
+     * @param file path to save the object to
+     * @param verifier checksums the written file in parallel chunks before it is renamed, or null
+     *     to read it back on the calling thread
+     * @throws java.io.IOException if the existing file could not be erased, or the file could not
+     *     be written, flushed, synced, or closed
+     */
+    public static void writeObjectToFileOrDie2(
+            @Nonnull final Object obj,
+            @Nonnull final String file,
+            @Nullable final ParallelCrc32 verifier)
+            throws IOException {
         Preconditions.checkNotNull(file, "file argument is required!");
         Preconditions.checkArgument(!file.isEmpty(), "file argument is required!");
 
@@ -84,7 +103,7 @@ public class Files {
 
         // verify that what we WROTE to the disk is then immediately READABLE before allowing the
         // rename to happen
-        final long checksumFound = computeFileChecksum(tmpFile, new CRC32());
+        final long checksumFound = computeFileChecksum(tmpFile, verifier);
         if (checksumForWrittenData != checksumFound) {
             throw new IOException(
                     "Data written to file is not what we expected, "
@@ -298,6 +317,21 @@ public class Files {
      */
     public static boolean writeObjectIfChangedOrDie2(
             @Nonnull final Object obj, @Nonnull final String file) throws IOException {
+        return writeObjectIfChangedOrDie2(obj, file, null);
+    }
+
+    /**
+     * Same as {@link #writeObjectIfChangedOrDie2(Object, String)}, but verifies the written file
+     * with verifier.
+     *
+     * @param verifier checksums the written file in parallel chunks before it is renamed, or null
+     *     to read it back on the calling thread
+     */
+    public static boolean writeObjectIfChangedOrDie2(
+            @Nonnull final Object obj,
+            @Nonnull final String file,
+            @Nullable final ParallelCrc32 verifier)
+            throws IOException {
         Preconditions.checkNotNull(file, "file argument is required!");
         Preconditions.checkArgument(!file.isEmpty(), "file argument is required!");
 
@@ -336,7 +370,7 @@ public class Files {
             // verify that what we WROTE to the disk is then immediately READABLE before allowing
             // the rename to happen
             checksum.reset();
-            final long checksumFound = computeFileChecksum(tmpFile, new CRC32());
+            final long checksumFound = computeFileChecksum(tmpFile, verifier);
             if (checksumForWrittenData != checksumFound) {
                 throw new IOException(
                         "Data written to file is not what we expected, "
@@ -376,6 +410,14 @@ public class Files {
         return com.google.common.io.Files.asByteSource(file).hash(Hashing.crc32()).padToLong();
     }
 
+    private static long computeFileChecksum(
+            @Nonnull final File file, @Nullable final ParallelCrc32 verifier) throws IOException {
+        if (verifier == null) {
+            return computeFileChecksum(file, new CRC32());
+        }
+        return verifier.checksum(file);
+    }
+
     /**
      * Writes an object to a file.
      *
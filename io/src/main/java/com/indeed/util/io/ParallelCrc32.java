@@ -0,0 +1,243 @@
+package com.indeed.util.io;
+
+import com.google.common.base.Preconditions;
+
+import javax.annotation.Nonnull;
+import javax.annotation.Nullable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
+
+/**
+ * Computes the CRC32 of a file by splitting it into chunks, checksumming the chunks in parallel on
+ * a {@link ForkJoinPool} and combining the partial values the way zlib's crc32_combine does. The
+ * result is the same as running a single {@link CRC32} over the whole file.
+ *
+ * <p>Chunks are read with positional reads into a direct buffer kept per thread rather than
+ * mapped, so no address space outlives the call. Files no larger than one chunk are checksummed
+ * on the calling thread.
+ */
+public final class ParallelCrc32 {
+    public static final long DEFAULT_CHUNK_SIZE = 64L * 1024 * 1024;
+
+    private static final int GF2_DIM = 32;
+    private static final int CRC32_POLYNOMIAL = 0xedb88320;
+    private static final int READ_BUFFER_SIZE = 1024 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_BUFFER_SIZE));
+
+    private final long chunkSize;
+    private final int parallelism;
+    @Nullable private final ForkJoinPool pool;
+
+    private ParallelCrc32(
+            final long chunkSize, final int parallelism, @Nullable final ForkJoinPool pool) {
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.pool = pool;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /** @return the CRC32 of the contents of file */
+    public long checksum(@Nonnull final File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            final long length = channel.size();
+            if (length <= chunkSize) {
+                return chunkChecksum(channel, 0, length);
+            }
+            if (pool != null) {
+                return checksum(channel, length, pool);
+            }
+            final ForkJoinPool ownPool = new ForkJoinPool(parallelism);
+            try {
+                return checksum(channel, length, ownPool);
+            } finally {
+                ownPool.shutdown();
+            }
+        }
+    }
+
+    private long checksum(final FileChannel channel, final long length, final ForkJoinPool pool)
+            throws IOException {
+        final List<ForkJoinTask<Long>> tasks = new ArrayList<>();
+        for (long position = 0; position < length; position += chunkSize) {
+            final long chunkPosition = position;
+            final long chunkLength = Math.min(chunkSize, length - position);
+            tasks.add(
+                    pool.submit(
+                            () -> {
+                                try {
+                                    return chunkChecksum(channel, chunkPosition, chunkLength);
+                                } catch (IOException e) {
+                                    throw new UncheckedIOException(e);
+                                }
+                            }));
+        }
+        long crc = 0;
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                final long chunkLength = Math.min(chunkSize, length - i * chunkSize);
+                crc = crc32Combine(crc, tasks.get(i).get(), chunkLength);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted while computing checksum", e);
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof UncheckedIOException) {
+                throw ((UncheckedIOException) cause).getCause();
+            }
+            throw new IOException("unable to compute checksum", cause);
+        } finally {
+            for (final ForkJoinTask<Long> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return crc;
+    }
+
+    private static long chunkChecksum(
+            final FileChannel channel, final long position, final long length)
+            throws IOException {
+        final CRC32 crc = new CRC32();
+        final ByteBuffer buffer = READ_BUFFER.get();
+        final long end = position + length;
+        long current = position;
+        while (current < end) {
+            buffer.clear();
+            buffer.limit((int) Math.min(buffer.capacity(), end - current));
+            final int read = channel.read(buffer, current);
+            if (read < 0) {
+                throw new EOFException("file ended at " + current + " while reading to " + end);
+            }
+            buffer.flip();
+            crc.update(buffer);
+            current += read;
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Combines the CRC32 of two adjacent byte ranges.
+     *
+     * @param crc1 CRC32 of the first range
+     * @param crc2 CRC32 of the second range
+     * @param length2 length in bytes of the second range
+     * @return the CRC32 of the first range followed by the second
+     */
+    public static long crc32Combine(final long crc1, final long crc2, final long length2) {
+        return crcCombine((int) crc1, (int) crc2, length2, CRC32_POLYNOMIAL) & 0xffffffffL;
+    }
+
+    /**
+     * Combines the checksums of two adjacent byte ranges for any reflected 32 bit CRC with an
+     * initial and final value of 0xffffffff, such as CRC32 and CRC32C.
+     *
+     * @param polynomial the CRC's polynomial in reversed bit order, e.g. 0x82f63b78 for CRC32C
+     * @return the CRC of the first range followed by the second
+     */
+    public static int crcCombine(int crc1, final int crc2, long length2, final int polynomial) {
+        if (length2 <= 0) {
+            return crc1;
+        }
+        final int[] even = new int[GF2_DIM];
+        final int[] odd = new int[GF2_DIM];
+
+        // operator for one zero bit
+        odd[0] = polynomial;
+        int row = 1;
+        for (int n = 1; n < GF2_DIM; n++) {
+            odd[n] = row;
+            row <<= 1;
+        }
+        // operators for two and then four zero bits
+        gf2MatrixSquare(even, odd);
+        gf2MatrixSquare(odd, even);
+
+        // apply length2 zero bytes to crc1, squaring the operator for each bit of length2
+        do {
+            gf2MatrixSquare(even, odd);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(even, crc1);
+            }
+            length2 >>>= 1;
+            if (length2 == 0) {
+                break;
+            }
+            gf2MatrixSquare(odd, even);
+            if ((length2 & 1) != 0) {
+                crc1 = gf2MatrixTimes(odd, crc1);
+            }
+            length2 >>>= 1;
+        } while (length2 != 0);
+        return crc1 ^ crc2;
+    }
+
+    private static int gf2MatrixTimes(final int[] matrix, int vector) {
+        int sum = 0;
+        for (int i = 0; vector != 0; i++, vector >>>= 1) {
+            if ((vector & 1) != 0) {
+                sum ^= matrix[i];
+            }
+        }
+        return sum;
+    }
+
+    private static void gf2MatrixSquare(final int[] square, final int[] matrix) {
+        for (int n = 0; n < GF2_DIM; n++) {
+            square[n] = gf2MatrixTimes(matrix, matrix[n]);
+        }
+    }
+
+    public static final class Builder {
+        private long chunkSize = DEFAULT_CHUNK_SIZE;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+        @Nullable private ForkJoinPool pool = null;
+
+        private Builder() {}
+
+        public Builder setChunkSize(final long chunkSize) {
+            Preconditions.checkArgument(chunkSize > 0, "chunk size must be positive");
+            this.chunkSize = chunkSize;
+            return this;
+        }
+
+        /**
+         * Checksums with a pool of this many threads that is created for each file. Ignored if a
+         * pool is set with {@link #setPool(ForkJoinPool)}.
+         */
+        public Builder setParallelism(final int parallelism) {
+            Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        /** Checksums on a shared pool such as {@link ForkJoinPool#commonPool()}. */
+        public Builder setPool(@Nullable final ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public ParallelCrc32 build() {
+            return new ParallelCrc32(chunkSize, parallelism, pool);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.indeed.util.io;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelCrc32Test {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static long crc32(final byte[] bytes, final int off, final int len) {
+        final CRC32 crc = new CRC32();
+        crc.update(bytes, off, len);
+        return crc.getValue();
+    }
+
+    @Test
+    public void testCombine() {
+        final byte[] bytes = new byte[10000];
+        new Random(0).nextBytes(bytes);
+        for (final int split : new int[] {0, 1, 7, 4096, 9999, 10000}) {
+            assertEquals(
+                    crc32(bytes, 0, bytes.length),
+                    ParallelCrc32.crc32Combine(
+                            crc32(bytes, 0, split),
+                            crc32(bytes, split, bytes.length - split),
+                            bytes.length - split));
+        }
+    }
+
+    @Test
+    public void testChecksum() throws IOException {
+        final Random random = new Random(1);
+        for (final int length : new int[] {0, 1, 4095, 4096, 100003, 5000011}) {
+            final byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            final File file = tempDir.newFile();
+            java.nio.file.Files.write(file.toPath(), bytes);
+            final long expected = crc32(bytes, 0, length);
+            for (final int chunkSize : new int[] {1, 1000, 4096, 1 << 20, 3 << 20}) {
+                if (length / chunkSize > 10000) {
+                    continue;
+                }
+                assertEquals(
+                        expected,
+                        ParallelCrc32.builder()
+                                .setChunkSize(chunkSize)
+                                .setParallelism(3)
+                                .build()
+                                .checksum(file));
+                assertEquals(
+                        expected,
+                        ParallelCrc32.builder()
+                                .setChunkSize(chunkSize)
+                                .setPool(ForkJoinPool.commonPool())
+                                .build()
+                                .checksum(file));
+            }
+        }
+    }
+
+    @Test
+    public void testWriteObject() throws IOException, ClassNotFoundException {
+        final ParallelCrc32 verifier = ParallelCrc32.builder().setChunkSize(1024).build();
+        final List<Integer> list = new ArrayList<>();
+        for (int i = 0; i < 10000; i++) {
+            list.add(i);
+        }
+        final File file = new File(tempDir.getRoot(), "list");
+        Files.writeObjectToFileOrDie2(list, file.getPath(), verifier);
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            assertEquals(list, in.readObject());
+        }
+        assertFalse(Files.writeObjectIfChangedOrDie2(list, file.getPath(), verifier));
+        list.add(-1);
+        assertTrue(Files.writeObjectIfChangedOrDie2(list, file.getPath(), verifier));
+        try (ObjectInputStream in = new ObjectInputStream(new FileInputStream(file))) {
+            assertEquals(list, in.readObject());
+        }
+    }
+}
@@ -22,9 +22,40 @@ int get_c_flags(int flags) {
     if (flags & com_indeed_util_mmap_MMapBuffer_MAP_ANONYMOUS) {
         c_flags |= MAP_ANONYMOUS;
     }
+#ifdef MAP_NORESERVE
+    if (flags & com_indeed_util_mmap_MMapBuffer_MAP_NORESERVE) {
+        c_flags |= MAP_NORESERVE;
+    }
+#endif
+#ifdef MAP_POPULATE
+    if (flags & com_indeed_util_mmap_MMapBuffer_MAP_POPULATE) {
+        c_flags |= MAP_POPULATE;
+    }
+#endif
     return c_flags;
 }
 
+int get_c_advice(int advice) {
+    switch (advice) {
+        case com_indeed_util_mmap_MMapBuffer_MADV_NORMAL:
+            return MADV_NORMAL;
+        case com_indeed_util_mmap_MMapBuffer_MADV_RANDOM:
+            return MADV_RANDOM;
+        case com_indeed_util_mmap_MMapBuffer_MADV_SEQUENTIAL:
+            return MADV_SEQUENTIAL;
+        case com_indeed_util_mmap_MMapBuffer_MADV_WILLNEED:
+            return MADV_WILLNEED;
+        case com_indeed_util_mmap_MMapBuffer_MADV_DONTNEED:
+            return MADV_DONTNEED;
+#ifdef MADV_HUGEPAGE
+        case com_indeed_util_mmap_MMapBuffer_MADV_HUGEPAGE:
+            return MADV_HUGEPAGE;
+#endif
+        default:
+            return -1;
+    }
+}
+
 /*
  * Class:     com_indeed_squall_mmap_MMapBuffer
  * Method:    extractFd
@@ -69,6 +100,12 @@ JNIEXPORT jlong JNICALL Java_com_indeed_util_mmap_MMapBuffer_mmap (JNIEnv* env,
     if (map_addr == MAP_FAILED) {
         return com_indeed_util_mmap_MMapBuffer_MAP_FAILED;
     }
+#ifndef MAP_POPULATE
+    // no MAP_POPULATE (e.g. OSX), asking for readahead is the closest thing available
+    if (flags & com_indeed_util_mmap_MMapBuffer_MAP_POPULATE) {
+        madvise(map_addr, length, MADV_WILLNEED);
+    }
+#endif
     return (jlong)map_addr;
 }
 
@@ -127,6 +164,21 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madviseDontNeed (JNI
     return madvise((void*)address, length, MADV_DONTNEED);
 }
 
+/*
+ * Class:     com_indeed_util_mmap_MMapBuffer
+ * Method:    madvise0
+ * Signature: (JJI)I
+ */
+JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_MMapBuffer_madvise0 (JNIEnv* env, jclass class, jlong address, jlong length, jint advice) {
+    int c_advice;
+    c_advice = get_c_advice(advice);
+    if (c_advice == -1) {
+        errno = EINVAL;
+        return -1;
+    }
+    return madvise((void*)address, length, c_advice);
+}
+
 /*
  * Class:     com_indeed_util_mmap_MMapBuffer
  * Method:    errno
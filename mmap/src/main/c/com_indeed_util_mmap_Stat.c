@@ -9,6 +9,24 @@
 #include <errno.h>
 #include <stdint.h>
 
+#if defined(__GLIBC__) && defined(__x86_64__)
+/* glibc 2.33 added stat, lstat and fstat symbols. Link against the __xstat family that every
+ * glibc exports instead, so that a library built on a new system still loads on older ones. */
+extern int __xstat(int ver, const char* path, struct stat* buf);
+extern int __lxstat(int ver, const char* path, struct stat* buf);
+extern int __fxstat(int ver, int fd, struct stat* buf);
+__asm__(".symver __xstat,__xstat@GLIBC_2.2.5");
+__asm__(".symver __lxstat,__lxstat@GLIBC_2.2.5");
+__asm__(".symver __fxstat,__fxstat@GLIBC_2.2.5");
+#define stat_compat(path, buf) __xstat(1, path, buf)
+#define lstat_compat(path, buf) __lxstat(1, path, buf)
+#define fstat_compat(fd, buf) __fxstat(1, fd, buf)
+#else
+#define stat_compat(path, buf) stat(path, buf)
+#define lstat_compat(path, buf) lstat(path, buf)
+#define fstat_compat(fd, buf) fstat(fd, buf)
+#endif
+
 int j_errno(int err) {
 	switch (err) {
 		case EACCES : return 1;
@@ -46,7 +64,7 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_Stat_stat(JNIEnv* env, jclass c
 	char* path;
 	int err;
 	path = (char*)(*env)->GetStringUTFChars(env, jpath, NULL);
-	err = stat(path, &statbuf);
+	err = stat_compat(path, &statbuf);
 	if (err != 0) {
 		return j_errno(errno);
 	}
@@ -60,7 +78,7 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_Stat_lstat(JNIEnv* env, jclass
 	char* path;
 	int err;
 	path = (char*)(*env)->GetStringUTFChars(env, jpath, NULL);
-	err = lstat(path, &statbuf);
+	err = lstat_compat(path, &statbuf);
 	if (err != 0) {
 		return j_errno(errno);
 	}
@@ -72,7 +90,7 @@ JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_Stat_lstat(JNIEnv* env, jclass
 JNIEXPORT jint JNICALL Java_com_indeed_util_mmap_Stat_fstat(JNIEnv* env, jclass class, jint fd, jlong addr) {
 	struct stat statbuf;
 	int err;
-	err = fstat(fd, &statbuf);
+	err = fstat_compat(fd, &statbuf);
 	if (err != 0) {
 		return j_errno(errno);
 	}
@@ -0,0 +1,29 @@
+package com.indeed.util.mmap;
+
+/**
+ * Access pattern hints passed to madvise(2) for a mapped range. See {@link
+ * MMapBuffer#advise(long, long, Advice)}.
+ */
+public enum Advice {
+    /** Default kernel readahead behavior. */
+    NORMAL(MMapBuffer.MADV_NORMAL),
+    /** Pages will be accessed in random order, readahead is mostly pointless. */
+    RANDOM(MMapBuffer.MADV_RANDOM),
+    /** Pages will be accessed in sequential order, read ahead aggressively. */
+    SEQUENTIAL(MMapBuffer.MADV_SEQUENTIAL),
+    /** Pages will be needed soon, start reading them in asynchronously. */
+    WILLNEED(MMapBuffer.MADV_WILLNEED),
+    /** Pages will not be needed soon, the kernel may drop them from the page cache. */
+    DONTNEED(MMapBuffer.MADV_DONTNEED),
+    /**
+     * Back the range with transparent huge pages where the kernel supports it (anonymous memory,
+     * tmpfs, and read only file mappings on kernels built with CONFIG_READ_ONLY_THP_FOR_FS).
+     */
+    HUGEPAGE(MMapBuffer.MADV_HUGEPAGE);
+
+    final int nativeValue;
+
+    Advice(final int nativeValue) {
+        this.nativeValue = nativeValue;
+    }
+}
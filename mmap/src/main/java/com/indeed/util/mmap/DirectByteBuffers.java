@@ -0,0 +1,126 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.unsafe.IndeedUnsafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Direct {@link ByteBuffer}s that point at native memory owned by a {@link DirectMemory}, so that
+ * it can be handed to NIO without copying it. A wrapping buffer is a duplicate of a direct buffer
+ * with its address and capacity replaced. Where the JDK's Buffer fields can't be found wrapping
+ * is unsupported and callers copy through a temporary direct buffer instead.
+ */
+final class DirectByteBuffers {
+    private static final Logger log = LoggerFactory.getLogger(DirectByteBuffers.class);
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private static final ByteBuffer TEMPLATE = ByteBuffer.allocateDirect(0);
+    private static final long ADDRESS_OFFSET;
+    private static final long CAPACITY_OFFSET;
+
+    static {
+        long addressOffset = -1;
+        long capacityOffset = -1;
+        try {
+            addressOffset =
+                    IndeedUnsafe.objectFieldOffset(Buffer.class.getDeclaredField("address"));
+            capacityOffset =
+                    IndeedUnsafe.objectFieldOffset(Buffer.class.getDeclaredField("capacity"));
+        } catch (NoSuchFieldException | RuntimeException e) {
+            log.warn("unable to wrap native memory in direct ByteBuffers, copying instead", e);
+            addressOffset = -1;
+        }
+        ADDRESS_OFFSET = addressOffset;
+        CAPACITY_OFFSET = capacityOffset;
+    }
+
+    private DirectByteBuffers() {}
+
+    static boolean isWrapSupported() {
+        return ADDRESS_OFFSET >= 0;
+    }
+
+    /**
+     * @return a buffer with position 0 and limit length over the memory at address, which has to
+     *     stay valid for as long as the buffer is used
+     * @throws UnsupportedOperationException if {@link #isWrapSupported()} is false
+     */
+    static ByteBuffer wrap(final long address, final int length) {
+        if (!isWrapSupported()) {
+            throw new UnsupportedOperationException("wrapping native memory is not supported");
+        }
+        final ByteBuffer buffer = TEMPLATE.duplicate();
+        IndeedUnsafe.putLong(buffer, ADDRESS_OFFSET, address);
+        IndeedUnsafe.putInt(buffer, CAPACITY_OFFSET, length);
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Writes length bytes of memory starting at position to target. Stops early if target doesn't
+     * accept any more bytes, as a non blocking channel may.
+     *
+     * @return the number of bytes written
+     */
+    static long write(
+            final DirectMemory memory,
+            final long position,
+            final long length,
+            final WritableByteChannel target)
+            throws IOException {
+        checkRange(memory, position, length);
+        long written = 0;
+        if (isWrapSupported()) {
+            while (written < length) {
+                final int chunk = (int) Math.min(length - written, Integer.MAX_VALUE);
+                final ByteBuffer buffer = wrap(memory.getAddress() + position + written, chunk);
+                final long n = writeFully(buffer, target);
+                written += n;
+                if (n < chunk) {
+                    break;
+                }
+            }
+        } else {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER_SIZE);
+            while (written < length) {
+                final int chunk = (int) Math.min(length - written, COPY_BUFFER_SIZE);
+                buffer.clear();
+                buffer.limit(chunk);
+                memory.getBytes(position + written, buffer);
+                buffer.flip();
+                final long n = writeFully(buffer, target);
+                written += n;
+                if (n < chunk) {
+                    break;
+                }
+            }
+        }
+        return written;
+    }
+
+    private static long writeFully(final ByteBuffer buffer, final WritableByteChannel target)
+            throws IOException {
+        long written = 0;
+        while (buffer.hasRemaining()) {
+            final int n = target.write(buffer);
+            if (n <= 0) {
+                break;
+            }
+            written += n;
+        }
+        return written;
+    }
+
+    static void checkRange(final Memory memory, final long position, final long length) {
+        if (position < 0 || length < 0 || position + length > memory.length()) {
+            throw new IndexOutOfBoundsException(
+                    "position: " + position + " length: " + length + " size: " + memory.length());
+        }
+    }
+}
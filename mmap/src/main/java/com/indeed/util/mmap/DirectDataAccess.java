@@ -32,4 +32,28 @@ public interface DirectDataAccess {
     public void putDouble(long address, double val);
 
     public void copyMemory(long source, long dest, long length);
+
+    public void getShorts(long address, short[] shorts, int start, int length);
+
+    public void putShorts(long address, short[] shorts, int start, int length);
+
+    public void getChars(long address, char[] chars, int start, int length);
+
+    public void putChars(long address, char[] chars, int start, int length);
+
+    public void getInts(long address, int[] ints, int start, int length);
+
+    public void putInts(long address, int[] ints, int start, int length);
+
+    public void getLongs(long address, long[] longs, int start, int length);
+
+    public void putLongs(long address, long[] longs, int start, int length);
+
+    public void getFloats(long address, float[] floats, int start, int length);
+
+    public void putFloats(long address, float[] floats, int start, int length);
+
+    public void getDoubles(long address, double[] doubles, int start, int length);
+
+    public void putDoubles(long address, double[] doubles, int start, int length);
 }
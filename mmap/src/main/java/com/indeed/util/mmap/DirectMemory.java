@@ -1,26 +1,46 @@
 package com.indeed.util.mmap;
 
+import com.indeed.util.unsafe.IndeedUnsafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
-/** @author jplaisance */
+/**
+ * Memory backed by a native address range.
+ *
+ * <p>By default every access is bounds checked. {@link #unchecked()} returns a view that skips the
+ * per access checks, for read heavy loops over ranges that were already validated when the view
+ * or a {@link #slice(long, long)} of it was created. An out of range access through an unchecked
+ * view reads or writes arbitrary memory and can crash the JVM.
+ *
+ * @author jplaisance
+ */
 public final class DirectMemory extends AbstractMemory {
     private static final Logger log = LoggerFactory.getLogger(DirectMemory.class);
     private static final boolean debug = true;
 
+    private static final int BYTE_BUFFER_CHUNK_SIZE = 1 << 30;
+
     private final ByteOrder order;
     private final DirectDataAccess directDataAccess;
 
     private final long address;
     private final long length;
+    private final boolean checked;
+    private final boolean nativeOrder;
 
     DirectMemory(long address, long length, ByteOrder order) {
+        this(address, length, order, true);
+    }
+
+    private DirectMemory(long address, long length, ByteOrder order, boolean checked) {
         this.address = address;
         this.length = length;
         this.order = order;
+        this.checked = checked;
+        nativeOrder = order.equals(ByteOrder.nativeOrder());
         directDataAccess =
                 order.equals(ByteOrder.nativeOrder())
                         ? NativeEndianDirectDataAccess.getInstance()
@@ -28,12 +48,20 @@ public final class DirectMemory extends AbstractMemory {
     }
 
     private void checkBounds(long l, long length) {
-        if (debug) {
+        if (debug && checked) {
             if (l < 0 || l > this.length - length)
                 throw new IndexOutOfBoundsException("l: " + l + " length: " + length);
         }
     }
 
+    private void checkAtomic(long l, int size) {
+        checkBounds(l, size);
+        if (debug && checked && ((address + l) & (size - 1)) != 0) {
+            throw new IllegalArgumentException(
+                    "address of l: " + l + " is not aligned to " + size + " bytes");
+        }
+    }
+
     private void checkArrayBounds(final byte[] bytes, final int start, final int length) {
         if (debug) {
             if (bytes == null) throw new IllegalArgumentException("byte[] bytes cannot be null");
@@ -48,6 +76,16 @@ public final class DirectMemory extends AbstractMemory {
         }
     }
 
+    private void checkArrayBounds(final int arrayLength, final int start, final int length) {
+        if (debug) {
+            if (start < 0) throw new IndexOutOfBoundsException("start cannot be less than zero");
+            if (length < 0) throw new IllegalArgumentException("length cannot be less than zero");
+            if (start > arrayLength - length)
+                throw new IndexOutOfBoundsException(
+                        "start plus length cannot be greater than length of array");
+        }
+    }
+
     @Override
     public byte getByte(final long l) {
         checkBounds(l, 1);
@@ -108,6 +146,97 @@ public final class DirectMemory extends AbstractMemory {
         directDataAccess.putLong(address + l, l1);
     }
 
+    // The atomic accessors store values in this memory's byte order, which costs a byte swap if
+    // that isn't the native order.
+
+    @Override
+    public int getIntVolatile(final long l) {
+        checkAtomic(l, 4);
+        return toOrder(IndeedUnsafe.getIntVolatile(address + l));
+    }
+
+    @Override
+    public void putIntVolatile(final long l, final int i) {
+        checkAtomic(l, 4);
+        IndeedUnsafe.putIntVolatile(address + l, toOrder(i));
+    }
+
+    @Override
+    public void putIntOrdered(final long l, final int i) {
+        checkAtomic(l, 4);
+        IndeedUnsafe.putOrderedInt(address + l, toOrder(i));
+    }
+
+    @Override
+    public boolean compareAndSwapInt(final long l, final int expected, final int i) {
+        checkAtomic(l, 4);
+        return IndeedUnsafe.compareAndSwapInt(address + l, toOrder(expected), toOrder(i));
+    }
+
+    @Override
+    public int getAndAddInt(final long l, final int delta) {
+        checkAtomic(l, 4);
+        if (nativeOrder) {
+            return IndeedUnsafe.getAndAddInt(address + l, delta);
+        }
+        while (true) {
+            final int current = IndeedUnsafe.getIntVolatile(address + l);
+            final int value = Integer.reverseBytes(current);
+            if (IndeedUnsafe.compareAndSwapInt(
+                    address + l, current, Integer.reverseBytes(value + delta))) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public long getLongVolatile(final long l) {
+        checkAtomic(l, 8);
+        return toOrder(IndeedUnsafe.getLongVolatile(address + l));
+    }
+
+    @Override
+    public void putLongVolatile(final long l, final long l1) {
+        checkAtomic(l, 8);
+        IndeedUnsafe.putLongVolatile(address + l, toOrder(l1));
+    }
+
+    @Override
+    public void putLongOrdered(final long l, final long l1) {
+        checkAtomic(l, 8);
+        IndeedUnsafe.putOrderedLong(address + l, toOrder(l1));
+    }
+
+    @Override
+    public boolean compareAndSwapLong(final long l, final long expected, final long l1) {
+        checkAtomic(l, 8);
+        return IndeedUnsafe.compareAndSwapLong(address + l, toOrder(expected), toOrder(l1));
+    }
+
+    @Override
+    public long getAndAddLong(final long l, final long delta) {
+        checkAtomic(l, 8);
+        if (nativeOrder) {
+            return IndeedUnsafe.getAndAddLong(address + l, delta);
+        }
+        while (true) {
+            final long current = IndeedUnsafe.getLongVolatile(address + l);
+            final long value = Long.reverseBytes(current);
+            if (IndeedUnsafe.compareAndSwapLong(
+                    address + l, current, Long.reverseBytes(value + delta))) {
+                return value;
+            }
+        }
+    }
+
+    private int toOrder(final int i) {
+        return nativeOrder ? i : Integer.reverseBytes(i);
+    }
+
+    private long toOrder(final long l) {
+        return nativeOrder ? l : Long.reverseBytes(l);
+    }
+
     @Override
     public float getFloat(final long l) {
         checkBounds(l, 4);
@@ -252,13 +381,149 @@ public final class DirectMemory extends AbstractMemory {
         }
     }
 
+    @Override
+    public void getShorts(final long l, final short[] shorts, final int start, final int length) {
+        checkArrayBounds(shorts.length, start, length);
+        checkBounds(l, length * 2L);
+        directDataAccess.getShorts(address + l, shorts, start, length);
+    }
+
+    @Override
+    public void putShorts(final long l, final short[] shorts, final int start, final int length) {
+        checkArrayBounds(shorts.length, start, length);
+        checkBounds(l, length * 2L);
+        directDataAccess.putShorts(address + l, shorts, start, length);
+    }
+
+    @Override
+    public void getChars(final long l, final char[] chars, final int start, final int length) {
+        checkArrayBounds(chars.length, start, length);
+        checkBounds(l, length * 2L);
+        directDataAccess.getChars(address + l, chars, start, length);
+    }
+
+    @Override
+    public void putChars(final long l, final char[] chars, final int start, final int length) {
+        checkArrayBounds(chars.length, start, length);
+        checkBounds(l, length * 2L);
+        directDataAccess.putChars(address + l, chars, start, length);
+    }
+
+    @Override
+    public void getInts(final long l, final int[] ints, final int start, final int length) {
+        checkArrayBounds(ints.length, start, length);
+        checkBounds(l, length * 4L);
+        directDataAccess.getInts(address + l, ints, start, length);
+    }
+
+    @Override
+    public void putInts(final long l, final int[] ints, final int start, final int length) {
+        checkArrayBounds(ints.length, start, length);
+        checkBounds(l, length * 4L);
+        directDataAccess.putInts(address + l, ints, start, length);
+    }
+
+    @Override
+    public void getLongs(final long l, final long[] longs, final int start, final int length) {
+        checkArrayBounds(longs.length, start, length);
+        checkBounds(l, length * 8L);
+        directDataAccess.getLongs(address + l, longs, start, length);
+    }
+
+    @Override
+    public void putLongs(final long l, final long[] longs, final int start, final int length) {
+        checkArrayBounds(longs.length, start, length);
+        checkBounds(l, length * 8L);
+        directDataAccess.putLongs(address + l, longs, start, length);
+    }
+
+    @Override
+    public void getFloats(final long l, final float[] floats, final int start, final int length) {
+        checkArrayBounds(floats.length, start, length);
+        checkBounds(l, length * 4L);
+        directDataAccess.getFloats(address + l, floats, start, length);
+    }
+
+    @Override
+    public void putFloats(final long l, final float[] floats, final int start, final int length) {
+        checkArrayBounds(floats.length, start, length);
+        checkBounds(l, length * 4L);
+        directDataAccess.putFloats(address + l, floats, start, length);
+    }
+
+    @Override
+    public void getDoubles(
+            final long l, final double[] doubles, final int start, final int length) {
+        checkArrayBounds(doubles.length, start, length);
+        checkBounds(l, length * 8L);
+        directDataAccess.getDoubles(address + l, doubles, start, length);
+    }
+
+    @Override
+    public void putDoubles(
+            final long l, final double[] doubles, final int start, final int length) {
+        checkArrayBounds(doubles.length, start, length);
+        checkBounds(l, length * 8L);
+        directDataAccess.putDoubles(address + l, doubles, start, length);
+    }
+
     @Override
     public DirectMemory slice(long startAddress, long sliceLength) {
         if (startAddress < 0) throw new IllegalArgumentException("startAddress must be >= 0");
         if (sliceLength < 0) throw new IllegalArgumentException("sliceLength must be >= 0");
         if (startAddress + sliceLength > length)
             throw new IllegalArgumentException("startAddress+sliceLength must be <= length");
-        return new DirectMemory(address + startAddress, sliceLength, order);
+        return new DirectMemory(address + startAddress, sliceLength, order, checked);
+    }
+
+    /**
+     * @return a direct ByteBuffer in this memory's byte order over [offset, offset + length) that
+     *     aliases the memory instead of copying it. The buffer doesn't keep the memory alive, it
+     *     must not be used after the memory is freed or unmapped. Writing through it to a read only
+     *     mapping crashes the JVM, {@link MMapBuffer#asByteBuffer(long, int)} returns read only
+     *     buffers for those.
+     * @throws UnsupportedOperationException if this JVM's ByteBuffer internals are inaccessible
+     */
+    public ByteBuffer asByteBuffer(long offset, int length) {
+        if (offset < 0 || length < 0 || offset > this.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + " length: " + length + " size: " + this.length);
+        }
+        return DirectByteBuffers.wrap(address + offset, length).order(order);
+    }
+
+    /**
+     * Like {@link #asByteBuffer(long, int)} for ranges that may not fit in one ByteBuffer.
+     *
+     * @return consecutive buffers of at most 1GB each that together cover [offset, offset +
+     *     length)
+     */
+    public ByteBuffer[] asByteBuffers(long offset, long length) {
+        if (offset < 0 || length < 0 || offset > this.length - length) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + " length: " + length + " size: " + this.length);
+        }
+        final long chunkSize = BYTE_BUFFER_CHUNK_SIZE;
+        final ByteBuffer[] buffers = new ByteBuffer[(int) ((length + chunkSize - 1) / chunkSize)];
+        for (int i = 0; i < buffers.length; i++) {
+            final long start = i * chunkSize;
+            buffers[i] = asByteBuffer(offset + start, (int) Math.min(chunkSize, length - start));
+        }
+        return buffers;
+    }
+
+    /**
+     * @return a view of the same memory that does not bounds check individual accesses. Slices
+     *     and typed arrays created from the view are still validated when they are created, and
+     *     copies to or from heap arrays still check the array bounds.
+     */
+    public DirectMemory unchecked() {
+        return checked ? new DirectMemory(address, length, order, false) : this;
+    }
+
+    /** @return true if every access to this memory is bounds checked */
+    public boolean isChecked() {
+        return checked;
     }
 
     @Override
@@ -27,9 +27,7 @@ public final class DoubleArray {
     }
 
     public void get(final long index, final double[] doubles, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            doubles[start + i] = buffer.getDouble((index + i) * TYPE_SIZE);
-        }
+        buffer.getDoubles(index * TYPE_SIZE, doubles, start, length);
     }
 
     public void get(final long index, final double[] doubles) {
@@ -50,9 +48,7 @@ public final class DoubleArray {
     }
 
     public void set(final long index, final double[] doubles, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            buffer.putDouble((index + i) * TYPE_SIZE, doubles[start + i]);
-        }
+        buffer.putDoubles(index * TYPE_SIZE, doubles, start, length);
     }
 
     public void set(final long index, final double[] doubles) {
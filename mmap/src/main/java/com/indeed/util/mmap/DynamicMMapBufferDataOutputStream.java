@@ -1,204 +1,134 @@
 package com.indeed.util.mmap;
 
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
+import com.google.common.base.Preconditions;
 
 import java.io.DataOutput;
 import java.io.File;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
-import java.util.ArrayList;
-import java.util.List;
 
-/** @author jplaisance */
+/**
+ * DataOutput that writes to a memory mapped file and extends the file and the mapping as needed
+ * (see {@link GrowthPolicy}). On Linux the mapping is grown with mremap, elsewhere a virtual range
+ * larger than the file is reserved. Memory returned by {@link #memory()} stays valid until close:
+ * a mapping that {@link #memory()} was called on is kept when the file outgrows it, so callers
+ * that only write never hold more than one mapping. {@link Builder#setRemapInPlace(boolean)} never
+ * keeps outgrown mappings.
+ *
+ * <pre>
+ *   try (DynamicMMapBufferDataOutputStream out =
+ *           DynamicMMapBufferDataOutputStream.builder(file)
+ *                   .setByteOrder(ByteOrder.LITTLE_ENDIAN)
+ *                   .setGrowthPolicy(GrowthPolicy.doublingUpTo(1L &lt;&lt; 30))
+ *                   .setTruncateOnClose(true)
+ *                   .build()) {
+ *       out.writeLong(value);
+ *   }
+ * </pre>
+ *
+ * @author jplaisance
+ */
 public final class DynamicMMapBufferDataOutputStream extends OutputStream implements DataOutput {
 
-    private static final Logger log =
-            LoggerFactory.getLogger(DynamicMMapBufferDataOutputStream.class);
+    private final GrowableMapping mapping;
 
-    private MMapBuffer buffer;
+    private final boolean truncateOnClose;
 
     private Memory memory;
 
-    private final File file;
-
-    private final ByteOrder byteOrder;
-
     private long currentAddress = 0;
 
-    private List<MMapBuffer> toClose = new ArrayList<MMapBuffer>();
-
     public DynamicMMapBufferDataOutputStream(final File file, final ByteOrder byteOrder)
             throws IOException {
-        this.file = file;
-        this.byteOrder = byteOrder;
-        buffer = new MMapBuffer(file, 0, 4096, FileChannel.MapMode.READ_WRITE, byteOrder);
-        memory = buffer.memory();
+        this(builder(file).setByteOrder(byteOrder).setInitialLength(4096));
     }
 
     public DynamicMMapBufferDataOutputStream(
             final File file, final ByteOrder byteOrder, long offset) throws IOException {
-        this.file = file;
-        this.byteOrder = byteOrder;
-        buffer =
-                new MMapBuffer(
-                        file,
-                        0,
-                        Math.max(4096, file.length()),
-                        FileChannel.MapMode.READ_WRITE,
-                        byteOrder);
-        memory = buffer.memory();
-        currentAddress = offset;
+        this(builder(file).setByteOrder(byteOrder).setOffset(offset));
+    }
+
+    private DynamicMMapBufferDataOutputStream(final Builder builder) throws IOException {
+        mapping =
+                new GrowableMapping(
+                        builder.file,
+                        Math.max(builder.initialLength, builder.offset),
+                        builder.byteOrder,
+                        builder.growthPolicy,
+                        builder.reservation,
+                        builder.remapInPlace);
+        truncateOnClose = builder.truncateOnClose;
+        memory = mapping.memory();
+        currentAddress = builder.offset;
     }
 
+    public static Builder builder(final File file) {
+        return new Builder(file);
+    }
+
+    /**
+     * @return the bytes written so far, valid until the stream is closed. If the stream was built
+     *     with {@link Builder#setRemapInPlace(boolean)} it is only valid until the next write that
+     *     extends the file.
+     */
     public DirectMemory memory() {
-        return buffer.memory().slice(0, currentAddress);
+        return mapping.view().slice(0, currentAddress);
     }
 
-    public void writeBoolean(final boolean v) throws IOException {
-        try {
-            memory.putByte(currentAddress, (byte) (v ? 1 : 0));
-            currentAddress++;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeBoolean(v);
+    private void ensureCapacity(final long length) throws IOException {
+        if (length > memory.length()) {
+            mapping.ensureCapacity(length);
+            memory = mapping.memory();
         }
     }
 
+    public void writeBoolean(final boolean v) throws IOException {
+        ensureCapacity(currentAddress + 1);
+        memory.putByte(currentAddress, (byte) (v ? 1 : 0));
+        currentAddress++;
+    }
+
     public void writeByte(final int v) throws IOException {
-        try {
-            memory.putByte(currentAddress, (byte) v);
-            currentAddress++;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeByte(v);
-        }
+        ensureCapacity(currentAddress + 1);
+        memory.putByte(currentAddress, (byte) v);
+        currentAddress++;
     }
 
     public void writeShort(final int v) throws IOException {
-        try {
-            memory.putShort(currentAddress, (short) v);
-            currentAddress += 2;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeShort(v);
-        }
+        ensureCapacity(currentAddress + 2);
+        memory.putShort(currentAddress, (short) v);
+        currentAddress += 2;
     }
 
     public void writeChar(final int v) throws IOException {
-        try {
-            memory.putChar(currentAddress, (char) v);
-            currentAddress += 2;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeChar(v);
-        }
+        ensureCapacity(currentAddress + 2);
+        memory.putChar(currentAddress, (char) v);
+        currentAddress += 2;
     }
 
     public void writeInt(final int v) throws IOException {
-        try {
-            memory.putInt(currentAddress, v);
-            currentAddress += 4;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeInt(v);
-        }
+        ensureCapacity(currentAddress + 4);
+        memory.putInt(currentAddress, v);
+        currentAddress += 4;
     }
 
     public void writeLong(final long v) throws IOException {
-        try {
-            memory.putLong(currentAddress, v);
-            currentAddress += 8;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeLong(v);
-        }
+        ensureCapacity(currentAddress + 8);
+        memory.putLong(currentAddress, v);
+        currentAddress += 8;
     }
 
     public void writeFloat(final float v) throws IOException {
-        try {
-            memory.putFloat(currentAddress, v);
-            currentAddress += 4;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeFloat(v);
-        }
+        ensureCapacity(currentAddress + 4);
+        memory.putFloat(currentAddress, v);
+        currentAddress += 4;
     }
 
     public void writeDouble(final double v) throws IOException {
-        try {
-            memory.putDouble(currentAddress, v);
-            currentAddress += 8;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            writeDouble(v);
-        }
+        ensureCapacity(currentAddress + 8);
+        memory.putDouble(currentAddress, v);
+        currentAddress += 8;
     }
 
     public void writeBytes(final String s) throws IOException {
@@ -222,29 +152,18 @@ public final class DynamicMMapBufferDataOutputStream extends OutputStream implem
         if (off < 0 || len < 0 || off + len > b.length) {
             throw new IndexOutOfBoundsException();
         }
-        try {
-            memory.putBytes(currentAddress, b, off, len);
-            currentAddress += len;
-        } catch (IndexOutOfBoundsException e) {
-            toClose.add(buffer);
-            buffer =
-                    new MMapBuffer(
-                            file,
-                            0,
-                            memory.length() * 2,
-                            FileChannel.MapMode.READ_WRITE,
-                            byteOrder);
-            memory = buffer.memory();
-            write(b, off, len);
-        }
+        ensureCapacity(currentAddress + len);
+        memory.putBytes(currentAddress, b, off, len);
+        currentAddress += len;
     }
 
+    /**
+     * Unmaps the file. If the stream was built with {@link Builder#setTruncateOnClose(boolean)}
+     * the file is truncated to {@link #position()}, otherwise it keeps the length it was grown to.
+     */
     @Override
     public void close() throws IOException {
-        for (MMapBuffer buffer : toClose) {
-            buffer.close();
-        }
-        buffer.close();
+        mapping.close(truncateOnClose ? currentAddress : -1);
     }
 
     public long position() {
@@ -252,6 +171,75 @@ public final class DynamicMMapBufferDataOutputStream extends OutputStream implem
     }
 
     public void sync() throws IOException {
-        buffer.sync(0, currentAddress);
+        mapping.sync(currentAddress);
+    }
+
+    public static final class Builder {
+        private final File file;
+        private ByteOrder byteOrder = ByteOrder.nativeOrder();
+        private long offset = 0;
+        private long initialLength = 0;
+        private GrowthPolicy growthPolicy = GrowthPolicy.doubling();
+        private long reservation = 1L << 30;
+        private boolean truncateOnClose = false;
+        private boolean remapInPlace = false;
+
+        private Builder(final File file) {
+            this.file = file;
+        }
+
+        public Builder setByteOrder(final ByteOrder byteOrder) {
+            this.byteOrder = byteOrder;
+            return this;
+        }
+
+        /** Position of the first write. Existing data before it is kept. */
+        public Builder setOffset(final long offset) {
+            Preconditions.checkArgument(offset >= 0, "offset must not be negative");
+            this.offset = offset;
+            return this;
+        }
+
+        /** Length the file is extended to up front, defaults to the existing file length. */
+        public Builder setInitialLength(final long initialLength) {
+            Preconditions.checkArgument(initialLength >= 0, "initialLength must not be negative");
+            this.initialLength = initialLength;
+            return this;
+        }
+
+        public Builder setGrowthPolicy(final GrowthPolicy growthPolicy) {
+            this.growthPolicy = Preconditions.checkNotNull(growthPolicy);
+            return this;
+        }
+
+        /**
+         * Virtual address space reserved beyond the file where mremap isn't available (macOS), so
+         * that growing only has to extend the file. Defaults to 1GB.
+         */
+        public Builder setReservation(final long reservation) {
+            Preconditions.checkArgument(reservation > 0, "reservation must be positive");
+            this.reservation = reservation;
+            return this;
+        }
+
+        /** If true the file is truncated to the written length on close. Defaults to false. */
+        public Builder setTruncateOnClose(final boolean truncateOnClose) {
+            this.truncateOnClose = truncateOnClose;
+            return this;
+        }
+
+        /**
+         * If true only one mapping of the file exists at any time, even after {@link #memory()}
+         * was called, so memory previously returned by it is unmapped when the file grows and must
+         * not be used afterwards. Defaults to false.
+         */
+        public Builder setRemapInPlace(final boolean remapInPlace) {
+            this.remapInPlace = remapInPlace;
+            return this;
+        }
+
+        public DynamicMMapBufferDataOutputStream build() throws IOException {
+            return new DynamicMMapBufferDataOutputStream(this);
+        }
     }
 }
@@ -27,9 +27,7 @@ public final class FloatArray {
     }
 
     public void get(final long index, final float[] floats, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            floats[start + i] = buffer.getFloat((index + i) * TYPE_SIZE);
-        }
+        buffer.getFloats(index * TYPE_SIZE, floats, start, length);
     }
 
     public void get(final long index, final float[] floats) {
@@ -50,9 +48,7 @@ public final class FloatArray {
     }
 
     public void set(final long index, final float[] floats, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            buffer.putFloat((index + i) * TYPE_SIZE, floats[start + i]);
-        }
+        buffer.putFloats(index * TYPE_SIZE, floats, start, length);
     }
 
     public void set(final long index, final float[] floats) {
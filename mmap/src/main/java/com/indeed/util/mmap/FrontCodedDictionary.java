@@ -0,0 +1,291 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static com.indeed.util.mmap.FrontCodedDictionaryWriter.FOOTER_SIZE;
+import static com.indeed.util.mmap.FrontCodedDictionaryWriter.MAGIC;
+
+/**
+ * Sorted dictionary of byte strings written by {@link FrontCodedDictionaryWriter}. Opening a
+ * dictionary only reads its footer, so it replaces a deserialized String[] without the startup
+ * cost or the heap.
+ *
+ * <p>Entries are identified by their ordinal, their index in sorted order. {@link #find(byte[])}
+ * binary searches the bucket heads and then compares the key against the front coded entries of
+ * a single bucket without reconstructing them. A {@link Cursor} iterates over the entries in
+ * order, reusing one buffer, and only creates a String when asked to.
+ *
+ * <p>Entries compare as unsigned bytes, which for UTF-8 is the order of the code points. Instances
+ * are safe to use from multiple threads, cursors only from one thread at a time.
+ */
+public final class FrontCodedDictionary {
+    private final Memory memory;
+    private final int size;
+    private final int bucketSize;
+    private final int bucketCount;
+    private final long indexOffset;
+
+    public FrontCodedDictionary(final Memory memory) {
+        this.memory = memory;
+        final long length = memory.length();
+        if (length < FOOTER_SIZE || memory.getInt(length - 4) != MAGIC) {
+            throw new IllegalArgumentException("not a front coded dictionary, or the wrong order");
+        }
+        indexOffset = memory.getLong(length - 24);
+        final long entries = memory.getLong(length - 16);
+        bucketSize = memory.getInt(length - 8);
+        if (entries < 0 || entries > Integer.MAX_VALUE || bucketSize <= 0) {
+            throw new IllegalArgumentException("corrupt front coded dictionary footer");
+        }
+        size = (int) entries;
+        bucketCount = (int) ((entries + bucketSize - 1) / bucketSize);
+        if (indexOffset < 0 || indexOffset + bucketCount * 8L > length - FOOTER_SIZE) {
+            throw new IllegalArgumentException("corrupt front coded dictionary index");
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getBucketSize() {
+        return bucketSize;
+    }
+
+    private long bucketOffset(final int bucket) {
+        return memory.getLong(indexOffset + bucket * 8L);
+    }
+
+    /** @return a copy of the entry with the given ordinal */
+    public byte[] get(final int ordinal) {
+        Preconditions.checkElementIndex(ordinal, size);
+        final Cursor cursor = cursor(ordinal);
+        cursor.next();
+        return cursor.copyBytes();
+    }
+
+    /** @return the entry with the given ordinal decoded as UTF-8 */
+    public String getString(final int ordinal) {
+        Preconditions.checkElementIndex(ordinal, size);
+        final Cursor cursor = cursor(ordinal);
+        cursor.next();
+        return cursor.string();
+    }
+
+    public int find(final String key) {
+        return find(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @return the ordinal of key, or (-(insertion point) - 1) if it is not in the dictionary, like
+     *     {@link Arrays#binarySearch(Object[], Object)}
+     */
+    public int find(final byte[] key) {
+        final MemoryDataInput in = new MemoryDataInput(memory);
+        int low = 0;
+        int high = bucketCount - 1;
+        int bucket = -1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            in.seek(bucketOffset(mid));
+            final int length = in.readVInt();
+            final int cmp = compare(in.position(), length, key);
+            if (cmp == 0) {
+                return mid * bucketSize;
+            } else if (cmp < 0) {
+                bucket = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        if (bucket < 0) {
+            return -1;
+        }
+
+        // Scans the rest of the bucket, knowing that the previous entry is less than key and
+        // shares its first matched bytes with it. An entry that shares more with the previous
+        // entry than that is less than key as well, one that shares less is greater than key.
+        in.seek(bucketOffset(bucket));
+        final int headLength = in.readVInt();
+        int matched = mismatch(in.position(), headLength, key, 0);
+        in.seek(in.position() + headLength);
+        int ordinal = bucket * bucketSize;
+        final int end = (int) Math.min(size, (long) ordinal + bucketSize);
+        for (ordinal++; ordinal < end; ordinal++) {
+            final int shared = in.readVInt();
+            final int suffixLength = in.readVInt();
+            final long suffix = in.position();
+            in.seek(suffix + suffixLength);
+            if (shared > matched) {
+                continue;
+            }
+            if (shared < matched) {
+                return -ordinal - 1;
+            }
+            final int common = mismatch(suffix, suffixLength, key, matched);
+            matched += common;
+            if (common == suffixLength) {
+                if (matched == key.length) {
+                    return ordinal;
+                }
+                // the entry is a prefix of key
+                continue;
+            }
+            if (matched == key.length
+                    || (memory.getByte(suffix + common) & 0xFF) > (key[matched] & 0xFF)) {
+                return -ordinal - 1;
+            }
+        }
+        return -end - 1;
+    }
+
+    /** @return the number of bytes at address that are equal to key from keyOffset on */
+    private int mismatch(
+            final long address, final int length, final byte[] key, final int keyOffset) {
+        final int max = Math.min(length, key.length - keyOffset);
+        int i = 0;
+        while (i < max && memory.getByte(address + i) == key[keyOffset + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private int compare(final long address, final int length, final byte[] key) {
+        final int i = mismatch(address, length, key, 0);
+        if (i < length && i < key.length) {
+            return (memory.getByte(address + i) & 0xFF) - (key[i] & 0xFF);
+        }
+        return length - key.length;
+    }
+
+    /** @return a cursor before the first entry */
+    public Cursor cursor() {
+        return cursor(0);
+    }
+
+    /** @return a cursor before the entry with the given ordinal */
+    public Cursor cursor(final int ordinal) {
+        Preconditions.checkPositionIndex(ordinal, size);
+        return new Cursor(ordinal, null);
+    }
+
+    public Cursor prefixCursor(final String prefix) {
+        return prefixCursor(prefix.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @return a cursor over the entries that start with prefix */
+    public Cursor prefixCursor(final byte[] prefix) {
+        final int found = find(prefix);
+        return new Cursor(found >= 0 ? found : -found - 1, prefix.clone());
+    }
+
+    /**
+     * Iterates over the entries in order. The current entry is decoded into a buffer that is
+     * reused for the next one.
+     */
+    public final class Cursor {
+        private final MemoryDataInput in = new MemoryDataInput(memory);
+        private final byte[] prefix;
+        private byte[] bytes = new byte[64];
+        private int length = 0;
+        private int ordinal;
+        private boolean done = false;
+
+        private Cursor(final int start, final byte[] prefix) {
+            this.prefix = prefix;
+            final int bucketStart = start - start % bucketSize;
+            ordinal = bucketStart - 1;
+            while (ordinal < start - 1) {
+                decodeNext();
+            }
+        }
+
+        private void decodeNext() {
+            ordinal++;
+            if (ordinal % bucketSize == 0) {
+                in.seek(bucketOffset(ordinal / bucketSize));
+                length = in.readVInt();
+                ensureCapacity(length);
+                memory.getBytes(in.position(), bytes, 0, length);
+                in.seek(in.position() + length);
+            } else {
+                final int shared = in.readVInt();
+                final int suffixLength = in.readVInt();
+                length = shared + suffixLength;
+                ensureCapacity(length);
+                memory.getBytes(in.position(), bytes, shared, suffixLength);
+                in.seek(in.position() + suffixLength);
+            }
+        }
+
+        private void ensureCapacity(final int capacity) {
+            if (bytes.length < capacity) {
+                bytes = Arrays.copyOf(bytes, Math.max(capacity, bytes.length * 2));
+            }
+        }
+
+        /** @return false if there are no more entries, or no more starting with the prefix */
+        public boolean next() {
+            if (done || ordinal + 1 >= size) {
+                done = true;
+                return false;
+            }
+            decodeNext();
+            if (prefix != null && !startsWith(prefix)) {
+                done = true;
+                return false;
+            }
+            return true;
+        }
+
+        private boolean startsWith(final byte[] prefix) {
+            if (length < prefix.length) {
+                return false;
+            }
+            for (int i = 0; i < prefix.length; i++) {
+                if (bytes[i] != prefix[i]) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void checkEntry() {
+            Preconditions.checkState(!done && ordinal >= 0, "cursor is not on an entry");
+        }
+
+        public int ordinal() {
+            checkEntry();
+            return ordinal;
+        }
+
+        public int length() {
+            checkEntry();
+            return length;
+        }
+
+        /**
+         * @return the buffer holding the current entry in its first {@link #length()} bytes, which
+         *     is overwritten by {@link #next()}
+         */
+        public byte[] bytes() {
+            checkEntry();
+            return bytes;
+        }
+
+        public byte[] copyBytes() {
+            checkEntry();
+            return Arrays.copyOf(bytes, length);
+        }
+
+        /** @return the current entry decoded as UTF-8 */
+        public String string() {
+            checkEntry();
+            return new String(bytes, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
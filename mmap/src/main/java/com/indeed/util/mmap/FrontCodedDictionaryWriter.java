@@ -0,0 +1,149 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.indeed.util.io.VIntUtils;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Writes a sorted set of byte strings in the front coded format read by {@link
+ * FrontCodedDictionary}.
+ *
+ * <p>Entries are grouped into buckets. The first entry of a bucket, its head, is stored in full so
+ * that the reader can binary search the heads. Every other entry only stores the length of the
+ * prefix it shares with the previous entry and the remaining bytes, which for sorted terms is
+ * usually a small fraction of the entry.
+ *
+ * <pre>
+ *   try (DynamicMMapBufferDataOutputStream out =
+ *           DynamicMMapBufferDataOutputStream.builder(file).setTruncateOnClose(true).build()) {
+ *       final FrontCodedDictionaryWriter writer = new FrontCodedDictionaryWriter(out);
+ *       for (final String term : sortedTerms) {
+ *           writer.add(term);
+ *       }
+ *       writer.finish();
+ *   }
+ * </pre>
+ */
+public final class FrontCodedDictionaryWriter {
+    static final int MAGIC = 0x46434431; // "FCD1"
+    static final int FOOTER_SIZE = 24;
+
+    public static final int DEFAULT_BUCKET_SIZE = 16;
+
+    private final DataOutput out;
+    private final int bucketSize;
+
+    private byte[] previous = new byte[64];
+    private int previousLength = -1;
+    private int size = 0;
+    private long position = 0;
+    private long[] bucketOffsets = new long[16];
+    private int bucketCount = 0;
+    private boolean finished = false;
+
+    public FrontCodedDictionaryWriter(final DataOutput out) {
+        this(out, DEFAULT_BUCKET_SIZE);
+    }
+
+    /**
+     * @param bucketSize entries per bucket. Larger buckets are smaller on disk but make lookups
+     *     decode more entries.
+     */
+    public FrontCodedDictionaryWriter(final DataOutput out, final int bucketSize) {
+        Preconditions.checkArgument(bucketSize > 0, "bucketSize must be positive");
+        this.out = out;
+        this.bucketSize = bucketSize;
+    }
+
+    /**
+     * Adds the UTF-8 bytes of entry. UTF-8 sorts like String.compareTo unless there are characters
+     * above U+FFFF.
+     */
+    public void add(final String entry) throws IOException {
+        add(entry.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void add(final byte[] entry) throws IOException {
+        add(entry, 0, entry.length);
+    }
+
+    /**
+     * @throws IllegalArgumentException if the entry is not greater than the previous one, comparing
+     *     bytes as unsigned
+     */
+    public void add(final byte[] entry, final int off, final int len) throws IOException {
+        Preconditions.checkState(!finished, "writer is finished");
+        Preconditions.checkPositionIndexes(off, off + len, entry.length);
+        Preconditions.checkState(size < Integer.MAX_VALUE, "dictionary is full");
+        final int shared = previousLength < 0 ? 0 : sharedPrefixLength(entry, off, len);
+        if (previousLength >= 0
+                && (shared == len
+                        || (shared < previousLength
+                                && (previous[shared] & 0xFF) > (entry[off + shared] & 0xFF)))) {
+            throw new IllegalArgumentException(
+                    "entries must be added in increasing order, entry " + size + " is not");
+        }
+        if (size % bucketSize == 0) {
+            if (bucketCount == bucketOffsets.length) {
+                bucketOffsets = Arrays.copyOf(bucketOffsets, bucketCount * 2);
+            }
+            bucketOffsets[bucketCount++] = position;
+            position += VIntUtils.writeVInt(out, len);
+            out.write(entry, off, len);
+            position += len;
+        } else {
+            position += VIntUtils.writeVInt(out, shared);
+            position += VIntUtils.writeVInt(out, len - shared);
+            out.write(entry, off + shared, len - shared);
+            position += len - shared;
+        }
+        if (previous.length < len) {
+            previous = new byte[Math.max(len, previous.length * 2)];
+        }
+        System.arraycopy(entry, off, previous, 0, len);
+        previousLength = len;
+        size++;
+    }
+
+    private int sharedPrefixLength(final byte[] entry, final int off, final int len) {
+        final int max = Math.min(len, previousLength);
+        int i = 0;
+        while (i < max && previous[i] == entry[off + i]) {
+            i++;
+        }
+        return i;
+    }
+
+    /** @return the number of entries added so far */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Writes the bucket index. The output is not closed.
+     *
+     * @return the number of bytes written
+     */
+    public long finish() throws IOException {
+        Preconditions.checkState(!finished, "writer is finished");
+        finished = true;
+        for (; (position & 7) != 0; position++) {
+            out.writeByte(0);
+        }
+        final long indexOffset = position;
+        for (int i = 0; i < bucketCount; i++) {
+            out.writeLong(bucketOffsets[i]);
+        }
+        position += bucketCount * 8L;
+        out.writeLong(indexOffset);
+        out.writeLong(size);
+        out.writeInt(bucketSize);
+        out.writeInt(MAGIC);
+        position += FOOTER_SIZE;
+        return position;
+    }
+}
@@ -0,0 +1,197 @@
+package com.indeed.util.mmap;
+
+import com.google.common.io.Closeables;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A shared read/write mapping of a whole file that can be extended. Where mremap(2) is available
+ * (Linux) the mapping is grown with mremap, which lets the kernel move it if the adjacent address
+ * space is taken. Elsewhere a larger virtual range than the file is reserved, so growing inside
+ * the reservation only extends the file, and the file is mapped again once the reservation is
+ * exhausted.
+ *
+ * <p>Memory obtained from {@link #view()} stays valid until close: if a view of the current
+ * mapping was handed out, growing keeps that mapping and maps the file again instead. Otherwise
+ * only one mapping exists at any time. If remapInPlace is set views are not kept alive, and any
+ * {@link DirectMemory} obtained from {@link #view()} is invalid after the mapping grows.
+ */
+final class GrowableMapping implements Closeable {
+    private static final boolean MREMAP_SUPPORTED =
+            System.getProperty("os.name").toLowerCase().indexOf("mac") < 0;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final int fd;
+    private final ByteOrder order;
+    private final GrowthPolicy growthPolicy;
+    private final long reservation;
+    private final boolean remapInPlace;
+    private final List<long[]> outgrown = new ArrayList<>();
+    // true if a view of the current mapping has been handed out since it was mapped
+    private boolean viewed;
+
+    private long address;
+    private long mappedLength;
+    private DirectMemory memory;
+    private boolean closed;
+
+    GrowableMapping(
+            final File file,
+            final long initialLength,
+            final ByteOrder order,
+            final GrowthPolicy growthPolicy,
+            final long reservation,
+            final boolean remapInPlace)
+            throws IOException {
+        this.file = file;
+        this.order = order;
+        this.growthPolicy = growthPolicy;
+        this.reservation = reservation;
+        this.remapInPlace = remapInPlace;
+        raf = new RandomAccessFile(file, "rw");
+        try {
+            final long existingLength = raf.length();
+            // an existing file keeps its length, a new or extended one is rounded up to a page
+            final long length =
+                    existingLength > 0 && existingLength >= initialLength
+                            ? existingLength
+                            : roundToPage(initialLength);
+            raf.setLength(length);
+            fd = MMapBuffer.extractFd(raf.getFD());
+            map(MREMAP_SUPPORTED ? length : Math.max(length, reservation));
+            memory = new DirectMemory(address, length, order);
+        } catch (IOException | RuntimeException e) {
+            Closeables.close(raf, true);
+            throw e;
+        }
+    }
+
+    /** @return the mapped file, valid until the next call to {@link #ensureCapacity(long)} */
+    DirectMemory memory() {
+        return memory;
+    }
+
+    /**
+     * @return the mapped file, valid until the mapping is closed, or with remapInPlace until the
+     *     next call to {@link #ensureCapacity(long)}
+     */
+    DirectMemory view() {
+        viewed = true;
+        return memory;
+    }
+
+    /** Extends the file and the mapping according to the growth policy if length doesn't fit. */
+    void ensureCapacity(final long length) throws IOException {
+        final long fileLength = memory.length();
+        if (length <= fileLength) {
+            return;
+        }
+        final long newLength = roundToPage(growthPolicy.nextLength(fileLength, length));
+        if (newLength < length) {
+            throw new IllegalStateException(
+                    "growth policy returned " + newLength + " for required length " + length);
+        }
+        raf.setLength(newLength);
+        if (newLength > mappedLength) {
+            if (viewed && !remapInPlace) {
+                outgrown.add(new long[] {address, mappedLength});
+                map(nextMappedLength(newLength));
+            } else if (MREMAP_SUPPORTED) {
+                MMapBuffer.beforeMappingClosed(address);
+                final long newAddress = MMapBuffer.mremap(address, mappedLength, newLength);
+                if (newAddress == MMapBuffer.MAP_FAILED) {
+                    track(address, mappedLength);
+                    throw new IOException(
+                            "mremap("
+                                    + file
+                                    + ", "
+                                    + newLength
+                                    + ") failed [Errno "
+                                    + MMapBuffer.errno()
+                                    + "]");
+                }
+                address = newAddress;
+                mappedLength = newLength;
+                track(address, mappedLength);
+            } else {
+                final long oldAddress = address;
+                final long oldLength = mappedLength;
+                map(nextMappedLength(newLength));
+                unmap(oldAddress, oldLength);
+            }
+            viewed = false;
+        }
+        memory = new DirectMemory(address, newLength, order);
+    }
+
+    void sync(final long length) throws IOException {
+        if (length > 0 && MMapBuffer.msync(address, Math.min(length, memory.length())) != 0) {
+            throw new IOException("msync failed [Errno " + MMapBuffer.errno() + "]");
+        }
+    }
+
+    /** Unmaps the file and, if truncateTo is not negative, cuts it down to truncateTo bytes. */
+    void close(final long truncateTo) throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (final long[] mapping : outgrown) {
+                unmap(mapping[0], mapping[1]);
+            }
+            outgrown.clear();
+            unmap(address, mappedLength);
+            if (truncateTo >= 0) {
+                raf.setLength(truncateTo);
+            }
+        } finally {
+            raf.close();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        close(-1);
+    }
+
+    private long nextMappedLength(final long newLength) {
+        return MREMAP_SUPPORTED ? newLength : Math.max(newLength, mappedLength + reservation);
+    }
+
+    private void map(final long length) throws IOException {
+        final long newAddress =
+                MMapBuffer.mmap(length, MMapBuffer.READ_WRITE, MMapBuffer.MAP_SHARED, fd, 0);
+        if (newAddress == MMapBuffer.MAP_FAILED) {
+            throw new IOException(
+                    "mmap(" + file + ", " + length + ") failed [Errno " + MMapBuffer.errno() + "]");
+        }
+        address = newAddress;
+        mappedLength = length;
+        track(address, mappedLength);
+    }
+
+    private void track(final long address, final long length) {
+        // a mapping is identified by its address, which is unique while it is mapped
+        MMapBuffer.mappingOpened(address, file.toPath(), address, length);
+    }
+
+    private static void unmap(final long address, final long length) throws IOException {
+        MMapBuffer.beforeMappingClosed(address);
+        if (MMapBuffer.munmap(address, length) != 0) {
+            throw new IOException("munmap failed [Errno " + MMapBuffer.errno() + "]");
+        }
+    }
+
+    private static long roundToPage(final long length) {
+        final long pages = (Math.max(length, 1) + MMapBuffer.PAGE_SIZE - 1) / MMapBuffer.PAGE_SIZE;
+        return pages * MMapBuffer.PAGE_SIZE;
+    }
+}
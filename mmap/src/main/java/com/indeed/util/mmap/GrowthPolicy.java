@@ -0,0 +1,48 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+
+/** Decides how far a growable mapping is extended once the data written no longer fits. */
+public interface GrowthPolicy {
+    /**
+     * @param currentLength the current length of the file
+     * @param requiredLength the length that is needed for the pending write
+     * @return the new length of the file, at least requiredLength
+     */
+    long nextLength(long currentLength, long requiredLength);
+
+    /** Doubles the length until the pending write fits. */
+    static GrowthPolicy doubling() {
+        return (currentLength, requiredLength) -> {
+            long length = Math.max(currentLength, MMapBuffer.PAGE_SIZE);
+            while (length < requiredLength) {
+                length *= 2;
+            }
+            return length;
+        };
+    }
+
+    /**
+     * Doubles the length like {@link #doubling()}, but never grows by more than maxIncrement bytes
+     * at once, so a large file isn't extended by gigabytes it will never use.
+     */
+    static GrowthPolicy doublingUpTo(final long maxIncrement) {
+        Preconditions.checkArgument(maxIncrement > 0, "maxIncrement must be positive");
+        return (currentLength, requiredLength) -> {
+            long length = Math.max(currentLength, MMapBuffer.PAGE_SIZE);
+            while (length < requiredLength) {
+                length += Math.min(length, maxIncrement);
+            }
+            return length;
+        };
+    }
+
+    /** Grows the length in steps of increment bytes. */
+    static GrowthPolicy fixedIncrement(final long increment) {
+        Preconditions.checkArgument(increment > 0, "increment must be positive");
+        return (currentLength, requiredLength) -> {
+            final long steps = (requiredLength - currentLength + increment - 1) / increment;
+            return currentLength + Math.max(1, steps) * increment;
+        };
+    }
+}
@@ -26,4 +26,28 @@ public interface HeapDataAccess {
     public void putLong(byte[] b, int off, long val);
 
     public void putDouble(byte[] b, int off, double val);
+
+    public void getShorts(byte[] b, int off, short[] shorts, int start, int length);
+
+    public void putShorts(byte[] b, int off, short[] shorts, int start, int length);
+
+    public void getChars(byte[] b, int off, char[] chars, int start, int length);
+
+    public void putChars(byte[] b, int off, char[] chars, int start, int length);
+
+    public void getInts(byte[] b, int off, int[] ints, int start, int length);
+
+    public void putInts(byte[] b, int off, int[] ints, int start, int length);
+
+    public void getLongs(byte[] b, int off, long[] longs, int start, int length);
+
+    public void putLongs(byte[] b, int off, long[] longs, int start, int length);
+
+    public void getFloats(byte[] b, int off, float[] floats, int start, int length);
+
+    public void putFloats(byte[] b, int off, float[] floats, int start, int length);
+
+    public void getDoubles(byte[] b, int off, double[] doubles, int start, int length);
+
+    public void putDoubles(byte[] b, int off, double[] doubles, int start, int length);
 }
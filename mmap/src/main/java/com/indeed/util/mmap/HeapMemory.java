@@ -1,5 +1,6 @@
 package com.indeed.util.mmap;
 
+import com.indeed.util.unsafe.IndeedUnsafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -16,6 +17,7 @@ public final class HeapMemory extends AbstractMemory {
     private final int length;
     private final HeapDataAccess dataAccess;
     private final ByteOrder endianness;
+    private final boolean nativeOrder;
 
     public HeapMemory(int length, ByteOrder endianness) {
         this(new byte[length], endianness);
@@ -30,6 +32,7 @@ public final class HeapMemory extends AbstractMemory {
         this.offset = offset;
         this.length = length;
         this.endianness = endianness;
+        nativeOrder = endianness == ByteOrder.nativeOrder();
         if (endianness == ByteOrder.nativeOrder()) {
             dataAccess = NativeEndianHeapDataAccess.getInstance();
         } else {
@@ -44,6 +47,16 @@ public final class HeapMemory extends AbstractMemory {
         }
     }
 
+    private long atomicOffset(long l, int size) {
+        checkBounds(l, size);
+        final long arrayOffset = IndeedUnsafe.BYTE_ARRAY_BASE_OFFSET + offset + l;
+        if (debug && (arrayOffset & (size - 1)) != 0) {
+            throw new IllegalArgumentException(
+                    "l: " + l + " is not aligned to " + size + " bytes in the array");
+        }
+        return arrayOffset;
+    }
+
     private void checkArrayBounds(final byte[] bytes, final int start, final int length) {
         if (debug) {
             if (bytes == null) throw new IllegalArgumentException("byte[] bytes cannot be null");
@@ -58,6 +71,16 @@ public final class HeapMemory extends AbstractMemory {
         }
     }
 
+    private void checkArrayBounds(final int arrayLength, final int start, final int length) {
+        if (debug) {
+            if (start < 0) throw new IndexOutOfBoundsException("start cannot be less than zero");
+            if (length < 0) throw new IllegalArgumentException("length cannot be less than zero");
+            if (start > arrayLength - length)
+                throw new IndexOutOfBoundsException(
+                        "start plus length cannot be greater than length of array");
+        }
+    }
+
     @Override
     public byte getByte(long l) {
         checkBounds(l, 1);
@@ -118,6 +141,91 @@ public final class HeapMemory extends AbstractMemory {
         dataAccess.putLong(data, (int) (offset + l), l1);
     }
 
+    // The atomic accessors store values in this memory's byte order, which costs a byte swap if
+    // that isn't the native order.
+
+    @Override
+    public int getIntVolatile(long l) {
+        return toOrder(IndeedUnsafe.getIntVolatile(data, atomicOffset(l, 4)));
+    }
+
+    @Override
+    public void putIntVolatile(long l, int i) {
+        IndeedUnsafe.putIntVolatile(data, atomicOffset(l, 4), toOrder(i));
+    }
+
+    @Override
+    public void putIntOrdered(long l, int i) {
+        IndeedUnsafe.putOrderedInt(data, atomicOffset(l, 4), toOrder(i));
+    }
+
+    @Override
+    public boolean compareAndSwapInt(long l, int expected, int i) {
+        return IndeedUnsafe.compareAndSwapInt(
+                data, atomicOffset(l, 4), toOrder(expected), toOrder(i));
+    }
+
+    @Override
+    public int getAndAddInt(long l, int delta) {
+        final long arrayOffset = atomicOffset(l, 4);
+        if (nativeOrder) {
+            return IndeedUnsafe.getAndAddInt(data, arrayOffset, delta);
+        }
+        while (true) {
+            final int current = IndeedUnsafe.getIntVolatile(data, arrayOffset);
+            final int value = Integer.reverseBytes(current);
+            if (IndeedUnsafe.compareAndSwapInt(
+                    data, arrayOffset, current, Integer.reverseBytes(value + delta))) {
+                return value;
+            }
+        }
+    }
+
+    @Override
+    public long getLongVolatile(long l) {
+        return toOrder(IndeedUnsafe.getLongVolatile(data, atomicOffset(l, 8)));
+    }
+
+    @Override
+    public void putLongVolatile(long l, long l1) {
+        IndeedUnsafe.putLongVolatile(data, atomicOffset(l, 8), toOrder(l1));
+    }
+
+    @Override
+    public void putLongOrdered(long l, long l1) {
+        IndeedUnsafe.putOrderedLong(data, atomicOffset(l, 8), toOrder(l1));
+    }
+
+    @Override
+    public boolean compareAndSwapLong(long l, long expected, long l1) {
+        return IndeedUnsafe.compareAndSwapLong(
+                data, atomicOffset(l, 8), toOrder(expected), toOrder(l1));
+    }
+
+    @Override
+    public long getAndAddLong(long l, long delta) {
+        final long arrayOffset = atomicOffset(l, 8);
+        if (nativeOrder) {
+            return IndeedUnsafe.getAndAddLong(data, arrayOffset, delta);
+        }
+        while (true) {
+            final long current = IndeedUnsafe.getLongVolatile(data, arrayOffset);
+            final long value = Long.reverseBytes(current);
+            if (IndeedUnsafe.compareAndSwapLong(
+                    data, arrayOffset, current, Long.reverseBytes(value + delta))) {
+                return value;
+            }
+        }
+    }
+
+    private int toOrder(final int i) {
+        return nativeOrder ? i : Integer.reverseBytes(i);
+    }
+
+    private long toOrder(final long l) {
+        return nativeOrder ? l : Long.reverseBytes(l);
+    }
+
     @Override
     public float getFloat(long l) {
         checkBounds(l, 4);
@@ -202,6 +310,92 @@ public final class HeapMemory extends AbstractMemory {
         dest.put(data, (int) (offset + l), length);
     }
 
+    @Override
+    public void getShorts(final long l, final short[] shorts, final int start, final int length) {
+        checkArrayBounds(shorts.length, start, length);
+        checkBounds(l, length * 2L);
+        dataAccess.getShorts(data, (int) (offset + l), shorts, start, length);
+    }
+
+    @Override
+    public void putShorts(final long l, final short[] shorts, final int start, final int length) {
+        checkArrayBounds(shorts.length, start, length);
+        checkBounds(l, length * 2L);
+        dataAccess.putShorts(data, (int) (offset + l), shorts, start, length);
+    }
+
+    @Override
+    public void getChars(final long l, final char[] chars, final int start, final int length) {
+        checkArrayBounds(chars.length, start, length);
+        checkBounds(l, length * 2L);
+        dataAccess.getChars(data, (int) (offset + l), chars, start, length);
+    }
+
+    @Override
+    public void putChars(final long l, final char[] chars, final int start, final int length) {
+        checkArrayBounds(chars.length, start, length);
+        checkBounds(l, length * 2L);
+        dataAccess.putChars(data, (int) (offset + l), chars, start, length);
+    }
+
+    @Override
+    public void getInts(final long l, final int[] ints, final int start, final int length) {
+        checkArrayBounds(ints.length, start, length);
+        checkBounds(l, length * 4L);
+        dataAccess.getInts(data, (int) (offset + l), ints, start, length);
+    }
+
+    @Override
+    public void putInts(final long l, final int[] ints, final int start, final int length) {
+        checkArrayBounds(ints.length, start, length);
+        checkBounds(l, length * 4L);
+        dataAccess.putInts(data, (int) (offset + l), ints, start, length);
+    }
+
+    @Override
+    public void getLongs(final long l, final long[] longs, final int start, final int length) {
+        checkArrayBounds(longs.length, start, length);
+        checkBounds(l, length * 8L);
+        dataAccess.getLongs(data, (int) (offset + l), longs, start, length);
+    }
+
+    @Override
+    public void putLongs(final long l, final long[] longs, final int start, final int length) {
+        checkArrayBounds(longs.length, start, length);
+        checkBounds(l, length * 8L);
+        dataAccess.putLongs(data, (int) (offset + l), longs, start, length);
+    }
+
+    @Override
+    public void getFloats(final long l, final float[] floats, final int start, final int length) {
+        checkArrayBounds(floats.length, start, length);
+        checkBounds(l, length * 4L);
+        dataAccess.getFloats(data, (int) (offset + l), floats, start, length);
+    }
+
+    @Override
+    public void putFloats(final long l, final float[] floats, final int start, final int length) {
+        checkArrayBounds(floats.length, start, length);
+        checkBounds(l, length * 4L);
+        dataAccess.putFloats(data, (int) (offset + l), floats, start, length);
+    }
+
+    @Override
+    public void getDoubles(
+            final long l, final double[] doubles, final int start, final int length) {
+        checkArrayBounds(doubles.length, start, length);
+        checkBounds(l, length * 8L);
+        dataAccess.getDoubles(data, (int) (offset + l), doubles, start, length);
+    }
+
+    @Override
+    public void putDoubles(
+            final long l, final double[] doubles, final int start, final int length) {
+        checkArrayBounds(doubles.length, start, length);
+        checkBounds(l, length * 8L);
+        dataAccess.putDoubles(data, (int) (offset + l), doubles, start, length);
+    }
+
     @Override
     public Memory slice(long startAddress, long sliceLength) {
         if (startAddress < 0) throw new IllegalArgumentException("startAddress must be >= 0");
@@ -1,8 +1,11 @@
 package com.indeed.util.mmap;
 
+import com.indeed.util.unsafe.IndeedUnsafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteOrder;
+
 /** @author jplaisance */
 public final class IntArray {
     private static final Logger log = LoggerFactory.getLogger(IntArray.class);
@@ -12,6 +15,11 @@ public final class IntArray {
     private final Memory buffer;
     private final long length;
 
+    // lets the search methods read a direct buffer without going through the Memory interface
+    private final boolean direct;
+    private final long address;
+    private final boolean swapBytes;
+
     public IntArray(Memory buffer, long address, long length) {
         if (address < 0) throw new IndexOutOfBoundsException("address must be >= 0");
         if (length < 0) throw new IllegalArgumentException("length must be >= 0");
@@ -20,6 +28,15 @@ public final class IntArray {
                     String.format("address+length*%d must be <= buffer.length()", TYPE_SIZE));
         this.buffer = buffer.slice(address, length * TYPE_SIZE);
         this.length = length;
+        this.direct = this.buffer.isDirect();
+        if (direct) {
+            final DirectMemory directMemory = (DirectMemory) this.buffer;
+            this.address = directMemory.getAddress();
+            this.swapBytes = directMemory.getOrder() != ByteOrder.nativeOrder();
+        } else {
+            this.address = 0;
+            this.swapBytes = false;
+        }
     }
 
     public int get(final long index) {
@@ -27,9 +44,7 @@ public final class IntArray {
     }
 
     public void get(final long index, final int[] ints, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            ints[start + i] = buffer.getInt((index + i) * TYPE_SIZE);
-        }
+        buffer.getInts(index * TYPE_SIZE, ints, start, length);
     }
 
     public void get(final long index, final int[] ints) {
@@ -49,9 +64,7 @@ public final class IntArray {
     }
 
     public void set(final long index, final int[] ints, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            buffer.putInt((index + i) * TYPE_SIZE, ints[start + i]);
-        }
+        buffer.putInts(index * TYPE_SIZE, ints, start, length);
     }
 
     public void set(final long index, final int[] ints) {
@@ -66,10 +79,146 @@ public final class IntArray {
         set(index, ints, 0, ints.length);
     }
 
+    /** Reads the value at index with volatile semantics. */
+    public int getVolatile(final long index) {
+        return buffer.getIntVolatile(index * TYPE_SIZE);
+    }
+
+    /** Writes the value at index with volatile semantics. */
+    public void setVolatile(final long index, final int value) {
+        buffer.putIntVolatile(index * TYPE_SIZE, value);
+    }
+
+    /**
+     * Writes the value at index without a full fence. Writes before it are visible to a thread
+     * that sees the value with {@link #getVolatile(long)}.
+     */
+    public void setOrdered(final long index, final int value) {
+        buffer.putIntOrdered(index * TYPE_SIZE, value);
+    }
+
+    /** Atomically sets the value at index to value if it is expected. */
+    public boolean compareAndSwap(final long index, final int expected, final int value) {
+        return buffer.compareAndSwapInt(index * TYPE_SIZE, expected, value);
+    }
+
+    /** Atomically adds delta to the value at index and returns the previous value. */
+    public int getAndAdd(final long index, final int delta) {
+        return buffer.getAndAddInt(index * TYPE_SIZE, delta);
+    }
+
     public long length() {
         return length;
     }
 
+    /**
+     * Searches the array, which must be sorted in ascending order, for key.
+     *
+     * @return the index of the first occurrence of key, or (-(insertion point) - 1) if it is not
+     *     present
+     */
+    public long binarySearch(final int key) {
+        return binarySearch(0, length, key);
+    }
+
+    /** Like {@link #binarySearch(int)} restricted to the indexes [fromIndex, toIndex). */
+    public long binarySearch(final long fromIndex, final long toIndex, final int key) {
+        checkRange(fromIndex, toIndex);
+        final long index = lowerBound0(fromIndex, toIndex, key);
+        return index < toIndex && getUnchecked(index) == key ? index : -index - 1;
+    }
+
+    /**
+     * Like {@link #binarySearch(long, long, int)} from fromIndex to the end of the array, but
+     * probes fromIndex, fromIndex + 1, fromIndex + 3, fromIndex + 7, ... before the binary search.
+     * That is cheaper when key is expected close to fromIndex, e.g. when walking a posting list.
+     */
+    public long exponentialSearch(final long fromIndex, final int key) {
+        checkRange(fromIndex, length);
+        long low = fromIndex;
+        long high = fromIndex;
+        long step = 1;
+        while (high < length && getUnchecked(high) < key) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        final long index = lowerBound0(low, Math.min(high, length), key);
+        return index < length && getUnchecked(index) == key ? index : -index - 1;
+    }
+
+    /**
+     * @return the index of the first element that is not less than key in an array sorted in
+     *     ascending order, or length() if there is none
+     */
+    public long lowerBound(final int key) {
+        return lowerBound(0, length, key);
+    }
+
+    /** Like {@link #lowerBound(int)} restricted to the indexes [fromIndex, toIndex). */
+    public long lowerBound(final long fromIndex, final long toIndex, final int key) {
+        checkRange(fromIndex, toIndex);
+        return lowerBound0(fromIndex, toIndex, key);
+    }
+
+    /**
+     * Writes the values present in both arrays, which must be sorted in ascending order, to out in
+     * ascending order, stopping once out is full. Values that occur several times in both arrays
+     * are written as often as they occur in the array that contains fewer of them. Each value of
+     * the shorter array is galloped to in the longer one, so this is fast for very different
+     * lengths as well.
+     *
+     * @return the number of values written to out
+     */
+    public static int intersect(final IntArray a, final IntArray b, final int[] out) {
+        final IntArray small = a.length <= b.length ? a : b;
+        final IntArray large = small == a ? b : a;
+        int count = 0;
+        long position = 0;
+        for (long i = 0; i < small.length && count < out.length && position < large.length; i++) {
+            final int value = small.getUnchecked(i);
+            final long index = large.exponentialSearch(position, value);
+            if (index >= 0) {
+                out[count++] = value;
+                position = index + 1;
+            } else {
+                position = -index - 1;
+            }
+        }
+        return count;
+    }
+
+    // the loop body has no data dependent branch, the comparison compiles to a conditional move
+    private long lowerBound0(final long fromIndex, final long toIndex, final int key) {
+        long n = toIndex - fromIndex;
+        if (n == 0) {
+            return fromIndex;
+        }
+        long base = fromIndex;
+        while (n > 1) {
+            final long half = n >>> 1;
+            base = getUnchecked(base + half) < key ? base + half : base;
+            n -= half;
+        }
+        return getUnchecked(base) < key ? base + 1 : base;
+    }
+
+    // callers must check the index, direct buffers are read without bounds checks
+    private int getUnchecked(final long index) {
+        if (direct) {
+            final int value = IndeedUnsafe.getInt(address + index * TYPE_SIZE);
+            return swapBytes ? Integer.reverseBytes(value) : value;
+        }
+        return buffer.getInt(index * TYPE_SIZE);
+    }
+
+    private void checkRange(final long fromIndex, final long toIndex) {
+        if (fromIndex < 0 || toIndex > length || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    "fromIndex: " + fromIndex + " toIndex: " + toIndex + " length: " + length);
+        }
+    }
+
     public IntArray slice(final long start, final long length) {
         return new IntArray(buffer, start * TYPE_SIZE, length);
     }
@@ -0,0 +1,322 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closeables;
+import com.indeed.util.io.SafeFiles;
+import com.indeed.util.io.SafeOutputStream;
+import com.indeed.util.unsafe.IndeedUnsafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+/**
+ * Open addressing int to int hash map stored outside of the java heap, so that tens of millions
+ * of entries don't add to GC pauses.
+ *
+ * <p>A map is either created in a {@link NativeBuffer} with {@link #create(long)}, where it grows
+ * as needed, or opened read only from a file written by {@link #writeTo(Path)}. The file is the
+ * in-memory layout itself, so {@link #open(Path)} only maps it and checks the header: a 64 byte
+ * header followed by a power of two number of little endian (key, value) slots, probed linearly.
+ * Key 0 marks an empty slot; the value for key 0 itself is kept in the header.
+ *
+ * <p>Not thread safe. A read only map can be shared between threads.
+ */
+public final class IntIntOffHeapMap implements Closeable {
+    // "IIOHMAP1"
+    private static final long MAGIC = 0x49494f484d415031L;
+
+    private static final long HEADER_SIZE = 64;
+    private static final long CAPACITY_OFFSET = 8;
+    private static final long SIZE_OFFSET = 16;
+    private static final long HAS_ZERO_KEY_OFFSET = 24;
+    private static final long ZERO_VALUE_OFFSET = 32;
+
+    private static final long SLOT_SIZE = 8;
+    private static final long VALUE_OFFSET = 4;
+    private static final long MIN_CAPACITY = 16;
+
+    private final boolean readOnly;
+    private Closeable resource;
+    private DirectMemory memory;
+    private long capacity;
+    private long mask;
+
+    private IntIntOffHeapMap(
+            final Closeable resource, final DirectMemory memory, final boolean readOnly) {
+        this.resource = resource;
+        this.memory = memory.unchecked();
+        this.readOnly = readOnly;
+        this.capacity = memory.getLong(CAPACITY_OFFSET);
+        this.mask = capacity - 1;
+    }
+
+    /** @return an empty map that holds expectedSize entries before it has to grow */
+    public static IntIntOffHeapMap create(final long expectedSize) {
+        Preconditions.checkArgument(expectedSize >= 0, "expectedSize must be >= 0");
+        final NativeBuffer buffer = allocate(capacityFor(expectedSize));
+        return new IntIntOffHeapMap(buffer, buffer.memory(), false);
+    }
+
+    /** Maps a file written by {@link #writeTo(Path)} read only. */
+    public static IntIntOffHeapMap open(final Path path) throws IOException {
+        return open(path, MappingOptions.DEFAULT);
+    }
+
+    /**
+     * Maps a file written by {@link #writeTo(Path)} read only, e.g. with {@link
+     * MappingOptions.Builder#setPopulate(boolean)} to fault the whole table in up front.
+     */
+    public static IntIntOffHeapMap open(final Path path, final MappingOptions options)
+            throws IOException {
+        final MMapBuffer buffer =
+                new MMapBuffer(
+                        path, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN, options);
+        try {
+            final DirectMemory memory = buffer.memory();
+            if (memory.length() < HEADER_SIZE || memory.getLong(0) != MAGIC) {
+                throw new IOException(path + " is not a IntIntOffHeapMap file");
+            }
+            final long capacity = memory.getLong(CAPACITY_OFFSET);
+            final long size = memory.getLong(SIZE_OFFSET);
+            if (capacity < MIN_CAPACITY
+                    || Long.bitCount(capacity) != 1
+                    || capacity > (Long.MAX_VALUE - HEADER_SIZE) / SLOT_SIZE
+                    || HEADER_SIZE + capacity * SLOT_SIZE != memory.length()
+                    || size < 0
+                    || size > capacity) {
+                throw new IOException(path + " has a corrupt header");
+            }
+            return new IntIntOffHeapMap(buffer, memory, true);
+        } catch (IOException | RuntimeException e) {
+            Closeables.close(buffer, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the map to path, replacing any existing file, in the format read by open.
+     *
+     * @see SafeFiles#createAtomicFile(Path)
+     */
+    public void writeTo(final Path path) throws IOException {
+        try (SafeOutputStream out = SafeFiles.createAtomicFile(path)) {
+            DirectByteBuffers.write(memory, 0, memory.length(), out);
+            out.commit();
+        }
+    }
+
+    public long size() {
+        return memory.getLong(SIZE_OFFSET);
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean containsKey(final int key) {
+        if (key == 0) {
+            return memory.getLong(HAS_ZERO_KEY_OFFSET) != 0;
+        }
+        return findSlot(key) >= 0;
+    }
+
+    /** @return the value for key, or defaultValue if the map doesn't contain key */
+    public int get(final int key, final int defaultValue) {
+        if (key == 0) {
+            return memory.getLong(HAS_ZERO_KEY_OFFSET) != 0
+                    ? memory.getInt(ZERO_VALUE_OFFSET)
+                    : defaultValue;
+        }
+        final long slot = findSlot(key);
+        return slot >= 0 ? memory.getInt(valueOffset(slot)) : defaultValue;
+    }
+
+    /** Associates value with key, replacing any previous value. */
+    public void put(final int key, final int value) {
+        checkWritable();
+        if (key == 0) {
+            if (memory.getLong(HAS_ZERO_KEY_OFFSET) == 0) {
+                memory.putLong(HAS_ZERO_KEY_OFFSET, 1);
+                memory.putLong(SIZE_OFFSET, size() + 1);
+            }
+            memory.putInt(ZERO_VALUE_OFFSET, value);
+            return;
+        }
+        long slot = hash(key) & mask;
+        while (true) {
+            final int k = memory.getInt(keyOffset(slot));
+            if (k == key) {
+                memory.putInt(valueOffset(slot), value);
+                return;
+            }
+            if (k == 0) {
+                memory.putInt(keyOffset(slot), key);
+                memory.putInt(valueOffset(slot), value);
+                memory.putLong(SIZE_OFFSET, size() + 1);
+                if (slotsUsed() > capacity - capacity / 4) {
+                    resize(capacity * 2);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /** @return true if key was present */
+    public boolean remove(final int key) {
+        checkWritable();
+        if (key == 0) {
+            if (memory.getLong(HAS_ZERO_KEY_OFFSET) == 0) {
+                return false;
+            }
+            memory.putLong(HAS_ZERO_KEY_OFFSET, 0);
+            memory.putLong(SIZE_OFFSET, size() - 1);
+            return true;
+        }
+        long hole = findSlot(key);
+        if (hole < 0) {
+            return false;
+        }
+        // backward shift deletion: move later entries of the probe sequence into the hole so
+        // lookups never stop early at it, no tombstones needed
+        for (long slot = (hole + 1) & mask; ; slot = (slot + 1) & mask) {
+            final int k = memory.getInt(keyOffset(slot));
+            if (k == 0) {
+                break;
+            }
+            final long home = hash(k) & mask;
+            if (((slot - home) & mask) >= ((slot - hole) & mask)) {
+                memory.putInt(keyOffset(hole), k);
+                memory.putInt(valueOffset(hole), memory.getInt(valueOffset(slot)));
+                hole = slot;
+            }
+        }
+        memory.putInt(keyOffset(hole), 0);
+        memory.putInt(valueOffset(hole), 0);
+        memory.putLong(SIZE_OFFSET, size() - 1);
+        return true;
+    }
+
+    public interface EntryVisitor {
+        void visit(int key, int value);
+    }
+
+    /** Calls the visitor for every entry, in no particular order. */
+    public void forEach(final EntryVisitor visitor) {
+        if (memory.getLong(HAS_ZERO_KEY_OFFSET) != 0) {
+            visitor.visit(0, memory.getInt(ZERO_VALUE_OFFSET));
+        }
+        for (long slot = 0; slot < capacity; slot++) {
+            final int k = memory.getInt(keyOffset(slot));
+            if (k != 0) {
+                visitor.visit(k, memory.getInt(valueOffset(slot)));
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (resource != null) {
+            resource.close();
+            resource = null;
+        }
+    }
+
+    private long findSlot(final int key) {
+        long slot = hash(key) & mask;
+        // bounded so a corrupt file without empty slots can't loop forever
+        for (long probes = 0; probes < capacity; probes++) {
+            final int k = memory.getInt(keyOffset(slot));
+            if (k == key) {
+                return slot;
+            }
+            if (k == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private long slotsUsed() {
+        return size() - memory.getLong(HAS_ZERO_KEY_OFFSET);
+    }
+
+    private void resize(final long newCapacity) {
+        final NativeBuffer buffer = allocate(newCapacity);
+        final DirectMemory newMemory = buffer.memory().unchecked();
+        final long newMask = newCapacity - 1;
+        newMemory.putLong(SIZE_OFFSET, size());
+        newMemory.putLong(HAS_ZERO_KEY_OFFSET, memory.getLong(HAS_ZERO_KEY_OFFSET));
+        newMemory.putInt(ZERO_VALUE_OFFSET, memory.getInt(ZERO_VALUE_OFFSET));
+        for (long slot = 0; slot < capacity; slot++) {
+            final int k = memory.getInt(keyOffset(slot));
+            if (k != 0) {
+                long newSlot = hash(k) & newMask;
+                while (newMemory.getInt(keyOffset(newSlot)) != 0) {
+                    newSlot = (newSlot + 1) & newMask;
+                }
+                newMemory.putInt(keyOffset(newSlot), k);
+                newMemory.putInt(valueOffset(newSlot), memory.getInt(valueOffset(slot)));
+            }
+        }
+        try {
+            resource.close();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        resource = buffer;
+        memory = newMemory;
+        capacity = newCapacity;
+        mask = newMask;
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("map was opened read only");
+        }
+    }
+
+    private static long keyOffset(final long slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE;
+    }
+
+    private static long valueOffset(final long slot) {
+        return HEADER_SIZE + slot * SLOT_SIZE + VALUE_OFFSET;
+    }
+
+    private static long capacityFor(final long expectedSize) {
+        final long minCapacity = Math.max(MIN_CAPACITY, expectedSize + expectedSize / 3 + 1);
+        Preconditions.checkArgument(minCapacity <= 1L << 58, "expectedSize is too large");
+        final long capacity = Long.highestOneBit(minCapacity);
+        return capacity == minCapacity ? capacity : capacity << 1;
+    }
+
+    private static NativeBuffer allocate(final long capacity) {
+        final long length = HEADER_SIZE + capacity * SLOT_SIZE;
+        final NativeBuffer buffer = new NativeBuffer(length, ByteOrder.LITTLE_ENDIAN);
+        final DirectMemory memory = buffer.memory();
+        IndeedUnsafe.setMemory(memory.getAddress(), length, (byte) 0);
+        memory.putLong(0, MAGIC);
+        memory.putLong(CAPACITY_OFFSET, capacity);
+        return buffer;
+    }
+
+    // the hash is part of the file format, changing it breaks existing files
+    private static long hash(final int key) {
+        int h = key;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h & 0xffffffffL;
+    }
+}
@@ -1,8 +1,11 @@
 package com.indeed.util.mmap;
 
+import com.indeed.util.unsafe.IndeedUnsafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteOrder;
+
 /** @author jplaisance */
 public final class LongArray {
     private static final Logger log = LoggerFactory.getLogger(LongArray.class);
@@ -12,6 +15,11 @@ public final class LongArray {
     private final Memory buffer;
     private final long length;
 
+    // lets the search methods read a direct buffer without going through the Memory interface
+    private final boolean direct;
+    private final long address;
+    private final boolean swapBytes;
+
     public LongArray(Memory buffer, long address, long length) {
         if (address < 0) throw new IndexOutOfBoundsException("address must be >= 0");
         if (length < 0) throw new IllegalArgumentException("length must be >= 0");
@@ -20,6 +28,15 @@ public final class LongArray {
                     String.format("address+length*%d must be <= buffer.length()", TYPE_SIZE));
         this.buffer = buffer.slice(address, length * TYPE_SIZE);
         this.length = length;
+        this.direct = this.buffer.isDirect();
+        if (direct) {
+            final DirectMemory directMemory = (DirectMemory) this.buffer;
+            this.address = directMemory.getAddress();
+            this.swapBytes = directMemory.getOrder() != ByteOrder.nativeOrder();
+        } else {
+            this.address = 0;
+            this.swapBytes = false;
+        }
     }
 
     public long get(final long index) {
@@ -27,9 +44,7 @@ public final class LongArray {
     }
 
     public void get(final long index, final long[] longs, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            longs[start + i] = buffer.getLong((index + i) * TYPE_SIZE);
-        }
+        buffer.getLongs(index * TYPE_SIZE, longs, start, length);
     }
 
     public void get(final long index, final long[] longs) {
@@ -49,9 +64,7 @@ public final class LongArray {
     }
 
     public void set(final long index, final long[] longs, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            buffer.putLong((index + i) * TYPE_SIZE, longs[start + i]);
-        }
+        buffer.putLongs(index * TYPE_SIZE, longs, start, length);
     }
 
     public void set(final long index, final long[] longs) {
@@ -67,10 +80,146 @@ public final class LongArray {
         set(index, longs, 0, longs.length);
     }
 
+    /** Reads the value at index with volatile semantics. */
+    public long getVolatile(final long index) {
+        return buffer.getLongVolatile(index * TYPE_SIZE);
+    }
+
+    /** Writes the value at index with volatile semantics. */
+    public void setVolatile(final long index, final long value) {
+        buffer.putLongVolatile(index * TYPE_SIZE, value);
+    }
+
+    /**
+     * Writes the value at index without a full fence. Writes before it are visible to a thread
+     * that sees the value with {@link #getVolatile(long)}.
+     */
+    public void setOrdered(final long index, final long value) {
+        buffer.putLongOrdered(index * TYPE_SIZE, value);
+    }
+
+    /** Atomically sets the value at index to value if it is expected. */
+    public boolean compareAndSwap(final long index, final long expected, final long value) {
+        return buffer.compareAndSwapLong(index * TYPE_SIZE, expected, value);
+    }
+
+    /** Atomically adds delta to the value at index and returns the previous value. */
+    public long getAndAdd(final long index, final long delta) {
+        return buffer.getAndAddLong(index * TYPE_SIZE, delta);
+    }
+
     public long length() {
         return length;
     }
 
+    /**
+     * Searches the array, which must be sorted in ascending order, for key.
+     *
+     * @return the index of the first occurrence of key, or (-(insertion point) - 1) if it is not
+     *     present
+     */
+    public long binarySearch(final long key) {
+        return binarySearch(0, length, key);
+    }
+
+    /** Like {@link #binarySearch(long)} restricted to the indexes [fromIndex, toIndex). */
+    public long binarySearch(final long fromIndex, final long toIndex, final long key) {
+        checkRange(fromIndex, toIndex);
+        final long index = lowerBound0(fromIndex, toIndex, key);
+        return index < toIndex && getUnchecked(index) == key ? index : -index - 1;
+    }
+
+    /**
+     * Like {@link #binarySearch(long, long, long)} from fromIndex to the end of the array, but
+     * probes fromIndex, fromIndex + 1, fromIndex + 3, fromIndex + 7, ... before the binary search.
+     * That is cheaper when key is expected close to fromIndex, e.g. when walking a posting list.
+     */
+    public long exponentialSearch(final long fromIndex, final long key) {
+        checkRange(fromIndex, length);
+        long low = fromIndex;
+        long high = fromIndex;
+        long step = 1;
+        while (high < length && getUnchecked(high) < key) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        final long index = lowerBound0(low, Math.min(high, length), key);
+        return index < length && getUnchecked(index) == key ? index : -index - 1;
+    }
+
+    /**
+     * @return the index of the first element that is not less than key in an array sorted in
+     *     ascending order, or length() if there is none
+     */
+    public long lowerBound(final long key) {
+        return lowerBound(0, length, key);
+    }
+
+    /** Like {@link #lowerBound(long)} restricted to the indexes [fromIndex, toIndex). */
+    public long lowerBound(final long fromIndex, final long toIndex, final long key) {
+        checkRange(fromIndex, toIndex);
+        return lowerBound0(fromIndex, toIndex, key);
+    }
+
+    /**
+     * Writes the values present in both arrays, which must be sorted in ascending order, to out in
+     * ascending order, stopping once out is full. Values that occur several times in both arrays
+     * are written as often as they occur in the array that contains fewer of them. Each value of
+     * the shorter array is galloped to in the longer one, so this is fast for very different
+     * lengths as well.
+     *
+     * @return the number of values written to out
+     */
+    public static int intersect(final LongArray a, final LongArray b, final long[] out) {
+        final LongArray small = a.length <= b.length ? a : b;
+        final LongArray large = small == a ? b : a;
+        int count = 0;
+        long position = 0;
+        for (long i = 0; i < small.length && count < out.length && position < large.length; i++) {
+            final long value = small.getUnchecked(i);
+            final long index = large.exponentialSearch(position, value);
+            if (index >= 0) {
+                out[count++] = value;
+                position = index + 1;
+            } else {
+                position = -index - 1;
+            }
+        }
+        return count;
+    }
+
+    // the loop body has no data dependent branch, the comparison compiles to a conditional move
+    private long lowerBound0(final long fromIndex, final long toIndex, final long key) {
+        long n = toIndex - fromIndex;
+        if (n == 0) {
+            return fromIndex;
+        }
+        long base = fromIndex;
+        while (n > 1) {
+            final long half = n >>> 1;
+            base = getUnchecked(base + half) < key ? base + half : base;
+            n -= half;
+        }
+        return getUnchecked(base) < key ? base + 1 : base;
+    }
+
+    // callers must check the index, direct buffers are read without bounds checks
+    private long getUnchecked(final long index) {
+        if (direct) {
+            final long value = IndeedUnsafe.getLong(address + index * TYPE_SIZE);
+            return swapBytes ? Long.reverseBytes(value) : value;
+        }
+        return buffer.getLong(index * TYPE_SIZE);
+    }
+
+    private void checkRange(final long fromIndex, final long toIndex) {
+        if (fromIndex < 0 || toIndex > length || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    "fromIndex: " + fromIndex + " toIndex: " + toIndex + " length: " + length);
+        }
+    }
+
     public LongArray slice(final long start, final long length) {
         return new LongArray(buffer, start * TYPE_SIZE, length);
     }
@@ -0,0 +1,406 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Append only log of length prefixed, CRC32 protected records in a directory of memory mapped
+ * segment files. Every record is addressed by its offset, a position in the concatenation of all
+ * segments. A record never spans two segments: when it doesn't fit into the current segment the
+ * log rolls over to a new one named after its first offset.
+ *
+ * <p>There may only be one writer, but any number of threads can read with their own {@link
+ * Reader}. The writer publishes the end of the last complete record in a volatile field, so
+ * readers can tail the log without locking. Records are visible to readers as soon as {@link
+ * #append(byte[], int, int)} returns, and durable once they were synced, either explicitly with
+ * {@link #sync()} or in batches according to the builder's settings.
+ *
+ * <p>When a log is opened again the end of the last segment is found by checking the CRCs, so a
+ * torn record at the end is dropped. Segments are synced before the log rolls over to the next
+ * one, so only the last segment can have a torn end.
+ */
+public final class MMapAppendLog implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MMapAppendLog.class);
+
+    private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+    private static final String SUFFIX = ".log";
+
+    /** crc of length and payload, then length. */
+    static final int HEADER_SIZE = 8;
+
+    private static final int END_OF_SEGMENT = -1;
+
+    private final Path directory;
+    private final long segmentSize;
+    private final int syncEveryRecords;
+    private final long syncEveryBytes;
+
+    private volatile Segment[] segments;
+    private volatile long committedOffset;
+    private volatile long syncedOffset;
+    private Segment current;
+    private int unsyncedRecords = 0;
+    private boolean closed = false;
+
+    private MMapAppendLog(
+            final Path directory,
+            final long segmentSize,
+            final int syncEveryRecords,
+            final long syncEveryBytes)
+            throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.syncEveryRecords = syncEveryRecords;
+        this.syncEveryBytes = syncEveryBytes;
+        Files.createDirectories(directory);
+
+        final List<Long> bases = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (final Path path : stream) {
+                final String name = path.getFileName().toString();
+                try {
+                    bases.add(Long.parseLong(name.substring(0, name.length() - SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    log.warn("ignoring " + path + " in log directory");
+                }
+            }
+        }
+        bases.sort(null);
+
+        final List<Segment> opened = new ArrayList<>();
+        try {
+            for (final long base : bases) {
+                final Path path = segmentPath(base);
+                if (!opened.isEmpty() && opened.get(opened.size() - 1).end() != base) {
+                    throw new IOException("log segments are not contiguous at " + path);
+                }
+                opened.add(new Segment(base, path, Files.size(path)));
+            }
+            if (opened.isEmpty()) {
+                opened.add(new Segment(0, segmentPath(0), segmentSize));
+            }
+        } catch (IOException | RuntimeException e) {
+            for (final Segment segment : opened) {
+                segment.close();
+            }
+            throw e;
+        }
+        segments = opened.toArray(new Segment[0]);
+        current = segments[segments.length - 1];
+        committedOffset = current.base + recover(current);
+        syncedOffset = committedOffset;
+    }
+
+    public static Builder builder(final Path directory) {
+        return new Builder(directory);
+    }
+
+    public static MMapAppendLog open(final Path directory) throws IOException {
+        return builder(directory).build();
+    }
+
+    private Path segmentPath(final long base) {
+        return directory.resolve(String.format("%020d", base) + SUFFIX);
+    }
+
+    /** @return the position after the last valid record of segment */
+    private static long recover(final Segment segment) {
+        final DirectMemory memory = segment.memory;
+        long position = 0;
+        while (position + HEADER_SIZE <= memory.length()) {
+            final int length = memory.getInt(position + 4);
+            if (length == END_OF_SEGMENT) {
+                return memory.length();
+            }
+            if (length < 0
+                    || length > memory.length() - position - HEADER_SIZE
+                    || !checkCrc(memory, position, length)) {
+                break;
+            }
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    private static boolean checkCrc(final Memory memory, final long position, final int length) {
+        final long crc = MemoryChecksums.crc32(memory, position + 4, 4 + length);
+        return memory.getInt(position) == (int) crc;
+    }
+
+    /** @return the offset just past the last record that readers can see */
+    public long getCommittedOffset() {
+        return committedOffset;
+    }
+
+    /** @return the offset up to which the log has been synced to disk */
+    public long getSyncedOffset() {
+        return syncedOffset;
+    }
+
+    public long getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getSegmentCount() {
+        return segments.length;
+    }
+
+    public long append(final byte[] bytes) throws IOException {
+        return append(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Appends a record. Must only be called by the writer thread.
+     *
+     * @return the offset of the record
+     * @throws IllegalArgumentException if the record doesn't fit into an empty segment
+     */
+    public long append(final byte[] bytes, final int off, final int len) throws IOException {
+        Preconditions.checkPositionIndexes(off, off + len, bytes.length);
+        Preconditions.checkArgument(
+                len <= segmentSize - HEADER_SIZE,
+                "record of %s bytes doesn't fit into a segment of %s bytes",
+                len,
+                segmentSize);
+        if (closed) {
+            throw new IllegalStateException("log is closed");
+        }
+        long position = committedOffset - current.base;
+        if (position + HEADER_SIZE + len > current.memory.length()) {
+            roll(position);
+            position = 0;
+        }
+        final DirectMemory memory = current.memory;
+        memory.putInt(position + 4, len);
+        memory.putBytes(position + HEADER_SIZE, bytes, off, len);
+        memory.putInt(position, (int) MemoryChecksums.crc32(memory, position + 4, 4 + len));
+        final long offset = current.base + position;
+        committedOffset = offset + HEADER_SIZE + len;
+
+        unsyncedRecords++;
+        if ((syncEveryRecords > 0 && unsyncedRecords >= syncEveryRecords)
+                || (syncEveryBytes > 0 && committedOffset - syncedOffset >= syncEveryBytes)) {
+            sync();
+        }
+        return offset;
+    }
+
+    /**
+     * Marks the end of the current segment at position and starts a new one. Only the last
+     * segment is recovered on open, so the records of the current segment and the marker are
+     * synced first. Otherwise a crash could leave a torn tail in the middle of the log, which
+     * would hide every record after it.
+     */
+    private void roll(final long position) throws IOException {
+        sync();
+        if (position + HEADER_SIZE <= current.memory.length()) {
+            current.memory.putInt(position + 4, END_OF_SEGMENT);
+            current.buffer.sync(position, HEADER_SIZE);
+        }
+        final long base = current.end();
+        final Segment segment = new Segment(base, segmentPath(base), segmentSize);
+        final Segment[] newSegments = Arrays.copyOf(segments, segments.length + 1);
+        newSegments[segments.length] = segment;
+        segments = newSegments;
+        current = segment;
+    }
+
+    /** Forces everything appended so far to disk. Must only be called by the writer thread. */
+    public void sync() throws IOException {
+        final long end = committedOffset;
+        for (final Segment segment : segments) {
+            if (segment.end() <= syncedOffset || segment.base >= end) {
+                continue;
+            }
+            final long from = Math.max(syncedOffset, segment.base) - segment.base;
+            final long to = Math.min(end, segment.end()) - segment.base;
+            segment.buffer.sync(from, to - from);
+        }
+        syncedOffset = end;
+        unsyncedRecords = 0;
+    }
+
+    /** @return a reader positioned at the first record of the log */
+    public Reader reader() {
+        return reader(segments[0].base);
+    }
+
+    /** @param offset the offset of a record, or the committed offset to only see new records */
+    public Reader reader(final long offset) {
+        return new Reader(offset);
+    }
+
+    private Segment segmentFor(final long offset) {
+        final Segment[] segments = this.segments;
+        int low = 0;
+        int high = segments.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            if (segments[mid].end() <= offset) {
+                low = mid + 1;
+            } else if (segments[mid].base > offset) {
+                high = mid - 1;
+            } else {
+                return segments[mid];
+            }
+        }
+        throw new IllegalArgumentException("offset " + offset + " is not in the log");
+    }
+
+    /** Syncs and unmaps the log. Readers must not be used anymore. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            sync();
+        } finally {
+            closed = true;
+            for (final Segment segment : segments) {
+                segment.close();
+            }
+        }
+    }
+
+    private static final class Segment {
+        final long base;
+        final MMapBuffer buffer;
+        final DirectMemory memory;
+
+        Segment(final long base, final Path path, final long length) throws IOException {
+            this.base = base;
+            buffer = new MMapBuffer(path, 0, length, FileChannel.MapMode.READ_WRITE, ORDER);
+            memory = buffer.memory();
+        }
+
+        long end() {
+            return base + memory.length();
+        }
+
+        void close() {
+            try {
+                buffer.close();
+            } catch (IOException e) {
+                log.error("Exception during cleanup of a Closeable, ignoring", e);
+            }
+        }
+    }
+
+    /**
+     * Iterates over the committed records of the log. When it catches up with the writer {@link
+     * #next()} returns false, and true again once more records were appended. A reader must only
+     * be used by one thread.
+     */
+    public final class Reader {
+        private long position;
+        private long recordOffset = -1;
+        private Memory record = null;
+
+        private Reader(final long position) {
+            this.position = position;
+        }
+
+        /**
+         * Moves to the next committed record.
+         *
+         * @return false if there is no committed record after the current one yet
+         * @throws IOException if the record is corrupt
+         */
+        public boolean next() throws IOException {
+            while (position < committedOffset) {
+                final Segment segment = segmentFor(position);
+                final DirectMemory memory = segment.memory;
+                final long segmentPosition = position - segment.base;
+                if (segmentPosition + HEADER_SIZE > memory.length()
+                        || memory.getInt(segmentPosition + 4) == END_OF_SEGMENT) {
+                    position = segment.end();
+                    continue;
+                }
+                final int length = memory.getInt(segmentPosition + 4);
+                if (length < 0
+                        || length > memory.length() - segmentPosition - HEADER_SIZE
+                        || !checkCrc(memory, segmentPosition, length)) {
+                    throw new IOException("corrupt record at offset " + position);
+                }
+                recordOffset = position;
+                record = memory.slice(segmentPosition + HEADER_SIZE, length);
+                position += HEADER_SIZE + length;
+                return true;
+            }
+            return false;
+        }
+
+        /** @return the offset of the current record */
+        public long recordOffset() {
+            return recordOffset;
+        }
+
+        /** @return the current record, backed by the mapping */
+        public Memory record() {
+            return record;
+        }
+
+        public byte[] recordBytes() {
+            final byte[] bytes = new byte[(int) record.length()];
+            record.getBytes(0, bytes);
+            return bytes;
+        }
+
+        /** @return the offset of the record {@link #next()} will move to */
+        public long position() {
+            return position;
+        }
+    }
+
+    public static final class Builder {
+        private final Path directory;
+        private long segmentSize = 64 * 1024 * 1024;
+        private int syncEveryRecords = 0;
+        private long syncEveryBytes = 0;
+
+        private Builder(final Path directory) {
+            this.directory = directory;
+        }
+
+        /**
+         * Size of new segment files, which bounds the size of a record. Existing segments keep
+         * their size. Defaults to 64MB.
+         */
+        public Builder setSegmentSize(final long segmentSize) {
+            Preconditions.checkArgument(segmentSize > HEADER_SIZE, "segmentSize too small");
+            this.segmentSize = segmentSize;
+            return this;
+        }
+
+        /** Syncs after this many records, 0 (the default) to not sync by record count. */
+        public Builder setSyncEveryRecords(final int syncEveryRecords) {
+            Preconditions.checkArgument(syncEveryRecords >= 0, "syncEveryRecords must be >= 0");
+            this.syncEveryRecords = syncEveryRecords;
+            return this;
+        }
+
+        /** Syncs after this many bytes, 0 (the default) to not sync by size. */
+        public Builder setSyncEveryBytes(final long syncEveryBytes) {
+            Preconditions.checkArgument(syncEveryBytes >= 0, "syncEveryBytes must be >= 0");
+            this.syncEveryBytes = syncEveryBytes;
+            return this;
+        }
+
+        public MMapAppendLog build() throws IOException {
+            return new MMapAppendLog(directory, segmentSize, syncEveryRecords, syncEveryBytes);
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.io.Closeables;
+import com.indeed.util.io.SafeFiles;
+import com.indeed.util.io.SafeOutputStream;
+import com.indeed.util.unsafe.IndeedUnsafe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.function.LongConsumer;
+
+/**
+ * Fixed size bitset stored outside of the java heap with rank and select support, for sets of
+ * hundreds of millions of bits that have to be usable right after opening.
+ *
+ * <p>A set is either created in a {@link NativeBuffer} with {@link #create(long)} or opened read
+ * only from a file written by {@link #writeTo(Path)}. The file is the in-memory layout itself, all
+ * values little endian:
+ *
+ * <pre>
+ *   header    64 bytes: magic, numBits at 8, cardinality at 16, select sample count at 24
+ *   words     ceil(numBits / 64) longs, bit i is bit (i % 64) of word i / 64
+ *   ranks     one long per 8 words holding the number of set bits before them, followed by the
+ *             cardinality
+ *   samples   for every 8192nd set bit, the index of the 8 word block that contains it
+ * </pre>
+ *
+ * <p>{@link #rank(long)} reads one rank entry and counts the bits of at most 8 words. {@link
+ * #select(long)} narrows the block down with the samples and a search of the ranks. The rank
+ * directory and the samples are rebuilt on the first rank or select after a modification.
+ *
+ * <p>Not thread safe. A read only set can be shared between threads.
+ */
+public final class MMapBitSet implements Closeable {
+    // "MMBITSE1"
+    private static final long MAGIC = 0x4d4d424954534531L;
+
+    private static final long HEADER_SIZE = 64;
+    private static final long NUM_BITS_OFFSET = 8;
+    private static final long CARDINALITY_OFFSET = 16;
+    private static final long SAMPLE_COUNT_OFFSET = 24;
+
+    private static final int BLOCK_SHIFT = 3;
+    private static final int WORDS_PER_BLOCK = 1 << BLOCK_SHIFT;
+    private static final long SELECT_SAMPLE_RATE = 8192;
+
+    private final boolean readOnly;
+    private final long numBits;
+    private final long numWords;
+    private final long numBlocks;
+    private Closeable resource;
+    private DirectMemory memory;
+    private LongArray words;
+    private LongArray ranks;
+    private LongArray samples;
+    private boolean indexed;
+
+    private MMapBitSet(
+            final Closeable resource,
+            final DirectMemory memory,
+            final boolean readOnly,
+            final boolean indexed) {
+        this.resource = resource;
+        this.readOnly = readOnly;
+        this.indexed = indexed;
+        numBits = memory.getLong(NUM_BITS_OFFSET);
+        numWords = wordCount(numBits);
+        numBlocks = blockCount(numWords);
+        setMemory(memory);
+    }
+
+    /** @return a set of numBits bits that are all clear */
+    public static MMapBitSet create(final long numBits) {
+        Preconditions.checkArgument(numBits >= 0, "numBits must be >= 0");
+        Preconditions.checkArgument(numBits <= 1L << 45, "numBits is too large");
+        final long length = indexOffset(wordCount(numBits)) + rankLength(wordCount(numBits));
+        final NativeBuffer buffer = new NativeBuffer(length, ByteOrder.LITTLE_ENDIAN);
+        final DirectMemory memory = buffer.memory();
+        IndeedUnsafe.setMemory(memory.getAddress(), length, (byte) 0);
+        memory.putLong(0, MAGIC);
+        memory.putLong(NUM_BITS_OFFSET, numBits);
+        return new MMapBitSet(buffer, memory, false, true);
+    }
+
+    /** @return a writable copy of set in a {@link NativeBuffer}, e.g. to combine mapped sets */
+    public static MMapBitSet copyOf(final MMapBitSet set) {
+        final MMapBitSet copy = create(set.numBits);
+        copy.words.set(0, set.words);
+        copy.indexed = false;
+        return copy;
+    }
+
+    /** Maps a file written by {@link #writeTo(Path)} read only. */
+    public static MMapBitSet open(final Path path) throws IOException {
+        return open(path, MappingOptions.DEFAULT);
+    }
+
+    /**
+     * Maps a file written by {@link #writeTo(Path)} read only, e.g. with {@link
+     * MappingOptions.Builder#setPopulate(boolean)} to fault the whole set in up front.
+     */
+    public static MMapBitSet open(final Path path, final MappingOptions options)
+            throws IOException {
+        final MMapBuffer buffer =
+                new MMapBuffer(
+                        path, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN, options);
+        try {
+            final DirectMemory memory = buffer.memory();
+            if (memory.length() < HEADER_SIZE || memory.getLong(0) != MAGIC) {
+                throw new IOException(path + " is not a MMapBitSet file");
+            }
+            final long numBits = memory.getLong(NUM_BITS_OFFSET);
+            final long cardinality = memory.getLong(CARDINALITY_OFFSET);
+            final long sampleCount = memory.getLong(SAMPLE_COUNT_OFFSET);
+            if (numBits < 0
+                    || numBits > 1L << 45
+                    || cardinality < 0
+                    || cardinality > numBits
+                    || sampleCount != sampleCount(cardinality)
+                    || memory.length() != fileLength(numBits, cardinality)) {
+                throw new IOException(path + " has a corrupt header");
+            }
+            return new MMapBitSet(buffer, memory, true, true);
+        } catch (IOException | RuntimeException e) {
+            Closeables.close(buffer, true);
+            throw e;
+        }
+    }
+
+    /**
+     * Writes the set to path, replacing any existing file, in the format read by open.
+     *
+     * @see SafeFiles#createAtomicFile(Path)
+     */
+    public void writeTo(final Path path) throws IOException {
+        ensureIndexed();
+        try (SafeOutputStream out = SafeFiles.createAtomicFile(path)) {
+            DirectByteBuffers.write(memory, 0, memory.length(), out);
+            out.commit();
+        }
+    }
+
+    public long numBits() {
+        return numBits;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public boolean get(final long index) {
+        checkIndex(index);
+        return (words.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    public void set(final long index) {
+        checkWritable();
+        checkIndex(index);
+        final long word = index >>> 6;
+        words.set(word, words.get(word) | (1L << index));
+        indexed = false;
+    }
+
+    public void clear(final long index) {
+        checkWritable();
+        checkIndex(index);
+        final long word = index >>> 6;
+        words.set(word, words.get(word) & ~(1L << index));
+        indexed = false;
+    }
+
+    /** @return the number of set bits */
+    public long cardinality() {
+        ensureIndexed();
+        return memory.getLong(CARDINALITY_OFFSET);
+    }
+
+    /** @return the number of set bits in [0, index), index may be numBits() */
+    public long rank(final long index) {
+        if (index < 0 || index > numBits) {
+            throw new IndexOutOfBoundsException("index: " + index + " numBits: " + numBits);
+        }
+        ensureIndexed();
+        final long word = index >>> 6;
+        final long block = word >>> BLOCK_SHIFT;
+        long rank = ranks.get(block);
+        for (long i = block << BLOCK_SHIFT; i < word; i++) {
+            rank += Long.bitCount(words.get(i));
+        }
+        final int bit = (int) (index & 63);
+        if (bit != 0) {
+            rank += Long.bitCount(words.get(word) & ((1L << bit) - 1));
+        }
+        return rank;
+    }
+
+    /** @return the index of the set bit with rank k, counting from 0, or -1 if there is none */
+    public long select(final long k) {
+        if (k < 0 || k >= cardinality()) {
+            return -1;
+        }
+        final long sample = k / SELECT_SAMPLE_RATE;
+        final long low = samples.get(sample);
+        final long high =
+                sample + 1 < samples.length() ? samples.get(sample + 1) + 1 : numBlocks;
+        // the last block in [low, high) with fewer than k + 1 set bits before it
+        final long block = ranks.lowerBound(low, high, k + 1) - 1;
+        long remaining = k - ranks.get(block);
+        for (long i = block << BLOCK_SHIFT; ; i++) {
+            final long word = words.get(i);
+            final int count = Long.bitCount(word);
+            if (remaining < count) {
+                return (i << 6) + selectInWord(word, (int) remaining);
+            }
+            remaining -= count;
+        }
+    }
+
+    private static int selectInWord(long word, final int k) {
+        for (int i = 0; i < k; i++) {
+            word &= word - 1;
+        }
+        return Long.numberOfTrailingZeros(word);
+    }
+
+    /** @return the index of the first set bit at or after from, or -1 if there is none */
+    public long nextSetBit(final long from) {
+        if (from < 0) {
+            throw new IndexOutOfBoundsException("from: " + from);
+        }
+        if (from >= numBits) {
+            return -1;
+        }
+        long i = from >>> 6;
+        long word = words.get(i) & (-1L << from);
+        while (word == 0) {
+            if (++i == numWords) {
+                return -1;
+            }
+            word = words.get(i);
+        }
+        return (i << 6) + Long.numberOfTrailingZeros(word);
+    }
+
+    /** Calls consumer with the index of every set bit in ascending order. */
+    public void forEachSetBit(final LongConsumer consumer) {
+        for (long i = 0; i < numWords; i++) {
+            long word = words.get(i);
+            while (word != 0) {
+                consumer.accept((i << 6) + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+    }
+
+    /** Clears every bit that is not set in other, which must have the same number of bits. */
+    public void and(final MMapBitSet other) {
+        checkWritable();
+        checkSameSize(other);
+        for (long i = 0; i < numWords; i++) {
+            words.set(i, words.get(i) & other.words.get(i));
+        }
+        indexed = false;
+    }
+
+    /** Sets every bit that is set in other, which must have the same number of bits. */
+    public void or(final MMapBitSet other) {
+        checkWritable();
+        checkSameSize(other);
+        for (long i = 0; i < numWords; i++) {
+            words.set(i, words.get(i) | other.words.get(i));
+        }
+        indexed = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (resource != null) {
+            resource.close();
+            resource = null;
+        }
+    }
+
+    private void ensureIndexed() {
+        if (indexed) {
+            return;
+        }
+        long cardinality = 0;
+        for (long block = 0; block < numBlocks; block++) {
+            ranks.set(block, cardinality);
+            final long end = Math.min((block + 1) << BLOCK_SHIFT, numWords);
+            for (long i = block << BLOCK_SHIFT; i < end; i++) {
+                cardinality += Long.bitCount(words.get(i));
+            }
+        }
+        ranks.set(numBlocks, cardinality);
+
+        final long length = fileLength(numBits, cardinality);
+        if (length != memory.length()) {
+            final NativeBuffer buffer = ((NativeBuffer) resource).realloc(length);
+            resource = buffer;
+            setMemory(buffer.memory());
+        }
+        memory.putLong(CARDINALITY_OFFSET, cardinality);
+        memory.putLong(SAMPLE_COUNT_OFFSET, samples.length());
+        long sample = 0;
+        for (long block = 0; block < numBlocks && sample < samples.length(); block++) {
+            // the block holds the set bits with ranks [ranks[block], ranks[block + 1])
+            while (sample < samples.length()
+                    && sample * SELECT_SAMPLE_RATE < ranks.get(block + 1)) {
+                samples.set(sample++, block);
+            }
+        }
+        indexed = true;
+    }
+
+    private void setMemory(final DirectMemory newMemory) {
+        memory = newMemory.unchecked();
+        final long indexOffset = indexOffset(numWords);
+        final long samplesOffset = indexOffset + rankLength(numWords);
+        words = memory.longArray(HEADER_SIZE, numWords);
+        ranks = memory.longArray(indexOffset, numBlocks + 1);
+        samples = memory.longArray(samplesOffset, (memory.length() - samplesOffset) / 8);
+    }
+
+    private void checkIndex(final long index) {
+        if (index < 0 || index >= numBits) {
+            throw new IndexOutOfBoundsException("index: " + index + " numBits: " + numBits);
+        }
+    }
+
+    private void checkWritable() {
+        if (readOnly) {
+            throw new UnsupportedOperationException("set was opened read only");
+        }
+    }
+
+    private void checkSameSize(final MMapBitSet other) {
+        Preconditions.checkArgument(
+                other.numBits == numBits,
+                "sets have different sizes: %s and %s",
+                numBits,
+                other.numBits);
+    }
+
+    private static long wordCount(final long numBits) {
+        return (numBits + 63) >>> 6;
+    }
+
+    private static long blockCount(final long numWords) {
+        return (numWords + WORDS_PER_BLOCK - 1) >>> BLOCK_SHIFT;
+    }
+
+    private static long sampleCount(final long cardinality) {
+        return (cardinality + SELECT_SAMPLE_RATE - 1) / SELECT_SAMPLE_RATE;
+    }
+
+    private static long indexOffset(final long numWords) {
+        return HEADER_SIZE + numWords * 8;
+    }
+
+    private static long rankLength(final long numWords) {
+        return (blockCount(numWords) + 1) * 8;
+    }
+
+    private static long fileLength(final long numBits, final long cardinality) {
+        final long numWords = wordCount(numBits);
+        return indexOffset(numWords) + rankLength(numWords) + sampleCount(cardinality) * 8;
+    }
+}
@@ -2,22 +2,37 @@ package com.indeed.util.mmap;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Function;
+import com.google.common.collect.ImmutableSortedMap;
 import com.google.common.io.Closeables;
+import com.indeed.util.unsafe.IndeedUnsafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.FileDescriptor;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
-import java.util.IdentityHashMap;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /** @author jplaisance */
 public final class MMapBuffer implements BufferResource {
+    private static final Logger log = LoggerFactory.getLogger(MMapBuffer.class);
 
     public static final int PAGE_SIZE = 4096;
 
@@ -29,35 +44,59 @@ public final class MMapBuffer implements BufferResource {
     static final int MAP_SHARED = 1;
     static final int MAP_PRIVATE = 2;
     static final int MAP_ANONYMOUS = 4;
+    static final int MAP_NORESERVE = 8;
+    static final int MAP_POPULATE = 16;
+
+    static final int MADV_NORMAL = 0;
+    static final int MADV_RANDOM = 1;
+    static final int MADV_SEQUENTIAL = 2;
+    static final int MADV_WILLNEED = 3;
+    static final int MADV_DONTNEED = 4;
+    static final int MADV_HUGEPAGE = 5;
 
     static {
         LoadIndeedMMap.loadLibrary();
     }
 
+    // native libraries built before madvise0 was added silently ignore MAP_POPULATE and
+    // MAP_NORESERVE and only support WILLNEED and DONTNEED advice
+    private static final boolean NATIVE_ADVICE_SUPPORTED = isNativeAdviceSupported();
+
+    @SuppressWarnings("unused")
+    private static volatile int prefaultSink;
+
     @VisibleForTesting static Tracker openBuffersTracker;
 
+    // on unless disabled with -Dcom.indeed.util.mmap.MMapBuffer.enableTracking=false
+    @VisibleForTesting
+    static final boolean TRACKING_BY_DEFAULT =
+            !"false".equals(System.getProperty("com.indeed.util.mmap.MMapBuffer.enableTracking"));
+
     static {
-        final boolean shouldTrack =
-                "true".equals(System.getProperty("com.indeed.util.mmap.MMapBuffer.enableTracking"));
-        setTrackingEnabled(shouldTrack);
+        setTrackingEnabled(TRACKING_BY_DEFAULT);
     }
 
     private final long address;
     private final DirectMemory memory;
 
+    private final boolean readOnly;
+
+    // the mapped part of the file for transferTo, null for private or empty mappings
+    private final FileRegion fileRegion;
+
     private static RandomAccessFile open(Path path, FileChannel.MapMode mapMode)
             throws FileNotFoundException {
-        if (Files.notExists(path) && mapMode == FileChannel.MapMode.READ_ONLY) {
+        if (Files.notExists(path) && mapMode != FileChannel.MapMode.READ_WRITE) {
             throw new FileNotFoundException(path + " does not exist");
         }
         final String openMode;
-        if (mapMode == FileChannel.MapMode.READ_ONLY) {
+        if (mapMode == FileChannel.MapMode.READ_ONLY || mapMode == FileChannel.MapMode.PRIVATE) {
             openMode = "r";
         } else if (mapMode == FileChannel.MapMode.READ_WRITE) {
             openMode = "rw";
         } else {
             throw new IllegalArgumentException(
-                    "only MapMode.READ_ONLY and MapMode.READ_WRITE are supported");
+                    "only MapMode.READ_ONLY, MapMode.READ_WRITE and MapMode.PRIVATE are supported");
         }
         return new RandomAccessFile(path.toFile(), openMode);
     }
@@ -82,6 +121,23 @@ public final class MMapBuffer implements BufferResource {
         this(open(path, mapMode), path, offset, length, mapMode, order, true);
     }
 
+    public MMapBuffer(
+            Path path, FileChannel.MapMode mapMode, ByteOrder order, MappingOptions options)
+            throws IOException {
+        this(path, 0, Files.size(path), mapMode, order, options);
+    }
+
+    public MMapBuffer(
+            Path path,
+            long offset,
+            long length,
+            FileChannel.MapMode mapMode,
+            ByteOrder order,
+            MappingOptions options)
+            throws IOException {
+        this(open(path, mapMode), path, offset, length, mapMode, order, true, options);
+    }
+
     public MMapBuffer(
             RandomAccessFile raf,
             File file,
@@ -125,6 +181,25 @@ public final class MMapBuffer implements BufferResource {
             ByteOrder order,
             boolean closeFile)
             throws IOException {
+        this(raf, path, offset, length, mapMode, order, closeFile, MappingOptions.DEFAULT);
+    }
+
+    /**
+     * @param mapMode READ_ONLY, READ_WRITE, or PRIVATE for a copy on write mapping whose writes
+     *     are never carried through to the file
+     * @param options extra mmap flags and madvise advice applied to the whole mapping
+     */
+    public MMapBuffer(
+            RandomAccessFile raf,
+            Path path,
+            long offset,
+            long length,
+            FileChannel.MapMode mapMode,
+            ByteOrder order,
+            boolean closeFile,
+            MappingOptions options)
+            throws IOException {
+        readOnly = mapMode == FileChannel.MapMode.READ_ONLY;
         try {
             if (offset < 0)
                 throw new IllegalArgumentException(
@@ -135,15 +210,23 @@ public final class MMapBuffer implements BufferResource {
                             "error mapping [" + path + "]: length must be >= 0");
                 address = 0;
                 memory = new DirectMemory(0, 0, order);
+                fileRegion = null;
             } else {
                 final int prot;
+                final int flags;
                 if (mapMode == FileChannel.MapMode.READ_ONLY) {
                     prot = READ_ONLY;
+                    flags = MAP_SHARED;
                 } else if (mapMode == FileChannel.MapMode.READ_WRITE) {
                     prot = READ_WRITE;
+                    flags = MAP_SHARED;
+                } else if (mapMode == FileChannel.MapMode.PRIVATE) {
+                    prot = READ_WRITE;
+                    flags = MAP_PRIVATE;
                 } else {
                     throw new IllegalArgumentException(
-                            "only MapMode.READ_ONLY and MapMode.READ_WRITE are supported");
+                            "only MapMode.READ_ONLY, MapMode.READ_WRITE and MapMode.PRIVATE"
+                                    + " are supported");
                 }
                 if (raf.length() < offset + length) {
                     if (mapMode == FileChannel.MapMode.READ_WRITE) {
@@ -152,12 +235,14 @@ public final class MMapBuffer implements BufferResource {
                         throw new IllegalArgumentException(
                                 "cannot open file ["
                                         + path
-                                        + "] in read only mode with offset+length > file.length()");
+                                        + "] in "
+                                        + mapMode
+                                        + " mode with offset+length > file.length()");
                     }
                 }
                 final int fd;
                 fd = extractFd(raf.getFD());
-                address = mmap(length, prot, MAP_SHARED, fd, offset);
+                address = mmap(length, prot, flags | options.mmapFlags(), fd, offset);
                 if (address == MAP_FAILED) {
                     final int errno = errno();
                     throw new IOException(
@@ -174,6 +259,11 @@ public final class MMapBuffer implements BufferResource {
                                     + "]");
                 }
                 memory = new DirectMemory(address, length, order);
+                fileRegion =
+                        flags == MAP_SHARED && path != null
+                                ? FileRegion.of(path, offset)
+                                : null;
+                applyOptions(path, options);
             }
         } finally {
             if (closeFile) {
@@ -181,8 +271,28 @@ public final class MMapBuffer implements BufferResource {
             }
         }
 
-        if (openBuffersTracker != null) {
-            openBuffersTracker.mmapBufferOpened(this);
+        mappingOpened(this, path, address, memory.length());
+    }
+
+    /**
+     * Registers a mapping with the open buffers tracker. Used by MMapBuffer itself and by classes
+     * that map files through the natives directly, such as {@link GrowableMapping}.
+     *
+     * @param owner identifies the mapping until {@link #beforeMappingClosed(Object)}
+     */
+    static void mappingOpened(
+            final Object owner, final Path path, final long address, final long length) {
+        final Tracker tracker = openBuffersTracker;
+        if (tracker != null) {
+            tracker.mappingOpened(owner, path, address, length);
+        }
+    }
+
+    /** Must be called before the mapping registered for owner is unmapped. */
+    static void beforeMappingClosed(final Object owner) {
+        final Tracker tracker = openBuffersTracker;
+        if (tracker != null) {
+            tracker.beforeMappingClosed(owner);
         }
     }
 
@@ -194,7 +304,7 @@ public final class MMapBuffer implements BufferResource {
 
     static native long mremap(long address, long oldLength, long newLength);
 
-    private static native int msync(long address, long length);
+    static native int msync(long address, long length);
 
     private static native int madvise(long address, long length);
 
@@ -202,6 +312,81 @@ public final class MMapBuffer implements BufferResource {
 
     static native int errno();
 
+    private static native int madvise0(long address, long length, int advice);
+
+    private static boolean isNativeAdviceSupported() {
+        try {
+            madvise0(0, 0, MADV_NORMAL);
+            return true;
+        } catch (UnsatisfiedLinkError e) {
+            log.warn(
+                    "libindeedmmap does not support madvise0, MAP_POPULATE will be emulated and"
+                            + " MAP_NORESERVE and advice other than WILLNEED/DONTNEED ignored."
+                            + " Rebuild it with the updateNative task.");
+            return false;
+        }
+    }
+
+    static int madvise(long address, long length, Advice advice) {
+        if (NATIVE_ADVICE_SUPPORTED) {
+            return madvise0(address, length, advice.nativeValue);
+        }
+        switch (advice) {
+            case WILLNEED:
+                return madvise(address, length);
+            case DONTNEED:
+                return madviseDontNeed(address, length);
+            default:
+                // advice is only a hint
+                return 0;
+        }
+    }
+
+    private void applyOptions(Path path, MappingOptions options) {
+        final long length = memory.length();
+        if (!NATIVE_ADVICE_SUPPORTED) {
+            warnIgnoredOptions(path, options);
+        }
+        if (options.isHugePages() && madvise(address, length, Advice.HUGEPAGE) != 0) {
+            log.warn("madvise(MADV_HUGEPAGE) failed for " + path + " [Errno " + errno() + "]");
+        }
+        final Advice advice = options.getAdvice();
+        if (advice != null && madvise(address, length, advice) != 0) {
+            log.warn("madvise(" + advice + ") failed for " + path + " [Errno " + errno() + "]");
+        }
+        if (options.isPopulate() && !NATIVE_ADVICE_SUPPORTED) {
+            // start asynchronous readahead for the whole range, then fault every page in
+            madvise(address, length);
+            int sum = 0;
+            for (long position = 0; position < length; position += PAGE_SIZE) {
+                sum += IndeedUnsafe.getByte(address + position);
+            }
+            prefaultSink = sum;
+        }
+    }
+
+    private static void warnIgnoredOptions(Path path, MappingOptions options) {
+        final List<String> ignored = new ArrayList<>();
+        if (options.isNoReserve()) {
+            ignored.add("noReserve");
+        }
+        if (options.isHugePages()) {
+            ignored.add("hugePages");
+        }
+        final Advice advice = options.getAdvice();
+        if (advice != null && advice != Advice.WILLNEED && advice != Advice.DONTNEED) {
+            ignored.add("advice " + advice);
+        }
+        if (!ignored.isEmpty()) {
+            log.warn(
+                    "libindeedmmap does not support madvise0, ignoring "
+                            + ignored
+                            + " for "
+                            + path
+                            + ". Rebuild it with the updateNative task.");
+        }
+    }
+
     // this is not particularly useful, the syscall takes forever
     public void advise(long position, long length) throws IOException {
         final long ap = address + position;
@@ -213,6 +398,63 @@ public final class MMapBuffer implements BufferResource {
         }
     }
 
+    /** Gives the kernel a hint about how the range will be accessed. See madvise(2). */
+    public void advise(long position, long length, Advice advice) throws IOException {
+        if (position < 0) throw new IndexOutOfBoundsException();
+        if (length < 0) throw new IndexOutOfBoundsException();
+        if (position + length > memory.length()) throw new IndexOutOfBoundsException();
+        final long ap = address + position;
+        final long a = ap / PAGE_SIZE * PAGE_SIZE;
+        final int err = madvise(a, length + (ap - a), advice);
+        if (err != 0) {
+            throw new IOException("madvise(" + advice + ") failed [Errno " + errno() + "]");
+        }
+    }
+
+    /**
+     * Writes length bytes of the mapping starting at position to target. For shared mappings this
+     * uses {@link FileChannel#transferTo(long, long, WritableByteChannel)}, which is sendfile(2) on
+     * Linux, so a socket is served from the page cache without the data passing through user
+     * space. Private mappings, and files that were replaced since they were mapped, are written
+     * from the mapped memory without copying it to the heap.
+     *
+     * @return the number of bytes written, less than length only if target is non blocking
+     */
+    public long transferTo(long position, long length, WritableByteChannel target)
+            throws IOException {
+        DirectByteBuffers.checkRange(memory, position, length);
+        if (fileRegion != null && length > 0) {
+            try (FileChannel channel = fileRegion.openIfUnchanged()) {
+                if (channel != null) {
+                    return fileRegion.transferTo(channel, position, length, target);
+                }
+            }
+        }
+        return DirectByteBuffers.write(memory, position, length, target);
+    }
+
+    /**
+     * A ByteBuffer view of the mapping, see {@link DirectMemory#asByteBuffer(long, int)}. The view
+     * is read only if the file was mapped with {@link FileChannel.MapMode#READ_ONLY}, and it must
+     * not be used after this buffer is closed.
+     */
+    public ByteBuffer asByteBuffer(long position, int length) {
+        return readOnlyIfNeeded(memory.asByteBuffer(position, length));
+    }
+
+    /** Like {@link #asByteBuffer(long, int)} in chunks of at most 1GB for larger ranges. */
+    public ByteBuffer[] asByteBuffers(long position, long length) {
+        final ByteBuffer[] buffers = memory.asByteBuffers(position, length);
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = readOnlyIfNeeded(buffers[i]);
+        }
+        return buffers;
+    }
+
+    private ByteBuffer readOnlyIfNeeded(ByteBuffer buffer) {
+        return readOnly ? buffer.asReadOnlyBuffer().order(buffer.order()) : buffer;
+    }
+
     public void sync(long position, long length) throws IOException {
         final long ap = address + position;
         final long a = (ap) / PAGE_SIZE * PAGE_SIZE;
@@ -256,9 +498,7 @@ public final class MMapBuffer implements BufferResource {
 
     @Override
     public void close() throws IOException {
-        if (openBuffersTracker != null) {
-            openBuffersTracker.beforeMMapBufferClosed(this);
-        }
+        beforeMappingClosed(this);
 
         // hack to deal with 0 byte files
         if (address != 0) {
@@ -309,29 +549,220 @@ public final class MMapBuffer implements BufferResource {
     @VisibleForTesting
     static void setTrackingEnabled(final boolean enabled) {
         openBuffersTracker = enabled ? new Tracker() : null;
+        if (enabled) {
+            MMapBufferMetrics.export();
+        }
+    }
+
+    private static final class FileRegion {
+        private final Path path;
+        private final long offset;
+        private final Object fileKey;
+
+        private FileRegion(Path path, long offset, Object fileKey) {
+            this.path = path;
+            this.offset = offset;
+            this.fileKey = fileKey;
+        }
+
+        /** @return null if the file can't be identified, which disables sendfile */
+        static FileRegion of(Path path, long offset) {
+            final Object fileKey = fileKey(path);
+            return fileKey == null ? null : new FileRegion(path, offset, fileKey);
+        }
+
+        private static Object fileKey(Path path) {
+            try {
+                return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            } catch (IOException e) {
+                return null;
+            }
+        }
+
+        /** @return the file if it is still the one that was mapped, else null */
+        FileChannel openIfUnchanged() throws IOException {
+            final FileChannel channel;
+            try {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+            } catch (NoSuchFileException e) {
+                return null;
+            }
+            if (!fileKey.equals(fileKey(path))) {
+                channel.close();
+                return null;
+            }
+            return channel;
+        }
+
+        long transferTo(
+                FileChannel channel, long position, long length, WritableByteChannel target)
+                throws IOException {
+            long transferred = 0;
+            while (transferred < length) {
+                final long n =
+                        channel.transferTo(
+                                offset + position + transferred, length - transferred, target);
+                if (n <= 0) {
+                    break;
+                }
+                transferred += n;
+            }
+            return transferred;
+        }
     }
 
+    /**
+     * Registry of open buffers and of the mappings of {@link GrowableMapping}s, keyed by their
+     * owner. Opening and closing only update a concurrent map, so they don't contend with each
+     * other. Anything that touches the mapped memory of other buffers acquires
+     * each buffer in turn, which keeps that one buffer from being unmapped underneath it, and skips
+     * buffers that are being closed.
+     */
     @VisibleForTesting
     static class Tracker {
-        @VisibleForTesting final Map<MMapBuffer, Void> mmapBufferSet = new IdentityHashMap<>();
+        private static final int MINCORE_CHUNK_PAGES = 4096;
+
+        @VisibleForTesting
+        final Map<Object, TrackedBuffer> mmapBufferSet = new ConcurrentHashMap<>();
+
+        private final LongAdder mappedBytes = new LongAdder();
+
+        void mappingOpened(
+                final Object owner, final Path path, final long address, final long length) {
+            final TrackedBuffer tracked =
+                    new TrackedBuffer(
+                            path == null ? "unknown" : path.toString(),
+                            address,
+                            length,
+                            System.currentTimeMillis());
+            mmapBufferSet.put(owner, tracked);
+            mappedBytes.add(tracked.length);
+        }
+
+        void beforeMappingClosed(final Object owner) {
+            final TrackedBuffer tracked = mmapBufferSet.remove(owner);
+            if (tracked != null) {
+                mappedBytes.add(-tracked.length);
+                tracked.awaitClose();
+            }
+        }
 
-        void mmapBufferOpened(final MMapBuffer buffer) {
-            synchronized (mmapBufferSet) {
-                mmapBufferSet.put(buffer, null);
+        /**
+         * Applies action to every open MMapBuffer that is not being closed. A buffer is only kept
+         * from being unmapped while the action runs on it, so opening and closing other buffers is
+         * never blocked.
+         */
+        void forEachOpenTrackedBuffer(final Function<MMapBuffer, ?> action) {
+            for (final Map.Entry<Object, TrackedBuffer> entry : mmapBufferSet.entrySet()) {
+                final TrackedBuffer tracked = entry.getValue();
+                if (entry.getKey() instanceof MMapBuffer && tracked.tryAcquire()) {
+                    try {
+                        action.apply((MMapBuffer) entry.getKey());
+                    } finally {
+                        tracked.release();
+                    }
+                }
             }
         }
 
-        void beforeMMapBufferClosed(final MMapBuffer buffer) {
-            synchronized (mmapBufferSet) {
-                mmapBufferSet.remove(buffer);
+        int getOpenCount() {
+            return mmapBufferSet.size();
+        }
+
+        long getMappedBytes() {
+            return mappedBytes.sum();
+        }
+
+        ImmutableSortedMap<String, Long> getMappedBytesByFile() {
+            final Map<String, Long> result = new TreeMap<>();
+            for (final TrackedBuffer tracked : mmapBufferSet.values()) {
+                result.merge(tracked.path, tracked.length, Long::sum);
             }
+            return ImmutableSortedMap.copyOf(result);
         }
 
-        void forEachOpenTrackedBuffer(final Function<MMapBuffer, ?> action) {
-            synchronized (mmapBufferSet) {
-                for (final MMapBuffer buffer : mmapBufferSet.keySet()) {
-                    action.apply(buffer);
+        /** @return milliseconds since the longest open buffer was mapped, 0 if none are open */
+        long getOldestOpenAgeMillis() {
+            long oldest = Long.MAX_VALUE;
+            for (final TrackedBuffer tracked : mmapBufferSet.values()) {
+                oldest = Math.min(oldest, tracked.openedMillis);
+            }
+            return oldest == Long.MAX_VALUE ? 0 : System.currentTimeMillis() - oldest;
+        }
+
+        long getResidentBytes() {
+            long residentPages = 0;
+            try (NativeBuffer vec =
+                    new NativeBuffer(MINCORE_CHUNK_PAGES, ByteOrder.nativeOrder())) {
+                final DirectMemory residency = vec.memory();
+                final long chunk = (long) MINCORE_CHUNK_PAGES * PAGE_SIZE;
+                for (final TrackedBuffer tracked : mmapBufferSet.values()) {
+                    final long length = tracked.length;
+                    // acquired per chunk, so that closing the buffer waits for one chunk at most
+                    for (long position = 0; position < length; position += chunk) {
+                        if (!tracked.tryAcquire()) {
+                            break;
+                        }
+                        final long l = Math.min(chunk, length - position);
+                        try {
+                            // mappings start on a page, and so do the chunks
+                            NativeMemoryUtils.mincore(tracked.address + position, l, residency);
+                        } finally {
+                            tracked.release();
+                        }
+                        final int pages = (int) ((l + PAGE_SIZE - 1) / PAGE_SIZE);
+                        for (int page = 0; page < pages; page++) {
+                            residentPages += residency.getByte(page) & 1;
+                        }
+                    }
                 }
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return residentPages * PAGE_SIZE;
+        }
+    }
+
+    @VisibleForTesting
+    static final class TrackedBuffer {
+        private static final int CLOSED = -1;
+
+        final String path;
+        final long address;
+        final long length;
+        final long openedMillis;
+        // number of tracker actions using the mapped memory, or CLOSED
+        private final AtomicInteger users = new AtomicInteger();
+
+        TrackedBuffer(
+                final String path, final long address, final long length, final long openedMillis) {
+            this.path = path;
+            this.address = address;
+            this.length = length;
+            this.openedMillis = openedMillis;
+        }
+
+        /** @return false if the buffer is being closed, else it stays mapped until release */
+        boolean tryAcquire() {
+            while (true) {
+                final int n = users.get();
+                if (n == CLOSED) {
+                    return false;
+                }
+                if (users.compareAndSet(n, n + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            users.decrementAndGet();
+        }
+
+        /** Waits for the actions using the buffer, which hold it for one chunk at most. */
+        void awaitClose() {
+            while (!users.compareAndSet(0, CLOSED)) {
+                Thread.yield();
             }
         }
     }
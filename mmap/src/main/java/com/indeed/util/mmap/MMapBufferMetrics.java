@@ -0,0 +1,62 @@
+package com.indeed.util.mmap;
+
+import com.google.common.collect.ImmutableMap;
+import com.indeed.util.varexport.Export;
+import com.indeed.util.varexport.VarExporter;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Mapping statistics for the open {@link MMapBuffer}s and {@link DynamicMMapBufferDataOutputStream}
+ * files, exported to the {@value #NAMESPACE} varexport namespace. Tracking is on by default and
+ * only costs a concurrent map update per open and close. It can be turned off with
+ * -Dcom.indeed.util.mmap.MMapBuffer.enableTracking=false, in which case nothing is exported.
+ */
+public final class MMapBufferMetrics {
+    public static final String NAMESPACE = "mmap";
+
+    private static final AtomicBoolean exported = new AtomicBoolean();
+
+    private MMapBufferMetrics() {}
+
+    static void export() {
+        if (exported.compareAndSet(false, true)) {
+            VarExporter.forNamespace(NAMESPACE).export(MMapBufferMetrics.class, "");
+        }
+    }
+
+    @Export(name = "mmap-open-count", doc = "Number of open MMapBuffers")
+    public static int getOpenCount() {
+        final MMapBuffer.Tracker tracker = MMapBuffer.openBuffersTracker;
+        return tracker == null ? 0 : tracker.getOpenCount();
+    }
+
+    @Export(name = "mmap-mapped-bytes", doc = "Total bytes mapped by open MMapBuffers")
+    public static long getMappedBytes() {
+        final MMapBuffer.Tracker tracker = MMapBuffer.openBuffersTracker;
+        return tracker == null ? 0 : tracker.getMappedBytes();
+    }
+
+    @Export(name = "mmap-mapped-bytes-by-file", doc = "Bytes mapped by open MMapBuffers per file")
+    public static ImmutableMap<String, Long> getMappedBytesByFile() {
+        final MMapBuffer.Tracker tracker = MMapBuffer.openBuffersTracker;
+        return tracker == null ? ImmutableMap.<String, Long>of() : tracker.getMappedBytesByFile();
+    }
+
+    @Export(
+            name = "mmap-resident-bytes",
+            doc = "Bytes of open MMapBuffers resident in the page cache, according to mincore",
+            cacheTimeoutMs = 10000)
+    public static long getResidentBytes() {
+        final MMapBuffer.Tracker tracker = MMapBuffer.openBuffersTracker;
+        return tracker == null ? 0 : tracker.getResidentBytes();
+    }
+
+    @Export(
+            name = "mmap-oldest-open-age-seconds",
+            doc = "Seconds since the longest open MMapBuffer was mapped, a hint for leaked buffers")
+    public static long getOldestOpenAgeSeconds() {
+        final MMapBuffer.Tracker tracker = MMapBuffer.openBuffersTracker;
+        return tracker == null ? 0 : tracker.getOldestOpenAgeMillis() / 1000;
+    }
+}
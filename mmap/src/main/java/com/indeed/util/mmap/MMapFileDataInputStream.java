@@ -0,0 +1,234 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.io.RandomAccessDataInput;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Memory mapped replacement for {@link com.indeed.util.io.BufferedFileDataInputStream}. The whole
+ * file is mapped once, so a seek only moves the position and reads after it never make a system
+ * call, which makes it much faster for readers that jump around a large file. Files larger than
+ * 2GB are fine, the mapping is addressed with longs.
+ *
+ * <p>Reads past the end of the file throw {@link EOFException}, like the buffered stream does.
+ * Strings read with {@link #readUTF()} have a big endian length regardless of the byte order, as
+ * they do in the buffered stream.
+ */
+public final class MMapFileDataInputStream extends InputStream implements RandomAccessDataInput {
+    private final MMapBuffer buffer;
+    private final DirectMemory memory;
+    private final MemoryDataInput in;
+    private final long length;
+
+    public MMapFileDataInputStream(final File file) throws IOException {
+        this(file.toPath());
+    }
+
+    public MMapFileDataInputStream(final File file, final ByteOrder order) throws IOException {
+        this(file.toPath(), order);
+    }
+
+    public MMapFileDataInputStream(final Path path) throws IOException {
+        this(path, ByteOrder.BIG_ENDIAN);
+    }
+
+    public MMapFileDataInputStream(final Path path, final ByteOrder order) throws IOException {
+        this(path, order, MappingOptions.DEFAULT);
+    }
+
+    /** @param options e.g. {@link Advice#RANDOM} for scattered reads over a large file */
+    public MMapFileDataInputStream(
+            final Path path, final ByteOrder order, final MappingOptions options)
+            throws IOException {
+        buffer =
+                new MMapBuffer(
+                        path, 0, Files.size(path), FileChannel.MapMode.READ_ONLY, order, options);
+        memory = buffer.memory();
+        in = new MemoryDataInput(memory);
+        length = memory.length();
+    }
+
+    private void require(final long bytes) throws EOFException {
+        if (bytes > length - in.position()) {
+            throw new EOFException(
+                    "reading " + bytes + " bytes at " + in.position() + " of " + length);
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (in.position() >= length) {
+            return -1;
+        }
+        return in.readUnsignedByte();
+    }
+
+    @Override
+    public int read(final byte[] b, final int off, final int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (len == 0) {
+            return 0;
+        }
+        final long remaining = length - in.position();
+        if (remaining <= 0) {
+            return -1;
+        }
+        final int n = (int) Math.min(len, remaining);
+        in.readFully(b, off, n);
+        return n;
+    }
+
+    @Override
+    public long skip(final long n) throws IOException {
+        final long skipped = Math.max(0, Math.min(n, length - in.position()));
+        in.seek(in.position() + skipped);
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        return (int) Math.min(Integer.MAX_VALUE, Math.max(0, length - in.position()));
+    }
+
+    @Override
+    public long position() {
+        return in.position();
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public void seek(final long position) throws IOException {
+        if (position < 0) {
+            throw new IOException("negative seek position: " + position);
+        }
+        in.seek(position);
+    }
+
+    /** @return the mapped file, valid until this stream is closed */
+    public DirectMemory memory() {
+        return memory;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.close();
+    }
+
+    @Override
+    public void readFully(final byte[] b) throws IOException {
+        readFully(b, 0, b.length);
+    }
+
+    @Override
+    public void readFully(final byte[] b, final int off, final int len) throws IOException {
+        require(len);
+        in.readFully(b, off, len);
+    }
+
+    @Override
+    public int skipBytes(final int n) throws IOException {
+        return (int) skip(n);
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        require(1);
+        return in.readBoolean();
+    }
+
+    @Override
+    public byte readByte() throws IOException {
+        require(1);
+        return in.readByte();
+    }
+
+    @Override
+    public int readUnsignedByte() throws IOException {
+        require(1);
+        return in.readUnsignedByte();
+    }
+
+    @Override
+    public short readShort() throws IOException {
+        require(2);
+        return in.readShort();
+    }
+
+    @Override
+    public int readUnsignedShort() throws IOException {
+        require(2);
+        return in.readUnsignedShort();
+    }
+
+    @Override
+    public char readChar() throws IOException {
+        require(2);
+        return in.readChar();
+    }
+
+    @Override
+    public int readInt() throws IOException {
+        require(4);
+        return in.readInt();
+    }
+
+    @Override
+    public long readLong() throws IOException {
+        require(8);
+        return in.readLong();
+    }
+
+    @Override
+    public float readFloat() throws IOException {
+        require(4);
+        return in.readFloat();
+    }
+
+    @Override
+    public double readDouble() throws IOException {
+        require(8);
+        return in.readDouble();
+    }
+
+    /** Same as {@link DataInputStream#readLine()}, bytes are read as Latin-1 characters. */
+    @Override
+    public String readLine() throws IOException {
+        if (in.position() >= length) {
+            return null;
+        }
+        final StringBuilder line = new StringBuilder();
+        while (in.position() < length) {
+            final int c = in.readUnsignedByte();
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                if (in.position() < length && memory.getByte(in.position()) == '\n') {
+                    in.seek(in.position() + 1);
+                }
+                break;
+            }
+            line.append((char) c);
+        }
+        return line.toString();
+    }
+
+    @Override
+    public String readUTF() throws IOException {
+        return new DataInputStream(this).readUTF();
+    }
+}
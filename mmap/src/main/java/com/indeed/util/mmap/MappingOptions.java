@@ -0,0 +1,130 @@
+package com.indeed.util.mmap;
+
+/**
+ * Extra flags used when mapping a file with {@link MMapBuffer}. These let the caller trade load
+ * time against first access latency per file, e.g. populating an index that will be queried
+ * right away versus lazily faulting in a rarely used one.
+ *
+ * <p>Copy on write mappings are requested with {@link
+ * java.nio.channels.FileChannel.MapMode#PRIVATE} rather than an option.
+ *
+ * <pre>
+ *   final MMapBuffer buffer = new MMapBuffer(
+ *           path,
+ *           FileChannel.MapMode.READ_ONLY,
+ *           ByteOrder.LITTLE_ENDIAN,
+ *           MappingOptions.builder().setPopulate(true).setAdvice(Advice.RANDOM).build());
+ * </pre>
+ */
+public final class MappingOptions {
+
+    public static final MappingOptions DEFAULT = builder().build();
+
+    private final boolean populate;
+    private final boolean noReserve;
+    private final boolean hugePages;
+    private final Advice advice;
+
+    private MappingOptions(
+            final boolean populate,
+            final boolean noReserve,
+            final boolean hugePages,
+            final Advice advice) {
+        this.populate = populate;
+        this.noReserve = noReserve;
+        this.hugePages = hugePages;
+        this.advice = advice;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** @return true if all pages are faulted in when the file is mapped (MAP_POPULATE) */
+    public boolean isPopulate() {
+        return populate;
+    }
+
+    /** @return true if no swap space is reserved for the mapping (MAP_NORESERVE) */
+    public boolean isNoReserve() {
+        return noReserve;
+    }
+
+    /** @return true if the mapping is advised to use transparent huge pages (MADV_HUGEPAGE) */
+    public boolean isHugePages() {
+        return hugePages;
+    }
+
+    /** @return the access pattern advice applied to the whole mapping, or null for none */
+    public Advice getAdvice() {
+        return advice;
+    }
+
+    int mmapFlags() {
+        int flags = 0;
+        if (populate) {
+            flags |= MMapBuffer.MAP_POPULATE;
+        }
+        if (noReserve) {
+            flags |= MMapBuffer.MAP_NORESERVE;
+        }
+        return flags;
+    }
+
+    @Override
+    public String toString() {
+        return "MappingOptions{"
+                + "populate="
+                + populate
+                + ", noReserve="
+                + noReserve
+                + ", hugePages="
+                + hugePages
+                + ", advice="
+                + advice
+                + '}';
+    }
+
+    public static final class Builder {
+        private boolean populate = false;
+        private boolean noReserve = false;
+        private boolean hugePages = false;
+        private Advice advice = null;
+
+        private Builder() {}
+
+        /**
+         * Fault in the whole file while mapping it, so the constructor pays the page faults
+         * instead of the first queries.
+         */
+        public Builder setPopulate(final boolean populate) {
+            this.populate = populate;
+            return this;
+        }
+
+        /** Do not reserve swap space for writable private mappings. */
+        public Builder setNoReserve(final boolean noReserve) {
+            this.noReserve = noReserve;
+            return this;
+        }
+
+        /** Ask the kernel to back the mapping with transparent huge pages. */
+        public Builder setHugePages(final boolean hugePages) {
+            this.hugePages = hugePages;
+            return this;
+        }
+
+        /** Access pattern advice for the whole mapping, null for the kernel default. */
+        public Builder setAdvice(final Advice advice) {
+            if (advice == Advice.HUGEPAGE) {
+                throw new IllegalArgumentException("use setHugePages(true) for huge pages");
+            }
+            this.advice = advice;
+            return this;
+        }
+
+        public MappingOptions build() {
+            return new MappingOptions(populate, noReserve, hugePages, advice);
+        }
+    }
+}
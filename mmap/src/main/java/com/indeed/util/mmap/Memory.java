@@ -34,6 +34,33 @@ public interface Memory {
 
     public void putDouble(final long l, final double v);
 
+    // Atomic accessors, for memory shared between threads or processes. The position has to be
+    // aligned to the size of the value.
+
+    public int getIntVolatile(final long l);
+
+    public void putIntVolatile(final long l, final int i);
+
+    /** Writes without a full fence, writes before it are seen by a later getIntVolatile. */
+    public void putIntOrdered(final long l, final int i);
+
+    public boolean compareAndSwapInt(final long l, final int expected, final int i);
+
+    /** @return the value before delta was added */
+    public int getAndAddInt(final long l, final int delta);
+
+    public long getLongVolatile(final long l);
+
+    public void putLongVolatile(final long l, final long l1);
+
+    /** Writes without a full fence, writes before it are seen by a later getLongVolatile. */
+    public void putLongOrdered(final long l, final long l1);
+
+    public boolean compareAndSwapLong(final long l, final long expected, final long l1);
+
+    /** @return the value before delta was added */
+    public long getAndAddLong(final long l, final long delta);
+
     public void putBytes(final long l, final byte[] bytes);
 
     public void putBytes(final long l, final byte[] bytes, final int start, final int length);
@@ -54,6 +81,30 @@ public interface Memory {
 
     public void getBytes(final long l, final ByteBuffer dest);
 
+    public void getShorts(final long l, final short[] shorts, final int start, final int length);
+
+    public void putShorts(final long l, final short[] shorts, final int start, final int length);
+
+    public void getChars(final long l, final char[] chars, final int start, final int length);
+
+    public void putChars(final long l, final char[] chars, final int start, final int length);
+
+    public void getInts(final long l, final int[] ints, final int start, final int length);
+
+    public void putInts(final long l, final int[] ints, final int start, final int length);
+
+    public void getLongs(final long l, final long[] longs, final int start, final int length);
+
+    public void putLongs(final long l, final long[] longs, final int start, final int length);
+
+    public void getFloats(final long l, final float[] floats, final int start, final int length);
+
+    public void putFloats(final long l, final float[] floats, final int start, final int length);
+
+    public void getDoubles(final long l, final double[] doubles, final int start, final int length);
+
+    public void putDoubles(final long l, final double[] doubles, final int start, final int length);
+
     public Memory slice(long startAddress, long sliceLength);
 
     public ByteArray byteArray(long start, long numBytes);
@@ -0,0 +1,450 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.indeed.util.io.ParallelCrc32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.Checksum;
+
+/**
+ * Checksums and hashes computed directly over a range of {@link Memory}, e.g. to verify a multi GB
+ * memory mapped file without streaming it through heap buffers.
+ *
+ * <p>CRC32 and CRC32C results are the standard ones and can be combined: the checksum of a range
+ * is {@link #crc32Combine(long, long, long)} of the checksums of its two halves, which is what the
+ * parallel overloads do. xxHash64 and MurmurHash64A can't be combined, {@link
+ * #xxHash64Chunked(Memory, long, long, long, long, ExecutorService, ProgressListener)} hashes the
+ * hashes of fixed size chunks instead, so its results depend on the chunk size.
+ *
+ * <p>Direct memory is handed to the JDK's CRC32 and, on Java 9 and later, CRC32C implementations
+ * as ByteBuffer views, so that their hardware accelerated intrinsics are used. Otherwise CRC32C is
+ * computed 8 bytes at a time with lookup tables.
+ */
+public final class MemoryChecksums {
+    private static final Logger log = LoggerFactory.getLogger(MemoryChecksums.class);
+
+    private static final int CRC32C_POLY = 0x82f63b78;
+    private static final int[][] CRC32C_TABLE = crcTable(CRC32C_POLY);
+
+    private static final Constructor<? extends Checksum> JDK_CRC32C;
+    private static final Method JDK_CRC32C_UPDATE;
+
+    static {
+        Constructor<? extends Checksum> constructor = null;
+        Method update = null;
+        try {
+            final Class<? extends Checksum> crc32c =
+                    Class.forName("java.util.zip.CRC32C").asSubclass(Checksum.class);
+            constructor = crc32c.getDeclaredConstructor();
+            update = crc32c.getMethod("update", ByteBuffer.class);
+        } catch (ClassNotFoundException | NoSuchMethodException e) {
+            log.debug("java.util.zip.CRC32C is not available, using table driven CRC32C");
+            constructor = null;
+        }
+        JDK_CRC32C = constructor;
+        JDK_CRC32C_UPDATE = update;
+    }
+
+    private static final int COPY_BUFFER_SIZE = 65536;
+
+    private static final long XXH_PRIME1 = 0x9e3779b185ebca87L;
+    private static final long XXH_PRIME2 = 0xc2b2ae3d27d4eb4fL;
+    private static final long XXH_PRIME3 = 0x165667b19e3779f9L;
+    private static final long XXH_PRIME4 = 0x85ebca77c2b2ae63L;
+    private static final long XXH_PRIME5 = 0x27d4eb2f165667c5L;
+
+    private static final long MURMUR_M = 0xc6a4a7935bd1e995L;
+    private static final int MURMUR_R = 47;
+
+    private MemoryChecksums() {}
+
+    /** Receives the progress of a checksum over a large range, possibly from several threads. */
+    public interface ProgressListener {
+        void chunkDone(long bytes, long elapsedNanos);
+    }
+
+    /** @return the CRC32 of [offset, offset + length), as {@link CRC32#getValue()} */
+    public static long crc32(final Memory memory, final long offset, final long length) {
+        checkRange(memory, offset, length);
+        final CRC32 crc = new CRC32();
+        update(crc, memory, offset, length);
+        return crc.getValue();
+    }
+
+    /** @return the CRC32C (Castagnoli) of [offset, offset + length), as a 32 bit unsigned value */
+    public static long crc32c(final Memory memory, final long offset, final long length) {
+        checkRange(memory, offset, length);
+        if (JDK_CRC32C != null && memory.isDirect() && DirectByteBuffers.isWrapSupported()) {
+            try {
+                final Checksum crc = JDK_CRC32C.newInstance();
+                for (final ByteBuffer buffer :
+                        ((DirectMemory) memory).asByteBuffers(offset, length)) {
+                    JDK_CRC32C_UPDATE.invoke(crc, buffer);
+                }
+                return crc.getValue();
+            } catch (InstantiationException | IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            } catch (InvocationTargetException e) {
+                throw Throwables.propagate(e.getCause());
+            }
+        }
+        return crc32cSoftware(memory, offset, length);
+    }
+
+    /**
+     * {@link #crc32(Memory, long, long)} computed in chunks of chunkSize bytes on executor. The
+     * result is the same as the sequential one.
+     *
+     * @param listener called after every chunk, may be null
+     */
+    public static long crc32(
+            final Memory memory,
+            final long offset,
+            final long length,
+            final long chunkSize,
+            final ExecutorService executor,
+            final ProgressListener listener)
+            throws InterruptedException {
+        final long[] crcs =
+                parallel(
+                        memory,
+                        offset,
+                        length,
+                        chunkSize,
+                        executor,
+                        listener,
+                        MemoryChecksums::crc32);
+        long crc = crcs[0];
+        for (int i = 1; i < crcs.length; i++) {
+            crc = crc32Combine(crc, crcs[i], chunkLength(length, chunkSize, i));
+        }
+        return crc;
+    }
+
+    /**
+     * {@link #crc32c(Memory, long, long)} computed in chunks of chunkSize bytes on executor. The
+     * result is the same as the sequential one.
+     *
+     * @param listener called after every chunk, may be null
+     */
+    public static long crc32c(
+            final Memory memory,
+            final long offset,
+            final long length,
+            final long chunkSize,
+            final ExecutorService executor,
+            final ProgressListener listener)
+            throws InterruptedException {
+        final long[] crcs =
+                parallel(
+                        memory,
+                        offset,
+                        length,
+                        chunkSize,
+                        executor,
+                        listener,
+                        MemoryChecksums::crc32c);
+        long crc = crcs[0];
+        for (int i = 1; i < crcs.length; i++) {
+            crc = crc32cCombine(crc, crcs[i], chunkLength(length, chunkSize, i));
+        }
+        return crc;
+    }
+
+    /**
+     * @return the CRC32 of the concatenation of two ranges given their CRC32s and the length of
+     *     the second one
+     */
+    public static long crc32Combine(final long crc1, final long crc2, final long length2) {
+        return ParallelCrc32.crc32Combine(crc1, crc2, length2);
+    }
+
+    /**
+     * @return the CRC32C of the concatenation of two ranges given their CRC32Cs and the length of
+     *     the second one
+     */
+    public static long crc32cCombine(final long crc1, final long crc2, final long length2) {
+        return ParallelCrc32.crcCombine((int) crc1, (int) crc2, length2, CRC32C_POLY)
+                & 0xffffffffL;
+    }
+
+    /** @return the 64 bit xxHash (XXH64) of [offset, offset + length) */
+    public static long xxHash64(
+            final Memory memory, final long offset, final long length, final long seed) {
+        checkRange(memory, offset, length);
+        final boolean swap = memory.getOrder() != ByteOrder.LITTLE_ENDIAN;
+        final long end = offset + length;
+        long position = offset;
+        long hash;
+        if (length >= 32) {
+            long v1 = seed + XXH_PRIME1 + XXH_PRIME2;
+            long v2 = seed + XXH_PRIME2;
+            long v3 = seed;
+            long v4 = seed - XXH_PRIME1;
+            final long limit = end - 32;
+            do {
+                v1 = xxhRound(v1, getLongLE(memory, position, swap));
+                v2 = xxhRound(v2, getLongLE(memory, position + 8, swap));
+                v3 = xxhRound(v3, getLongLE(memory, position + 16, swap));
+                v4 = xxhRound(v4, getLongLE(memory, position + 24, swap));
+                position += 32;
+            } while (position <= limit);
+            hash =
+                    Long.rotateLeft(v1, 1)
+                            + Long.rotateLeft(v2, 7)
+                            + Long.rotateLeft(v3, 12)
+                            + Long.rotateLeft(v4, 18);
+            hash = xxhMerge(hash, v1);
+            hash = xxhMerge(hash, v2);
+            hash = xxhMerge(hash, v3);
+            hash = xxhMerge(hash, v4);
+        } else {
+            hash = seed + XXH_PRIME5;
+        }
+        hash += length;
+        while (position + 8 <= end) {
+            hash ^= xxhRound(0, getLongLE(memory, position, swap));
+            hash = Long.rotateLeft(hash, 27) * XXH_PRIME1 + XXH_PRIME4;
+            position += 8;
+        }
+        if (position + 4 <= end) {
+            final int k = memory.getInt(position);
+            hash ^= ((swap ? Integer.reverseBytes(k) : k) & 0xffffffffL) * XXH_PRIME1;
+            hash = Long.rotateLeft(hash, 23) * XXH_PRIME2 + XXH_PRIME3;
+            position += 4;
+        }
+        while (position < end) {
+            hash ^= (memory.getByte(position) & 0xff) * XXH_PRIME5;
+            hash = Long.rotateLeft(hash, 11) * XXH_PRIME1;
+            position++;
+        }
+        hash ^= hash >>> 33;
+        hash *= XXH_PRIME2;
+        hash ^= hash >>> 29;
+        hash *= XXH_PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Hashes [offset, offset + length) in parallel: every chunk is hashed with {@link
+     * #xxHash64(Memory, long, long, long)}, and the result is the xxHash64 of the little endian
+     * chunk hashes. Only comparable to other results computed with the same chunk size.
+     *
+     * @param listener called after every chunk, may be null
+     */
+    public static long xxHash64Chunked(
+            final Memory memory,
+            final long offset,
+            final long length,
+            final long seed,
+            final long chunkSize,
+            final ExecutorService executor,
+            final ProgressListener listener)
+            throws InterruptedException {
+        final long[] hashes =
+                parallel(
+                        memory,
+                        offset,
+                        length,
+                        chunkSize,
+                        executor,
+                        listener,
+                        (m, o, l) -> xxHash64(m, o, l, seed));
+        final HeapMemory concatenated = new HeapMemory(hashes.length * 8, ByteOrder.LITTLE_ENDIAN);
+        concatenated.putLongs(0, hashes, 0, hashes.length);
+        return xxHash64(concatenated, 0, concatenated.length(), seed);
+    }
+
+    /**
+     * @return the 64 bit MurmurHash2 (MurmurHash64A) of [offset, offset + length), the same value
+     *     util-core's MurmurHash.hash64(byte[], int) returns for a copy of the range
+     */
+    public static long murmurHash64(
+            final Memory memory, final long offset, final long length, final int seed) {
+        checkRange(memory, offset, length);
+        final boolean swap = memory.getOrder() != ByteOrder.LITTLE_ENDIAN;
+        long hash = (seed & 0xffffffffL) ^ (length * MURMUR_M);
+        final long end = offset + (length & ~7L);
+        for (long position = offset; position < end; position += 8) {
+            long k = getLongLE(memory, position, swap);
+            k *= MURMUR_M;
+            k ^= k >>> MURMUR_R;
+            k *= MURMUR_M;
+            hash ^= k;
+            hash *= MURMUR_M;
+        }
+        final int remaining = (int) (length & 7);
+        if (remaining > 0) {
+            for (int i = remaining - 1; i >= 0; i--) {
+                hash ^= (long) (memory.getByte(end + i) & 0xff) << (8 * i);
+            }
+            hash *= MURMUR_M;
+        }
+        hash ^= hash >>> MURMUR_R;
+        hash *= MURMUR_M;
+        hash ^= hash >>> MURMUR_R;
+        return hash;
+    }
+
+    interface ChunkFunction {
+        long apply(Memory memory, long offset, long length);
+    }
+
+    /**
+     * Applies function to consecutive chunks of chunkSize bytes of [offset, offset + length) on
+     * executor, waiting for all of them. listener, if not null, is called after every chunk.
+     *
+     * @return the result for every chunk, a single chunk if length is 0
+     */
+    static long[] parallel(
+            final Memory memory,
+            final long offset,
+            final long length,
+            final long chunkSize,
+            final ExecutorService executor,
+            final ProgressListener listener,
+            final ChunkFunction function)
+            throws InterruptedException {
+        checkRange(memory, offset, length);
+        Preconditions.checkArgument(chunkSize > 0, "chunkSize must be positive");
+        final long chunks = Math.max(1, (length + chunkSize - 1) / chunkSize);
+        Preconditions.checkArgument(chunks <= Integer.MAX_VALUE, "chunkSize is too small");
+        final List<Future<Long>> futures = new ArrayList<>((int) chunks);
+        for (int i = 0; i < chunks; i++) {
+            final long chunkOffset = offset + i * chunkSize;
+            final long chunkLength = chunkLength(length, chunkSize, i);
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                final long start = System.nanoTime();
+                                final long result =
+                                        function.apply(memory, chunkOffset, chunkLength);
+                                if (listener != null) {
+                                    listener.chunkDone(chunkLength, System.nanoTime() - start);
+                                }
+                                return result;
+                            }));
+        }
+        final long[] results = new long[futures.size()];
+        try {
+            for (int i = 0; i < results.length; i++) {
+                results[i] = futures.get(i).get();
+            }
+        } catch (ExecutionException e) {
+            throw Throwables.propagate(e.getCause());
+        } finally {
+            for (final Future<Long> future : futures) {
+                future.cancel(true);
+            }
+        }
+        return results;
+    }
+
+    private static long chunkLength(final long length, final long chunkSize, final int chunk) {
+        return Math.min(chunkSize, length - chunk * chunkSize);
+    }
+
+    static long crc32cSoftware(final Memory memory, final long offset, final long length) {
+        final boolean swap = memory.getOrder() != ByteOrder.LITTLE_ENDIAN;
+        final int[] t0 = CRC32C_TABLE[0];
+        final int[] t1 = CRC32C_TABLE[1];
+        final int[] t2 = CRC32C_TABLE[2];
+        final int[] t3 = CRC32C_TABLE[3];
+        final int[] t4 = CRC32C_TABLE[4];
+        final int[] t5 = CRC32C_TABLE[5];
+        final int[] t6 = CRC32C_TABLE[6];
+        final int[] t7 = CRC32C_TABLE[7];
+        final long end = offset + length;
+        long position = offset;
+        int crc = ~0;
+        while (position + 8 <= end) {
+            final long value = getLongLE(memory, position, swap);
+            final int low = (int) value ^ crc;
+            final int high = (int) (value >>> 32);
+            crc =
+                    t7[low & 0xff]
+                            ^ t6[(low >>> 8) & 0xff]
+                            ^ t5[(low >>> 16) & 0xff]
+                            ^ t4[low >>> 24]
+                            ^ t3[high & 0xff]
+                            ^ t2[(high >>> 8) & 0xff]
+                            ^ t1[(high >>> 16) & 0xff]
+                            ^ t0[high >>> 24];
+            position += 8;
+        }
+        while (position < end) {
+            crc = (crc >>> 8) ^ t0[(crc ^ memory.getByte(position)) & 0xff];
+            position++;
+        }
+        return ~crc & 0xffffffffL;
+    }
+
+    private static void update(
+            final CRC32 checksum, final Memory memory, final long offset, final long length) {
+        if (memory.isDirect() && DirectByteBuffers.isWrapSupported()) {
+            for (final ByteBuffer buffer : ((DirectMemory) memory).asByteBuffers(offset, length)) {
+                checksum.update(buffer);
+            }
+            return;
+        }
+        final byte[] bytes = new byte[(int) Math.min(length, COPY_BUFFER_SIZE)];
+        for (long position = 0; position < length; position += bytes.length) {
+            final int n = (int) Math.min(bytes.length, length - position);
+            memory.getBytes(offset + position, bytes, 0, n);
+            checksum.update(bytes, 0, n);
+        }
+    }
+
+    private static long getLongLE(final Memory memory, final long position, final boolean swap) {
+        final long value = memory.getLong(position);
+        return swap ? Long.reverseBytes(value) : value;
+    }
+
+    private static long xxhRound(long accumulator, final long input) {
+        accumulator += input * XXH_PRIME2;
+        accumulator = Long.rotateLeft(accumulator, 31);
+        return accumulator * XXH_PRIME1;
+    }
+
+    private static long xxhMerge(final long hash, final long value) {
+        return (hash ^ xxhRound(0, value)) * XXH_PRIME1 + XXH_PRIME4;
+    }
+
+    private static int[][] crcTable(final int poly) {
+        final int[][] table = new int[8][256];
+        for (int i = 0; i < 256; i++) {
+            int crc = i;
+            for (int k = 0; k < 8; k++) {
+                crc = (crc & 1) != 0 ? (crc >>> 1) ^ poly : crc >>> 1;
+            }
+            table[0][i] = crc;
+        }
+        for (int i = 0; i < 256; i++) {
+            for (int t = 1; t < 8; t++) {
+                table[t][i] = (table[t - 1][i] >>> 8) ^ table[0][table[t - 1][i] & 0xff];
+            }
+        }
+        return table;
+    }
+
+    private static void checkRange(final Memory memory, final long offset, final long length) {
+        if (offset < 0 || length < 0 || offset > memory.length() - length) {
+            throw new IndexOutOfBoundsException(
+                    "offset: " + offset + " length: " + length + " size: " + memory.length());
+        }
+    }
+}
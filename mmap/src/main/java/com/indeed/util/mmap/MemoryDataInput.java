@@ -1,26 +1,56 @@
 package com.indeed.util.mmap;
 
+import com.indeed.util.unsafe.IndeedUnsafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.DataInput;
 import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.CharBuffer;
 
 /**
  * DataInput for memory with same endianness as underlying memory.
  *
+ * <p>Also reads the variable length ints written by {@link com.indeed.util.io.VIntUtils} and UTF-8
+ * strings. Over {@link DirectMemory} these decode straight from the native address once the range
+ * has been bounds checked, instead of making a checked call per byte.
+ *
  * @author jplaisance
  */
 public final class MemoryDataInput implements DataInput {
 
     private static final Logger log = LoggerFactory.getLogger(MemoryDataInput.class);
 
+    private static final int MAX_VINT_LENGTH = 5;
+    private static final int MAX_VLONG_LENGTH = 10;
+
     private final Memory memory;
 
+    // lets the decoding methods read a direct buffer without going through the Memory interface
+    private final boolean direct;
+    private final long address;
+
     private long position = 0;
 
+    private StringBuilder utfBuilder = null;
+
     public MemoryDataInput(final Memory memory) {
         this.memory = memory;
+        direct = memory.isDirect();
+        address = direct ? ((DirectMemory) memory).getAddress() : 0;
+    }
+
+    /** Reads the byte at p, which must have been bounds checked already. */
+    private byte byteAt(final long p) {
+        return direct ? IndeedUnsafe.getByte(address + p) : memory.getByte(p);
+    }
+
+    private void checkRemaining(final long length) {
+        if (length < 0 || length > memory.length() - position) {
+            throw new IndexOutOfBoundsException(
+                    "position: " + position + " length: " + length + " size: " + memory.length());
+        }
     }
 
     @Override
@@ -102,14 +132,264 @@ public final class MemoryDataInput implements DataInput {
         return ret;
     }
 
+    /** Reads bytes as Latin-1 characters up to the next line terminator, like DataInputStream. */
     @Override
     public String readLine() throws IOException {
-        throw new UnsupportedOperationException();
+        final long length = memory.length();
+        if (position >= length) {
+            return null;
+        }
+        final StringBuilder line = new StringBuilder();
+        while (position < length) {
+            final int c = byteAt(position++) & 0xFF;
+            if (c == '\n') {
+                break;
+            }
+            if (c == '\r') {
+                if (position < length && byteAt(position) == '\n') {
+                    position++;
+                }
+                break;
+            }
+            line.append((char) c);
+        }
+        return line.toString();
     }
 
+    /**
+     * Reads a string in the modified UTF-8 format of {@link DataInput#readUTF()}. The length
+     * prefix is read in the byte order of the memory.
+     */
     @Override
     public String readUTF() throws IOException {
-        throw new UnsupportedOperationException();
+        final int length = readUnsignedShort();
+        checkRemaining(length);
+        if (utfBuilder == null) {
+            utfBuilder = new StringBuilder(length);
+        }
+        utfBuilder.setLength(0);
+        final long end = position + length;
+        while (position < end) {
+            final int c = decodeChar(end, true);
+            if (c < 0) {
+                throw new UTFDataFormatException("malformed input at " + position);
+            }
+            appendCodePoint(utfBuilder, c);
+        }
+        return utfBuilder.toString();
+    }
+
+    /**
+     * Decodes length bytes of UTF-8 and appends them to dest. Every byte of a malformed sequence is
+     * replaced with U+FFFD.
+     *
+     * @return the number of chars appended
+     */
+    public int readUTF8Into(final int length, final StringBuilder dest) {
+        checkRemaining(length);
+        final long end = position + length;
+        final int start = dest.length();
+        while (position < end) {
+            final int c = decodeChar(end, false);
+            appendCodePoint(dest, c < 0 ? 0xFFFD : c);
+        }
+        return dest.length() - start;
+    }
+
+    /**
+     * Decodes length bytes of UTF-8 into dest. Every byte of a malformed sequence is replaced with
+     * U+FFFD.
+     *
+     * @return the number of chars put into dest
+     * @throws java.nio.BufferOverflowException if dest fills up, leaving the position of this
+     *     input and of dest somewhere in the string
+     */
+    public int readUTF8Into(final int length, final CharBuffer dest) {
+        checkRemaining(length);
+        final long end = position + length;
+        final int start = dest.position();
+        while (position < end) {
+            int c = decodeChar(end, false);
+            if (c < 0) {
+                c = 0xFFFD;
+            }
+            if (c < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                dest.put((char) c);
+            } else {
+                dest.put(Character.highSurrogate(c));
+                dest.put(Character.lowSurrogate(c));
+            }
+        }
+        return dest.position() - start;
+    }
+
+    private static void appendCodePoint(final StringBuilder dest, final int c) {
+        if (c < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+            dest.append((char) c);
+        } else {
+            dest.append(Character.highSurrogate(c)).append(Character.lowSurrogate(c));
+        }
+    }
+
+    /**
+     * Decodes the character at position, which is before end, and moves past it. Modified UTF-8
+     * allows the overlong encoding of 0 and encodes supplementary characters as two 3 byte
+     * surrogates, while standard UTF-8 rejects both.
+     *
+     * @return the code point, or -1 if the input is malformed, in which case one byte is skipped
+     */
+    private int decodeChar(final long end, final boolean modified) {
+        final int b0 = byteAt(position);
+        if (b0 >= 0) {
+            position++;
+            return b0;
+        }
+        final int length;
+        final int min;
+        int c;
+        if ((b0 & 0xE0) == 0xC0) {
+            length = 2;
+            min = modified ? 0 : 0x80;
+            c = b0 & 0x1F;
+        } else if ((b0 & 0xF0) == 0xE0) {
+            length = 3;
+            min = 0x800;
+            c = b0 & 0x0F;
+        } else if ((b0 & 0xF8) == 0xF0 && !modified) {
+            length = 4;
+            min = 0x10000;
+            c = b0 & 0x07;
+        } else {
+            position++;
+            return -1;
+        }
+        if (end - position < length) {
+            position++;
+            return -1;
+        }
+        for (int i = 1; i < length; i++) {
+            final int b = byteAt(position + i);
+            if ((b & 0xC0) != 0x80) {
+                position++;
+                return -1;
+            }
+            c = (c << 6) | (b & 0x3F);
+        }
+        if (c < min
+                || c > Character.MAX_CODE_POINT
+                || (!modified && c >= Character.MIN_SURROGATE && c <= Character.MAX_SURROGATE)) {
+            position++;
+            return -1;
+        }
+        position += length;
+        return c;
+    }
+
+    /** Reads an int written by {@link com.indeed.util.io.VIntUtils#writeVInt}. */
+    public int readVInt() {
+        if (memory.length() - position < MAX_VINT_LENGTH) {
+            return readVIntChecked();
+        }
+        long p = position;
+        byte b = byteAt(p++);
+        int i = b & 0x7F;
+        for (int shift = 7; b < 0 && shift < 35; shift += 7) {
+            b = byteAt(p++);
+            i |= (b & 0x7F) << shift;
+        }
+        position = p;
+        return i;
+    }
+
+    private int readVIntChecked() {
+        byte b = memory.getByte(position++);
+        int i = b & 0x7F;
+        for (int shift = 7; b < 0 && shift < 35; shift += 7) {
+            b = memory.getByte(position++);
+            i |= (b & 0x7F) << shift;
+        }
+        return i;
+    }
+
+    /** Reads a long written by {@link com.indeed.util.io.VIntUtils#writeVInt64}. */
+    public long readVLong() {
+        if (memory.length() - position < MAX_VLONG_LENGTH) {
+            return readVLongChecked();
+        }
+        long p = position;
+        byte b = byteAt(p++);
+        long i = b & 0x7F;
+        for (int shift = 7; b < 0 && shift < 70; shift += 7) {
+            b = byteAt(p++);
+            i |= (b & 0x7FL) << shift;
+        }
+        position = p;
+        return i;
+    }
+
+    private long readVLongChecked() {
+        byte b = memory.getByte(position++);
+        long i = b & 0x7F;
+        for (int shift = 7; b < 0 && shift < 70; shift += 7) {
+            b = memory.getByte(position++);
+            i |= (b & 0x7FL) << shift;
+        }
+        return i;
+    }
+
+    /** Reads len consecutive VInts into values starting at off. */
+    public void readVInts(final int[] values, final int off, final int len) {
+        if (off < 0 || len < 0 || len > values.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        final int end = off + len;
+        int i = off;
+        // each VInt is at most 5 bytes, so the bounds only have to be checked once per batch
+        while (i < end) {
+            final long batch = Math.min(end - i, (memory.length() - position) / MAX_VINT_LENGTH);
+            if (batch == 0) {
+                values[i++] = readVIntChecked();
+                continue;
+            }
+            long p = position;
+            for (final long batchEnd = i + batch; i < batchEnd; i++) {
+                byte b = byteAt(p++);
+                int v = b & 0x7F;
+                for (int shift = 7; b < 0 && shift < 35; shift += 7) {
+                    b = byteAt(p++);
+                    v |= (b & 0x7F) << shift;
+                }
+                values[i] = v;
+            }
+            position = p;
+        }
+    }
+
+    /** Reads len consecutive VInt64s into values starting at off. */
+    public void readVLongs(final long[] values, final int off, final int len) {
+        if (off < 0 || len < 0 || len > values.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        final int end = off + len;
+        int i = off;
+        while (i < end) {
+            final long batch = Math.min(end - i, (memory.length() - position) / MAX_VLONG_LENGTH);
+            if (batch == 0) {
+                values[i++] = readVLongChecked();
+                continue;
+            }
+            long p = position;
+            for (final long batchEnd = i + batch; i < batchEnd; i++) {
+                byte b = byteAt(p++);
+                long v = b & 0x7F;
+                for (int shift = 7; b < 0 && shift < 70; shift += 7) {
+                    b = byteAt(p++);
+                    v |= (b & 0x7FL) << shift;
+                }
+                values[i] = v;
+            }
+            position = p;
+        }
     }
 
     public void seek(long position) {
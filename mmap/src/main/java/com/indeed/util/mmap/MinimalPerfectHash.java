@@ -0,0 +1,124 @@
+package com.indeed.util.mmap;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import static com.indeed.util.mmap.MinimalPerfectHashWriter.FOOTER_SIZE;
+import static com.indeed.util.mmap.MinimalPerfectHashWriter.MAGIC;
+
+/**
+ * Minimal perfect hash function built by {@link MinimalPerfectHashWriter}. It maps each of the n
+ * keys it was built from to a distinct slot in [0, n), so a static table can be stored as a plain
+ * array indexed by slot instead of being binary searched.
+ *
+ * <p>The function is a BBHash style cascade of bit arrays. A key is hashed to a position in each
+ * level in turn until it hits a set bit, and its slot is the number of set bits before that one.
+ * With the default gamma of 2 about 60% of the keys are found in the first level, in which case a
+ * lookup reads one 64 byte block of bits and one rank sample. Keys are hashed with MurmurHash64A
+ * like util-core's MurmurHash.hash64(byte[], int), with the seed chosen at build time.
+ *
+ * <p>Keys that were not in the set map to an arbitrary slot or to -1, so callers that can be asked
+ * for unknown keys must store the key or a fingerprint of it in the slot and compare. Instances
+ * are safe to use from multiple threads.
+ */
+public final class MinimalPerfectHash {
+    /** words covered by a rank sample, a cache line. */
+    static final int RANK_BLOCK_WORDS = 8;
+
+    private final Memory memory;
+    private final long size;
+    private final int seed;
+    private final long ranksOffset;
+    private final long[] levelWordOffsets;
+    private final long[] levelBits;
+
+    public MinimalPerfectHash(final Memory memory) {
+        this.memory = memory;
+        final long length = memory.length();
+        if (length < FOOTER_SIZE || memory.getInt(length - 4) != MAGIC) {
+            throw new IllegalArgumentException("not a minimal perfect hash, or the wrong order");
+        }
+        ranksOffset = memory.getLong(length - 40);
+        final long levelsOffset = memory.getLong(length - 32);
+        size = memory.getLong(length - 24);
+        final int levelCount = memory.getInt(length - 16);
+        seed = memory.getInt(length - 12);
+        if (levelCount < 0
+                || levelsOffset < 0
+                || levelsOffset + levelCount * 16L > length - FOOTER_SIZE
+                || ranksOffset < 0
+                || ranksOffset > levelsOffset) {
+            throw new IllegalArgumentException("corrupt minimal perfect hash footer");
+        }
+        levelWordOffsets = new long[levelCount];
+        levelBits = new long[levelCount];
+        for (int i = 0; i < levelCount; i++) {
+            levelWordOffsets[i] = memory.getLong(levelsOffset + i * 16L);
+            levelBits[i] = memory.getLong(levelsOffset + i * 16L + 8);
+        }
+    }
+
+    /** @return the number of keys, which is also the number of slots */
+    public long size() {
+        return size;
+    }
+
+    public int getSeed() {
+        return seed;
+    }
+
+    public int getLevelCount() {
+        return levelWordOffsets.length;
+    }
+
+    public long get(final String key) {
+        return get(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** @return the slot of key, or -1 for some keys that were not in the set */
+    public long get(final byte[] key) {
+        return getByHash(hash(new HeapMemory(key, ByteOrder.LITTLE_ENDIAN), 0, key.length, seed));
+    }
+
+    /** Looks up the bytes [offset, offset + length) of memory, e.g. a key in another mapping. */
+    public long get(final Memory key, final long offset, final long length) {
+        return getByHash(hash(key, offset, length, seed));
+    }
+
+    private long getByHash(final long hash) {
+        for (int level = 0; level < levelWordOffsets.length; level++) {
+            final long position = levelPosition(hash, level, levelBits[level]);
+            final long word = levelWordOffsets[level] + (position >>> 6);
+            final long bits = memory.getLong(word * 8);
+            final long mask = 1L << position;
+            if ((bits & mask) != 0) {
+                return rank(word) + Long.bitCount(bits & (mask - 1));
+            }
+        }
+        return -1;
+    }
+
+    /** @return the number of set bits in the words before word */
+    private long rank(final long word) {
+        final long block = word / RANK_BLOCK_WORDS;
+        long rank = memory.getLong(ranksOffset + block * 8);
+        for (long w = block * RANK_BLOCK_WORDS; w < word; w++) {
+            rank += Long.bitCount(memory.getLong(w * 8));
+        }
+        return rank;
+    }
+
+    static long hash(final Memory key, final long offset, final long length, final int seed) {
+        return MemoryChecksums.murmurHash64(key, offset, length, seed);
+    }
+
+    /** @return the position of the key with the given hash in a level of levelBits bits */
+    static long levelPosition(final long hash, final int level, final long levelBits) {
+        // the murmur3 finalizer, so that every level sees independent bits of the hash
+        long x = hash + (level + 1) * 0x9E3779B97F4A7C15L;
+        x = (x ^ (x >>> 33)) * 0xff51afd7ed558ccdL;
+        x = (x ^ (x >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        x ^= x >>> 33;
+        return Long.remainderUnsigned(x, levelBits);
+    }
+}
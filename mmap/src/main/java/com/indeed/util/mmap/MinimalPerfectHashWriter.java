@@ -0,0 +1,433 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.indeed.util.unsafe.IndeedUnsafe;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Builds a {@link MinimalPerfectHash} for a set of distinct keys. Keys are reduced to their 64 bit
+ * hashes as they are added, which are kept in native memory, so sets of billions of keys need 8
+ * bytes per key during the build and none of it on the heap.
+ *
+ * <p>{@link #write(DataOutput)} builds the levels one after another. Within a level the keys are
+ * hashed into the level's bit array and the colliding ones are collected for the next level in
+ * parallel chunks, setting bits with CAS. The result takes about gamma * e^(1/gamma) bits per key,
+ * 3.3 for the default gamma of 2, plus one rank sample per 512 bits.
+ *
+ * <pre>
+ *   try (MinimalPerfectHashWriter writer = MinimalPerfectHashWriter.builder().build()) {
+ *       for (final String key : keys) {
+ *           writer.add(key);
+ *       }
+ *       writer.write(file, ByteOrder.nativeOrder());
+ *   }
+ * </pre>
+ */
+public final class MinimalPerfectHashWriter implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(MinimalPerfectHashWriter.class);
+
+    static final int MAGIC = 0x4d504831; // "MPH1"
+    static final int FOOTER_SIZE = 40;
+
+    /** The seed of util-core's MurmurHash.hash64(byte[]). */
+    public static final int DEFAULT_SEED = 0xe17a1465;
+
+    // distinct keys all find a free bit long before this, only equal hashes never do
+    private static final int MAX_LEVELS = 64;
+    private static final long LEVEL_ALIGNMENT = MinimalPerfectHash.RANK_BLOCK_WORDS * 64;
+    private static final long MIN_CHUNK_SIZE = 1 << 16;
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+
+    private final double gamma;
+    private final int seed;
+    private final int parallelism;
+
+    private NativeBuffer hashes;
+    private long size = 0;
+    private boolean written = false;
+
+    private MinimalPerfectHashWriter(final double gamma, final int seed, final int parallelism) {
+        this.gamma = gamma;
+        this.seed = seed;
+        this.parallelism = parallelism;
+        hashes = new NativeBuffer(1024 * 8, ORDER);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public void add(final String key) {
+        add(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public void add(final byte[] key) {
+        addHash(
+                MinimalPerfectHash.hash(
+                        new HeapMemory(key, ByteOrder.LITTLE_ENDIAN), 0, key.length, seed));
+    }
+
+    public void add(final Memory key, final long offset, final long length) {
+        addHash(MinimalPerfectHash.hash(key, offset, length, seed));
+    }
+
+    private void addHash(final long hash) {
+        Preconditions.checkState(!written, "writer has already been written");
+        if (size * 8 == hashes.memory().length()) {
+            hashes = hashes.realloc(hashes.memory().length() * 2);
+        }
+        hashes.memory().putLong(size * 8, hash);
+        size++;
+    }
+
+    /** @return the number of keys added so far */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Builds the function and writes it to a new file, which is read by mapping it with the same
+     * byte order.
+     *
+     * @return the length of the file
+     */
+    public long write(final File file, final ByteOrder order) throws IOException {
+        try (DynamicMMapBufferDataOutputStream out =
+                DynamicMMapBufferDataOutputStream.builder(file)
+                        .setByteOrder(order)
+                        .setTruncateOnClose(true)
+                        .build()) {
+            return write(out);
+        }
+    }
+
+    /**
+     * Builds the function and writes it to out, which is not closed. Can only be called once.
+     *
+     * @return the number of bytes written
+     * @throws IllegalArgumentException if keys were added twice, or their 64 bit hashes collide,
+     *     which is unlikely unless there are billions of keys and then fixed by another seed
+     */
+    public long write(final DataOutput out) throws IOException {
+        Preconditions.checkState(!written, "writer has already been written");
+        written = true;
+        final List<NativeBuffer> levels = new ArrayList<>();
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        NativeBuffer keys = hashes;
+        hashes = null;
+        try {
+            long count = size;
+            while (count > 0) {
+                if (levels.size() == MAX_LEVELS) {
+                    throw new IllegalArgumentException(
+                            count + " keys are duplicates or have colliding hashes");
+                }
+                final long bits =
+                        roundUp(Math.max(1, (long) Math.ceil(gamma * count)), LEVEL_ALIGNMENT);
+                final NativeBuffer level = zeroed(bits / 8);
+                levels.add(level);
+                final NativeBuffer next;
+                try (NativeBuffer collisions = zeroed(bits / 8)) {
+                    next = buildLevel(pool, keys, count, levels.size() - 1, level, collisions);
+                }
+                keys.close();
+                keys = next;
+                final long remaining = next.memory().length() / 8;
+                log.debug("level " + (levels.size() - 1) + " placed " + (count - remaining));
+                count = remaining;
+            }
+            return writeLevels(out, levels);
+        } finally {
+            pool.shutdown();
+            closeQuietly(keys);
+            for (final NativeBuffer level : levels) {
+                closeQuietly(level);
+            }
+        }
+    }
+
+    /**
+     * Sets the bits of the keys that land on a bit of their own in level.
+     *
+     * @return the keys for the next level
+     */
+    private NativeBuffer buildLevel(
+            final ForkJoinPool pool,
+            final NativeBuffer keys,
+            final long count,
+            final int levelIndex,
+            final NativeBuffer level,
+            final NativeBuffer collisions)
+            throws IOException {
+        final LongArray hashArray = keys.memory().longArray(0, count);
+        final LongArray levelWords = level.memory().longArray(0, level.memory().length() / 8);
+        final LongArray collisionWords =
+                collisions.memory().longArray(0, collisions.memory().length() / 8);
+        final long bits = levelWords.length() * 64;
+
+        parallel(
+                pool,
+                count,
+                (from, to) -> {
+                    for (long i = from; i < to; i++) {
+                        final long position =
+                                MinimalPerfectHash.levelPosition(
+                                        hashArray.get(i), levelIndex, bits);
+                        if (setBit(levelWords, position)) {
+                            setBit(collisionWords, position);
+                        }
+                    }
+                    return 0;
+                });
+        parallel(
+                pool,
+                levelWords.length(),
+                (from, to) -> {
+                    for (long i = from; i < to; i++) {
+                        levelWords.set(i, levelWords.get(i) & ~collisionWords.get(i));
+                    }
+                    return 0;
+                });
+
+        // collects the keys that collided in two passes, so that each chunk knows where to copy
+        final long[] chunkCounts =
+                parallel(
+                        pool,
+                        count,
+                        (from, to) -> countCollided(hashArray, from, to, levelIndex, levelWords));
+        final long[] chunkOffsets = new long[chunkCounts.length];
+        long remaining = 0;
+        for (int i = 0; i < chunkCounts.length; i++) {
+            chunkOffsets[i] = remaining;
+            remaining += chunkCounts[i];
+        }
+        final NativeBuffer next = new NativeBuffer(Math.max(8, remaining * 8), ORDER);
+        try {
+            final LongArray nextArray = next.memory().longArray(0, remaining);
+            final long chunkSize = chunkSize(count);
+            parallel(
+                    pool,
+                    count,
+                    (from, to) -> {
+                        long out = chunkOffsets[(int) (from / chunkSize)];
+                        for (long i = from; i < to; i++) {
+                            final long hash = hashArray.get(i);
+                            if (!isSet(levelWords, levelIndex, hash)) {
+                                nextArray.set(out++, hash);
+                            }
+                        }
+                        return 0;
+                    });
+        } catch (IOException | RuntimeException e) {
+            closeQuietly(next);
+            throw e;
+        }
+        return remaining == 0 ? emptied(next) : trimmed(next, remaining);
+    }
+
+    private static long countCollided(
+            final LongArray hashArray,
+            final long from,
+            final long to,
+            final int levelIndex,
+            final LongArray levelWords) {
+        long collided = 0;
+        for (long i = from; i < to; i++) {
+            if (!isSet(levelWords, levelIndex, hashArray.get(i))) {
+                collided++;
+            }
+        }
+        return collided;
+    }
+
+    private static boolean isSet(final LongArray levelWords, final int level, final long hash) {
+        final long position =
+                MinimalPerfectHash.levelPosition(hash, level, levelWords.length() * 64);
+        return (levelWords.get(position >>> 6) & (1L << position)) != 0;
+    }
+
+    /** @return true if the bit was set already */
+    private static boolean setBit(final LongArray words, final long position) {
+        final long index = position >>> 6;
+        final long mask = 1L << position;
+        while (true) {
+            final long word = words.getVolatile(index);
+            if ((word & mask) != 0) {
+                return true;
+            }
+            if (words.compareAndSwap(index, word, word | mask)) {
+                return false;
+            }
+        }
+    }
+
+    private long writeLevels(final DataOutput out, final List<NativeBuffer> levels)
+            throws IOException {
+        long words = 0;
+        for (final NativeBuffer level : levels) {
+            final DirectMemory memory = level.memory();
+            for (long i = 0; i < memory.length(); i += 8) {
+                out.writeLong(memory.getLong(i));
+            }
+            words += memory.length() / 8;
+        }
+        final long ranksOffset = words * 8;
+        long rank = 0;
+        for (final NativeBuffer level : levels) {
+            final DirectMemory memory = level.memory();
+            for (long i = 0; i < memory.length(); i += 8) {
+                if ((i / 8) % MinimalPerfectHash.RANK_BLOCK_WORDS == 0) {
+                    out.writeLong(rank);
+                }
+                rank += Long.bitCount(memory.getLong(i));
+            }
+        }
+        if (rank != size) {
+            throw new IllegalStateException("placed " + rank + " of " + size + " keys");
+        }
+        final long levelsOffset = ranksOffset + words / MinimalPerfectHash.RANK_BLOCK_WORDS * 8;
+        long wordOffset = 0;
+        for (final NativeBuffer level : levels) {
+            final long levelWords = level.memory().length() / 8;
+            out.writeLong(wordOffset);
+            out.writeLong(levelWords * 64);
+            wordOffset += levelWords;
+        }
+        out.writeLong(ranksOffset);
+        out.writeLong(levelsOffset);
+        out.writeLong(size);
+        out.writeInt(levels.size());
+        out.writeInt(seed);
+        out.writeInt(0);
+        out.writeInt(MAGIC);
+        return levelsOffset + levels.size() * 16L + FOOTER_SIZE;
+    }
+
+    private static NativeBuffer zeroed(final long length) {
+        final NativeBuffer buffer = new NativeBuffer(length, ORDER);
+        IndeedUnsafe.setMemory(buffer.memory().getAddress(), length, (byte) 0);
+        return buffer;
+    }
+
+    private static NativeBuffer emptied(final NativeBuffer buffer) {
+        closeQuietly(buffer);
+        return new NativeBuffer(0, ORDER);
+    }
+
+    private static NativeBuffer trimmed(final NativeBuffer buffer, final long count) {
+        return buffer.memory().length() == count * 8 ? buffer : buffer.realloc(count * 8);
+    }
+
+    private static long roundUp(final long value, final long multiple) {
+        return (value + multiple - 1) / multiple * multiple;
+    }
+
+    private long chunkSize(final long length) {
+        return Math.max(MIN_CHUNK_SIZE, (length + parallelism * 4L - 1) / (parallelism * 4L));
+    }
+
+    private interface RangeFunction {
+        long apply(long from, long to);
+    }
+
+    /**
+     * Applies function to consecutive chunks of [0, length) on pool, waiting for all of them.
+     *
+     * @return the result for every chunk
+     */
+    private long[] parallel(
+            final ForkJoinPool pool, final long length, final RangeFunction function)
+            throws IOException {
+        final long chunkSize = chunkSize(length);
+        final int chunks = (int) ((length + chunkSize - 1) / chunkSize);
+        final List<ForkJoinTask<Long>> tasks = new ArrayList<>(chunks);
+        for (int i = 0; i < chunks; i++) {
+            final long from = i * chunkSize;
+            final long to = Math.min(length, from + chunkSize);
+            tasks.add(pool.submit(() -> function.apply(from, to)));
+        }
+        final long[] results = new long[chunks];
+        try {
+            for (int i = 0; i < chunks; i++) {
+                results[i] = tasks.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while building minimal perfect hash");
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("unable to build minimal perfect hash", e.getCause());
+        } finally {
+            for (final ForkJoinTask<Long> task : tasks) {
+                task.cancel(false);
+            }
+        }
+        return results;
+    }
+
+    /** Frees the keys if the writer wasn't written. */
+    @Override
+    public void close() {
+        if (hashes != null) {
+            closeQuietly(hashes);
+            hashes = null;
+        }
+        written = true;
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.error("Exception during cleanup of a Closeable, ignoring", e);
+        }
+    }
+
+    public static final class Builder {
+        private double gamma = 2.0;
+        private int seed = DEFAULT_SEED;
+        private int parallelism = Runtime.getRuntime().availableProcessors();
+
+        private Builder() {}
+
+        /**
+         * Bits per key of each level, at least 1. Larger values use more space but let more keys
+         * be found in the first level, and make building faster. Defaults to 2.
+         */
+        public Builder setGamma(final double gamma) {
+            Preconditions.checkArgument(gamma >= 1, "gamma must be at least 1");
+            this.gamma = gamma;
+            return this;
+        }
+
+        /** Seed of the MurmurHash64A the keys are hashed with. */
+        public Builder setSeed(final int seed) {
+            this.seed = seed;
+            return this;
+        }
+
+        /** Number of threads used by {@link #write(DataOutput)}, defaults to the processors. */
+        public Builder setParallelism(final int parallelism) {
+            Preconditions.checkArgument(parallelism > 0, "parallelism must be positive");
+            this.parallelism = parallelism;
+            return this;
+        }
+
+        public MinimalPerfectHashWriter build() {
+            return new MinimalPerfectHashWriter(gamma, seed, parallelism);
+        }
+    }
+}
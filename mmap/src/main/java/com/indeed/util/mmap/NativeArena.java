@@ -0,0 +1,442 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.indeed.util.unsafe.IndeedUnsafe;
+import com.indeed.util.varexport.Export;
+import com.indeed.util.varexport.VarExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Slab allocator that hands out {@link DirectMemory} carved from large {@link NativeBuffer}
+ * regions, so that code allocating many short lived buffers doesn't go to malloc for each of them.
+ *
+ * <p>{@link #allocate(long)} rounds the size up to a power of two size class. Blocks returned with
+ * {@link #free(DirectMemory)} are kept on a free list per size class and reused by the next
+ * allocation of that class. Allocations larger than the biggest size class get their own
+ * NativeBuffer. {@link #local()} returns a per thread bump allocator for scratch memory that is
+ * released all at once with {@link LocalAllocator#reset()}. A local allocator keeps one region
+ * between resets. The region goes back to the arena with {@link LocalAllocator#release()}, or once
+ * the thread has died and the arena needs another region.
+ *
+ * <p>Allocated memory is not zeroed. Everything handed out by an arena becomes invalid when the
+ * arena is closed, and freeing memory twice or memory that didn't come from {@link
+ * #allocate(long)} corrupts the arena. Instances are safe to use from multiple threads, the local
+ * allocators only from their own thread.
+ */
+public final class NativeArena implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(NativeArena.class);
+
+    private static final int MIN_BLOCK_SHIFT = 4;
+    private static final long ALIGNMENT = 8;
+
+    private final long regionSize;
+    private final int maxBlockShift;
+    private final ByteOrder order;
+    private final String varExportNamespace;
+
+    private final List<NativeBuffer> regions = new ArrayList<>();
+    private final ArrayDeque<DirectMemory> idleRegions = new ArrayDeque<>();
+    private DirectMemory slabRegion = null;
+    private long slabPosition = 0;
+    private volatile boolean closed = false;
+
+    private final Object[] freeListLocks;
+    private final long[] freeListHeads;
+    private final ConcurrentHashMap<Long, NativeBuffer> largeAllocations =
+            new ConcurrentHashMap<>();
+
+    private final ThreadLocal<LocalAllocator> localAllocators =
+            ThreadLocal.withInitial(this::newLocalAllocator);
+    // guarded by this, so that regions of threads that died can be reclaimed
+    private final List<LocalAllocator> liveLocalAllocators = new ArrayList<>();
+
+    private final LongAdder reservedBytes = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+    private final LongAdder requestedBytes = new LongAdder();
+    private final LongAdder allocationCount = new LongAdder();
+
+    private NativeArena(
+            final long regionSize,
+            final int maxBlockShift,
+            final ByteOrder order,
+            final String varExportNamespace) {
+        this.regionSize = regionSize;
+        this.maxBlockShift = maxBlockShift;
+        this.order = order;
+        this.varExportNamespace = varExportNamespace;
+        final int sizeClasses = maxBlockShift - MIN_BLOCK_SHIFT + 1;
+        freeListLocks = new Object[sizeClasses];
+        for (int i = 0; i < sizeClasses; i++) {
+            freeListLocks[i] = new Object();
+        }
+        freeListHeads = new long[sizeClasses];
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public ByteOrder getOrder() {
+        return order;
+    }
+
+    /**
+     * @return memory of exactly size bytes, which has to be returned with {@link
+     *     #free(DirectMemory)}
+     */
+    public DirectMemory allocate(final long size) {
+        Preconditions.checkArgument(size >= 0, "size must be >= 0");
+        final long blockSize;
+        final long address;
+        if (size > 1L << maxBlockShift) {
+            final NativeBuffer buffer = new NativeBuffer(size, order);
+            synchronized (this) {
+                if (closed) {
+                    closeQuietly(buffer);
+                    throw new IllegalStateException("arena is closed");
+                }
+                address = buffer.memory().getAddress();
+                largeAllocations.put(address, buffer);
+            }
+            blockSize = size;
+            reservedBytes.add(size);
+        } else {
+            final int sizeClass = sizeClass(size);
+            blockSize = 1L << (sizeClass + MIN_BLOCK_SHIFT);
+            address = takeBlock(sizeClass, blockSize);
+        }
+        allocatedBytes.add(blockSize);
+        requestedBytes.add(size);
+        allocationCount.increment();
+        return new DirectMemory(address, size, order);
+    }
+
+    /** Returns memory obtained from {@link #allocate(long)} to the arena. */
+    public void free(final DirectMemory memory) {
+        final long size = memory.length();
+        final long blockSize;
+        if (size > 1L << maxBlockShift) {
+            final NativeBuffer buffer = largeAllocations.remove(memory.getAddress());
+            if (buffer == null) {
+                throw new IllegalArgumentException("memory was not allocated by this arena");
+            }
+            closeQuietly(buffer);
+            blockSize = size;
+            reservedBytes.add(-size);
+        } else {
+            final int sizeClass = sizeClass(size);
+            blockSize = 1L << (sizeClass + MIN_BLOCK_SHIFT);
+            synchronized (freeListLocks[sizeClass]) {
+                checkOpen();
+                IndeedUnsafe.putLong(memory.getAddress(), freeListHeads[sizeClass]);
+                freeListHeads[sizeClass] = memory.getAddress();
+            }
+        }
+        allocatedBytes.add(-blockSize);
+        requestedBytes.add(-size);
+        allocationCount.decrement();
+    }
+
+    /** @return the calling thread's bump allocator */
+    public LocalAllocator local() {
+        return localAllocators.get();
+    }
+
+    private synchronized LocalAllocator newLocalAllocator() {
+        checkOpen();
+        final LocalAllocator allocator = new LocalAllocator();
+        liveLocalAllocators.add(allocator);
+        return allocator;
+    }
+
+    private static int sizeClass(final long size) {
+        if (size <= 1L << MIN_BLOCK_SHIFT) {
+            return 0;
+        }
+        return 64 - Long.numberOfLeadingZeros(size - 1) - MIN_BLOCK_SHIFT;
+    }
+
+    private long takeBlock(final int sizeClass, final long blockSize) {
+        synchronized (freeListLocks[sizeClass]) {
+            checkOpen();
+            final long head = freeListHeads[sizeClass];
+            if (head != 0) {
+                freeListHeads[sizeClass] = IndeedUnsafe.getLong(head);
+                return head;
+            }
+        }
+        synchronized (this) {
+            checkOpen();
+            if (slabRegion == null || slabPosition + blockSize > slabRegion.length()) {
+                slabRegion = takeRegion();
+                slabPosition = 0;
+            }
+            final long address = slabRegion.getAddress() + slabPosition;
+            slabPosition += blockSize;
+            return address;
+        }
+    }
+
+    private synchronized DirectMemory takeRegion() {
+        checkOpen();
+        if (idleRegions.isEmpty()) {
+            reclaimDeadLocalAllocators();
+        }
+        final DirectMemory idle = idleRegions.poll();
+        if (idle != null) {
+            return idle;
+        }
+        final NativeBuffer region = new NativeBuffer(regionSize, order);
+        regions.add(region);
+        reservedBytes.add(regionSize);
+        return region.memory();
+    }
+
+    private synchronized void returnRegion(final DirectMemory region) {
+        if (!closed) {
+            idleRegions.add(region);
+        }
+    }
+
+    /** Takes back the regions of local allocators whose thread has terminated. */
+    private synchronized void reclaimDeadLocalAllocators() {
+        final Iterator<LocalAllocator> iterator = liveLocalAllocators.iterator();
+        while (iterator.hasNext()) {
+            final LocalAllocator allocator = iterator.next();
+            final Thread owner = allocator.owner.get();
+            if (owner == null || !owner.isAlive()) {
+                iterator.remove();
+                allocator.releaseRegions();
+            }
+        }
+    }
+
+    private void checkOpen() {
+        if (closed) {
+            throw new IllegalStateException("arena is closed");
+        }
+    }
+
+    @Export(name = "arena-reserved-bytes", doc = "Native bytes held by the arena")
+    public long getReservedBytes() {
+        return reservedBytes.sum();
+    }
+
+    @Export(
+            name = "arena-allocated-bytes",
+            doc = "Bytes handed out by the arena, including rounding up to the size class")
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    @Export(name = "arena-free-bytes", doc = "Reserved bytes that are not allocated")
+    public long getFreeBytes() {
+        return getReservedBytes() - getAllocatedBytes();
+    }
+
+    @Export(name = "arena-allocation-count", doc = "Number of live allocations")
+    public long getAllocationCount() {
+        return allocationCount.sum();
+    }
+
+    /** @return the fraction of reserved memory not holding requested bytes, between 0 and 1 */
+    @Export(
+            name = "arena-fragmentation",
+            doc = "Fraction of reserved bytes that are free or lost to size class rounding")
+    public double getFragmentation() {
+        final long reserved = getReservedBytes();
+        return reserved == 0 ? 0 : 1 - (double) requestedBytes.sum() / reserved;
+    }
+
+    /** Frees all native memory held by the arena, invalidating everything allocated from it. */
+    @Override
+    @SuppressWarnings("deprecation")
+    public void close() throws IOException {
+        final List<NativeBuffer> toClose = new ArrayList<>();
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (varExportNamespace != null) {
+                // the namespace only holds this arena's gauges, see setVarExportNamespace
+                VarExporter.forNamespace(varExportNamespace).reset();
+            }
+            liveLocalAllocators.clear();
+            toClose.addAll(regions);
+            toClose.addAll(largeAllocations.values());
+            regions.clear();
+            idleRegions.clear();
+            largeAllocations.clear();
+            slabRegion = null;
+        }
+        for (final NativeBuffer buffer : toClose) {
+            closeQuietly(buffer);
+        }
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.error("Exception during cleanup of a Closeable, ignoring", e);
+        }
+    }
+
+    /**
+     * Bump allocator over regions borrowed from the arena. Allocation only advances a pointer and
+     * nothing is freed individually: {@link #reset()} releases everything allocated since the
+     * previous reset, keeping the first region for the next round.
+     */
+    public final class LocalAllocator {
+        private final WeakReference<Thread> owner = new WeakReference<>(Thread.currentThread());
+        private final List<DirectMemory> localRegions = new ArrayList<>();
+        private int current = -1;
+        private long position = 0;
+        private long used = 0;
+        private long requested = 0;
+
+        private LocalAllocator() {}
+
+        /**
+         * @return memory of size bytes, aligned to 8 bytes and valid until the next {@link
+         *     #reset()}
+         * @throws IllegalArgumentException if size is larger than the arena's region size
+         */
+        public DirectMemory allocate(final long size) {
+            Preconditions.checkArgument(
+                    size >= 0 && size <= regionSize,
+                    "size must be between 0 and the region size %s",
+                    regionSize);
+            final long aligned = (size + ALIGNMENT - 1) & -ALIGNMENT;
+            if (current < 0 || position + aligned > regionSize) {
+                current++;
+                if (current == localRegions.size()) {
+                    localRegions.add(takeRegion());
+                }
+                position = 0;
+            }
+            final long address = localRegions.get(current).getAddress() + position;
+            position += aligned;
+            used += aligned;
+            requested += size;
+            allocatedBytes.add(aligned);
+            requestedBytes.add(size);
+            return new DirectMemory(address, size, order);
+        }
+
+        /** @return bytes allocated since the last reset */
+        public long getUsedBytes() {
+            return used;
+        }
+
+        /** Invalidates everything allocated since the last reset. */
+        public void reset() {
+            for (int i = localRegions.size() - 1; i > 0; i--) {
+                returnRegion(localRegions.remove(i));
+            }
+            allocatedBytes.add(-used);
+            requestedBytes.add(-requested);
+            current = -1;
+            position = 0;
+            used = 0;
+            requested = 0;
+        }
+
+        /**
+         * Invalidates everything allocated and returns all regions to the arena, for threads that
+         * are done with local allocations. Calling {@link NativeArena#local()} again on this
+         * thread creates a new allocator.
+         */
+        public void release() {
+            synchronized (NativeArena.this) {
+                if (liveLocalAllocators.remove(this)) {
+                    releaseRegions();
+                }
+            }
+            localAllocators.remove();
+        }
+
+        private void releaseRegions() {
+            reset();
+            if (!localRegions.isEmpty()) {
+                returnRegion(localRegions.remove(0));
+            }
+        }
+    }
+
+    public static final class Builder {
+        private long regionSize = 4 * 1024 * 1024;
+        private long maxBlockSize = 64 * 1024;
+        private ByteOrder order = ByteOrder.nativeOrder();
+        private String varExportNamespace = null;
+
+        private Builder() {}
+
+        /**
+         * Size of the native regions blocks are carved from, which also bounds local allocations.
+         * Defaults to 4MB.
+         */
+        public Builder setRegionSize(final long regionSize) {
+            Preconditions.checkArgument(regionSize >= 1 << MIN_BLOCK_SHIFT, "regionSize too small");
+            this.regionSize = regionSize;
+            return this;
+        }
+
+        /**
+         * Largest size class, rounded up to a power of two and capped by the region size. Bigger
+         * allocations get their own NativeBuffer. Defaults to 64KB.
+         */
+        public Builder setMaxBlockSize(final long maxBlockSize) {
+            Preconditions.checkArgument(maxBlockSize > 0, "maxBlockSize must be positive");
+            this.maxBlockSize = maxBlockSize;
+            return this;
+        }
+
+        public Builder setOrder(final ByteOrder order) {
+            this.order = order;
+            return this;
+        }
+
+        /**
+         * If set the arena's gauges are exported to this varexport namespace, which must not be
+         * used by anything else. The namespace is reset when the arena is closed.
+         */
+        public Builder setVarExportNamespace(final String varExportNamespace) {
+            this.varExportNamespace = varExportNamespace;
+            return this;
+        }
+
+        public NativeArena build() {
+            final int maxBlockShift =
+                    Math.min(
+                            MIN_BLOCK_SHIFT + sizeClass(maxBlockSize),
+                            63 - Long.numberOfLeadingZeros(regionSize));
+            final NativeArena arena =
+                    new NativeArena(regionSize, maxBlockShift, order, varExportNamespace);
+            if (varExportNamespace != null) {
+                final VarExporter exporter = VarExporter.forNamespace(varExportNamespace);
+                if (exporter.getVariable("arena-reserved-bytes") != null) {
+                    throw new IllegalStateException(
+                            "varexport namespace "
+                                    + varExportNamespace
+                                    + " is already used by an open arena");
+                }
+                exporter.includeInGlobal().export(arena, "");
+            }
+            return arena;
+        }
+    }
+}
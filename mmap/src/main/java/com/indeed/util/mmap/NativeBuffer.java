@@ -11,6 +11,7 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
 
 /** @author jplaisance */
 public final class NativeBuffer implements BufferResource {
@@ -177,6 +178,17 @@ public final class NativeBuffer implements BufferResource {
         }
     }
 
+    /**
+     * Writes length bytes starting at position to target straight from native memory, without
+     * copying them to the heap first.
+     *
+     * @return the number of bytes written, less than length only if target is non blocking
+     */
+    public long transferTo(long position, long length, WritableByteChannel target)
+            throws IOException {
+        return DirectByteBuffers.write(memory, position, length, target);
+    }
+
     public DirectMemory memory() {
         return memory;
     }
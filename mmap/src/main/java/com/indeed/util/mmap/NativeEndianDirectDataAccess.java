@@ -2,6 +2,13 @@ package com.indeed.util.mmap;
 
 import com.indeed.util.unsafe.IndeedUnsafe;
 
+import static com.indeed.util.unsafe.IndeedUnsafe.CHAR_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.DOUBLE_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.FLOAT_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.INT_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.LONG_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.SHORT_ARRAY_BASE_OFFSET;
+
 /** @author jplaisance */
 final class NativeEndianDirectDataAccess implements DirectDataAccess {
 
@@ -87,4 +94,74 @@ final class NativeEndianDirectDataAccess implements DirectDataAccess {
     public void copyMemory(long source, long dest, long length) {
         IndeedUnsafe.copyMemory(source, dest, length);
     }
+
+    @Override
+    public void getShorts(long address, short[] shorts, int start, int length) {
+        UnsafeArrayCopy.copy(
+                null, address, shorts, SHORT_ARRAY_BASE_OFFSET + start * 2L, length * 2L);
+    }
+
+    @Override
+    public void putShorts(long address, short[] shorts, int start, int length) {
+        UnsafeArrayCopy.copy(
+                shorts, SHORT_ARRAY_BASE_OFFSET + start * 2L, null, address, length * 2L);
+    }
+
+    @Override
+    public void getChars(long address, char[] chars, int start, int length) {
+        UnsafeArrayCopy.copy(
+                null, address, chars, CHAR_ARRAY_BASE_OFFSET + start * 2L, length * 2L);
+    }
+
+    @Override
+    public void putChars(long address, char[] chars, int start, int length) {
+        UnsafeArrayCopy.copy(
+                chars, CHAR_ARRAY_BASE_OFFSET + start * 2L, null, address, length * 2L);
+    }
+
+    @Override
+    public void getInts(long address, int[] ints, int start, int length) {
+        UnsafeArrayCopy.copy(null, address, ints, INT_ARRAY_BASE_OFFSET + start * 4L, length * 4L);
+    }
+
+    @Override
+    public void putInts(long address, int[] ints, int start, int length) {
+        UnsafeArrayCopy.copy(ints, INT_ARRAY_BASE_OFFSET + start * 4L, null, address, length * 4L);
+    }
+
+    @Override
+    public void getLongs(long address, long[] longs, int start, int length) {
+        UnsafeArrayCopy.copy(
+                null, address, longs, LONG_ARRAY_BASE_OFFSET + start * 8L, length * 8L);
+    }
+
+    @Override
+    public void putLongs(long address, long[] longs, int start, int length) {
+        UnsafeArrayCopy.copy(
+                longs, LONG_ARRAY_BASE_OFFSET + start * 8L, null, address, length * 8L);
+    }
+
+    @Override
+    public void getFloats(long address, float[] floats, int start, int length) {
+        UnsafeArrayCopy.copy(
+                null, address, floats, FLOAT_ARRAY_BASE_OFFSET + start * 4L, length * 4L);
+    }
+
+    @Override
+    public void putFloats(long address, float[] floats, int start, int length) {
+        UnsafeArrayCopy.copy(
+                floats, FLOAT_ARRAY_BASE_OFFSET + start * 4L, null, address, length * 4L);
+    }
+
+    @Override
+    public void getDoubles(long address, double[] doubles, int start, int length) {
+        UnsafeArrayCopy.copy(
+                null, address, doubles, DOUBLE_ARRAY_BASE_OFFSET + start * 8L, length * 8L);
+    }
+
+    @Override
+    public void putDoubles(long address, double[] doubles, int start, int length) {
+        UnsafeArrayCopy.copy(
+                doubles, DOUBLE_ARRAY_BASE_OFFSET + start * 8L, null, address, length * 8L);
+    }
 }
@@ -3,6 +3,12 @@ package com.indeed.util.mmap;
 import com.indeed.util.unsafe.IndeedUnsafe;
 
 import static com.indeed.util.unsafe.IndeedUnsafe.BYTE_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.CHAR_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.DOUBLE_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.FLOAT_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.INT_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.LONG_ARRAY_BASE_OFFSET;
+import static com.indeed.util.unsafe.IndeedUnsafe.SHORT_ARRAY_BASE_OFFSET;
 
 /**
  * Not bounds checked. Should be bounds checked externally.
@@ -78,4 +84,124 @@ final class NativeEndianHeapDataAccess implements HeapDataAccess {
     public void putDouble(byte[] b, int off, double val) {
         IndeedUnsafe.putDouble(b, BYTE_ARRAY_BASE_OFFSET + off, val);
     }
+
+    @Override
+    public void getShorts(byte[] b, int off, short[] shorts, int start, int length) {
+        UnsafeArrayCopy.copy(
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                shorts,
+                SHORT_ARRAY_BASE_OFFSET + start * 2L,
+                length * 2L);
+    }
+
+    @Override
+    public void putShorts(byte[] b, int off, short[] shorts, int start, int length) {
+        UnsafeArrayCopy.copy(
+                shorts,
+                SHORT_ARRAY_BASE_OFFSET + start * 2L,
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                length * 2L);
+    }
+
+    @Override
+    public void getChars(byte[] b, int off, char[] chars, int start, int length) {
+        UnsafeArrayCopy.copy(
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                chars,
+                CHAR_ARRAY_BASE_OFFSET + start * 2L,
+                length * 2L);
+    }
+
+    @Override
+    public void putChars(byte[] b, int off, char[] chars, int start, int length) {
+        UnsafeArrayCopy.copy(
+                chars,
+                CHAR_ARRAY_BASE_OFFSET + start * 2L,
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                length * 2L);
+    }
+
+    @Override
+    public void getInts(byte[] b, int off, int[] ints, int start, int length) {
+        UnsafeArrayCopy.copy(
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                ints,
+                INT_ARRAY_BASE_OFFSET + start * 4L,
+                length * 4L);
+    }
+
+    @Override
+    public void putInts(byte[] b, int off, int[] ints, int start, int length) {
+        UnsafeArrayCopy.copy(
+                ints,
+                INT_ARRAY_BASE_OFFSET + start * 4L,
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                length * 4L);
+    }
+
+    @Override
+    public void getLongs(byte[] b, int off, long[] longs, int start, int length) {
+        UnsafeArrayCopy.copy(
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                longs,
+                LONG_ARRAY_BASE_OFFSET + start * 8L,
+                length * 8L);
+    }
+
+    @Override
+    public void putLongs(byte[] b, int off, long[] longs, int start, int length) {
+        UnsafeArrayCopy.copy(
+                longs,
+                LONG_ARRAY_BASE_OFFSET + start * 8L,
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                length * 8L);
+    }
+
+    @Override
+    public void getFloats(byte[] b, int off, float[] floats, int start, int length) {
+        UnsafeArrayCopy.copy(
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                floats,
+                FLOAT_ARRAY_BASE_OFFSET + start * 4L,
+                length * 4L);
+    }
+
+    @Override
+    public void putFloats(byte[] b, int off, float[] floats, int start, int length) {
+        UnsafeArrayCopy.copy(
+                floats,
+                FLOAT_ARRAY_BASE_OFFSET + start * 4L,
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                length * 4L);
+    }
+
+    @Override
+    public void getDoubles(byte[] b, int off, double[] doubles, int start, int length) {
+        UnsafeArrayCopy.copy(
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                doubles,
+                DOUBLE_ARRAY_BASE_OFFSET + start * 8L,
+                length * 8L);
+    }
+
+    @Override
+    public void putDoubles(byte[] b, int off, double[] doubles, int start, int length) {
+        UnsafeArrayCopy.copy(
+                doubles,
+                DOUBLE_ARRAY_BASE_OFFSET + start * 8L,
+                b,
+                BYTE_ARRAY_BASE_OFFSET + off,
+                length * 8L);
+    }
 }
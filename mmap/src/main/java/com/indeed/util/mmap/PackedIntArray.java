@@ -0,0 +1,281 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+
+import static com.indeed.util.mmap.PackedIntArrayWriter.BLOCK_HEADER_SIZE;
+import static com.indeed.util.mmap.PackedIntArrayWriter.FLAG_SORTED;
+import static com.indeed.util.mmap.PackedIntArrayWriter.FOOTER_SIZE;
+import static com.indeed.util.mmap.PackedIntArrayWriter.MAGIC;
+
+/**
+ * Ints compressed with {@link PackedIntArrayWriter}. Values are decoded a block of {@link
+ * #BLOCK_SIZE} at a time with a {@link Cursor}, and the last value of every block is kept in a
+ * skip index so that {@link Cursor#advance(int)} over a sorted array only decodes the blocks it
+ * lands in.
+ *
+ * <p>Nothing is copied to the heap when the array is opened. Instances are safe to use from
+ * multiple threads, cursors only from one thread at a time.
+ */
+public final class PackedIntArray {
+    public static final int BLOCK_SIZE = 128;
+
+    private final Memory memory;
+    private final long size;
+    private final int blockCount;
+    private final boolean sorted;
+    private final long blockOffsetsOffset;
+    private final long lastValuesOffset;
+
+    /** @throws IllegalArgumentException if memory has a different byte order than the output */
+    public PackedIntArray(final Memory memory) {
+        this.memory = memory;
+        final long length = memory.length();
+        if (length < FOOTER_SIZE || memory.getInt(length - 4) != MAGIC) {
+            throw new IllegalArgumentException("not a packed int array, or the wrong byte order");
+        }
+        blockOffsetsOffset = memory.getLong(length - 24);
+        size = memory.getLong(length - 16);
+        sorted = (memory.getInt(length - 8) & FLAG_SORTED) != 0;
+        blockCount = (int) ((size + BLOCK_SIZE - 1) / BLOCK_SIZE);
+        lastValuesOffset = blockOffsetsOffset + blockCount * 8L;
+        if (blockOffsetsOffset < 0 || lastValuesOffset + blockCount * 4L > length - FOOTER_SIZE) {
+            throw new IllegalArgumentException("corrupt packed int array index");
+        }
+    }
+
+    static long blockLength(final int wordCount, final int exceptionCount) {
+        final long exceptionBytes = ((exceptionCount + 3) & ~3) + exceptionCount * 4L;
+        return BLOCK_HEADER_SIZE + wordCount * 8L + ((exceptionBytes + 7) & ~7L);
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public int getBlockCount() {
+        return blockCount;
+    }
+
+    /** @return true if the array was written sorted, which is required for advance */
+    public boolean isSorted() {
+        return sorted;
+    }
+
+    private long blockOffset(final int block) {
+        return memory.getLong(blockOffsetsOffset + block * 8L);
+    }
+
+    private int blockSize(final int block) {
+        return block == blockCount - 1 ? (int) (size - (long) block * BLOCK_SIZE) : BLOCK_SIZE;
+    }
+
+    /** @return the last value of block, from the skip index */
+    public int getLastValue(final int block) {
+        Preconditions.checkElementIndex(block, blockCount);
+        return memory.getInt(lastValuesOffset + block * 4L);
+    }
+
+    /**
+     * Random access to a single value, which doesn't decode the block. Over a sorted array this
+     * still sums up the deltas of the block up to index, so use a {@link Cursor} to read many.
+     */
+    public int get(final long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index: " + index + " size: " + size);
+        }
+        final int block = (int) (index / BLOCK_SIZE);
+        final int i = (int) (index % BLOCK_SIZE);
+        final long offset = blockOffset(block);
+        final int bitWidth = memory.getByte(offset) & 0xFF;
+        final int exceptionCount = memory.getByte(offset + 1) & 0xFF;
+        final int base = memory.getInt(offset + 4);
+        final long words = offset + BLOCK_HEADER_SIZE;
+        final long exceptionIndexes = words + ((blockSize(block) * bitWidth + 63) >>> 6) * 8L;
+        final long exceptionValues = exceptionIndexes + ((exceptionCount + 3) & ~3);
+        int value;
+        if (sorted) {
+            value = block == 0 ? 0 : getLastValue(block - 1);
+            for (int j = 0; j <= i; j++) {
+                value += base + extract(words, bitWidth, j);
+            }
+            for (int e = 0; e < exceptionCount; e++) {
+                if ((memory.getByte(exceptionIndexes + e) & 0xFF) <= i) {
+                    value += memory.getInt(exceptionValues + e * 4L) << bitWidth;
+                }
+            }
+        } else {
+            value = base + extract(words, bitWidth, i);
+            for (int e = 0; e < exceptionCount; e++) {
+                if ((memory.getByte(exceptionIndexes + e) & 0xFF) == i) {
+                    value += memory.getInt(exceptionValues + e * 4L) << bitWidth;
+                }
+            }
+        }
+        return value;
+    }
+
+    private int extract(final long words, final int bitWidth, final int i) {
+        if (bitWidth == 0) {
+            return 0;
+        }
+        final long bitPosition = (long) i * bitWidth;
+        final long word = words + (bitPosition >>> 6) * 8;
+        final int shift = (int) (bitPosition & 63);
+        long value = memory.getLong(word) >>> shift;
+        if (shift + bitWidth > 64) {
+            value |= memory.getLong(word + 8) << (64 - shift);
+        }
+        return (int) (value & mask(bitWidth));
+    }
+
+    private static long mask(final int bitWidth) {
+        return bitWidth == 32 ? 0xFFFFFFFFL : (1L << bitWidth) - 1;
+    }
+
+    private static void unpack(
+            final long[] words, final int bitWidth, final int[] dest, final int off, final int n) {
+        if (bitWidth == 0) {
+            for (int i = off; i < off + n; i++) {
+                dest[i] = 0;
+            }
+            return;
+        }
+        final long mask = mask(bitWidth);
+        int bitPosition = 0;
+        for (int i = off; i < off + n; i++) {
+            final int word = bitPosition >>> 6;
+            final int shift = bitPosition & 63;
+            // the second word is shifted twice so that a shift of 0 doesn't wrap around to it
+            final long value =
+                    (words[word] >>> shift) | ((words[word + 1] << 1) << (63 - shift));
+            dest[i] = (int) (value & mask);
+            bitPosition += bitWidth;
+        }
+    }
+
+    public Cursor cursor() {
+        return new Cursor();
+    }
+
+    /**
+     * Iterates over the values of the array, positioned before the first value when created. A
+     * cursor is not thread safe.
+     */
+    public final class Cursor {
+        private final int[] values = new int[BLOCK_SIZE];
+        // one more than a block can use, unpack reads past the last word
+        private final long[] words = new long[BLOCK_SIZE / 2 + 1];
+        private int block = -1;
+        private int count = 0;
+        private int position = -1;
+
+        private Cursor() {}
+
+        /**
+         * Decodes all values of block into dest, independently of the position of the cursor.
+         *
+         * @return the number of values written, {@link #BLOCK_SIZE} for all but the last block
+         */
+        public int decodeBlock(final int block, final int[] dest, final int off) {
+            Preconditions.checkElementIndex(block, blockCount);
+            final int n = blockSize(block);
+            Preconditions.checkPositionIndexes(off, off + n, dest.length);
+            final long offset = blockOffset(block);
+            final int bitWidth = memory.getByte(offset) & 0xFF;
+            final int exceptionCount = memory.getByte(offset + 1) & 0xFF;
+            final int base = memory.getInt(offset + 4);
+            final int wordCount = (n * bitWidth + 63) >>> 6;
+            memory.getLongs(offset + BLOCK_HEADER_SIZE, words, 0, wordCount);
+            unpack(words, bitWidth, dest, off, n);
+
+            final long exceptionIndexes = offset + BLOCK_HEADER_SIZE + wordCount * 8L;
+            final long exceptionValues = exceptionIndexes + ((exceptionCount + 3) & ~3);
+            for (int e = 0; e < exceptionCount; e++) {
+                final int i = memory.getByte(exceptionIndexes + e) & 0xFF;
+                dest[off + i] |= memory.getInt(exceptionValues + e * 4L) << bitWidth;
+            }
+            if (sorted) {
+                int value = block == 0 ? 0 : getLastValue(block - 1);
+                for (int i = off; i < off + n; i++) {
+                    value += dest[i] + base;
+                    dest[i] = value;
+                }
+            } else {
+                for (int i = off; i < off + n; i++) {
+                    dest[i] += base;
+                }
+            }
+            return n;
+        }
+
+        private boolean load(final int block) {
+            this.block = Math.min(block, blockCount);
+            position = 0;
+            if (block >= blockCount) {
+                count = 0;
+                return false;
+            }
+            count = decodeBlock(block, values, 0);
+            return true;
+        }
+
+        /** @return false if there are no more values */
+        public boolean next() {
+            if (position + 1 < count) {
+                position++;
+                return true;
+            }
+            return load(block + 1);
+        }
+
+        /**
+         * Moves to the first value after the current one that is at least target, skipping whole
+         * blocks with the skip index. Only supported on sorted arrays.
+         *
+         * @return false if there is no such value
+         */
+        public boolean advance(final int target) {
+            Preconditions.checkState(sorted, "advance requires a sorted array");
+            if (block >= 0 && block < blockCount && getLastValue(block) >= target) {
+                while (++position < count) {
+                    if (values[position] >= target) {
+                        return true;
+                    }
+                }
+            }
+            int low = block + 1;
+            int high = blockCount - 1;
+            int found = blockCount;
+            while (low <= high) {
+                final int mid = (low + high) >>> 1;
+                if (getLastValue(mid) >= target) {
+                    found = mid;
+                    high = mid - 1;
+                } else {
+                    low = mid + 1;
+                }
+            }
+            if (!load(found)) {
+                return false;
+            }
+            while (values[position] < target) {
+                position++;
+            }
+            return true;
+        }
+
+        /** @return the current value */
+        public int value() {
+            Preconditions.checkState(block >= 0 && block < blockCount, "cursor is not on a value");
+            return values[position];
+        }
+
+        /** @return the index of the current value, -1 before the first and size() after the last */
+        public long index() {
+            if (block < 0) {
+                return -1;
+            }
+            return block >= blockCount ? size : (long) block * BLOCK_SIZE + position;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Writes a sequence of ints in the compressed format read by {@link PackedIntArray}.
+ *
+ * <p>Values are encoded in blocks of {@link PackedIntArray#BLOCK_SIZE} with patched frame of
+ * reference (PFor): every block stores its minimum and the differences to it with the smallest
+ * bit width that most of them fit in, plus a list of exceptions for the high bits of the few that
+ * don't, so a single outlier doesn't widen the whole block. Sorted sequences store the deltas
+ * between consecutive values instead, which is what makes doc id lists small.
+ *
+ * <pre>
+ *   try (DynamicMMapBufferDataOutputStream out =
+ *           DynamicMMapBufferDataOutputStream.builder(file).setTruncateOnClose(true).build()) {
+ *       final PackedIntArrayWriter writer = new PackedIntArrayWriter(out, true);
+ *       for (final int docId : docIds) {
+ *           writer.add(docId);
+ *       }
+ *       writer.finish();
+ *   }
+ * </pre>
+ */
+public final class PackedIntArrayWriter {
+    static final int MAGIC = 0x50494e54; // "PINT"
+    static final int FOOTER_SIZE = 24;
+    static final int FLAG_SORTED = 1;
+
+    /** bit width, exception count, two unused bytes, then the frame of reference. */
+    static final int BLOCK_HEADER_SIZE = 8;
+
+    // an exception costs its index byte and its high bits int
+    private static final int EXCEPTION_BITS = 40;
+
+    private final DataOutput out;
+    private final boolean sorted;
+
+    private final int[] block = new int[PackedIntArray.BLOCK_SIZE];
+    private final long[] words = new long[PackedIntArray.BLOCK_SIZE / 2];
+    private final int[] widthCounts = new int[33];
+    private final byte[] exceptionIndexes = new byte[PackedIntArray.BLOCK_SIZE];
+    private final int[] exceptionValues = new int[PackedIntArray.BLOCK_SIZE];
+
+    private int blockLength = 0;
+    private long size = 0;
+    private long position = 0;
+    private int previous = 0;
+    private boolean hasPrevious = false;
+    private long[] blockOffsets = new long[16];
+    private int[] lastValues = new int[16];
+    private int blockCount = 0;
+    private boolean finished = false;
+
+    /**
+     * @param sorted if true values must be added in non decreasing order and are delta encoded,
+     *     which also allows {@link PackedIntArray.Cursor#advance(int)} on the result
+     */
+    public PackedIntArrayWriter(final DataOutput out, final boolean sorted) {
+        this.out = out;
+        this.sorted = sorted;
+    }
+
+    /** @throws IllegalArgumentException if the writer is sorted and value is out of order */
+    public void add(final int value) throws IOException {
+        Preconditions.checkState(!finished, "writer is finished");
+        if (sorted) {
+            if (hasPrevious && value < previous) {
+                throw new IllegalArgumentException(
+                        "values must be added in order: " + value + " after " + previous);
+            }
+            previous = value;
+            hasPrevious = true;
+        }
+        block[blockLength++] = value;
+        size++;
+        if (blockLength == block.length) {
+            flushBlock();
+        }
+    }
+
+    public void addAll(final int[] values, final int off, final int len) throws IOException {
+        Preconditions.checkPositionIndexes(off, off + len, values.length);
+        for (int i = off; i < off + len; i++) {
+            add(values[i]);
+        }
+    }
+
+    /** @return the number of values added so far */
+    public long size() {
+        return size;
+    }
+
+    private void flushBlock() throws IOException {
+        final int n = blockLength;
+        final int last = block[n - 1];
+        if (sorted) {
+            int prev = blockCount == 0 ? 0 : lastValues[blockCount - 1];
+            for (int i = 0; i < n; i++) {
+                final int value = block[i];
+                block[i] = value - prev;
+                prev = value;
+            }
+        }
+        int base = block[0];
+        for (int i = 1; i < n; i++) {
+            // deltas are unsigned since they may exceed Integer.MAX_VALUE
+            if (sorted ? Integer.compareUnsigned(block[i], base) < 0 : block[i] < base) {
+                base = block[i];
+            }
+        }
+        Arrays.fill(widthCounts, 0);
+        for (int i = 0; i < n; i++) {
+            block[i] -= base;
+            widthCounts[32 - Integer.numberOfLeadingZeros(block[i])]++;
+        }
+        int bitWidth = 32;
+        long bestCost = (long) n * 32;
+        int exceptions = 0;
+        for (int width = 31; width >= 0; width--) {
+            exceptions += widthCounts[width + 1];
+            final long cost = (long) n * width + (long) exceptions * EXCEPTION_BITS;
+            if (cost < bestCost) {
+                bestCost = cost;
+                bitWidth = width;
+            }
+        }
+
+        final long mask = bitWidth == 32 ? 0xFFFFFFFFL : (1L << bitWidth) - 1;
+        final int wordCount = (n * bitWidth + 63) >>> 6;
+        Arrays.fill(words, 0, wordCount, 0);
+        int exceptionCount = 0;
+        long bitPosition = 0;
+        for (int i = 0; i < n; i++) {
+            final long value = block[i] & 0xFFFFFFFFL;
+            if (value > mask) {
+                exceptionIndexes[exceptionCount] = (byte) i;
+                exceptionValues[exceptionCount++] = (int) (value >>> bitWidth);
+            }
+            final int word = (int) (bitPosition >>> 6);
+            final int shift = (int) (bitPosition & 63);
+            words[word] |= (value & mask) << shift;
+            if (shift + bitWidth > 64) {
+                words[word + 1] |= (value & mask) >>> (64 - shift);
+            }
+            bitPosition += bitWidth;
+        }
+
+        if (blockCount == blockOffsets.length) {
+            blockOffsets = Arrays.copyOf(blockOffsets, blockCount * 2);
+            lastValues = Arrays.copyOf(lastValues, blockCount * 2);
+        }
+        blockOffsets[blockCount] = position;
+        lastValues[blockCount] = last;
+        blockCount++;
+
+        out.writeByte(bitWidth);
+        out.writeByte(exceptionCount);
+        out.writeShort(0);
+        out.writeInt(base);
+        for (int i = 0; i < wordCount; i++) {
+            out.writeLong(words[i]);
+        }
+        out.write(exceptionIndexes, 0, exceptionCount);
+        final int indexPadding = -exceptionCount & 3;
+        for (int i = 0; i < indexPadding; i++) {
+            out.writeByte(0);
+        }
+        for (int i = 0; i < exceptionCount; i++) {
+            out.writeInt(exceptionValues[i]);
+        }
+        if (((exceptionCount + indexPadding + exceptionCount * 4) & 7) != 0) {
+            // keeps the next block 8 byte aligned
+            out.writeInt(0);
+        }
+        position += PackedIntArray.blockLength(wordCount, exceptionCount);
+        blockLength = 0;
+    }
+
+    /**
+     * Writes the last block and the skip index. The output is not closed.
+     *
+     * @return the number of bytes written
+     */
+    public long finish() throws IOException {
+        Preconditions.checkState(!finished, "writer is finished");
+        finished = true;
+        if (blockLength > 0) {
+            flushBlock();
+        }
+        final long indexOffset = position;
+        for (int i = 0; i < blockCount; i++) {
+            out.writeLong(blockOffsets[i]);
+        }
+        for (int i = 0; i < blockCount; i++) {
+            out.writeInt(lastValues[i]);
+        }
+        if ((blockCount & 1) != 0) {
+            out.writeInt(0);
+        }
+        position += blockCount * 12L + (blockCount & 1) * 4L;
+        out.writeLong(indexOffset);
+        out.writeLong(size);
+        out.writeInt(sorted ? FLAG_SORTED : 0);
+        out.writeInt(MAGIC);
+        position += FOOTER_SIZE;
+        return position;
+    }
+}
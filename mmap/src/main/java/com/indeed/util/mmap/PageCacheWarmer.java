@@ -0,0 +1,391 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.indeed.util.unsafe.IndeedUnsafe;
+import com.indeed.util.varexport.Export;
+import com.indeed.util.varexport.VarExporter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Faults the pages of a set of {@link MMapBuffer}s into the page cache in the background so that
+ * the first queries against a freshly swapped in index don't pay for the disk reads.
+ *
+ * <p>Each pass uses mincore(2) to find the pages that are not resident and either reads one byte
+ * of each of them or advises the kernel with {@link Advice#WILLNEED}. The rate at which
+ * non-resident bytes are warmed is limited so the warmer doesn't starve the disk. Hot ranges are
+ * warmed before the rest of their buffers.
+ *
+ * <pre>
+ *   final PageCacheWarmer warmer = PageCacheWarmer.builder()
+ *           .setBytesPerSecond(64 * 1024 * 1024)
+ *           .setVarExportNamespace("index-warmer")
+ *           .build();
+ *   warmer.add(buffer);
+ *   warmer.addHotRange(buffer, 0, headerLength);
+ *   warmer.start();
+ *   // ...
+ *   warmer.remove(buffer);
+ *   buffer.close();
+ * </pre>
+ *
+ * <p>A buffer must be removed from the warmer before it is closed.
+ */
+public final class PageCacheWarmer implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PageCacheWarmer.class);
+
+    private static final int PAGE_SIZE = MMapBuffer.PAGE_SIZE;
+
+    private final RateLimiter rateLimiter;
+    private final int chunkPages;
+    private final boolean touch;
+    private final long intervalMillis;
+    private final String varExportNamespace;
+
+    // only one pass runs at a time, it owns vec
+    private final Object passLock = new Object();
+    // guards buffers and hotRanges, and keeps a buffer from being removed while it is warmed
+    private final Object lock = new Object();
+    private final Map<MMapBuffer, Void> buffers = new IdentityHashMap<>();
+    private final List<Range> hotRanges = new ArrayList<>();
+    private final NativeBuffer vec;
+
+    private final AtomicLong bytesWarmed = new AtomicLong();
+    private volatile double residentPercent = 100;
+    private volatile long lastPassMillis;
+
+    private ScheduledExecutorService executor;
+    private boolean closed;
+
+    @SuppressWarnings("unused")
+    private static volatile int touchSink;
+
+    private PageCacheWarmer(
+            final double bytesPerSecond,
+            final int chunkPages,
+            final boolean touch,
+            final long intervalMillis,
+            final String varExportNamespace) {
+        this.rateLimiter = RateLimiter.create(bytesPerSecond);
+        this.chunkPages = chunkPages;
+        this.touch = touch;
+        this.intervalMillis = intervalMillis;
+        this.varExportNamespace = varExportNamespace;
+        this.vec = new NativeBuffer(chunkPages, ByteOrder.nativeOrder());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Adds all pages of the buffer to the set that is kept warm. */
+    public void add(final MMapBuffer buffer) {
+        synchronized (lock) {
+            buffers.put(buffer, null);
+        }
+    }
+
+    /**
+     * Adds the buffer if it isn't already present and warms the given range before any non hot
+     * range. Hot ranges are warmed in the order they were added.
+     */
+    public void addHotRange(final MMapBuffer buffer, final long position, final long length) {
+        if (position < 0) throw new IndexOutOfBoundsException();
+        if (length < 0) throw new IndexOutOfBoundsException();
+        if (position + length > buffer.memory().length()) throw new IndexOutOfBoundsException();
+        synchronized (lock) {
+            buffers.put(buffer, null);
+            hotRanges.add(new Range(buffer, position, length));
+        }
+    }
+
+    /**
+     * Removes the buffer and its hot ranges. Once this returns the warmer will not touch the
+     * buffer again, so it is safe to close it.
+     */
+    public void remove(final MMapBuffer buffer) {
+        synchronized (lock) {
+            buffers.remove(buffer);
+            hotRanges.removeIf(range -> range.buffer == buffer);
+        }
+    }
+
+    /** Starts warming in a background daemon thread, repeating every interval. */
+    public synchronized void start() {
+        Preconditions.checkState(!closed, "warmer is closed");
+        Preconditions.checkState(executor == null, "warmer is already started");
+        executor =
+                Executors.newSingleThreadScheduledExecutor(
+                        new ThreadFactoryBuilder()
+                                .setDaemon(true)
+                                .setNameFormat("PageCacheWarmer-%d")
+                                .build());
+        executor.scheduleWithFixedDelay(
+                () -> {
+                    try {
+                        warm();
+                    } catch (RuntimeException e) {
+                        log.error("page cache warming pass failed", e);
+                    }
+                },
+                0,
+                intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Runs one warming pass in the calling thread: hot ranges first, then every buffer.
+     *
+     * @return the number of non-resident bytes that were warmed
+     */
+    public long warm() {
+        synchronized (passLock) {
+            return warmPass();
+        }
+    }
+
+    private long warmPass() {
+        final List<Range> ranges = new ArrayList<>();
+        final int numHot;
+        synchronized (lock) {
+            if (closed) {
+                return 0;
+            }
+            ranges.addAll(hotRanges);
+            numHot = hotRanges.size();
+            for (final MMapBuffer buffer : buffers.keySet()) {
+                ranges.add(new Range(buffer, 0, buffer.memory().length()));
+            }
+        }
+        long warmed = 0;
+        long totalPages = 0;
+        long residentPages = 0;
+        for (int i = 0; i < ranges.size(); i++) {
+            final Range range = ranges.get(i);
+            final long start = range.position / PAGE_SIZE * PAGE_SIZE;
+            final long end = range.position + range.length;
+            for (long position = start; position < end; ) {
+                if (Thread.currentThread().isInterrupted()) {
+                    return warmed;
+                }
+                final long length = Math.min((long) chunkPages * PAGE_SIZE, end - position);
+                final int pages = (int) ((length + PAGE_SIZE - 1) / PAGE_SIZE);
+                final int missing = warmChunk(range.buffer, position, length);
+                if (missing < 0) {
+                    // removed concurrently
+                    break;
+                }
+                if (i >= numHot) {
+                    totalPages += pages;
+                    residentPages += pages - missing;
+                }
+                warmed += (long) missing * PAGE_SIZE;
+                position += length;
+            }
+        }
+        bytesWarmed.addAndGet(warmed);
+        residentPercent = totalPages == 0 ? 100 : 100.0 * residentPages / totalPages;
+        lastPassMillis = System.currentTimeMillis();
+        return warmed;
+    }
+
+    /** @return the number of non-resident pages in the chunk, or -1 if the buffer was removed */
+    private int warmChunk(final MMapBuffer buffer, final long position, final long length) {
+        final DirectMemory residency = vec.memory();
+        final int missing;
+        synchronized (lock) {
+            if (!buffers.containsKey(buffer)) {
+                return -1;
+            }
+            buffer.mincore(position, length, residency);
+            missing = countMissing(residency, (int) ((length + PAGE_SIZE - 1) / PAGE_SIZE));
+        }
+        if (missing == 0) {
+            return 0;
+        }
+        rateLimiter.acquire(missing * PAGE_SIZE);
+        synchronized (lock) {
+            if (!buffers.containsKey(buffer)) {
+                return -1;
+            }
+            final long address = buffer.memory().getAddress() + position;
+            if (touch) {
+                int sum = 0;
+                for (int page = 0; (long) page * PAGE_SIZE < length; page++) {
+                    if ((residency.getByte(page) & 1) == 0) {
+                        sum += IndeedUnsafe.getByte(address + (long) page * PAGE_SIZE);
+                    }
+                }
+                touchSink = sum;
+            } else if (MMapBuffer.madvise(address, length, Advice.WILLNEED) != 0) {
+                log.warn("madvise(WILLNEED) failed [Errno " + MMapBuffer.errno() + "]");
+            }
+        }
+        return missing;
+    }
+
+    private static int countMissing(final DirectMemory residency, final int pages) {
+        int missing = 0;
+        for (int page = 0; page < pages; page++) {
+            if ((residency.getByte(page) & 1) == 0) {
+                missing++;
+            }
+        }
+        return missing;
+    }
+
+    @Export(
+            name = "page-cache-resident-percent",
+            doc = "Percent of the warmed buffers' pages that were resident in the last pass")
+    public double getResidentPercent() {
+        return residentPercent;
+    }
+
+    @Export(name = "page-cache-bytes-warmed", doc = "Total bytes faulted in by the warmer")
+    public long getBytesWarmed() {
+        return bytesWarmed.get();
+    }
+
+    @Export(name = "page-cache-last-pass", doc = "Time of the last completed pass in millis")
+    public long getLastPassMillis() {
+        return lastPassMillis;
+    }
+
+    @Export(name = "page-cache-buffers", doc = "Number of buffers being kept warm")
+    public int getBufferCount() {
+        synchronized (lock) {
+            return buffers.size();
+        }
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public void close() throws IOException {
+        final ScheduledExecutorService executor;
+        synchronized (this) {
+            executor = this.executor;
+            this.executor = null;
+        }
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            buffers.clear();
+            hotRanges.clear();
+        }
+        if (varExportNamespace != null) {
+            // the namespace only holds this warmer's statistics, see setVarExportNamespace
+            VarExporter.forNamespace(varExportNamespace).reset();
+        }
+        if (executor != null) {
+            try {
+                executor.awaitTermination(1, TimeUnit.MINUTES);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        vec.close();
+    }
+
+    private static final class Range {
+        final MMapBuffer buffer;
+        final long position;
+        final long length;
+
+        Range(final MMapBuffer buffer, final long position, final long length) {
+            this.buffer = buffer;
+            this.position = position;
+            this.length = length;
+        }
+    }
+
+    public static final class Builder {
+        private double bytesPerSecond = 32 * 1024 * 1024;
+        private int chunkPages = 256;
+        private boolean touch = true;
+        private long intervalMillis = TimeUnit.SECONDS.toMillis(30);
+        private String varExportNamespace = null;
+
+        private Builder() {}
+
+        /** Upper bound on the rate non-resident pages are faulted in. Defaults to 32MB/s. */
+        public Builder setBytesPerSecond(final double bytesPerSecond) {
+            Preconditions.checkArgument(bytesPerSecond > 0, "bytesPerSecond must be positive");
+            this.bytesPerSecond = bytesPerSecond;
+            return this;
+        }
+
+        /** Number of pages checked with a single mincore call. Defaults to 256. */
+        public Builder setChunkPages(final int chunkPages) {
+            Preconditions.checkArgument(
+                    chunkPages > 0 && chunkPages <= Integer.MAX_VALUE / PAGE_SIZE,
+                    "chunkPages out of range");
+            this.chunkPages = chunkPages;
+            return this;
+        }
+
+        /**
+         * If true (the default) non-resident pages are read synchronously, which guarantees they
+         * are resident once the pass is done. If false the kernel is only advised with
+         * MADV_WILLNEED, which is cheaper but may be ignored under memory pressure.
+         */
+        public Builder setTouch(final boolean touch) {
+            this.touch = touch;
+            return this;
+        }
+
+        /** Delay between the end of one background pass and the start of the next. */
+        public Builder setInterval(final long interval, final TimeUnit unit) {
+            Preconditions.checkArgument(interval > 0, "interval must be positive");
+            this.intervalMillis = unit.toMillis(interval);
+            return this;
+        }
+
+        /**
+         * If set the warmer's statistics are exported to this varexport namespace, which must not
+         * be used by anything else. The namespace is reset when the warmer is closed.
+         */
+        public Builder setVarExportNamespace(final String varExportNamespace) {
+            this.varExportNamespace = varExportNamespace;
+            return this;
+        }
+
+        public PageCacheWarmer build() {
+            if (varExportNamespace != null && isExported(varExportNamespace)) {
+                throw new IllegalStateException(
+                        "varexport namespace "
+                                + varExportNamespace
+                                + " is already used by an open warmer");
+            }
+            final PageCacheWarmer warmer =
+                    new PageCacheWarmer(
+                            bytesPerSecond, chunkPages, touch, intervalMillis, varExportNamespace);
+            if (varExportNamespace != null) {
+                VarExporter.forNamespace(varExportNamespace).includeInGlobal().export(warmer, "");
+            }
+            return warmer;
+        }
+
+        private static boolean isExported(final String namespace) {
+            return VarExporter.forNamespace(namespace).getVariable("page-cache-buffers") != null;
+        }
+    }
+}
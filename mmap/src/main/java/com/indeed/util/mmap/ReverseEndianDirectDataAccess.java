@@ -93,4 +93,92 @@ final class ReverseEndianDirectDataAccess implements DirectDataAccess {
     public void copyMemory(long source, long dest, long length) {
         delegate.copyMemory(source, dest, length);
     }
+
+    @Override
+    public void getShorts(long address, short[] shorts, int start, int length) {
+        delegate.getShorts(address, shorts, start, length);
+        for (int i = start; i < start + length; i++) {
+            shorts[i] = Short.reverseBytes(shorts[i]);
+        }
+    }
+
+    @Override
+    public void putShorts(long address, short[] shorts, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putShort(address + i * 2L, Short.reverseBytes(shorts[start + i]));
+        }
+    }
+
+    @Override
+    public void getChars(long address, char[] chars, int start, int length) {
+        delegate.getChars(address, chars, start, length);
+        for (int i = start; i < start + length; i++) {
+            chars[i] = Character.reverseBytes(chars[i]);
+        }
+    }
+
+    @Override
+    public void putChars(long address, char[] chars, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putChar(address + i * 2L, Character.reverseBytes(chars[start + i]));
+        }
+    }
+
+    @Override
+    public void getInts(long address, int[] ints, int start, int length) {
+        delegate.getInts(address, ints, start, length);
+        for (int i = start; i < start + length; i++) {
+            ints[i] = Integer.reverseBytes(ints[i]);
+        }
+    }
+
+    @Override
+    public void putInts(long address, int[] ints, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putInt(address + i * 4L, Integer.reverseBytes(ints[start + i]));
+        }
+    }
+
+    @Override
+    public void getLongs(long address, long[] longs, int start, int length) {
+        delegate.getLongs(address, longs, start, length);
+        for (int i = start; i < start + length; i++) {
+            longs[i] = Long.reverseBytes(longs[i]);
+        }
+    }
+
+    @Override
+    public void putLongs(long address, long[] longs, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putLong(address + i * 8L, Long.reverseBytes(longs[start + i]));
+        }
+    }
+
+    @Override
+    public void getFloats(long address, float[] floats, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            floats[start + i] = getFloat(address + i * 4L);
+        }
+    }
+
+    @Override
+    public void putFloats(long address, float[] floats, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            putFloat(address + i * 4L, floats[start + i]);
+        }
+    }
+
+    @Override
+    public void getDoubles(long address, double[] doubles, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            doubles[start + i] = getDouble(address + i * 8L);
+        }
+    }
+
+    @Override
+    public void putDoubles(long address, double[] doubles, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            putDouble(address + i * 8L, doubles[start + i]);
+        }
+    }
 }
@@ -76,4 +76,92 @@ final class ReverseEndianHeapDataAccess implements HeapDataAccess {
     public void putDouble(byte[] b, int off, double val) {
         putLong(b, off, Double.doubleToRawLongBits(val));
     }
+
+    @Override
+    public void getShorts(byte[] b, int off, short[] shorts, int start, int length) {
+        delegate.getShorts(b, off, shorts, start, length);
+        for (int i = start; i < start + length; i++) {
+            shorts[i] = Short.reverseBytes(shorts[i]);
+        }
+    }
+
+    @Override
+    public void putShorts(byte[] b, int off, short[] shorts, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putShort(b, off + i * 2, Short.reverseBytes(shorts[start + i]));
+        }
+    }
+
+    @Override
+    public void getChars(byte[] b, int off, char[] chars, int start, int length) {
+        delegate.getChars(b, off, chars, start, length);
+        for (int i = start; i < start + length; i++) {
+            chars[i] = Character.reverseBytes(chars[i]);
+        }
+    }
+
+    @Override
+    public void putChars(byte[] b, int off, char[] chars, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putChar(b, off + i * 2, Character.reverseBytes(chars[start + i]));
+        }
+    }
+
+    @Override
+    public void getInts(byte[] b, int off, int[] ints, int start, int length) {
+        delegate.getInts(b, off, ints, start, length);
+        for (int i = start; i < start + length; i++) {
+            ints[i] = Integer.reverseBytes(ints[i]);
+        }
+    }
+
+    @Override
+    public void putInts(byte[] b, int off, int[] ints, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putInt(b, off + i * 4, Integer.reverseBytes(ints[start + i]));
+        }
+    }
+
+    @Override
+    public void getLongs(byte[] b, int off, long[] longs, int start, int length) {
+        delegate.getLongs(b, off, longs, start, length);
+        for (int i = start; i < start + length; i++) {
+            longs[i] = Long.reverseBytes(longs[i]);
+        }
+    }
+
+    @Override
+    public void putLongs(byte[] b, int off, long[] longs, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            delegate.putLong(b, off + i * 8, Long.reverseBytes(longs[start + i]));
+        }
+    }
+
+    @Override
+    public void getFloats(byte[] b, int off, float[] floats, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            floats[start + i] = getFloat(b, off + i * 4);
+        }
+    }
+
+    @Override
+    public void putFloats(byte[] b, int off, float[] floats, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            putFloat(b, off + i * 4, floats[start + i]);
+        }
+    }
+
+    @Override
+    public void getDoubles(byte[] b, int off, double[] doubles, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            doubles[start + i] = getDouble(b, off + i * 8);
+        }
+    }
+
+    @Override
+    public void putDoubles(byte[] b, int off, double[] doubles, int start, int length) {
+        for (int i = 0; i < length; i++) {
+            putDouble(b, off + i * 8, doubles[start + i]);
+        }
+    }
 }
@@ -0,0 +1,279 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Variant of {@link ZeroCopyOutputStream} that grows by chaining fixed size native segments
+ * instead of reallocating, so nothing written is ever copied again. Segments come from a {@link
+ * NativeArena} and go back to it on {@link #close()} or {@link #reset()}, so once the arena's
+ * free lists are warm a stream of steady size doesn't allocate native memory at all.
+ *
+ * <p>Since the written bytes aren't contiguous there is no single {@link DirectMemory} over them;
+ * use {@link #transferTo(WritableByteChannel)}, which uses gathering writes where the channel
+ * supports them, or {@link #writeTo(OutputStream)}.
+ */
+public final class SegmentedZeroCopyOutputStream extends OutputStream implements DataOutput {
+    public static final int DEFAULT_SEGMENT_SIZE = 65536;
+
+    private static final NativeArena SHARED_ARENA =
+            NativeArena.builder()
+                    .setOrder(ByteOrder.BIG_ENDIAN)
+                    .setMaxBlockSize(DEFAULT_SEGMENT_SIZE)
+                    .build();
+
+    private final NativeArena arena;
+    private final int segmentSize;
+    private final List<DirectMemory> segments = new ArrayList<>();
+    private final HeapMemory scratch;
+    private final byte[] scratchBytes = new byte[8];
+
+    private DirectMemory segment;
+    private int segmentPosition = 0;
+    private long position = 0;
+    private boolean closed = false;
+
+    /** Big endian stream of 64KB segments from a pool shared by all streams using it. */
+    public SegmentedZeroCopyOutputStream() {
+        this(SHARED_ARENA, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * @param arena segments are allocated from and returned to this arena, and have its byte order
+     * @param segmentSize should be at most the arena's largest size class for segments to be
+     *     reused
+     */
+    public SegmentedZeroCopyOutputStream(final NativeArena arena, final int segmentSize) {
+        Preconditions.checkArgument(segmentSize >= 8, "segmentSize must be at least 8");
+        this.arena = arena;
+        this.segmentSize = segmentSize;
+        scratch = new HeapMemory(scratchBytes, arena.getOrder());
+        segment = arena.allocate(segmentSize);
+        segments.add(segment);
+    }
+
+    /** @return the number of bytes written */
+    public long position() {
+        return position;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("stream is closed");
+        }
+    }
+
+    private void nextSegment() throws IOException {
+        ensureOpen();
+        segment = arena.allocate(segmentSize);
+        segments.add(segment);
+        segmentPosition = 0;
+    }
+
+    private boolean fits(final int length) {
+        return segmentPosition + length <= segmentSize;
+    }
+
+    private void advance(final int length) {
+        segmentPosition += length;
+        position += length;
+    }
+
+    private void writeScratch(final int length) throws IOException {
+        write(scratchBytes, 0, length);
+    }
+
+    public void writeBoolean(final boolean v) throws IOException {
+        writeByte(v ? 1 : 0);
+    }
+
+    public void writeByte(final int v) throws IOException {
+        if (!fits(1)) {
+            nextSegment();
+        }
+        segment.putByte(segmentPosition, (byte) v);
+        advance(1);
+    }
+
+    public void writeShort(final int v) throws IOException {
+        if (fits(2)) {
+            segment.putShort(segmentPosition, (short) v);
+            advance(2);
+        } else {
+            scratch.putShort(0, (short) v);
+            writeScratch(2);
+        }
+    }
+
+    public void writeChar(final int v) throws IOException {
+        if (fits(2)) {
+            segment.putChar(segmentPosition, (char) v);
+            advance(2);
+        } else {
+            scratch.putChar(0, (char) v);
+            writeScratch(2);
+        }
+    }
+
+    public void writeInt(final int v) throws IOException {
+        if (fits(4)) {
+            segment.putInt(segmentPosition, v);
+            advance(4);
+        } else {
+            scratch.putInt(0, v);
+            writeScratch(4);
+        }
+    }
+
+    public void writeLong(final long v) throws IOException {
+        if (fits(8)) {
+            segment.putLong(segmentPosition, v);
+            advance(8);
+        } else {
+            scratch.putLong(0, v);
+            writeScratch(8);
+        }
+    }
+
+    public void writeFloat(final float v) throws IOException {
+        writeInt(Float.floatToRawIntBits(v));
+    }
+
+    public void writeDouble(final double v) throws IOException {
+        writeLong(Double.doubleToRawLongBits(v));
+    }
+
+    public void writeBytes(final String s) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    public void writeChars(final String s) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    public void writeUTF(final String s) throws IOException {
+        throw new UnsupportedOperationException();
+    }
+
+    public void write(final int b) throws IOException {
+        writeByte(b);
+    }
+
+    @Override
+    public void write(final byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || off + len > b.length) {
+            throw new IndexOutOfBoundsException();
+        }
+        ensureOpen();
+        while (len > 0) {
+            if (segmentPosition == segmentSize) {
+                nextSegment();
+            }
+            final int n = Math.min(len, segmentSize - segmentPosition);
+            segment.putBytes(segmentPosition, b, off, n);
+            advance(n);
+            off += n;
+            len -= n;
+        }
+    }
+
+    private int segmentLength(final int index) {
+        return index == segments.size() - 1 ? segmentPosition : segmentSize;
+    }
+
+    /**
+     * Writes everything written so far to target straight from native memory, with gathering
+     * writes if target is a {@link GatheringByteChannel}.
+     *
+     * @return the number of bytes written, less than position() only if target is non blocking
+     */
+    public long transferTo(final WritableByteChannel target) throws IOException {
+        ensureOpen();
+        if (!(target instanceof GatheringByteChannel) || !DirectByteBuffers.isWrapSupported()) {
+            long written = 0;
+            for (int i = 0; i < segments.size(); i++) {
+                final int length = segmentLength(i);
+                final long n = DirectByteBuffers.write(segments.get(i), 0, length, target);
+                written += n;
+                if (n < length) {
+                    break;
+                }
+            }
+            return written;
+        }
+        final ByteBuffer[] buffers = new ByteBuffer[segments.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = DirectByteBuffers.wrap(segments.get(i).getAddress(), segmentLength(i));
+        }
+        final GatheringByteChannel channel = (GatheringByteChannel) target;
+        long written = 0;
+        int offset = 0;
+        while (written < position) {
+            final long n = channel.write(buffers, offset, buffers.length - offset);
+            if (n <= 0) {
+                break;
+            }
+            written += n;
+            while (offset < buffers.length && !buffers[offset].hasRemaining()) {
+                offset++;
+            }
+        }
+        return written;
+    }
+
+    public void writeTo(final OutputStream outputStream) throws IOException {
+        ensureOpen();
+        final byte[] bytes = new byte[Math.min(segmentSize, 8192)];
+        for (int i = 0; i < segments.size(); i++) {
+            final DirectMemory memory = segments.get(i);
+            final int length = segmentLength(i);
+            for (int off = 0; off < length; off += bytes.length) {
+                final int n = Math.min(bytes.length, length - off);
+                memory.getBytes(off, bytes, 0, n);
+                outputStream.write(bytes, 0, n);
+            }
+        }
+    }
+
+    /** Discards everything written, returning all segments but the first to the arena. */
+    public void reset() throws IOException {
+        ensureOpen();
+        for (int i = segments.size() - 1; i > 0; i--) {
+            arena.free(segments.remove(i));
+        }
+        segment = segments.get(0);
+        segmentPosition = 0;
+        position = 0;
+    }
+
+    /**
+     * Returns the segments to the arena. Writing to the stream afterwards throws an IOException
+     * instead of touching memory that the arena may have handed out again.
+     */
+    @Override
+    public void close() throws IOException {
+        if (!closed) {
+            closed = true;
+            for (final DirectMemory memory : segments) {
+                arena.free(memory);
+            }
+            segments.clear();
+            segment = null;
+            // sends every write to the slow path, which checks for close
+            segmentPosition = segmentSize;
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.function.Consumer;
+
+/**
+ * Bounded single producer, multiple consumer queue of byte messages in a memory mapped file. The
+ * file is mapped with MAP_SHARED, so the producer and the consumers may be in different processes
+ * on the same host, each with its own SharedRingBuffer over the file. Every message is taken by
+ * exactly one consumer.
+ *
+ * <p>The queue is a ring of fixed size slots. Each slot carries a sequence number that says
+ * whether it is free for the producer or holds a message for the consumers; consumers claim
+ * messages by advancing a shared read sequence with a CAS, and the producer is the only writer of
+ * the write sequence. Neither side ever blocks or takes a lock, and {@link #offer(byte[], int,
+ * int)} and {@link #poll(Consumer)} return immediately when the queue is full or empty.
+ *
+ * <p>At most one thread in all processes may call offer. A consumer that dies between claiming a
+ * message and releasing its slot blocks the producer once it wraps around to that slot.
+ */
+public final class SharedRingBuffer implements Closeable {
+    private static final ByteOrder ORDER = ByteOrder.nativeOrder();
+    private static final long MAGIC = 0x53524e4742554631L;
+
+    private static final int MAGIC_OFFSET = 0;
+    private static final int CAPACITY_OFFSET = 8;
+    private static final int SLOT_SIZE_OFFSET = 16;
+    // the sequences are on separate cache lines so producer and consumers don't false share
+    private static final int WRITE_SEQUENCE_OFFSET = 64;
+    private static final int READ_SEQUENCE_OFFSET = 128;
+    private static final int HEADER_SIZE = 192;
+
+    /** slot sequence, then message length. */
+    private static final int SLOT_HEADER_SIZE = 12;
+
+    private final MMapBuffer buffer;
+    private final DirectMemory memory;
+    private final long capacity;
+    private final long mask;
+    private final long slotSize;
+
+    private SharedRingBuffer(final MMapBuffer buffer) throws IOException {
+        this.buffer = buffer;
+        memory = buffer.memory();
+        if (memory.length() < HEADER_SIZE || memory.getLongVolatile(MAGIC_OFFSET) != MAGIC) {
+            throw new IOException("not an initialized ring buffer");
+        }
+        capacity = memory.getLong(CAPACITY_OFFSET);
+        slotSize = memory.getLong(SLOT_SIZE_OFFSET);
+        mask = capacity - 1;
+        if (memory.length() != HEADER_SIZE + capacity * slotSize) {
+            throw new IOException("ring buffer has the wrong length");
+        }
+    }
+
+    /**
+     * Creates or overwrites the ring buffer file at path. Nothing may have the file open while it
+     * is created.
+     *
+     * @param capacity number of slots, a power of two
+     * @param maxMessageSize largest message that can be offered
+     */
+    public static SharedRingBuffer create(
+            final Path path, final int capacity, final int maxMessageSize) throws IOException {
+        Preconditions.checkArgument(
+                capacity > 0 && Integer.bitCount(capacity) == 1,
+                "capacity must be a power of two");
+        Preconditions.checkArgument(maxMessageSize >= 0, "maxMessageSize must be >= 0");
+        final long slotSize = (SLOT_HEADER_SIZE + maxMessageSize + 7L) & -8L;
+        Files.deleteIfExists(path);
+        final MMapBuffer buffer =
+                new MMapBuffer(
+                        path,
+                        0,
+                        HEADER_SIZE + capacity * slotSize,
+                        FileChannel.MapMode.READ_WRITE,
+                        ORDER);
+        try {
+            final DirectMemory memory = buffer.memory();
+            memory.putLong(CAPACITY_OFFSET, capacity);
+            memory.putLong(SLOT_SIZE_OFFSET, slotSize);
+            memory.putLong(WRITE_SEQUENCE_OFFSET, 0);
+            memory.putLong(READ_SEQUENCE_OFFSET, 0);
+            for (long i = 0; i < capacity; i++) {
+                memory.putLong(HEADER_SIZE + i * slotSize, i);
+            }
+            // published last, so a concurrent open either fails or sees the whole header
+            memory.putLongVolatile(MAGIC_OFFSET, MAGIC);
+            return new SharedRingBuffer(buffer);
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /** Maps a ring buffer created with {@link #create(Path, int, int)} by any process. */
+    public static SharedRingBuffer open(final Path path) throws IOException {
+        final MMapBuffer buffer =
+                new MMapBuffer(path, 0, Files.size(path), FileChannel.MapMode.READ_WRITE, ORDER);
+        try {
+            return new SharedRingBuffer(buffer);
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    public long capacity() {
+        return capacity;
+    }
+
+    public int maxMessageSize() {
+        return (int) (slotSize - SLOT_HEADER_SIZE);
+    }
+
+    /** @return the number of messages waiting, which may be stale as soon as it is returned */
+    public long size() {
+        final long read = memory.getLongVolatile(READ_SEQUENCE_OFFSET);
+        final long write = memory.getLongVolatile(WRITE_SEQUENCE_OFFSET);
+        return Math.max(0, write - read);
+    }
+
+    private long slot(final long sequence) {
+        return HEADER_SIZE + (sequence & mask) * slotSize;
+    }
+
+    public boolean offer(final byte[] bytes) {
+        return offer(bytes, 0, bytes.length);
+    }
+
+    /**
+     * Adds a message. Must only be called by the single producer.
+     *
+     * @return false if the queue is full
+     * @throws IllegalArgumentException if the message is larger than {@link #maxMessageSize()}
+     */
+    public boolean offer(final byte[] bytes, final int off, final int len) {
+        Preconditions.checkPositionIndexes(off, off + len, bytes.length);
+        Preconditions.checkArgument(len <= maxMessageSize(), "message too large: %s", len);
+        final long sequence = memory.getLong(WRITE_SEQUENCE_OFFSET);
+        final long slot = slot(sequence);
+        if (memory.getLongVolatile(slot) != sequence) {
+            return false;
+        }
+        memory.putInt(slot + 8, len);
+        memory.putBytes(slot + SLOT_HEADER_SIZE, bytes, off, len);
+        memory.putLongOrdered(slot, sequence + 1);
+        memory.putLongOrdered(WRITE_SEQUENCE_OFFSET, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Takes the next message and hands it to handler. The memory passed to the handler is only
+     * valid until it returns, the slot is reused afterwards.
+     *
+     * @return false if the queue is empty
+     */
+    public boolean poll(final Consumer<? super Memory> handler) {
+        while (true) {
+            final long sequence = memory.getLongVolatile(READ_SEQUENCE_OFFSET);
+            final long slot = slot(sequence);
+            final long slotSequence = memory.getLongVolatile(slot);
+            if (slotSequence == sequence + 1) {
+                if (memory.compareAndSwapLong(READ_SEQUENCE_OFFSET, sequence, sequence + 1)) {
+                    final int length = memory.getInt(slot + 8);
+                    try {
+                        handler.accept(memory.slice(slot + SLOT_HEADER_SIZE, length));
+                    } finally {
+                        memory.putLongOrdered(slot, sequence + capacity);
+                    }
+                    return true;
+                }
+            } else if (slotSequence <= sequence) {
+                return false;
+            }
+        }
+    }
+
+    /** @return the next message, or null if the queue is empty */
+    public byte[] poll() {
+        final byte[][] message = new byte[1][];
+        final boolean polled =
+                poll(
+                        memory -> {
+                            message[0] = new byte[(int) memory.length()];
+                            memory.getBytes(0, message[0]);
+                        });
+        return polled ? message[0] : null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        buffer.close();
+    }
+}
@@ -1,8 +1,11 @@
 package com.indeed.util.mmap;
 
+import com.indeed.util.unsafe.IndeedUnsafe;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteOrder;
+
 /** @author jplaisance */
 public final class ShortArray {
     private static final Logger log = LoggerFactory.getLogger(ShortArray.class);
@@ -12,6 +15,11 @@ public final class ShortArray {
     private final Memory buffer;
     private final long length;
 
+    // lets the search methods read a direct buffer without going through the Memory interface
+    private final boolean direct;
+    private final long address;
+    private final boolean swapBytes;
+
     public ShortArray(Memory buffer, long address, long length) {
         if (address < 0) throw new IndexOutOfBoundsException("address must be >= 0");
         if (length < 0) throw new IllegalArgumentException("length must be >= 0");
@@ -20,6 +28,15 @@ public final class ShortArray {
                     String.format("address+length*%d must be <= buffer.length()", TYPE_SIZE));
         this.buffer = buffer.slice(address, length * TYPE_SIZE);
         this.length = length;
+        this.direct = this.buffer.isDirect();
+        if (direct) {
+            final DirectMemory directMemory = (DirectMemory) this.buffer;
+            this.address = directMemory.getAddress();
+            this.swapBytes = directMemory.getOrder() != ByteOrder.nativeOrder();
+        } else {
+            this.address = 0;
+            this.swapBytes = false;
+        }
     }
 
     public short get(final long index) {
@@ -27,9 +44,7 @@ public final class ShortArray {
     }
 
     public void get(final long index, final short[] shorts, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            shorts[start + i] = buffer.getShort((index + i) * TYPE_SIZE);
-        }
+        buffer.getShorts(index * TYPE_SIZE, shorts, start, length);
     }
 
     public void get(final long index, final short[] shorts) {
@@ -50,9 +65,7 @@ public final class ShortArray {
     }
 
     public void set(final long index, final short[] shorts, final int start, final int length) {
-        for (int i = 0; i < length; i++) {
-            buffer.putShort((index + i) * TYPE_SIZE, shorts[start + i]);
-        }
+        buffer.putShorts(index * TYPE_SIZE, shorts, start, length);
     }
 
     public void set(final long index, final short[] shorts) {
@@ -73,6 +86,87 @@ public final class ShortArray {
         return length;
     }
 
+    /**
+     * Searches the array, which must be sorted in ascending order, for key.
+     *
+     * @return the index of the first occurrence of key, or (-(insertion point) - 1) if it is not
+     *     present
+     */
+    public long binarySearch(final short key) {
+        return binarySearch(0, length, key);
+    }
+
+    /** Like {@link #binarySearch(short)} restricted to the indexes [fromIndex, toIndex). */
+    public long binarySearch(final long fromIndex, final long toIndex, final short key) {
+        checkRange(fromIndex, toIndex);
+        final long index = lowerBound0(fromIndex, toIndex, key);
+        return index < toIndex && getUnchecked(index) == key ? index : -index - 1;
+    }
+
+    /**
+     * Like {@link #binarySearch(long, long, short)} from fromIndex to the end of the array, but
+     * probes fromIndex, fromIndex + 1, fromIndex + 3, fromIndex + 7, ... before the binary search.
+     * That is cheaper when key is expected close to fromIndex, e.g. when walking a posting list.
+     */
+    public long exponentialSearch(final long fromIndex, final short key) {
+        checkRange(fromIndex, length);
+        long low = fromIndex;
+        long high = fromIndex;
+        long step = 1;
+        while (high < length && getUnchecked(high) < key) {
+            low = high + 1;
+            high += step;
+            step <<= 1;
+        }
+        final long index = lowerBound0(low, Math.min(high, length), key);
+        return index < length && getUnchecked(index) == key ? index : -index - 1;
+    }
+
+    /**
+     * @return the index of the first element that is not less than key in an array sorted in
+     *     ascending order, or length() if there is none
+     */
+    public long lowerBound(final short key) {
+        return lowerBound(0, length, key);
+    }
+
+    /** Like {@link #lowerBound(short)} restricted to the indexes [fromIndex, toIndex). */
+    public long lowerBound(final long fromIndex, final long toIndex, final short key) {
+        checkRange(fromIndex, toIndex);
+        return lowerBound0(fromIndex, toIndex, key);
+    }
+
+    // the loop body has no data dependent branch, the comparison compiles to a conditional move
+    private long lowerBound0(final long fromIndex, final long toIndex, final short key) {
+        long n = toIndex - fromIndex;
+        if (n == 0) {
+            return fromIndex;
+        }
+        long base = fromIndex;
+        while (n > 1) {
+            final long half = n >>> 1;
+            base = getUnchecked(base + half) < key ? base + half : base;
+            n -= half;
+        }
+        return getUnchecked(base) < key ? base + 1 : base;
+    }
+
+    // callers must check the index, direct buffers are read without bounds checks
+    private short getUnchecked(final long index) {
+        if (direct) {
+            final short value = IndeedUnsafe.getShort(address + index * TYPE_SIZE);
+            return swapBytes ? Short.reverseBytes(value) : value;
+        }
+        return buffer.getShort(index * TYPE_SIZE);
+    }
+
+    private void checkRange(final long fromIndex, final long toIndex) {
+        if (fromIndex < 0 || toIndex > length || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException(
+                    "fromIndex: " + fromIndex + " toIndex: " + toIndex + " length: " + length);
+        }
+    }
+
     public ShortArray slice(final long start, final long length) {
         return new ShortArray(buffer, start * TYPE_SIZE, length);
     }
@@ -0,0 +1,321 @@
+package com.indeed.util.mmap;
+
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Maps;
+import com.indeed.util.compress.CompressionCodec;
+import com.indeed.util.compress.Decompressor;
+import com.indeed.util.io.VIntUtils;
+import com.indeed.util.serialization.Serializer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Memory mapped reader for files written with {@link SortedTableWriter}. The block index is kept
+ * on the heap, so a point lookup binary searches the index and then only reads a single block
+ * from the mapping, usually one or two pages.
+ *
+ * <p>Uncompressed blocks are read directly from the mapping. Compressed blocks are decompressed
+ * into a heap array on every access. Instances are safe to use from multiple threads.
+ */
+public final class SortedTable<K, V> implements Closeable {
+    private static final ByteOrder ORDER = ByteOrder.BIG_ENDIAN;
+
+    private final MMapBuffer buffer;
+    private final DirectMemory memory;
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Comparator<? super K> comparator;
+    private final CompressionCodec codec;
+    private final ConcurrentLinkedQueue<Decompressor> decompressors =
+            new ConcurrentLinkedQueue<>();
+
+    private final long size;
+    private final long[] blockOffsets;
+    private final int[] storedLengths;
+    private final int[] rawLengths;
+    private final boolean[] compressed;
+    private final K[] firstKeys;
+
+    private SortedTable(
+            final MMapBuffer buffer,
+            final Serializer<K> keySerializer,
+            final Serializer<V> valueSerializer,
+            final Comparator<? super K> comparator)
+            throws IOException {
+        this.buffer = buffer;
+        this.keySerializer = keySerializer;
+        this.valueSerializer = valueSerializer;
+        this.comparator = comparator;
+        memory = buffer.memory();
+        final long length = memory.length();
+        if (length < SortedTableWriter.FOOTER_SIZE
+                || memory.getLong(length - 8) != SortedTableWriter.MAGIC) {
+            throw new IOException("not a sorted table");
+        }
+        final long indexOffset = memory.getLong(length - 24);
+        size = memory.getLong(length - 16);
+
+        final MemoryDataInput in = new MemoryDataInput(memory);
+        in.seek(indexOffset);
+        codec = SortedTableWriter.newCodec(in.readUnsignedByte());
+        final int blockCount = VIntUtils.readVInt(in);
+        blockOffsets = new long[blockCount];
+        storedLengths = new int[blockCount];
+        rawLengths = new int[blockCount];
+        compressed = new boolean[blockCount];
+        @SuppressWarnings("unchecked")
+        final K[] keys = (K[]) new Object[blockCount];
+        firstKeys = keys;
+        for (int i = 0; i < blockCount; i++) {
+            blockOffsets[i] = in.readLong();
+            storedLengths[i] = in.readInt();
+            rawLengths[i] = in.readInt();
+            compressed[i] = in.readBoolean();
+            final int keyLength = VIntUtils.readVInt(in);
+            firstKeys[i] =
+                    keySerializer.read(new MemoryDataInput(memory.slice(in.position(), keyLength)));
+            in.seek(in.position() + keyLength);
+        }
+    }
+
+    public static <K, V> SortedTable<K, V> open(
+            final Path path,
+            final Serializer<K> keySerializer,
+            final Serializer<V> valueSerializer,
+            final Comparator<? super K> comparator)
+            throws IOException {
+        return open(path, keySerializer, valueSerializer, comparator, MappingOptions.DEFAULT);
+    }
+
+    /** @param options e.g. {@link Advice#RANDOM} for tables mostly used for point lookups */
+    public static <K, V> SortedTable<K, V> open(
+            final Path path,
+            final Serializer<K> keySerializer,
+            final Serializer<V> valueSerializer,
+            final Comparator<? super K> comparator,
+            final MappingOptions options)
+            throws IOException {
+        final MMapBuffer buffer =
+                new MMapBuffer(path, FileChannel.MapMode.READ_ONLY, ORDER, options);
+        try {
+            return new SortedTable<>(buffer, keySerializer, valueSerializer, comparator);
+        } catch (IOException | RuntimeException e) {
+            buffer.close();
+            throw e;
+        }
+    }
+
+    /** @return the number of entries in the table */
+    public long size() {
+        return size;
+    }
+
+    public int blockCount() {
+        return blockOffsets.length;
+    }
+
+    /** @return the value for key, or null if the table doesn't contain it */
+    public V get(final K key) throws IOException {
+        final int block = findBlock(key);
+        if (block < 0) {
+            return null;
+        }
+        final BlockCursor cursor = new BlockCursor(block);
+        while (cursor.next()) {
+            final int cmp = comparator.compare(cursor.key(), key);
+            if (cmp == 0) {
+                return cursor.value();
+            }
+            if (cmp > 0) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    public boolean containsKey(final K key) throws IOException {
+        final int block = findBlock(key);
+        if (block < 0) {
+            return false;
+        }
+        final BlockCursor cursor = new BlockCursor(block);
+        while (cursor.next()) {
+            final int cmp = comparator.compare(cursor.key(), key);
+            if (cmp >= 0) {
+                return cmp == 0;
+            }
+        }
+        return false;
+    }
+
+    /** @return all entries in key order */
+    public Iterator<Map.Entry<K, V>> iterator() {
+        return range(null, null);
+    }
+
+    /**
+     * Iterates over the entries with from &lt;= key &lt; to in key order. Errors reading the file
+     * are thrown as {@link UncheckedIOException}.
+     *
+     * @param from inclusive lower bound, or null to start at the first entry
+     * @param to exclusive upper bound, or null to iterate to the last entry
+     */
+    public Iterator<Map.Entry<K, V>> range(final K from, final K to) {
+        final int startBlock = from == null ? 0 : Math.max(findBlock(from), 0);
+        return new AbstractIterator<Map.Entry<K, V>>() {
+            private int block = startBlock;
+            private BlockCursor cursor = null;
+
+            @Override
+            protected Map.Entry<K, V> computeNext() {
+                try {
+                    while (true) {
+                        if (cursor == null || !cursor.next()) {
+                            if (block >= blockOffsets.length) {
+                                return endOfData();
+                            }
+                            cursor = new BlockCursor(block++);
+                            continue;
+                        }
+                        final K key = cursor.key();
+                        if (from != null && comparator.compare(key, from) < 0) {
+                            continue;
+                        }
+                        if (to != null && comparator.compare(key, to) >= 0) {
+                            block = blockOffsets.length;
+                            return endOfData();
+                        }
+                        return Maps.immutableEntry(key, cursor.value());
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        };
+    }
+
+    /** @return the last block whose first key is &lt;= key, or -1 if key precedes every block */
+    private int findBlock(final K key) {
+        int low = 0;
+        int high = firstKeys.length - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            final int cmp = comparator.compare(firstKeys[mid], key);
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return low - 1;
+    }
+
+    private Memory blockMemory(final int block) throws IOException {
+        final Memory stored = memory.slice(blockOffsets[block], storedLengths[block]);
+        if (!compressed[block]) {
+            return stored;
+        }
+        Decompressor decompressor = decompressors.poll();
+        if (decompressor == null) {
+            decompressor = codec.createDecompressor();
+        }
+        try {
+            final byte[] input = new byte[storedLengths[block]];
+            stored.getBytes(0, input);
+            final byte[] raw = new byte[rawLengths[block]];
+            decompressor.reset();
+            decompressor.setInput(input, 0, input.length);
+            int length = 0;
+            while (length < raw.length && !decompressor.finished()) {
+                final int n = decompressor.decompress(raw, length, raw.length - length);
+                if (n == 0 && decompressor.needsInput()) {
+                    break;
+                }
+                length += n;
+            }
+            if (length != raw.length) {
+                throw new IOException(
+                        "block "
+                                + block
+                                + " decompressed to "
+                                + length
+                                + " bytes, expected "
+                                + raw.length);
+            }
+            return new HeapMemory(raw, ORDER);
+        } finally {
+            decompressors.offer(decompressor);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        Decompressor decompressor;
+        while ((decompressor = decompressors.poll()) != null) {
+            decompressor.end();
+        }
+        buffer.close();
+    }
+
+    private static MemoryDataInput keyInput(final byte[] keyBytes) {
+        return new MemoryDataInput(new HeapMemory(keyBytes, ORDER));
+    }
+
+    /** Walks the entries of one block, rebuilding each key from the previous one. */
+    private final class BlockCursor {
+        private final Memory block;
+        private final MemoryDataInput in;
+        private byte[] keyBytes = new byte[64];
+        // reused for every key, and replaced when keyBytes grows
+        private MemoryDataInput keyIn = keyInput(keyBytes);
+        private int keyLength;
+        private long valueOffset;
+        private int valueLength;
+
+        BlockCursor(final int block) throws IOException {
+            this.block = blockMemory(block);
+            in = new MemoryDataInput(this.block);
+        }
+
+        boolean next() throws IOException {
+            if (in.position() >= block.length()) {
+                return false;
+            }
+            final int shared = VIntUtils.readVInt(in);
+            final int suffix = VIntUtils.readVInt(in);
+            keyLength = shared + suffix;
+            if (keyLength > keyBytes.length) {
+                final byte[] newKeyBytes = new byte[Math.max(keyLength, keyBytes.length * 2)];
+                System.arraycopy(keyBytes, 0, newKeyBytes, 0, shared);
+                keyBytes = newKeyBytes;
+                keyIn = keyInput(keyBytes);
+            }
+            in.readFully(keyBytes, shared, suffix);
+            valueLength = VIntUtils.readVInt(in);
+            valueOffset = in.position();
+            in.seek(valueOffset + valueLength);
+            return true;
+        }
+
+        K key() throws IOException {
+            keyIn.seek(0);
+            return keySerializer.read(keyIn);
+        }
+
+        V value() throws IOException {
+            return valueSerializer.read(
+                    new MemoryDataInput(block.slice(valueOffset, valueLength)));
+        }
+    }
+}
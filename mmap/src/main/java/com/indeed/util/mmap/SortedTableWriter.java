@@ -0,0 +1,334 @@
+package com.indeed.util.mmap;
+
+import com.google.common.base.Preconditions;
+import com.indeed.util.compress.CompressionCodec;
+import com.indeed.util.compress.Compressor;
+import com.indeed.util.compress.GzipCodec;
+import com.indeed.util.compress.SnappyCodec;
+import com.indeed.util.io.SafeFiles;
+import com.indeed.util.io.SafeOutputStream;
+import com.indeed.util.io.VIntUtils;
+import com.indeed.util.serialization.Serializer;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes an immutable sorted key/value file that is read with {@link SortedTable}. Entries must be
+ * added in strictly increasing key order. The table is written to a temp file that only replaces
+ * the target once {@link #close()} has written the footer, see {@link
+ * SafeFiles#createAtomicFile(Path)}. If adding an entry fails the table is discarded on close.
+ *
+ * <p>Entries are grouped into blocks of about {@link Builder#setBlockSize(int)} bytes. Within a
+ * block each serialized key only stores the bytes that differ from the previous key. Blocks are
+ * optionally compressed with a {@link CompressionCodec}, and the first key of every block goes
+ * into an index at the end of the file that the reader keeps in memory.
+ *
+ * <pre>
+ *   try (SortedTableWriter&lt;String, Long&gt; writer =
+ *           SortedTableWriter.builder(
+ *                           path, new StringSerializer(), new LongSerializer(), comparator)
+ *                   .setCompressionCodec(new SnappyCodec())
+ *                   .build()) {
+ *       writer.add("a", 1L);
+ *       writer.add("b", 2L);
+ *   }
+ * </pre>
+ */
+public final class SortedTableWriter<K, V> implements Closeable {
+    static final long MAGIC = 0x534f525454424c31L; // "SORTTBL1"
+    static final int FOOTER_SIZE = 24;
+
+    // ids of the codecs a table can be compressed with, stored in the index
+    static final int CODEC_NONE = 0;
+    static final int CODEC_SNAPPY = 1;
+    static final int CODEC_GZIP = 2;
+
+    // the snappy compressor and decompressor buffer 64KB, larger blocks are stored uncompressed
+    static final int MAX_COMPRESSED_BLOCK_SIZE = 60 * 1024;
+
+    private final Serializer<K> keySerializer;
+    private final Serializer<V> valueSerializer;
+    private final Comparator<? super K> comparator;
+    private final int blockSize;
+    private final CompressionCodec codec;
+    private final Compressor compressor;
+
+    private final SafeOutputStream file;
+    private final DataOutputStream out;
+    private long position = 0;
+    private long entryCount = 0;
+
+    private final ByteArrayOutputStream block = new ByteArrayOutputStream();
+    private final DataOutput blockOut = new DataOutputStream(block);
+    private final ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+    private final DataOutputStream serializedOut = new DataOutputStream(serialized);
+    private byte[] compressed = new byte[0];
+
+    private K previousKey = null;
+    private byte[] previousKeyBytes = null;
+    private byte[] blockFirstKey = null;
+
+    private final List<BlockInfo> blocks = new ArrayList<>();
+
+    private boolean failed = false;
+    private boolean closed = false;
+
+    private SortedTableWriter(final Builder<K, V> builder) throws IOException {
+        keySerializer = builder.keySerializer;
+        valueSerializer = builder.valueSerializer;
+        comparator = builder.comparator;
+        blockSize = builder.blockSize;
+        codec = builder.codec;
+        compressor = codec == null ? null : codec.createCompressor();
+        file = SafeFiles.createAtomicFile(builder.path);
+        out = new DataOutputStream(new BufferedOutputStream(file));
+    }
+
+    public static <K, V> Builder<K, V> builder(
+            final Path path,
+            final Serializer<K> keySerializer,
+            final Serializer<V> valueSerializer,
+            final Comparator<? super K> comparator) {
+        return new Builder<>(path, keySerializer, valueSerializer, comparator);
+    }
+
+    /** @throws IllegalArgumentException if key is not greater than the previously added key */
+    public void add(final K key, final V value) throws IOException {
+        Preconditions.checkState(!closed, "writer is closed");
+        if (previousKey != null && comparator.compare(previousKey, key) >= 0) {
+            throw new IllegalArgumentException(
+                    "keys must be added in increasing order: " + key + " after " + previousKey);
+        }
+        try {
+            append(key, value);
+            entryCount++;
+            if (block.size() >= blockSize) {
+                flushBlock();
+            }
+        } catch (IOException | RuntimeException e) {
+            failed = true;
+            throw e;
+        }
+    }
+
+    private void append(final K key, final V value) throws IOException {
+        serialized.reset();
+        keySerializer.write(key, serializedOut);
+        final byte[] keyBytes = serialized.toByteArray();
+
+        final int shared;
+        if (blockFirstKey == null) {
+            blockFirstKey = keyBytes;
+            shared = 0;
+        } else {
+            shared = sharedPrefixLength(previousKeyBytes, keyBytes);
+        }
+        VIntUtils.writeVInt(blockOut, shared);
+        VIntUtils.writeVInt(blockOut, keyBytes.length - shared);
+        blockOut.write(keyBytes, shared, keyBytes.length - shared);
+
+        serialized.reset();
+        valueSerializer.write(value, serializedOut);
+        VIntUtils.writeVInt(blockOut, serialized.size());
+        serialized.writeTo(block);
+
+        previousKey = key;
+        previousKeyBytes = keyBytes;
+    }
+
+    private static int sharedPrefixLength(final byte[] a, final byte[] b) {
+        final int length = Math.min(a.length, b.length);
+        int i = 0;
+        while (i < length && a[i] == b[i]) {
+            i++;
+        }
+        return i;
+    }
+
+    private void flushBlock() throws IOException {
+        if (block.size() == 0) {
+            return;
+        }
+        final byte[] raw = block.toByteArray();
+        int storedLength = raw.length;
+        boolean isCompressed = false;
+        if (compressor != null && raw.length <= MAX_COMPRESSED_BLOCK_SIZE) {
+            final int compressedLength = compress(raw);
+            // not worth decompressing on every read if it barely shrinks
+            if (compressedLength < raw.length - raw.length / 8) {
+                out.write(compressed, 0, compressedLength);
+                storedLength = compressedLength;
+                isCompressed = true;
+            }
+        }
+        if (!isCompressed) {
+            out.write(raw);
+        }
+        blocks.add(new BlockInfo(position, storedLength, raw.length, isCompressed, blockFirstKey));
+        position += storedLength;
+        block.reset();
+        blockFirstKey = null;
+    }
+
+    private int compress(final byte[] raw) throws IOException {
+        compressor.reset();
+        compressor.setInput(raw, 0, raw.length);
+        compressor.finish();
+        if (compressed.length < raw.length + raw.length / 6 + 64) {
+            compressed = new byte[raw.length + raw.length / 6 + 64];
+        }
+        int length = 0;
+        while (!compressor.finished()) {
+            if (length == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            length += compressor.compress(compressed, length, compressed.length - length);
+        }
+        return length;
+    }
+
+    /**
+     * Writes the last block, the index and the footer and moves the table to its path, or only
+     * deletes the temp file if adding an entry failed.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (failed) {
+                return;
+            }
+            flushBlock();
+            final long indexOffset = position;
+            final DataOutput index = out;
+            index.writeByte(codecId(codec));
+            VIntUtils.writeVInt(index, blocks.size());
+            for (final BlockInfo info : blocks) {
+                index.writeLong(info.offset);
+                index.writeInt(info.storedLength);
+                index.writeInt(info.rawLength);
+                index.writeBoolean(info.compressed);
+                VIntUtils.writeVInt(index, info.firstKey.length);
+                index.write(info.firstKey);
+            }
+            index.writeLong(indexOffset);
+            index.writeLong(entryCount);
+            index.writeLong(MAGIC);
+            out.flush();
+            file.commit();
+        } finally {
+            if (compressor != null) {
+                compressor.end();
+            }
+            // deletes the temp file unless it was committed
+            file.close();
+        }
+    }
+
+    static int codecId(final CompressionCodec codec) {
+        if (codec == null) {
+            return CODEC_NONE;
+        } else if (codec.getClass() == SnappyCodec.class) {
+            return CODEC_SNAPPY;
+        } else if (codec.getClass() == GzipCodec.class) {
+            return CODEC_GZIP;
+        }
+        throw new IllegalArgumentException(
+                "unsupported compression codec " + codec.getClass().getName());
+    }
+
+    /** @return a new instance of the codec with the given id, null for {@link #CODEC_NONE} */
+    static CompressionCodec newCodec(final int id) throws IOException {
+        switch (id) {
+            case CODEC_NONE:
+                return null;
+            case CODEC_SNAPPY:
+                return new SnappyCodec();
+            case CODEC_GZIP:
+                return new GzipCodec();
+            default:
+                throw new IOException("unknown compression codec id " + id);
+        }
+    }
+
+    private static final class BlockInfo {
+        final long offset;
+        final int storedLength;
+        final int rawLength;
+        final boolean compressed;
+        final byte[] firstKey;
+
+        BlockInfo(
+                final long offset,
+                final int storedLength,
+                final int rawLength,
+                final boolean compressed,
+                final byte[] firstKey) {
+            this.offset = offset;
+            this.storedLength = storedLength;
+            this.rawLength = rawLength;
+            this.compressed = compressed;
+            this.firstKey = firstKey;
+        }
+    }
+
+    public static final class Builder<K, V> {
+        private final Path path;
+        private final Serializer<K> keySerializer;
+        private final Serializer<V> valueSerializer;
+        private final Comparator<? super K> comparator;
+        private int blockSize = 4096;
+        private CompressionCodec codec = null;
+
+        private Builder(
+                final Path path,
+                final Serializer<K> keySerializer,
+                final Serializer<V> valueSerializer,
+                final Comparator<? super K> comparator) {
+            this.path = path;
+            this.keySerializer = keySerializer;
+            this.valueSerializer = valueSerializer;
+            this.comparator = comparator;
+        }
+
+        /**
+         * Uncompressed size after which a block is closed. Defaults to 4096 so that an
+         * uncompressed point lookup reads one or two pages.
+         */
+        public Builder<K, V> setBlockSize(final int blockSize) {
+            Preconditions.checkArgument(blockSize > 0, "blockSize must be positive");
+            this.blockSize = blockSize;
+            return this;
+        }
+
+        /**
+         * Compresses every block that shrinks by at least an eighth with the codec, which must be
+         * a {@link SnappyCodec} or a {@link GzipCodec}. The file only records which of them was
+         * used, and the reader creates its own instance.
+         *
+         * @throws IllegalArgumentException for any other codec
+         */
+        public Builder<K, V> setCompressionCodec(final CompressionCodec codec) {
+            codecId(codec);
+            this.codec = codec;
+            return this;
+        }
+
+        public SortedTableWriter<K, V> build() throws IOException {
+            return new SortedTableWriter<>(this);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.unsafe.IndeedUnsafe;
+
+/**
+ * Copies between heap arrays and native memory. A null base means the offset is an absolute
+ * address.
+ */
+final class UnsafeArrayCopy {
+
+    // copied from java.nio.Bits, keeps each copy short enough to not delay safepoints
+    private static final long UNSAFE_COPY_THRESHOLD = 1024L * 1024L;
+
+    private UnsafeArrayCopy() {}
+
+    static void copy(
+            Object srcBase, long srcOffset, Object destBase, long destOffset, long length) {
+        while (length > 0) {
+            final long size = Math.min(length, UNSAFE_COPY_THRESHOLD);
+            IndeedUnsafe.copyMemory(srcBase, srcOffset, destBase, destOffset, size);
+            length -= size;
+            srcOffset += size;
+            destOffset += size;
+        }
+    }
+}
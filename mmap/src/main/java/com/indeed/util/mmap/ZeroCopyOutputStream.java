@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.ByteOrder;
+import java.nio.channels.WritableByteChannel;
 
 /**
  * Zero Copy is sort of a lie, it's zero copy if realloc decides not to copy for sizes less than
@@ -176,6 +177,15 @@ public final class ZeroCopyOutputStream extends OutputStream implements DataOutp
         ByteStreams.copy(in, outputStream);
     }
 
+    /**
+     * Writes everything written so far to target straight from native memory.
+     *
+     * @return the number of bytes written, less than position() only if target is non blocking
+     */
+    public long transferTo(WritableByteChannel target) throws IOException {
+        return buffer.transferTo(0, currentAddress, target);
+    }
+
     // the input stream returned by this call is invalidated by closing or writing additional data
     // to this output stream
     public InputStream getInputStream() {
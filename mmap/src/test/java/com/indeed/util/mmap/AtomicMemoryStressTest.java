@@ -0,0 +1,212 @@
+package com.indeed.util.mmap;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Hammers the atomic accessors of both Memory implementations and byte orders. */
+public class AtomicMemoryStressTest {
+    private static final int THREADS = 8;
+    private static final int ITERATIONS = 100000;
+
+    private ExecutorService executor;
+    private final List<NativeBuffer> buffers = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        for (final NativeBuffer buffer : buffers) {
+            buffer.close();
+        }
+    }
+
+    private List<Memory> memories(final int length) {
+        final List<Memory> memories = new ArrayList<>();
+        for (final ByteOrder order :
+                new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final NativeBuffer buffer = new NativeBuffer(length, order);
+            buffer.memory().putBytes(0, new byte[length]);
+            buffers.add(buffer);
+            memories.add(buffer.memory());
+            memories.add(new HeapMemory(length, order));
+        }
+        return memories;
+    }
+
+    /** Runs task on every thread at once and returns the results. */
+    private <T> List<T> runConcurrently(final Callable<T> task) throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<T>> futures = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(
+                    executor.submit(
+                            () -> {
+                                start.await();
+                                return task.call();
+                            }));
+        }
+        start.countDown();
+        final List<T> results = new ArrayList<>();
+        for (final Future<T> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    @Test
+    public void testGetAndAdd() throws Exception {
+        for (final Memory memory : memories(64)) {
+            runConcurrently(
+                    () -> {
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            memory.getAndAddLong(8, 3);
+                            memory.getAndAddInt(20, -1);
+                        }
+                        return null;
+                    });
+            assertEquals((long) THREADS * ITERATIONS * 3, memory.getLongVolatile(8));
+            assertEquals(-THREADS * ITERATIONS, memory.getIntVolatile(20));
+            assertEquals(0, memory.getLong(0));
+            assertEquals(0, memory.getInt(16));
+            assertEquals(0, memory.getInt(24));
+        }
+    }
+
+    @Test
+    public void testTicketsAreUnique() throws Exception {
+        for (final Memory memory : memories(8)) {
+            final List<long[]> tickets =
+                    runConcurrently(
+                            () -> {
+                                final long[] taken = new long[ITERATIONS];
+                                for (int i = 0; i < ITERATIONS; i++) {
+                                    taken[i] = memory.getAndAddLong(0, 1);
+                                }
+                                return taken;
+                            });
+            final BitSet seen = new BitSet(THREADS * ITERATIONS);
+            for (final long[] taken : tickets) {
+                for (final long ticket : taken) {
+                    assertFalse(seen.get((int) ticket));
+                    seen.set((int) ticket);
+                }
+            }
+            assertEquals(THREADS * ITERATIONS, seen.cardinality());
+        }
+    }
+
+    @Test
+    public void testCompareAndSwapArrays() throws Exception {
+        final int slots = 16;
+        for (final Memory memory : memories(slots * 12)) {
+            final LongArray longs = memory.longArray(0, slots);
+            final IntArray ints = memory.intArray(slots * 8, slots);
+            runConcurrently(
+                    () -> {
+                        final Random random = new Random();
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            final int slot = random.nextInt(slots);
+                            while (true) {
+                                final long value = longs.getVolatile(slot);
+                                if (longs.compareAndSwap(slot, value, value + 1)) {
+                                    break;
+                                }
+                            }
+                            while (true) {
+                                final int value = ints.getVolatile(slot);
+                                if (ints.compareAndSwap(slot, value, value + 1)) {
+                                    break;
+                                }
+                            }
+                        }
+                        return null;
+                    });
+            long longSum = 0;
+            long intSum = 0;
+            for (int i = 0; i < slots; i++) {
+                longSum += longs.get(i);
+                intSum += ints.get(i);
+            }
+            assertEquals((long) THREADS * ITERATIONS, longSum);
+            assertEquals((long) THREADS * ITERATIONS, intSum);
+        }
+    }
+
+    @Test
+    public void testArrayGetAndAdd() throws Exception {
+        for (final Memory memory : memories(16)) {
+            final LongArray longs = memory.longArray(0, 1);
+            final IntArray ints = memory.intArray(8, 2);
+            runConcurrently(
+                    () -> {
+                        for (int i = 0; i < ITERATIONS; i++) {
+                            longs.getAndAdd(0, 1L << 33);
+                            ints.getAndAdd(1, 1);
+                        }
+                        return null;
+                    });
+            assertEquals((long) THREADS * ITERATIONS << 33, longs.get(0));
+            assertEquals(THREADS * ITERATIONS, ints.get(1));
+            assertEquals(0, ints.get(0));
+        }
+    }
+
+    @Test
+    public void testOrderedPublication() throws Exception {
+        for (final Memory memory : memories(64)) {
+            final LongArray longs = memory.longArray(0, 8);
+            final Future<?> writer =
+                    executor.submit(
+                            () -> {
+                                for (long i = 1; i <= ITERATIONS; i++) {
+                                    // plain writes, published by the ordered write of the flag
+                                    for (int j = 1; j < 8; j++) {
+                                        longs.set(j, i);
+                                    }
+                                    longs.setOrdered(0, i);
+                                }
+                            });
+            final List<Boolean> consistent =
+                    runConcurrently(
+                            () -> {
+                                long seen = 0;
+                                while (seen < ITERATIONS) {
+                                    seen = longs.getVolatile(0);
+                                    for (int j = 1; j < 8; j++) {
+                                        if (longs.get(j) < seen) {
+                                            return false;
+                                        }
+                                    }
+                                }
+                                return true;
+                            });
+            writer.get();
+            for (final boolean value : consistent) {
+                assertTrue(value);
+            }
+            longs.setVolatile(0, -1);
+            assertEquals(-1, longs.getVolatile(0));
+        }
+    }
+}
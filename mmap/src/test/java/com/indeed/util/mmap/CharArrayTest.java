@@ -118,4 +118,40 @@ public class CharArrayTest extends TestCase {
             }
         }
     }
+
+    public void testSearch() throws Exception {
+        final CharArray bigEndian =
+                new NativeBuffer(length * size, ByteOrder.BIG_ENDIAN)
+                        .memory()
+                        .charArray(0L, length);
+        for (CharArray charArray :
+                new CharArray[] {charArrays[0], charArrays[1], charArrays[2], bigEndian}) {
+            for (int i = 0; i < length; i++) {
+                charArray.set(i, (char) ((i / 3) * 2 + 1));
+            }
+            long expected = 0;
+            for (int key = 0; key < (length / 3) * 2 + 1 + 2; key++) {
+                while (expected < length && charArray.get(expected) < key) {
+                    expected++;
+                }
+                final long found =
+                        expected < length && charArray.get(expected) == key
+                                ? expected
+                                : -expected - 1;
+                assertEquals(expected, charArray.lowerBound((char) key));
+                assertEquals(found, charArray.binarySearch((char) key));
+                assertEquals(found, charArray.exponentialSearch(0, (char) key));
+                assertEquals(found, charArray.exponentialSearch(expected / 2, (char) key));
+                assertEquals(
+                        Math.min(Math.max(expected, 100), 200),
+                        charArray.lowerBound(100, 200, (char) key));
+            }
+            assertEquals(-1, charArray.binarySearch(0, 0, (char) 5));
+            try {
+                charArray.binarySearch(10, 5, (char) 5);
+                fail();
+            } catch (IndexOutOfBoundsException success) {
+            }
+        }
+    }
 }
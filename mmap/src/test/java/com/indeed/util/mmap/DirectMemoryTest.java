@@ -6,6 +6,8 @@ import java.io.File;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.zip.CRC32;
 
 /** @author goodwin */
 public class DirectMemoryTest extends TestCase {
@@ -126,4 +128,167 @@ public class DirectMemoryTest extends TestCase {
             assertEquals((byte) i, directMemory2.getByte(i));
         }
     }
+
+    public void testUnchecked() throws Exception {
+        assertTrue(directMemory.isChecked());
+        final DirectMemory unchecked = directMemory.unchecked();
+        assertFalse(unchecked.isChecked());
+        assertSame(unchecked, unchecked.unchecked());
+        assertEquals(directMemory.length(), unchecked.length());
+        assertEquals(directMemory.getOrder(), unchecked.getOrder());
+
+        unchecked.putLong(8, 0x0102030405060708L);
+        assertEquals(0x0102030405060708L, directMemory.getLong(8));
+        directMemory.putInt(100, 12345);
+        assertEquals(12345, unchecked.getInt(100));
+
+        final DirectMemory slice = unchecked.slice(100, 8);
+        assertFalse(slice.isChecked());
+        assertEquals(12345, slice.getInt(0));
+        assertEquals(12345, slice.intArray(0, 2).get(0));
+        try {
+            unchecked.slice(length - 4, 8);
+            fail();
+        } catch (IllegalArgumentException success) {
+        }
+        try {
+            unchecked.intArray(length - 4, 2);
+            fail();
+        } catch (IndexOutOfBoundsException success) {
+        }
+        try {
+            unchecked.getInts(0, new int[2], 1, 2);
+            fail();
+        } catch (IndexOutOfBoundsException success) {
+        }
+    }
+
+    public void testBulkTransfer() throws Exception {
+        for (Memory memory : new Memory[] {directMemory, directMemory2}) {
+            assertBulkTransfer(memory);
+        }
+    }
+
+    // shared with HeapMemoryTest, checks the bulk methods against the single element accessors
+    // at an unaligned offset so that both byte orders and both copy directions are covered
+    static void assertBulkTransfer(final Memory memory) {
+        final int n = 100;
+        final long offset = 3;
+        final Random random = new Random(0);
+
+        final short[] shorts = new short[n];
+        final char[] chars = new char[n];
+        final int[] ints = new int[n];
+        final long[] longs = new long[n];
+        final float[] floats = new float[n];
+        final double[] doubles = new double[n];
+        for (int i = 0; i < n; i++) {
+            shorts[i] = (short) random.nextInt();
+            chars[i] = (char) random.nextInt();
+            ints[i] = random.nextInt();
+            longs[i] = random.nextLong();
+            floats[i] = random.nextFloat();
+            doubles[i] = random.nextDouble();
+        }
+
+        memory.putShorts(offset, shorts, 1, n - 1);
+        final short[] shortsCopy = new short[n];
+        memory.getShorts(offset, shortsCopy, 1, n - 1);
+        for (int i = 1; i < n; i++) {
+            assertEquals(shorts[i], memory.getShort(offset + (i - 1) * 2L));
+            assertEquals(shorts[i], shortsCopy[i]);
+        }
+
+        memory.putChars(offset, chars, 1, n - 1);
+        final char[] charsCopy = new char[n];
+        memory.getChars(offset, charsCopy, 1, n - 1);
+        for (int i = 1; i < n; i++) {
+            assertEquals(chars[i], memory.getChar(offset + (i - 1) * 2L));
+            assertEquals(chars[i], charsCopy[i]);
+        }
+
+        memory.putInts(offset, ints, 1, n - 1);
+        final int[] intsCopy = new int[n];
+        memory.getInts(offset, intsCopy, 1, n - 1);
+        for (int i = 1; i < n; i++) {
+            assertEquals(ints[i], memory.getInt(offset + (i - 1) * 4L));
+            assertEquals(ints[i], intsCopy[i]);
+        }
+
+        memory.putLongs(offset, longs, 1, n - 1);
+        final long[] longsCopy = new long[n];
+        memory.getLongs(offset, longsCopy, 1, n - 1);
+        for (int i = 1; i < n; i++) {
+            assertEquals(longs[i], memory.getLong(offset + (i - 1) * 8L));
+            assertEquals(longs[i], longsCopy[i]);
+        }
+
+        memory.putFloats(offset, floats, 1, n - 1);
+        final float[] floatsCopy = new float[n];
+        memory.getFloats(offset, floatsCopy, 1, n - 1);
+        for (int i = 1; i < n; i++) {
+            assertEquals(floats[i], memory.getFloat(offset + (i - 1) * 4L), 0f);
+            assertEquals(floats[i], floatsCopy[i], 0f);
+        }
+
+        memory.putDoubles(offset, doubles, 1, n - 1);
+        final double[] doublesCopy = new double[n];
+        memory.getDoubles(offset, doublesCopy, 1, n - 1);
+        for (int i = 1; i < n; i++) {
+            assertEquals(doubles[i], memory.getDouble(offset + (i - 1) * 8L), 0d);
+            assertEquals(doubles[i], doublesCopy[i], 0d);
+        }
+
+        try {
+            memory.getInts(memory.length() - 8, new int[4], 0, 4);
+            fail();
+        } catch (IndexOutOfBoundsException success) {
+        }
+        try {
+            memory.putLongs(0, new long[4], 2, 4);
+            fail();
+        } catch (IndexOutOfBoundsException success) {
+        }
+    }
+
+    public void testAsByteBuffer() throws Exception {
+        directMemory.putLong(8, 0x0102030405060708L);
+        final ByteBuffer buffer = directMemory.asByteBuffer(8, 100);
+        assertTrue(buffer.isDirect());
+        assertEquals(ByteOrder.LITTLE_ENDIAN, buffer.order());
+        assertEquals(100, buffer.remaining());
+        assertEquals(0x0102030405060708L, buffer.getLong(0));
+        assertEquals(0x0807060504030201L, directMemory2.asByteBuffer(8, 8).getLong());
+        buffer.putInt(16, 7);
+        assertEquals(7, directMemory.getInt(24));
+
+        final byte[] bytes = new byte[length];
+        new Random(0).nextBytes(bytes);
+        directMemory.putBytes(0, bytes);
+        final CRC32 expected = new CRC32();
+        expected.update(bytes, 0, bytes.length);
+        final CRC32 crc = new CRC32();
+        crc.update(directMemory.asByteBuffer(0, length));
+        assertEquals(expected.getValue(), crc.getValue());
+
+        try {
+            directMemory.asByteBuffer(length - 10, 11);
+            fail();
+        } catch (IndexOutOfBoundsException success) {
+        }
+    }
+
+    public void testAsByteBuffers() throws Exception {
+        // anonymous mapping, untouched pages are never allocated
+        try (NativeBuffer nativeBuffer = new NativeBuffer((1L << 30) + 100, ByteOrder.BIG_ENDIAN)) {
+            final DirectMemory memory = nativeBuffer.memory();
+            memory.putInt(1L << 30, 42);
+            final ByteBuffer[] buffers = memory.asByteBuffers(0, memory.length());
+            assertEquals(2, buffers.length);
+            assertEquals(1 << 30, buffers[0].capacity());
+            assertEquals(100, buffers[1].capacity());
+            assertEquals(42, buffers[1].getInt(0));
+            assertEquals(0, memory.asByteBuffers(5, 0).length);
+        }
+    }
 }
@@ -0,0 +1,170 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DynamicMMapBufferDataOutputStreamTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static void writeAndVerify(final DynamicMMapBufferDataOutputStream out, final int n)
+            throws IOException {
+        final byte[] bytes = {1, 2, 3, 4, 5, 6, 7};
+        for (int i = 0; i < n; i++) {
+            out.writeLong(i);
+            out.writeInt(i);
+            out.writeShort(i);
+            out.writeByte(i);
+            out.write(bytes, 1, 5);
+        }
+        assertEquals(20L * n, out.position());
+        final DirectMemory memory = out.memory();
+        assertEquals(20L * n, memory.length());
+        for (int i = 0; i < n; i++) {
+            final long base = 20L * i;
+            assertEquals(i, memory.getLong(base));
+            assertEquals(i, memory.getInt(base + 8));
+            assertEquals((short) i, memory.getShort(base + 12));
+            assertEquals((byte) i, memory.getByte(base + 14));
+            assertEquals(6, memory.getByte(base + 19));
+        }
+    }
+
+    @Test
+    public void testGrowth() throws IOException {
+        final File file = tempDir.newFile();
+        try (DynamicMMapBufferDataOutputStream out =
+                new DynamicMMapBufferDataOutputStream(file, ByteOrder.LITTLE_ENDIAN)) {
+            writeAndVerify(out, 100000);
+            out.sync();
+        }
+        assertTrue(file.length() >= 20L * 100000);
+        final ByteBuffer buffer =
+                ByteBuffer.wrap(Files.readAllBytes(file.toPath())).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(99999, buffer.getLong(20 * 99999));
+    }
+
+    @Test
+    public void testGrowthPolicies() throws IOException {
+        for (final GrowthPolicy growthPolicy :
+                new GrowthPolicy[] {
+                    GrowthPolicy.doubling(),
+                    GrowthPolicy.doublingUpTo(3 * MMapBuffer.PAGE_SIZE),
+                    GrowthPolicy.fixedIncrement(10000)
+                }) {
+            final File file = tempDir.newFile();
+            try (DynamicMMapBufferDataOutputStream out =
+                    DynamicMMapBufferDataOutputStream.builder(file)
+                            .setGrowthPolicy(growthPolicy)
+                            .setTruncateOnClose(true)
+                            .build()) {
+                writeAndVerify(out, 5000);
+            }
+            assertEquals(20L * 5000, file.length());
+        }
+    }
+
+    @Test
+    public void testGrowthPolicyLengths() {
+        assertEquals(16384, GrowthPolicy.doubling().nextLength(4096, 9000));
+        assertEquals(12288, GrowthPolicy.doublingUpTo(4096).nextLength(4096, 9000));
+        assertEquals(14096, GrowthPolicy.fixedIncrement(5000).nextLength(4096, 9100));
+        assertEquals(9096, GrowthPolicy.fixedIncrement(5000).nextLength(4096, 4097));
+    }
+
+    @Test
+    public void testOffset() throws IOException {
+        final File file = tempDir.newFile();
+        try (DynamicMMapBufferDataOutputStream out =
+                DynamicMMapBufferDataOutputStream.builder(file).setTruncateOnClose(true).build()) {
+            out.writeInt(42);
+        }
+        assertEquals(4, file.length());
+        try (DynamicMMapBufferDataOutputStream out =
+                new DynamicMMapBufferDataOutputStream(file, ByteOrder.nativeOrder(), 4)) {
+            out.writeInt(43);
+            assertEquals(42, out.memory().getInt(0));
+            assertEquals(43, out.memory().getInt(4));
+        }
+    }
+
+    @Test
+    public void testMemoryValidAcrossGrowth() throws IOException {
+        final File file = tempDir.newFile();
+        try (DynamicMMapBufferDataOutputStream out =
+                DynamicMMapBufferDataOutputStream.builder(file)
+                        .setReservation(MMapBuffer.PAGE_SIZE)
+                        .build()) {
+            writeAndVerify(out, 10);
+            final DirectMemory before = out.memory();
+            for (int i = 0; i < 10000; i++) {
+                out.writeLong(i);
+            }
+            assertEquals(9, before.getLong(20 * 9));
+            assertEquals(9999, out.memory().getLong(200 + 8 * 9999));
+        }
+    }
+
+    @Test
+    public void testRemapInPlace() throws IOException {
+        final File file = tempDir.newFile();
+        try (DynamicMMapBufferDataOutputStream out =
+                DynamicMMapBufferDataOutputStream.builder(file)
+                        .setRemapInPlace(true)
+                        .setTruncateOnClose(true)
+                        .build()) {
+            writeAndVerify(out, 10000);
+        }
+        assertEquals(20L * 10000, file.length());
+    }
+
+    private static long mappingCount(final File file) {
+        return MMapBuffer.openBuffersTracker.mmapBufferSet.values().stream()
+                .filter(tracked -> tracked.path.equals(file.toPath().toString()))
+                .count();
+    }
+
+    @Test
+    public void testOutgrownMappingsReleased() throws IOException {
+        final File file = tempDir.newFile();
+        try {
+            MMapBuffer.setTrackingEnabled(true);
+            try (DynamicMMapBufferDataOutputStream out =
+                    DynamicMMapBufferDataOutputStream.builder(file)
+                            .setReservation(MMapBuffer.PAGE_SIZE)
+                            .build()) {
+                for (int i = 0; i < 100000; i++) {
+                    out.writeLong(i);
+                }
+                assertEquals(1, mappingCount(file));
+                final DirectMemory view = out.memory();
+                for (int i = 0; i < 100000; i++) {
+                    out.writeLong(i);
+                }
+                // the viewed mapping is kept, the ones after it are not
+                assertEquals(2, mappingCount(file));
+                assertEquals(99999, view.getLong(8 * 99999));
+            }
+            assertEquals(0, mappingCount(file));
+        } finally {
+            MMapBuffer.setTrackingEnabled(MMapBuffer.TRACKING_BY_DEFAULT);
+        }
+    }
+
+    @Test
+    public void testExistingLengthKept() throws IOException {
+        final File file = tempDir.newFile();
+        Files.write(file.toPath(), new byte[] {1, 2, 3, 4, 5});
+        DynamicMMapBufferDataOutputStream.builder(file).build().close();
+        assertEquals(5, file.length());
+    }
+}
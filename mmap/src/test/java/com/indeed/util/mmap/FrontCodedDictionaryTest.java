@@ -0,0 +1,173 @@
+package com.indeed.util.mmap;
+
+import com.google.common.primitives.UnsignedBytes;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class FrontCodedDictionaryTest {
+    private static final Comparator<byte[]> ORDER = UnsignedBytes.lexicographicalComparator();
+
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static List<byte[]> randomEntries(final Random random, final int n) {
+        final String[] stems = {"", "a", "app", "apple", "banana", "bébé", "世界"};
+        final TreeSet<byte[]> entries = new TreeSet<>(ORDER);
+        while (entries.size() < n) {
+            final StringBuilder s = new StringBuilder(stems[random.nextInt(stems.length)]);
+            final int suffix = random.nextInt(9);
+            for (int i = 0; i < suffix; i++) {
+                s.append((char) ('a' + random.nextInt(4)));
+            }
+            final byte[] bytes = s.toString().getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > 0 && random.nextInt(20) == 0) {
+                bytes[bytes.length - 1] = (byte) 0xFF;
+            }
+            entries.add(bytes);
+        }
+        return new ArrayList<>(entries);
+    }
+
+    private static FrontCodedDictionary write(final List<byte[]> entries, final int bucketSize)
+            throws IOException {
+        return RoundTrip.heap(writer(entries, bucketSize), FrontCodedDictionary::new);
+    }
+
+    private static RoundTrip.Writer writer(final List<byte[]> entries, final int bucketSize) {
+        return out -> {
+            final FrontCodedDictionaryWriter writer =
+                    new FrontCodedDictionaryWriter(out, bucketSize);
+            for (final byte[] entry : entries) {
+                writer.add(entry);
+            }
+            return writer.finish();
+        };
+    }
+
+    private static void verify(final List<byte[]> entries, final FrontCodedDictionary dictionary) {
+        assertEquals(entries.size(), dictionary.size());
+        final FrontCodedDictionary.Cursor cursor = dictionary.cursor();
+        for (int i = 0; i < entries.size(); i++) {
+            assertTrue(cursor.next());
+            assertEquals(i, cursor.ordinal());
+            assertArrayEquals(entries.get(i), cursor.copyBytes());
+            assertArrayEquals(entries.get(i), dictionary.get(i));
+            assertEquals(i, dictionary.find(entries.get(i)));
+        }
+        assertFalse(cursor.next());
+        assertFalse(cursor.next());
+    }
+
+    @Test
+    public void testLookups() throws IOException {
+        final Random random = new Random(0);
+        for (final int bucketSize : new int[] {1, 3, 16}) {
+            for (final int n : new int[] {0, 1, 2, 17, 500}) {
+                final List<byte[]> entries = randomEntries(random, n);
+                final FrontCodedDictionary dictionary = write(entries, bucketSize);
+                verify(entries, dictionary);
+                for (final byte[] key : randomEntries(random, 200)) {
+                    assertEquals(
+                            Collections.binarySearch(entries, key, ORDER), dictionary.find(key));
+                }
+                for (int ordinal = 0; ordinal <= n; ordinal += 7) {
+                    final FrontCodedDictionary.Cursor cursor = dictionary.cursor(ordinal);
+                    if (ordinal < n) {
+                        assertTrue(cursor.next());
+                        assertEquals(ordinal, cursor.ordinal());
+                        assertArrayEquals(entries.get(ordinal), cursor.copyBytes());
+                    } else {
+                        assertFalse(cursor.next());
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testStrings() throws IOException {
+        final List<byte[]> entries = new ArrayList<>();
+        for (final String s : new String[] {"", "café", "café", "世界"}) {
+            entries.add(s.getBytes(StandardCharsets.UTF_8));
+        }
+        entries.sort(ORDER);
+        final FrontCodedDictionary dictionary = write(entries, 2);
+        for (int i = 0; i < entries.size(); i++) {
+            final String s = new String(entries.get(i), StandardCharsets.UTF_8);
+            assertEquals(s, dictionary.getString(i));
+            assertEquals(i, dictionary.find(s));
+        }
+        assertEquals(-2, dictionary.find("a"));
+    }
+
+    @Test
+    public void testPrefixCursor() throws IOException {
+        final Random random = new Random(1);
+        final List<byte[]> entries = randomEntries(random, 1000);
+        final FrontCodedDictionary dictionary = write(entries, 8);
+        for (final String prefix : new String[] {"", "a", "app", "apple", "applez", "b", "世"}) {
+            final byte[] prefixBytes = prefix.getBytes(StandardCharsets.UTF_8);
+            final List<byte[]> expected = new ArrayList<>();
+            for (final byte[] entry : entries) {
+                if (entry.length >= prefixBytes.length
+                        && Arrays.equals(
+                                Arrays.copyOf(entry, prefixBytes.length), prefixBytes)) {
+                    expected.add(entry);
+                }
+            }
+            final FrontCodedDictionary.Cursor cursor = dictionary.prefixCursor(prefix);
+            final List<byte[]> actual = new ArrayList<>();
+            while (cursor.next()) {
+                assertArrayEquals(entries.get(cursor.ordinal()), cursor.copyBytes());
+                actual.add(cursor.copyBytes());
+            }
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertArrayEquals(expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void testOrderEnforced() throws IOException {
+        final FrontCodedDictionaryWriter writer =
+                new FrontCodedDictionaryWriter(
+                        new DataOutputStream(new ByteArrayOutputStream()));
+        writer.add("ab");
+        for (final String entry : new String[] {"ab", "a", "aa"}) {
+            try {
+                writer.add(entry);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        writer.add("abc");
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        final List<byte[]> entries = randomEntries(new Random(2), 20000);
+        RoundTrip.mapped(
+                tempDir.newFile(),
+                writer(entries, FrontCodedDictionaryWriter.DEFAULT_BUCKET_SIZE),
+                memory -> verify(entries, new FrontCodedDictionary(memory)));
+    }
+}
@@ -19,4 +19,9 @@ public class HeapMemoryTest extends TestCase {
         }
         src.getBytes(0, dst);
     }
+
+    public void testBulkTransfer() throws Exception {
+        DirectMemoryTest.assertBulkTransfer(new HeapMemory(1024, ByteOrder.LITTLE_ENDIAN));
+        DirectMemoryTest.assertBulkTransfer(new HeapMemory(1024, ByteOrder.BIG_ENDIAN));
+    }
 }
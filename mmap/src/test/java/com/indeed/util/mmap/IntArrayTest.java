@@ -118,4 +118,71 @@ public class IntArrayTest extends TestCase {
             }
         }
     }
+
+    public void testSearch() throws Exception {
+        final IntArray bigEndian =
+                new NativeBuffer(length * size, ByteOrder.BIG_ENDIAN).memory().intArray(0L, length);
+        for (IntArray intArray :
+                new IntArray[] {intArrays[0], intArrays[1], intArrays[2], bigEndian}) {
+            for (int i = 0; i < length; i++) {
+                intArray.set(i, (int) ((i / 3) * 2 - 3000));
+            }
+            long expected = 0;
+            for (int key = -3002; key < (length / 3) * 2 - 3000 + 2; key++) {
+                while (expected < length && intArray.get(expected) < key) {
+                    expected++;
+                }
+                final long found =
+                        expected < length && intArray.get(expected) == key
+                                ? expected
+                                : -expected - 1;
+                assertEquals(expected, intArray.lowerBound((int) key));
+                assertEquals(found, intArray.binarySearch((int) key));
+                assertEquals(found, intArray.exponentialSearch(0, (int) key));
+                assertEquals(found, intArray.exponentialSearch(expected / 2, (int) key));
+                assertEquals(
+                        Math.min(Math.max(expected, 100), 200),
+                        intArray.lowerBound(100, 200, (int) key));
+            }
+            assertEquals(-1, intArray.binarySearch(0, 0, (int) 5));
+            try {
+                intArray.binarySearch(10, 5, (int) 5);
+                fail();
+            } catch (IndexOutOfBoundsException success) {
+            }
+        }
+    }
+
+    public void testIntersect() throws Exception {
+        final IntArray multiplesOfThree =
+                new NativeBuffer(1000 * size, ByteOrder.BIG_ENDIAN).memory().intArray(0L, 1000);
+        for (int i = 0; i < 1000; i++) {
+            multiplesOfThree.set(i, 3 * i - 3000);
+        }
+        for (IntArray intArray : intArrays) {
+            for (int i = 0; i < length; i++) {
+                intArray.set(i, (int) ((i / 3) * 2 - 3000));
+            }
+            final int[] expected = new int[length];
+            int expectedCount = 0;
+            for (int i = 0, j = 0; i < length && j < 1000; ) {
+                if (intArray.get(i) < multiplesOfThree.get(j)) {
+                    i++;
+                } else if (intArray.get(i) > multiplesOfThree.get(j)) {
+                    j++;
+                } else {
+                    expected[expectedCount++] = intArray.get(i);
+                    i++;
+                    j++;
+                }
+            }
+            final int[] out = new int[length];
+            assertEquals(expectedCount, IntArray.intersect(intArray, multiplesOfThree, out));
+            assertEquals(expectedCount, IntArray.intersect(multiplesOfThree, intArray, out));
+            for (int i = 0; i < expectedCount; i++) {
+                assertEquals(expected[i], out[i]);
+            }
+            assertEquals(5, IntArray.intersect(intArray, multiplesOfThree, new int[5]));
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class IntIntOffHeapMapTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static void assertMapEquals(
+            final Map<Integer, Integer> expected, final IntIntOffHeapMap map) {
+        assertEquals(expected.size(), map.size());
+        for (final Map.Entry<Integer, Integer> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals((int) entry.getValue(), map.get(entry.getKey(), -1));
+        }
+        final Map<Integer, Integer> visited = new HashMap<>();
+        map.forEach((key, value) -> visited.put(key, value));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void testRandomOperations() throws IOException {
+        final Random random = new Random(0);
+        final Map<Integer, Integer> expected = new HashMap<>();
+        try (IntIntOffHeapMap map = IntIntOffHeapMap.create(10)) {
+            for (int i = 0; i < 200000; i++) {
+                // small key range so that keys collide, repeat and get removed
+                final int key = (int) (random.nextInt(50000) - 1000);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key) != null, map.remove(key));
+                } else {
+                    final int value = random.nextInt();
+                    expected.put(key, value);
+                    map.put(key, value);
+                }
+            }
+            assertMapEquals(expected, map);
+            assertFalse(map.containsKey((int) 1000000));
+            assertEquals(-1, map.get((int) 1000000, -1));
+        }
+    }
+
+    @Test
+    public void testZeroKey() throws IOException {
+        try (IntIntOffHeapMap map = IntIntOffHeapMap.create(0)) {
+            assertTrue(map.isEmpty());
+            assertFalse(map.containsKey((int) 0));
+            map.put((int) 0, (int) 7);
+            map.put((int) 0, (int) 8);
+            assertEquals(1, map.size());
+            assertEquals(8, map.get((int) 0, (int) -1));
+            assertTrue(map.remove((int) 0));
+            assertFalse(map.remove((int) 0));
+            assertEquals(-1, map.get((int) 0, (int) -1));
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("map");
+        final Map<Integer, Integer> expected = new HashMap<>();
+        try (IntIntOffHeapMap map = IntIntOffHeapMap.create(100)) {
+            for (int i = -500; i < 5000; i++) {
+                map.put((int) (i * 7), (int) i);
+                expected.put((int) (i * 7), (int) i);
+            }
+            map.writeTo(path);
+            map.writeTo(path);
+        }
+        try (IntIntOffHeapMap map = IntIntOffHeapMap.open(path)) {
+            assertTrue(map.isReadOnly());
+            assertMapEquals(expected, map);
+            try {
+                map.put((int) 1, (int) 1);
+                fail();
+            } catch (UnsupportedOperationException expectedException) {
+            }
+        }
+        try (IntIntOffHeapMap map =
+                IntIntOffHeapMap.open(path, MappingOptions.builder().setPopulate(true).build())) {
+            assertMapEquals(expected, map);
+        }
+    }
+
+    @Test
+    public void testWriteToReplaces() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("map");
+        try (IntIntOffHeapMap map = IntIntOffHeapMap.create(10)) {
+            map.put((int) 1, (int) 1);
+            map.writeTo(path);
+        }
+        try (IntIntOffHeapMap old = IntIntOffHeapMap.open(path);
+                IntIntOffHeapMap map = IntIntOffHeapMap.create(10)) {
+            map.put((int) 2, (int) 2);
+            map.writeTo(path);
+            // the old file is replaced by a rename, so its mapping is unchanged
+            assertEquals(1, old.get((int) 1, (int) -1));
+            assertFalse(old.containsKey((int) 2));
+        }
+        try (IntIntOffHeapMap map = IntIntOffHeapMap.open(path)) {
+            assertEquals(1, map.size());
+            assertEquals(2, map.get((int) 2, (int) -1));
+        }
+        // no temp file is left behind
+        try (Stream<Path> files = Files.list(tempDir.getRoot().toPath())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenCorrupt() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("corrupt");
+        Files.write(path, new byte[100]);
+        IntIntOffHeapMap.open(path).close();
+    }
+}
@@ -118,4 +118,73 @@ public class LongArrayTest extends TestCase {
             }
         }
     }
+
+    public void testSearch() throws Exception {
+        final LongArray bigEndian =
+                new NativeBuffer(length * size, ByteOrder.BIG_ENDIAN)
+                        .memory()
+                        .longArray(0L, length);
+        for (LongArray longArray :
+                new LongArray[] {longArrays[0], longArrays[1], longArrays[2], bigEndian}) {
+            for (int i = 0; i < length; i++) {
+                longArray.set(i, (long) ((i / 3) * 2 - 3000));
+            }
+            long expected = 0;
+            for (int key = -3002; key < (length / 3) * 2 - 3000 + 2; key++) {
+                while (expected < length && longArray.get(expected) < key) {
+                    expected++;
+                }
+                final long found =
+                        expected < length && longArray.get(expected) == key
+                                ? expected
+                                : -expected - 1;
+                assertEquals(expected, longArray.lowerBound((long) key));
+                assertEquals(found, longArray.binarySearch((long) key));
+                assertEquals(found, longArray.exponentialSearch(0, (long) key));
+                assertEquals(found, longArray.exponentialSearch(expected / 2, (long) key));
+                assertEquals(
+                        Math.min(Math.max(expected, 100), 200),
+                        longArray.lowerBound(100, 200, (long) key));
+            }
+            assertEquals(-1, longArray.binarySearch(0, 0, (long) 5));
+            try {
+                longArray.binarySearch(10, 5, (long) 5);
+                fail();
+            } catch (IndexOutOfBoundsException success) {
+            }
+        }
+    }
+
+    public void testIntersect() throws Exception {
+        final LongArray multiplesOfThree =
+                new NativeBuffer(1000 * size, ByteOrder.BIG_ENDIAN).memory().longArray(0L, 1000);
+        for (int i = 0; i < 1000; i++) {
+            multiplesOfThree.set(i, 3 * i - 3000);
+        }
+        for (LongArray longArray : longArrays) {
+            for (int i = 0; i < length; i++) {
+                longArray.set(i, (long) ((i / 3) * 2 - 3000));
+            }
+            final long[] expected = new long[length];
+            int expectedCount = 0;
+            for (int i = 0, j = 0; i < length && j < 1000; ) {
+                if (longArray.get(i) < multiplesOfThree.get(j)) {
+                    i++;
+                } else if (longArray.get(i) > multiplesOfThree.get(j)) {
+                    j++;
+                } else {
+                    expected[expectedCount++] = longArray.get(i);
+                    i++;
+                    j++;
+                }
+            }
+            final long[] out = new long[length];
+            assertEquals(expectedCount, LongArray.intersect(longArray, multiplesOfThree, out));
+            assertEquals(expectedCount, LongArray.intersect(multiplesOfThree, longArray, out));
+            for (int i = 0; i < expectedCount; i++) {
+                assertEquals(expected[i], out[i]);
+            }
+            assertEquals(5, LongArray.intersect(longArray, multiplesOfThree, new long[5]));
+        }
+    }
 }
@@ -0,0 +1,131 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LongLongOffHeapMapTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static void assertMapEquals(
+            final Map<Long, Long> expected, final LongLongOffHeapMap map) {
+        assertEquals(expected.size(), map.size());
+        for (final Map.Entry<Long, Long> entry : expected.entrySet()) {
+            assertTrue(map.containsKey(entry.getKey()));
+            assertEquals((long) entry.getValue(), map.get(entry.getKey(), -1L));
+        }
+        final Map<Long, Long> visited = new HashMap<>();
+        map.forEach((key, value) -> visited.put(key, value));
+        assertEquals(expected, visited);
+    }
+
+    @Test
+    public void testRandomOperations() throws IOException {
+        final Random random = new Random(0);
+        final Map<Long, Long> expected = new HashMap<>();
+        try (LongLongOffHeapMap map = LongLongOffHeapMap.create(10)) {
+            for (int i = 0; i < 200000; i++) {
+                // small key range so that keys collide, repeat and get removed
+                final long key = (long) (random.nextInt(50000) - 1000);
+                if (random.nextInt(4) == 0) {
+                    assertEquals(expected.remove(key) != null, map.remove(key));
+                } else {
+                    final long value = random.nextLong();
+                    expected.put(key, value);
+                    map.put(key, value);
+                }
+            }
+            assertMapEquals(expected, map);
+            assertFalse(map.containsKey((long) 1000000));
+            assertEquals(-1L, map.get((long) 1000000, -1L));
+        }
+    }
+
+    @Test
+    public void testZeroKey() throws IOException {
+        try (LongLongOffHeapMap map = LongLongOffHeapMap.create(0)) {
+            assertTrue(map.isEmpty());
+            assertFalse(map.containsKey((long) 0));
+            map.put((long) 0, (long) 7);
+            map.put((long) 0, (long) 8);
+            assertEquals(1, map.size());
+            assertEquals(8, map.get((long) 0, (long) -1));
+            assertTrue(map.remove((long) 0));
+            assertFalse(map.remove((long) 0));
+            assertEquals(-1, map.get((long) 0, (long) -1));
+            assertTrue(map.isEmpty());
+        }
+    }
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("map");
+        final Map<Long, Long> expected = new HashMap<>();
+        try (LongLongOffHeapMap map = LongLongOffHeapMap.create(100)) {
+            for (int i = -500; i < 5000; i++) {
+                map.put((long) (i * 7), (long) i);
+                expected.put((long) (i * 7), (long) i);
+            }
+            map.writeTo(path);
+            map.writeTo(path);
+        }
+        try (LongLongOffHeapMap map = LongLongOffHeapMap.open(path)) {
+            assertTrue(map.isReadOnly());
+            assertMapEquals(expected, map);
+            try {
+                map.put((long) 1, (long) 1);
+                fail();
+            } catch (UnsupportedOperationException expectedException) {
+            }
+        }
+        try (LongLongOffHeapMap map =
+                LongLongOffHeapMap.open(path, MappingOptions.builder().setPopulate(true).build())) {
+            assertMapEquals(expected, map);
+        }
+    }
+
+    @Test
+    public void testWriteToReplaces() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("map");
+        try (LongLongOffHeapMap map = LongLongOffHeapMap.create(10)) {
+            map.put((long) 1, (long) 1);
+            map.writeTo(path);
+        }
+        try (LongLongOffHeapMap old = LongLongOffHeapMap.open(path);
+                LongLongOffHeapMap map = LongLongOffHeapMap.create(10)) {
+            map.put((long) 2, (long) 2);
+            map.writeTo(path);
+            // the old file is replaced by a rename, so its mapping is unchanged
+            assertEquals(1, old.get((long) 1, (long) -1));
+            assertFalse(old.containsKey((long) 2));
+        }
+        try (LongLongOffHeapMap map = LongLongOffHeapMap.open(path)) {
+            assertEquals(1, map.size());
+            assertEquals(2, map.get((long) 2, (long) -1));
+        }
+        // no temp file is left behind
+        try (Stream<Path> files = Files.list(tempDir.getRoot().toPath())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testOpenCorrupt() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("corrupt");
+        Files.write(path, new byte[100]);
+        LongLongOffHeapMap.open(path).close();
+    }
+}
@@ -0,0 +1,167 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MMapAppendLogTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static List<byte[]> randomRecords(final Random random, final int count) {
+        final List<byte[]> records = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            final byte[] record = new byte[random.nextInt(500)];
+            random.nextBytes(record);
+            records.add(record);
+        }
+        return records;
+    }
+
+    private static void assertRecords(final List<byte[]> expected, final MMapAppendLog log)
+            throws IOException {
+        final MMapAppendLog.Reader reader = log.reader();
+        for (final byte[] record : expected) {
+            assertTrue(reader.next());
+            assertArrayEquals(record, reader.recordBytes());
+        }
+        assertFalse(reader.next());
+        assertEquals(log.getCommittedOffset(), reader.position());
+    }
+
+    @Test
+    public void testAppendAndReopen() throws IOException {
+        final Path dir = tempDir.newFolder().toPath();
+        final List<byte[]> records = randomRecords(new Random(0), 200);
+        final List<Long> offsets = new ArrayList<>();
+        try (MMapAppendLog log = MMapAppendLog.builder(dir).setSegmentSize(4096).build()) {
+            for (final byte[] record : records.subList(0, 100)) {
+                offsets.add(log.append(record));
+            }
+            assertTrue(log.getSegmentCount() > 1);
+            assertRecords(records.subList(0, 100), log);
+            // rolling over syncs the previous segments, but not the current one
+            assertTrue(log.getSyncedOffset() > 0);
+            assertTrue(log.getSyncedOffset() <= offsets.get(offsets.size() - 1));
+        }
+        try (MMapAppendLog log = MMapAppendLog.builder(dir).setSegmentSize(8192).build()) {
+            assertRecords(records.subList(0, 100), log);
+            for (final byte[] record : records.subList(100, 200)) {
+                offsets.add(log.append(record));
+            }
+            assertRecords(records, log);
+            final MMapAppendLog.Reader reader = log.reader(offsets.get(150));
+            assertTrue(reader.next());
+            assertEquals((long) offsets.get(150), reader.recordOffset());
+            assertArrayEquals(records.get(150), reader.recordBytes());
+            try {
+                log.append(new byte[8192]);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testTornRecordIsDropped() throws IOException {
+        final Path dir = tempDir.newFolder().toPath();
+        final List<byte[]> records = randomRecords(new Random(1), 20);
+        final long lastOffset;
+        try (MMapAppendLog log = MMapAppendLog.open(dir)) {
+            for (final byte[] record : records.subList(0, 19)) {
+                log.append(record);
+            }
+            lastOffset = log.append(records.get(19));
+        }
+        final Path segment = dir.resolve(String.format("%020d.log", 0));
+        try (RandomAccessFile raf = new RandomAccessFile(segment.toFile(), "rw")) {
+            raf.seek(lastOffset + MMapAppendLog.HEADER_SIZE);
+            raf.write(raf.read() ^ 1);
+        }
+        try (MMapAppendLog log = MMapAppendLog.open(dir)) {
+            assertEquals(lastOffset, log.getCommittedOffset());
+            assertRecords(records.subList(0, 19), log);
+        }
+    }
+
+    @Test
+    public void testRollSyncsSegment() throws IOException {
+        final Path dir = tempDir.newFolder().toPath();
+        final int recordSize = 100 + MMapAppendLog.HEADER_SIZE;
+        final int perSegment = 4096 / recordSize;
+        try (MMapAppendLog log = MMapAppendLog.builder(dir).setSegmentSize(4096).build()) {
+            for (int i = 0; i < perSegment; i++) {
+                log.append(new byte[100]);
+            }
+            assertEquals(0, log.getSyncedOffset());
+            assertEquals(4096, log.append(new byte[100]));
+            assertEquals(2, log.getSegmentCount());
+            assertEquals((long) perSegment * recordSize, log.getSyncedOffset());
+        }
+    }
+
+    @Test
+    public void testGroupCommit() throws IOException {
+        final Path dir = tempDir.newFolder().toPath();
+        try (MMapAppendLog log =
+                MMapAppendLog.builder(dir).setSegmentSize(4096).setSyncEveryRecords(3).build()) {
+            log.append(new byte[10]);
+            log.append(new byte[10]);
+            assertEquals(0, log.getSyncedOffset());
+            log.append(new byte[10]);
+            assertEquals(3 * (10 + MMapAppendLog.HEADER_SIZE), log.getSyncedOffset());
+            for (int i = 0; i < 100; i++) {
+                log.append(new byte[100]);
+            }
+            log.sync();
+            assertEquals(log.getCommittedOffset(), log.getSyncedOffset());
+        }
+    }
+
+    @Test
+    public void testConcurrentReaders() throws Exception {
+        final Path dir = tempDir.newFolder().toPath();
+        final List<byte[]> records = randomRecords(new Random(2), 5000);
+        final ExecutorService executor = Executors.newFixedThreadPool(3);
+        try (MMapAppendLog log = MMapAppendLog.builder(dir).setSegmentSize(65536).build()) {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    final MMapAppendLog.Reader reader = log.reader();
+                                    for (final byte[] record : records) {
+                                        while (!reader.next()) {
+                                            Thread.yield();
+                                        }
+                                        assertArrayEquals(record, reader.recordBytes());
+                                    }
+                                    return null;
+                                }));
+            }
+            for (final byte[] record : records) {
+                log.append(record);
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MMapBitSetTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static void assertSetEquals(final BitSet expected, final MMapBitSet set) {
+        final int numBits = (int) set.numBits();
+        assertEquals(expected.cardinality(), set.cardinality());
+        long rank = 0;
+        for (int i = 0; i < numBits; i++) {
+            assertEquals(expected.get(i), set.get(i));
+            assertEquals(rank, set.rank(i));
+            if (expected.get(i)) {
+                assertEquals(i, set.select(rank));
+                rank++;
+            }
+        }
+        assertEquals(rank, set.rank(numBits));
+        assertEquals(-1, set.select(rank));
+        assertEquals(-1, set.select(-1));
+
+        final List<Long> visited = new ArrayList<>();
+        set.forEachSetBit(visited::add);
+        final List<Long> iterated = new ArrayList<>();
+        for (long i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1)) {
+            iterated.add(i);
+        }
+        final List<Long> expectedBits = new ArrayList<>();
+        for (int i = expected.nextSetBit(0); i >= 0; i = expected.nextSetBit(i + 1)) {
+            expectedBits.add((long) i);
+        }
+        assertEquals(expectedBits, visited);
+        assertEquals(expectedBits, iterated);
+    }
+
+    private static BitSet randomBits(final Random random, final int numBits, final int oneIn) {
+        final BitSet bits = new BitSet(numBits);
+        for (int i = 0; i < numBits; i++) {
+            if (random.nextInt(oneIn) == 0) {
+                bits.set(i);
+            }
+        }
+        return bits;
+    }
+
+    private static MMapBitSet create(final BitSet bits, final int numBits) {
+        final MMapBitSet set = MMapBitSet.create(numBits);
+        for (int i = bits.nextSetBit(0); i >= 0; i = bits.nextSetBit(i + 1)) {
+            set.set(i);
+        }
+        return set;
+    }
+
+    @Test
+    public void testRankSelect() throws IOException {
+        final Random random = new Random(0);
+        for (final int numBits : new int[] {0, 1, 63, 64, 65, 511, 512, 513, 100000}) {
+            for (final int oneIn : new int[] {1, 2, 7, 1000}) {
+                final BitSet expected = randomBits(random, numBits, oneIn);
+                try (MMapBitSet set = create(expected, numBits)) {
+                    assertSetEquals(expected, set);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testModifyAfterIndex() throws IOException {
+        final Random random = new Random(1);
+        final BitSet expected = randomBits(random, 50000, 3);
+        try (MMapBitSet set = create(expected, 50000)) {
+            assertSetEquals(expected, set);
+            for (int i = 0; i < 50000; i += 2) {
+                expected.clear(i);
+                set.clear(i);
+            }
+            assertSetEquals(expected, set);
+        }
+    }
+
+    @Test
+    public void testWriteAndOpen() throws IOException {
+        final Random random = new Random(2);
+        final int numBits = 1 << 20;
+        final BitSet expected = randomBits(random, numBits, 5);
+        final Path path = tempDir.newFile().toPath();
+        try (MMapBitSet set = create(expected, numBits)) {
+            set.writeTo(path);
+        }
+        try (MMapBitSet set = MMapBitSet.open(path)) {
+            assertTrue(set.isReadOnly());
+            assertEquals(numBits, set.numBits());
+            assertSetEquals(expected, set);
+            try {
+                set.set(0);
+                fail();
+            } catch (UnsupportedOperationException expectedException) {
+            }
+        }
+
+        Files.write(path, new byte[] {1, 2, 3});
+        try {
+            MMapBitSet.open(path).close();
+            fail();
+        } catch (IOException expectedException) {
+        }
+    }
+
+    @Test
+    public void testWriteToReplaces() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("bits");
+        try (MMapBitSet set = MMapBitSet.create(100)) {
+            set.set(1);
+            set.writeTo(path);
+        }
+        try (MMapBitSet old = MMapBitSet.open(path);
+                MMapBitSet set = MMapBitSet.create(200)) {
+            set.set(2);
+            set.writeTo(path);
+            // the old file is replaced by a rename, so its mapping is unchanged
+            assertEquals(100, old.numBits());
+            assertTrue(old.get(1));
+            assertFalse(old.get(2));
+        }
+        try (MMapBitSet set = MMapBitSet.open(path)) {
+            assertEquals(200, set.numBits());
+            assertEquals(1, set.cardinality());
+            assertTrue(set.get(2));
+        }
+        // no temp file is left behind
+        try (Stream<Path> files = Files.list(tempDir.getRoot().toPath())) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void testAndOr() throws IOException {
+        final Random random = new Random(3);
+        final int numBits = 30000;
+        final BitSet a = randomBits(random, numBits, 2);
+        final BitSet b = randomBits(random, numBits, 3);
+        final Path path = tempDir.newFile().toPath();
+        try (MMapBitSet set = create(b, numBits)) {
+            set.writeTo(path);
+        }
+        try (MMapBitSet mappedB = MMapBitSet.open(path);
+                MMapBitSet and = create(a, numBits);
+                MMapBitSet or = MMapBitSet.copyOf(mappedB)) {
+            and.and(mappedB);
+            or.or(and);
+            final BitSet expectedAnd = (BitSet) a.clone();
+            expectedAnd.and(b);
+            assertSetEquals(expectedAnd, and);
+            assertSetEquals(b, or);
+            assertFalse(or.isReadOnly());
+            try (MMapBitSet other = MMapBitSet.create(numBits + 1)) {
+                and.or(other);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+}
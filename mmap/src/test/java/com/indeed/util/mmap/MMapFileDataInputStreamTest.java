@@ -0,0 +1,110 @@
+package com.indeed.util.mmap;
+
+import com.google.common.io.LittleEndianDataOutputStream;
+import com.indeed.util.io.BufferedFileDataInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MMapFileDataInputStreamTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private Path write(final ByteOrder order) throws IOException {
+        final Path path = tempDir.newFile().toPath();
+        try (OutputStream os = Files.newOutputStream(path)) {
+            final DataOutput out =
+                    order == ByteOrder.BIG_ENDIAN
+                            ? new DataOutputStream(os)
+                            : new LittleEndianDataOutputStream(os);
+            out.writeBoolean(true);
+            out.writeByte(-3);
+            out.writeShort(-1234);
+            out.writeChar('x');
+            out.writeInt(123456789);
+            out.writeLong(-1234567890123L);
+            out.writeFloat(1.5f);
+            out.writeDouble(-2.25);
+            out.writeUTF("héllo 世界");
+            out.write("line one\r\nline two\rline three\n".getBytes("ISO-8859-1"));
+            out.write(new byte[] {1, 2, 3});
+        }
+        return path;
+    }
+
+    @Test
+    public void testMatchesBufferedStream() throws IOException {
+        for (final ByteOrder order :
+                new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final Path path = write(order);
+            try (BufferedFileDataInputStream expected =
+                            new BufferedFileDataInputStream(path, order);
+                    MMapFileDataInputStream in = new MMapFileDataInputStream(path, order)) {
+                assertEquals(expected.length(), in.length());
+                for (int pass = 0; pass < 2; pass++) {
+                    assertEquals(expected.readBoolean(), in.readBoolean());
+                    assertEquals(expected.readByte(), in.readByte());
+                    assertEquals(expected.readShort(), in.readShort());
+                    assertEquals(expected.readChar(), in.readChar());
+                    assertEquals(expected.readInt(), in.readInt());
+                    assertEquals(expected.readLong(), in.readLong());
+                    assertEquals(expected.readFloat(), in.readFloat(), 0);
+                    assertEquals(expected.readDouble(), in.readDouble(), 0);
+                    assertEquals(expected.readUTF(), in.readUTF());
+                    assertEquals(expected.position(), in.position());
+                    // the little endian buffered stream doesn't support readLine
+                    assertEquals("line one", in.readLine());
+                    assertEquals("line two", in.readLine());
+                    assertEquals("line three", in.readLine());
+                    final byte[] bytes = new byte[3];
+                    in.readFully(bytes);
+                    assertArrayEquals(new byte[] {1, 2, 3}, bytes);
+                    assertEquals(-1, in.read());
+                    assertNull(in.readLine());
+
+                    expected.seek(0);
+                    in.seek(0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testEndOfFile() throws IOException {
+        final Path path = tempDir.newFile().toPath();
+        Files.write(path, new byte[] {1, 2, 3, 4, 5, 6});
+        try (MMapFileDataInputStream in = new MMapFileDataInputStream(path)) {
+            in.seek(4);
+            try {
+                in.readInt();
+                fail();
+            } catch (EOFException expected) {
+            }
+            assertEquals(4, in.position());
+            assertEquals(2, in.skipBytes(10));
+            final byte[] bytes = new byte[4];
+            assertEquals(-1, in.read(bytes, 0, 4));
+            in.seek(3);
+            assertEquals(3, in.read(bytes, 0, 4));
+            assertEquals(4, bytes[0]);
+            assertFalse(in.available() > 0);
+            in.seek(0);
+            assertTrue(in.readBoolean());
+        }
+    }
+}
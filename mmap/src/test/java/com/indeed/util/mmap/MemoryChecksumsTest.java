@@ -0,0 +1,140 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.hash.MurmurHash;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+
+public class MemoryChecksumsTest {
+    private static HeapMemory memory(final String s) {
+        return new HeapMemory(s.getBytes(StandardCharsets.UTF_8), ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    public void testKnownValues() {
+        assertEquals(0xcbf43926L, MemoryChecksums.crc32(memory("123456789"), 0, 9));
+        assertEquals(0xe3069283L, MemoryChecksums.crc32c(memory("123456789"), 0, 9));
+        assertEquals(0xe3069283L, MemoryChecksums.crc32cSoftware(memory("123456789"), 0, 9));
+        assertEquals(0, MemoryChecksums.crc32c(memory(""), 0, 0));
+        assertEquals(0xef46db3751d8e999L, MemoryChecksums.xxHash64(memory(""), 0, 0, 0));
+        assertEquals(0x44bc2cf5ad770999L, MemoryChecksums.xxHash64(memory("abc"), 0, 3, 0));
+        final String s = "Nobody inspects the spammish repetition";
+        assertEquals(0xfbcea83c8a378bf1L, MemoryChecksums.xxHash64(memory(s), 0, s.length(), 0));
+    }
+
+    @Test
+    public void testMemoryTypes() throws IOException {
+        final Random random = new Random(0);
+        final byte[] bytes = new byte[100003];
+        random.nextBytes(bytes);
+        try (NativeBuffer little = new NativeBuffer(bytes.length, ByteOrder.LITTLE_ENDIAN);
+                NativeBuffer big = new NativeBuffer(bytes.length, ByteOrder.BIG_ENDIAN)) {
+            little.memory().putBytes(0, bytes);
+            big.memory().putBytes(0, bytes);
+            final Memory[] memories = {
+                little.memory(),
+                big.memory(),
+                new HeapMemory(bytes, ByteOrder.BIG_ENDIAN),
+                new HeapMemory(bytes, ByteOrder.LITTLE_ENDIAN)
+            };
+            for (final int length : new int[] {0, 1, 7, 8, 9, 31, 32, 33, 1000, 100000}) {
+                final int offset = random.nextInt(3);
+                final byte[] range = Arrays.copyOfRange(bytes, offset, offset + length);
+                final CRC32 crc = new CRC32();
+                crc.update(range);
+                final HeapMemory copy = new HeapMemory(range, ByteOrder.LITTLE_ENDIAN);
+                final long crc32c = MemoryChecksums.crc32cSoftware(copy, 0, length);
+                final long xxHash = MemoryChecksums.xxHash64(copy, 0, length, 42);
+                for (final Memory memory : memories) {
+                    assertEquals(crc.getValue(), MemoryChecksums.crc32(memory, offset, length));
+                    assertEquals(crc32c, MemoryChecksums.crc32c(memory, offset, length));
+                    assertEquals(crc32c, MemoryChecksums.crc32cSoftware(memory, offset, length));
+                    assertEquals(xxHash, MemoryChecksums.xxHash64(memory, offset, length, 42));
+                    assertEquals(
+                            MurmurHash.hash64(range, 7),
+                            MemoryChecksums.murmurHash64(memory, offset, length, 7));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallel() throws Exception {
+        final byte[] bytes = new byte[1000000];
+        new Random(1).nextBytes(bytes);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (NativeBuffer buffer = new NativeBuffer(bytes.length, ByteOrder.LITTLE_ENDIAN)) {
+            final DirectMemory memory = buffer.memory();
+            memory.putBytes(0, bytes);
+            for (final long chunkSize : new long[] {1, 4096, 99999, 1000000, 2000000}) {
+                if (chunkSize == 1) {
+                    // one task per byte is too slow for the whole buffer
+                    assertEquals(
+                            MemoryChecksums.crc32c(memory, 5, 1000),
+                            MemoryChecksums.crc32c(memory, 5, 1000, chunkSize, executor, null));
+                    continue;
+                }
+                final AtomicLong bytesDone = new AtomicLong();
+                final MemoryChecksums.ProgressListener listener =
+                        (n, nanos) -> bytesDone.addAndGet(n);
+                assertEquals(
+                        MemoryChecksums.crc32(memory, 3, bytes.length - 3),
+                        MemoryChecksums.crc32(
+                                memory, 3, bytes.length - 3, chunkSize, executor, listener));
+                assertEquals(bytes.length - 3, bytesDone.get());
+                assertEquals(
+                        MemoryChecksums.crc32c(memory, 0, bytes.length),
+                        MemoryChecksums.crc32c(
+                                memory, 0, bytes.length, chunkSize, executor, listener));
+
+                final int chunks = (int) ((bytes.length + chunkSize - 1) / chunkSize);
+                final HeapMemory hashes = new HeapMemory(chunks * 8, ByteOrder.LITTLE_ENDIAN);
+                for (int i = 0; i < chunks; i++) {
+                    final long length = Math.min(chunkSize, bytes.length - i * chunkSize);
+                    hashes.putLong(
+                            i * 8L, MemoryChecksums.xxHash64(memory, i * chunkSize, length, 9));
+                }
+                assertEquals(
+                        MemoryChecksums.xxHash64(hashes, 0, hashes.length(), 9),
+                        MemoryChecksums.xxHash64Chunked(
+                                memory, 0, bytes.length, 9, chunkSize, executor, null));
+            }
+            assertEquals(
+                    MemoryChecksums.crc32(memory, 0, 0),
+                    MemoryChecksums.crc32(memory, 0, 0, 4096, executor, null));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testCombine() {
+        final byte[] bytes = new byte[5000];
+        new Random(2).nextBytes(bytes);
+        final HeapMemory memory = new HeapMemory(bytes, ByteOrder.LITTLE_ENDIAN);
+        for (final int split : new int[] {0, 1, 17, 2500, 4999, 5000}) {
+            assertEquals(
+                    MemoryChecksums.crc32(memory, 0, 5000),
+                    MemoryChecksums.crc32Combine(
+                            MemoryChecksums.crc32(memory, 0, split),
+                            MemoryChecksums.crc32(memory, split, 5000 - split),
+                            5000 - split));
+            assertEquals(
+                    MemoryChecksums.crc32c(memory, 0, 5000),
+                    MemoryChecksums.crc32cCombine(
+                            MemoryChecksums.crc32c(memory, 0, split),
+                            MemoryChecksums.crc32c(memory, split, 5000 - split),
+                            5000 - split));
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.io.VIntUtils;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.ByteOrder;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+public class MemoryDataInputTest {
+    private interface Check {
+        void run(Memory memory) throws IOException;
+    }
+
+    /** Runs check over heap and native copies of bytes in both byte orders. */
+    private static void forEachMemory(final byte[] bytes, final Check check) throws IOException {
+        for (final ByteOrder order :
+                new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            final HeapMemory heap = new HeapMemory(bytes.length, order);
+            heap.putBytes(0, bytes);
+            check.run(heap);
+            try (NativeBuffer buffer = new NativeBuffer(Math.max(1, bytes.length), order)) {
+                final DirectMemory direct = buffer.memory().slice(0, bytes.length);
+                direct.putBytes(0, bytes);
+                check.run(direct);
+            }
+        }
+    }
+
+    @Test
+    public void testVInts() throws IOException {
+        final Random random = new Random(0);
+        final int[] ints = new int[1000];
+        final long[] longs = new long[ints.length];
+        for (int i = 0; i < ints.length; i++) {
+            ints[i] = random.nextInt() >> random.nextInt(32);
+            longs[i] = random.nextLong() >> random.nextInt(64);
+        }
+        ints[0] = -1;
+        ints[1] = Integer.MAX_VALUE;
+        longs[0] = -1;
+        longs[1] = Long.MIN_VALUE;
+        final ByteArrayOutputStream intBytes = new ByteArrayOutputStream();
+        final ByteArrayOutputStream longBytes = new ByteArrayOutputStream();
+        for (int i = 0; i < ints.length; i++) {
+            VIntUtils.writeVInt(intBytes, ints[i]);
+            VIntUtils.writeVInt64(longBytes, longs[i]);
+        }
+
+        forEachMemory(
+                intBytes.toByteArray(),
+                memory -> {
+                    final MemoryDataInput in = new MemoryDataInput(memory);
+                    for (final int i : ints) {
+                        assertEquals(i, in.readVInt());
+                    }
+                    assertEquals(memory.length(), in.position());
+
+                    in.seek(0);
+                    final int[] values = new int[ints.length + 2];
+                    in.readVInts(values, 1, ints.length);
+                    for (int i = 0; i < ints.length; i++) {
+                        assertEquals(ints[i], values[i + 1]);
+                    }
+                    assertEquals(memory.length(), in.position());
+                    try {
+                        in.readVInt();
+                        fail();
+                    } catch (IndexOutOfBoundsException expected) {
+                    }
+                });
+        forEachMemory(
+                longBytes.toByteArray(),
+                memory -> {
+                    final MemoryDataInput in = new MemoryDataInput(memory);
+                    for (final long l : longs) {
+                        assertEquals(l, in.readVLong());
+                    }
+                    assertEquals(memory.length(), in.position());
+
+                    in.seek(0);
+                    final long[] values = new long[longs.length];
+                    in.readVLongs(values, 0, values.length);
+                    assertArrayEquals(longs, values);
+                    assertEquals(memory.length(), in.position());
+                });
+    }
+
+    @Test
+    public void testTruncatedVInt() throws IOException {
+        forEachMemory(
+                new byte[] {1, (byte) 0x80, (byte) 0x80},
+                memory -> {
+                    final MemoryDataInput in = new MemoryDataInput(memory);
+                    assertEquals(1, in.readVInt());
+                    try {
+                        in.readVInt();
+                        fail();
+                    } catch (IndexOutOfBoundsException expected) {
+                    }
+                });
+    }
+
+    @Test
+    public void testUTF8() throws IOException {
+        final List<String> strings = new ArrayList<>();
+        strings.add("");
+        strings.add("plain ascii");
+        strings.add("héllo wörld");
+        strings.add("世界 and 😀 emoji 🚀");
+        final StringBuilder all = new StringBuilder();
+        for (final String s : strings) {
+            all.append(s);
+        }
+        final byte[] bytes = all.toString().getBytes(StandardCharsets.UTF_8);
+
+        forEachMemory(
+                bytes,
+                memory -> {
+                    final MemoryDataInput in = new MemoryDataInput(memory);
+                    final StringBuilder builder = new StringBuilder("prefix");
+                    final CharBuffer chars = CharBuffer.allocate(all.length());
+                    for (final String s : strings) {
+                        final int length = s.getBytes(StandardCharsets.UTF_8).length;
+                        final long position = in.position();
+                        assertEquals(s.length(), in.readUTF8Into(length, builder));
+                        in.seek(position);
+                        assertEquals(s.length(), in.readUTF8Into(length, chars));
+                    }
+                    assertEquals("prefix" + all, builder.toString());
+                    chars.flip();
+                    assertEquals(all.toString(), chars.toString());
+                    try {
+                        in.readUTF8Into(1, builder);
+                        fail();
+                    } catch (IndexOutOfBoundsException expected) {
+                    }
+                });
+    }
+
+    @Test
+    public void testMalformedUTF8() throws IOException {
+        final byte[][] inputs = {
+            {(byte) 0xC0, (byte) 0x80, 'a'},
+            {(byte) 0xE2, (byte) 0x82, 'a'},
+            {(byte) 0xED, (byte) 0xA0, (byte) 0x80},
+            {(byte) 0xF8, 'a', (byte) 0xC3},
+            {(byte) 0xF4, (byte) 0x90, (byte) 0x80},
+        };
+        final String[] expected = {
+            "\uFFFD\uFFFDa",
+            "\uFFFD\uFFFDa",
+            "\uFFFD\uFFFD\uFFFD",
+            "\uFFFDa\uFFFD",
+            "\uFFFD\uFFFD\uFFFD",
+        };
+        for (int i = 0; i < inputs.length; i++) {
+            final byte[] input = inputs[i];
+            final String string = expected[i];
+            forEachMemory(
+                    input,
+                    memory -> {
+                        final StringBuilder builder = new StringBuilder();
+                        new MemoryDataInput(memory).readUTF8Into(input.length, builder);
+                        assertEquals(string, builder.toString());
+                    });
+        }
+    }
+
+    @Test
+    public void testReadUTF() throws IOException {
+        final String[] strings = {"", "abc", "\u0000 null", "世界 😀", "\uD800 lone surrogate"};
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final DataOutputStream out = new DataOutputStream(bytes);
+        for (final String s : strings) {
+            out.writeUTF(s);
+        }
+        final byte[] big = bytes.toByteArray();
+        forEachMemory(
+                big,
+                memory -> {
+                    if (memory.getOrder() != ByteOrder.BIG_ENDIAN) {
+                        return;
+                    }
+                    final MemoryDataInput in = new MemoryDataInput(memory);
+                    for (final String s : strings) {
+                        assertEquals(s, in.readUTF());
+                    }
+                });
+
+        forEachMemory(
+                new byte[] {0, 2, (byte) 0xF0, (byte) 0x9F},
+                memory -> {
+                    if (memory.getOrder() != ByteOrder.BIG_ENDIAN) {
+                        return;
+                    }
+                    try {
+                        new MemoryDataInput(memory).readUTF();
+                        fail();
+                    } catch (UTFDataFormatException expected) {
+                    }
+                });
+    }
+
+    @Test
+    public void testReadLine() throws IOException {
+        forEachMemory(
+                "one\r\ntwo\rthree\n\nfour".getBytes(StandardCharsets.ISO_8859_1),
+                memory -> {
+                    final MemoryDataInput in = new MemoryDataInput(memory);
+                    assertEquals("one", in.readLine());
+                    assertEquals("two", in.readLine());
+                    assertEquals("three", in.readLine());
+                    assertEquals("", in.readLine());
+                    assertEquals("four", in.readLine());
+                    assertNull(in.readLine());
+                });
+    }
+}
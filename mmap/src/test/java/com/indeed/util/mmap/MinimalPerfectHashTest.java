@@ -0,0 +1,141 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.core.hash.MurmurHash;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MinimalPerfectHashTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static String key(final int i) {
+        return "key-" + i;
+    }
+
+    private static MinimalPerfectHash build(
+            final int n, final MinimalPerfectHashWriter.Builder builder) throws IOException {
+        try (MinimalPerfectHashWriter writer = builder.build()) {
+            for (int i = 0; i < n; i++) {
+                writer.add(key(i));
+            }
+            assertEquals(n, writer.size());
+            return RoundTrip.heap(writer::write, MinimalPerfectHash::new);
+        }
+    }
+
+    private static void verify(final int n, final MinimalPerfectHash hash) {
+        assertEquals(n, hash.size());
+        final boolean[] seen = new boolean[n];
+        for (int i = 0; i < n; i++) {
+            final long slot = hash.get(key(i));
+            assertTrue(key(i) + " -> " + slot, slot >= 0 && slot < n);
+            assertFalse("slot " + slot + " used twice", seen[(int) slot]);
+            seen[(int) slot] = true;
+        }
+    }
+
+    @Test
+    public void testPermutation() throws IOException {
+        for (final int n : new int[] {1, 2, 7, 100, 1000, 100000}) {
+            verify(n, build(n, MinimalPerfectHashWriter.builder().setParallelism(1)));
+        }
+    }
+
+    @Test
+    public void testParallel() throws IOException {
+        final MinimalPerfectHash hash =
+                build(300000, MinimalPerfectHashWriter.builder().setParallelism(4));
+        verify(300000, hash);
+        assertTrue(hash.getLevelCount() > 1);
+    }
+
+    @Test
+    public void testGamma() throws IOException {
+        final MinimalPerfectHash hash =
+                build(10000, MinimalPerfectHashWriter.builder().setGamma(1).setSeed(42));
+        assertEquals(42, hash.getSeed());
+        verify(10000, hash);
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final MinimalPerfectHash hash = build(0, MinimalPerfectHashWriter.builder());
+        assertEquals(0, hash.size());
+        assertEquals(0, hash.getLevelCount());
+        assertEquals(-1, hash.get("missing"));
+    }
+
+    @Test
+    public void testLookupFromMemory() throws IOException {
+        final MinimalPerfectHash hash = build(1000, MinimalPerfectHashWriter.builder());
+        final byte[] bytes = ("xx" + key(123) + "yy").getBytes(StandardCharsets.UTF_8);
+        final Memory memory = new HeapMemory(bytes, ByteOrder.BIG_ENDIAN);
+        assertEquals(hash.get(key(123)), hash.get(memory, 2, bytes.length - 4));
+    }
+
+    @Test
+    public void testMurmurHashCompatible() {
+        final byte[] key = key(5).getBytes(StandardCharsets.UTF_8);
+        final long hash =
+                MinimalPerfectHash.hash(
+                        new HeapMemory(key, ByteOrder.LITTLE_ENDIAN),
+                        0,
+                        key.length,
+                        MinimalPerfectHashWriter.DEFAULT_SEED);
+        assertEquals(MurmurHash.hash64(key), hash);
+    }
+
+    @Test
+    public void testDuplicates() throws IOException {
+        try (MinimalPerfectHashWriter writer = MinimalPerfectHashWriter.builder().build()) {
+            writer.add("a");
+            writer.add("b");
+            writer.add("a");
+            writer.write(new DataOutputStream(new ByteArrayOutputStream()));
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testMappedFile() throws IOException {
+        final int n = 50000;
+        final File file = new File(tempDir.getRoot(), "mph");
+        try (MinimalPerfectHashWriter writer = MinimalPerfectHashWriter.builder().build()) {
+            for (int i = 0; i < n; i++) {
+                writer.add(key(i).getBytes(StandardCharsets.UTF_8));
+            }
+            assertEquals(writer.write(file, ByteOrder.LITTLE_ENDIAN), file.length());
+        }
+        try (MMapBuffer buffer =
+                new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN)) {
+            verify(n, new MinimalPerfectHash(buffer.memory()));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testWrongOrder() throws IOException {
+        final File file = new File(tempDir.getRoot(), "mph");
+        try (MinimalPerfectHashWriter writer = MinimalPerfectHashWriter.builder().build()) {
+            writer.add("a");
+            writer.write(file, ByteOrder.LITTLE_ENDIAN);
+        }
+        try (MMapBuffer buffer =
+                new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN)) {
+            new MinimalPerfectHash(buffer.memory());
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.varexport.VarExporter;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class NativeArenaTest {
+    @Test
+    public void testAllocateAndReuse() throws IOException {
+        try (NativeArena arena =
+                NativeArena.builder().setRegionSize(4096).setMaxBlockSize(1000).build()) {
+            final DirectMemory a = arena.allocate(100);
+            final DirectMemory b = arena.allocate(100);
+            assertEquals(100, a.length());
+            assertEquals(ByteOrder.nativeOrder(), a.getOrder());
+            assertTrue(a.getAddress() + 128 <= b.getAddress());
+            assertEquals(256, arena.getAllocatedBytes());
+            assertEquals(4096, arena.getReservedBytes());
+            assertEquals(2, arena.getAllocationCount());
+
+            arena.free(a);
+            assertEquals(128, arena.getAllocatedBytes());
+            // same size class
+            final DirectMemory c = arena.allocate(65);
+            assertEquals(a.getAddress(), c.getAddress());
+
+            final DirectMemory large = arena.allocate(10000);
+            assertEquals(4096 + 10000, arena.getReservedBytes());
+            large.putLong(9992, 5);
+            arena.free(large);
+            assertEquals(4096, arena.getReservedBytes());
+            try {
+                arena.free(large);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+
+            arena.free(b);
+            arena.free(c);
+            assertEquals(0, arena.getAllocatedBytes());
+            assertEquals(1.0, arena.getFragmentation(), 0);
+        }
+    }
+
+    @Test
+    public void testConcurrentAllocations() throws Exception {
+        try (NativeArena arena = NativeArena.builder().setRegionSize(1 << 16).build()) {
+            final ExecutorService executor = Executors.newFixedThreadPool(4);
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final int seed = t;
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    final Random random = new Random(seed);
+                                    final List<DirectMemory> live = new ArrayList<>();
+                                    for (int i = 0; i < 20000; i++) {
+                                        if (live.size() > 50
+                                                || (!live.isEmpty() && random.nextInt(3) == 0)) {
+                                            final DirectMemory memory =
+                                                    live.remove(random.nextInt(live.size()));
+                                            for (long j = 0; j < memory.length(); j++) {
+                                                assertEquals(
+                                                        (byte) (memory.length() + j),
+                                                        memory.getByte(j));
+                                            }
+                                            arena.free(memory);
+                                        } else {
+                                            final DirectMemory memory =
+                                                    arena.allocate(random.nextInt(3000));
+                                            for (long j = 0; j < memory.length(); j++) {
+                                                memory.putByte(j, (byte) (memory.length() + j));
+                                            }
+                                            live.add(memory);
+                                        }
+                                    }
+                                    for (final DirectMemory memory : live) {
+                                        arena.free(memory);
+                                    }
+                                    return null;
+                                }));
+            }
+            // every thread has to be done with the arena before it is closed
+            executor.shutdown();
+            assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            assertEquals(0, arena.getAllocatedBytes());
+            assertEquals(0, arena.getAllocationCount());
+        }
+    }
+
+    @Test
+    public void testLocalAllocator() throws IOException {
+        final NativeArena arena = NativeArena.builder().setRegionSize(1024).build();
+        final NativeArena.LocalAllocator local = arena.local();
+        assertTrue(local == arena.local());
+        final DirectMemory first = local.allocate(3);
+        final DirectMemory second = local.allocate(10);
+        assertEquals(first.getAddress() + 8, second.getAddress());
+        for (int i = 0; i < 10; i++) {
+            local.allocate(1000).putLong(992, i);
+        }
+        assertEquals(24 + 10 * 1000, local.getUsedBytes());
+        assertEquals(local.getUsedBytes(), arena.getAllocatedBytes());
+        try {
+            local.allocate(1025);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+        final long reserved = arena.getReservedBytes();
+        local.reset();
+        assertEquals(0, arena.getAllocatedBytes());
+        assertEquals(first.getAddress(), local.allocate(16).getAddress());
+        // regions returned by the reset are reused
+        for (int i = 0; i < 10; i++) {
+            local.allocate(1000);
+        }
+        assertEquals(reserved, arena.getReservedBytes());
+        arena.close();
+        try {
+            arena.allocate(1);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testReleaseLocalRegions() throws Exception {
+        try (NativeArena arena = NativeArena.builder().setRegionSize(1024).build()) {
+            final NativeArena.LocalAllocator local = arena.local();
+            local.allocate(1000);
+            local.allocate(1000);
+            local.release();
+            assertEquals(0, arena.getAllocatedBytes());
+            assertTrue(local != arena.local());
+            // both regions are idle again, so these don't reserve more memory
+            final long reserved = arena.getReservedBytes();
+            arena.local().allocate(1000);
+            arena.local().allocate(1000);
+            assertEquals(reserved, arena.getReservedBytes());
+
+            // regions held by a thread that died are reclaimed once the arena runs out
+            final Thread thread = new Thread(() -> arena.local().allocate(1000));
+            thread.start();
+            thread.join();
+            assertEquals(reserved + 1024, arena.getReservedBytes());
+            arena.local().allocate(1000);
+            assertEquals(reserved + 1024, arena.getReservedBytes());
+            assertEquals(3000, arena.getAllocatedBytes());
+        }
+    }
+
+    @Test
+    public void testVarExportOnClose() throws IOException {
+        final String namespace = "NativeArenaTest-varexport";
+        final NativeArena arena =
+                NativeArena.builder().setVarExportNamespace(namespace).build();
+        final VarExporter exporter = VarExporter.forNamespace(namespace);
+        assertNotNull(exporter.getVariable("arena-reserved-bytes"));
+        assertNotNull(VarExporter.global().getVariable(namespace + "-arena-reserved-bytes"));
+        try {
+            NativeArena.builder().setVarExportNamespace(namespace).build();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        arena.close();
+        assertNull(exporter.getVariable("arena-reserved-bytes"));
+        assertNull(VarExporter.global().getVariable(namespace + "-arena-reserved-bytes"));
+        // the namespace can be reused once the arena is closed
+        NativeArena.builder().setVarExportNamespace(namespace).build().close();
+    }
+}
@@ -0,0 +1,182 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PackedIntArrayTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static PackedIntArray write(final int[] values, final boolean sorted)
+            throws IOException {
+        return RoundTrip.heap(writer(values, sorted), PackedIntArray::new);
+    }
+
+    private static RoundTrip.Writer writer(final int[] values, final boolean sorted) {
+        return out -> {
+            final PackedIntArrayWriter writer = new PackedIntArrayWriter(out, sorted);
+            writer.addAll(values, 0, values.length);
+            return writer.finish();
+        };
+    }
+
+    private static int[] docIds(final Random random, final int n) {
+        final int[] values = new int[n];
+        int value = random.nextInt(1000);
+        for (int i = 0; i < n; i++) {
+            // mostly small gaps with the occasional large jump, which become exceptions
+            value += random.nextInt(100) == 0 ? random.nextInt(1 << 20) : random.nextInt(200);
+            values[i] = value;
+        }
+        return values;
+    }
+
+    private static void verify(final int[] values, final PackedIntArray array) {
+        assertEquals(values.length, array.size());
+        assertEquals((values.length + 127) / 128, array.getBlockCount());
+        final PackedIntArray.Cursor cursor = array.cursor();
+        assertEquals(-1, cursor.index());
+        for (int i = 0; i < values.length; i++) {
+            assertTrue(cursor.next());
+            assertEquals(i, cursor.index());
+            assertEquals(values[i], cursor.value());
+            assertEquals(values[i], array.get(i));
+        }
+        assertFalse(cursor.next());
+        assertEquals(values.length, cursor.index());
+
+        final int[] decoded = new int[values.length + 1];
+        int off = 1;
+        for (int block = 0; block < array.getBlockCount(); block++) {
+            off += cursor.decodeBlock(block, decoded, off);
+        }
+        assertArrayEquals(values, Arrays.copyOfRange(decoded, 1, off));
+    }
+
+    @Test
+    public void testSorted() throws IOException {
+        final Random random = new Random(0);
+        for (final int n : new int[] {0, 1, 127, 128, 129, 10000}) {
+            final int[] values = docIds(random, n);
+            final PackedIntArray array = write(values, true);
+            assertTrue(array.isSorted());
+            verify(values, array);
+        }
+    }
+
+    @Test
+    public void testUnsorted() throws IOException {
+        final Random random = new Random(1);
+        final int[] values = new int[5000];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = random.nextInt() >> random.nextInt(32);
+        }
+        final PackedIntArray array = write(values, false);
+        assertFalse(array.isSorted());
+        verify(values, array);
+        try {
+            array.cursor().advance(0);
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testExtremes() throws IOException {
+        final int[] constant = new int[300];
+        Arrays.fill(constant, -7);
+        verify(constant, write(constant, true));
+        verify(constant, write(constant, false));
+
+        final int[] wide = {
+            Integer.MIN_VALUE, Integer.MIN_VALUE, -1, 0, 0, 1, Integer.MAX_VALUE, Integer.MAX_VALUE
+        };
+        verify(wide, write(wide, true));
+        verify(wide, write(wide, false));
+    }
+
+    @Test
+    public void testCompression() throws IOException {
+        final int[] values = docIds(new Random(2), 100000);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final PackedIntArrayWriter writer =
+                new PackedIntArrayWriter(new DataOutputStream(bytes), true);
+        writer.addAll(values, 0, values.length);
+        // the gaps mostly fit in 8 bits
+        assertTrue(writer.finish() < values.length * 4L / 3);
+    }
+
+    @Test
+    public void testAdvance() throws IOException {
+        final Random random = new Random(3);
+        final int[] values = docIds(random, 20000);
+        final PackedIntArray array = write(values, true);
+        for (int round = 0; round < 100; round++) {
+            final PackedIntArray.Cursor cursor = array.cursor();
+            int index = -1;
+            int target = 0;
+            while (true) {
+                target += random.nextInt(random.nextBoolean() ? 100 : 100000);
+                int expected = index + 1;
+                while (expected < values.length && values[expected] < target) {
+                    expected++;
+                }
+                if (expected == values.length) {
+                    assertFalse(cursor.advance(target));
+                    assertEquals(values.length, cursor.index());
+                    break;
+                }
+                assertTrue(cursor.advance(target));
+                assertEquals(expected, cursor.index());
+                assertEquals(values[expected], cursor.value());
+                index = expected;
+                if (random.nextBoolean() && cursor.next()) {
+                    index++;
+                    assertEquals(values[index], cursor.value());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOrderEnforced() throws IOException {
+        final PackedIntArrayWriter writer =
+                new PackedIntArrayWriter(new DataOutputStream(new ByteArrayOutputStream()), true);
+        writer.add(5);
+        writer.add(5);
+        try {
+            writer.add(4);
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    @Test
+    public void testMapped() throws IOException {
+        final int[] values = docIds(new Random(4), 50000);
+        final File file = tempDir.newFile();
+        RoundTrip.mapped(
+                file, writer(values, true), memory -> verify(values, new PackedIntArray(memory)));
+        try (MMapBuffer buffer =
+                new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ByteOrder.BIG_ENDIAN)) {
+            new PackedIntArray(buffer.memory());
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.indeed.util.mmap;
+
+import com.indeed.util.varexport.VarExporter;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class PageCacheWarmerTest {
+    private static MMapBuffer map(final File file, final long length) throws IOException {
+        final MMapBuffer buffer =
+                new MMapBuffer(
+                        file, 0, length, FileChannel.MapMode.READ_WRITE, ByteOrder.nativeOrder());
+        for (long i = 0; i + 8 <= length; i += 8) {
+            buffer.memory().putLong(i, i);
+        }
+        return buffer;
+    }
+
+    @Test
+    public void testWarm() throws IOException {
+        final File f1 = File.createTempFile("PageCacheWarmerTest", "");
+        final File f2 = File.createTempFile("PageCacheWarmerTest", "");
+        try (MMapBuffer b1 = map(f1, 40 * MMapBuffer.PAGE_SIZE + 100);
+                MMapBuffer b2 = map(f2, 3 * MMapBuffer.PAGE_SIZE);
+                PageCacheWarmer warmer =
+                        PageCacheWarmer.builder()
+                                .setChunkPages(7)
+                                .setBytesPerSecond(1 << 30)
+                                .setVarExportNamespace("PageCacheWarmerTest")
+                                .build()) {
+            warmer.add(b1);
+            warmer.addHotRange(b2, 5, MMapBuffer.PAGE_SIZE * 2);
+            assertEquals(2, warmer.getBufferCount());
+            assertEquals(
+                    2,
+                    (int) VarExporter.forNamespace("PageCacheWarmerTest")
+                            .<Integer>getValue("page-cache-buffers"));
+
+            warmer.warm();
+            warmer.warm();
+            assertEquals(100, warmer.getResidentPercent(), 0.0);
+            assertTrue(warmer.getLastPassMillis() > 0);
+            assertTrue(warmer.getBytesWarmed() >= 0);
+
+            warmer.remove(b2);
+            assertEquals(1, warmer.getBufferCount());
+            warmer.warm();
+            assertEquals(100, warmer.getResidentPercent(), 0.0);
+        } finally {
+            f1.delete();
+            f2.delete();
+        }
+    }
+
+    @Test
+    public void testBackgroundWarming() throws Exception {
+        final File f = File.createTempFile("PageCacheWarmerTest", "");
+        try (MMapBuffer buffer = map(f, 16 * MMapBuffer.PAGE_SIZE);
+                PageCacheWarmer warmer =
+                        PageCacheWarmer.builder()
+                                .setTouch(false)
+                                .setInterval(10, TimeUnit.MILLISECONDS)
+                                .build()) {
+            warmer.add(buffer);
+            warmer.start();
+            final long deadline = System.currentTimeMillis() + 10000;
+            while (warmer.getLastPassMillis() == 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertTrue(warmer.getLastPassMillis() > 0);
+            warmer.remove(buffer);
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testVarExportOnClose() throws IOException {
+        final String namespace = "PageCacheWarmerTest-close";
+        final PageCacheWarmer warmer =
+                PageCacheWarmer.builder().setVarExportNamespace(namespace).build();
+        assertNotNull(VarExporter.forNamespace(namespace).getVariable("page-cache-buffers"));
+        try {
+            PageCacheWarmer.builder().setVarExportNamespace(namespace).build();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        warmer.close();
+        assertNull(VarExporter.forNamespace(namespace).getVariable("page-cache-buffers"));
+        assertNull(VarExporter.global().getVariable(namespace + "-page-cache-buffers"));
+        PageCacheWarmer.builder().setVarExportNamespace(namespace).build().close();
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testHotRangeOutOfBounds() throws IOException {
+        final File f = File.createTempFile("PageCacheWarmerTest", "");
+        try (MMapBuffer buffer = map(f, MMapBuffer.PAGE_SIZE);
+                PageCacheWarmer warmer = PageCacheWarmer.builder().build()) {
+            warmer.addHotRange(buffer, 10, MMapBuffer.PAGE_SIZE);
+        } finally {
+            f.delete();
+        }
+    }
+}
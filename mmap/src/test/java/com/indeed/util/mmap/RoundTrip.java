@@ -0,0 +1,58 @@
+package com.indeed.util.mmap;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.assertEquals;
+
+/** Writes one of the memory mapped formats and opens it again, from the heap or from a file. */
+final class RoundTrip {
+    interface Writer {
+        /** @return the number of bytes the writer reports having written */
+        long write(DataOutput out) throws IOException;
+    }
+
+    interface Reader<T> {
+        T open(Memory memory);
+    }
+
+    interface Check {
+        void check(Memory memory) throws IOException;
+    }
+
+    private RoundTrip() {}
+
+    /** Writes to a heap array and opens it big endian. */
+    static <T> T heap(final Writer writer, final Reader<T> reader) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        final long length = writer.write(new DataOutputStream(bytes));
+        assertEquals(bytes.size(), length);
+        return reader.open(new HeapMemory(bytes.toByteArray(), ByteOrder.BIG_ENDIAN));
+    }
+
+    /**
+     * Writes to file through a little endian {@link DynamicMMapBufferDataOutputStream} and runs
+     * check on a mapping of the result, which is only valid during the check.
+     */
+    static void mapped(final File file, final Writer writer, final Check check)
+            throws IOException {
+        final long length;
+        try (DynamicMMapBufferDataOutputStream out =
+                DynamicMMapBufferDataOutputStream.builder(file)
+                        .setByteOrder(ByteOrder.LITTLE_ENDIAN)
+                        .setTruncateOnClose(true)
+                        .build()) {
+            length = writer.write(out);
+        }
+        assertEquals(length, file.length());
+        try (MMapBuffer buffer =
+                new MMapBuffer(file, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN)) {
+            check.check(buffer.memory());
+        }
+    }
+}
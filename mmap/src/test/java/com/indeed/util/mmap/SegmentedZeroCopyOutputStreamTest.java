@@ -0,0 +1,157 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class SegmentedZeroCopyOutputStreamTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static void writeRandom(final DataOutput out, final long seed) throws IOException {
+        final Random random = new Random(seed);
+        for (int i = 0; i < 20000; i++) {
+            switch (random.nextInt(8)) {
+                case 0:
+                    out.writeByte(random.nextInt());
+                    break;
+                case 1:
+                    out.writeShort(random.nextInt());
+                    break;
+                case 2:
+                    out.writeChar(random.nextInt());
+                    break;
+                case 3:
+                    out.writeInt(random.nextInt());
+                    break;
+                case 4:
+                    out.writeLong(random.nextLong());
+                    break;
+                case 5:
+                    out.writeDouble(random.nextDouble());
+                    break;
+                case 6:
+                    out.writeBoolean(random.nextBoolean());
+                    break;
+                default:
+                    final byte[] bytes = new byte[random.nextInt(300)];
+                    random.nextBytes(bytes);
+                    out.write(bytes, 0, bytes.length);
+            }
+        }
+    }
+
+    private static byte[] expected(final long seed) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writeRandom(new DataOutputStream(bytes), seed);
+        return bytes.toByteArray();
+    }
+
+    @Test
+    public void testWrites() throws IOException {
+        final NativeArena arena =
+                NativeArena.builder().setOrder(ByteOrder.BIG_ENDIAN).setRegionSize(1 << 16).build();
+        final byte[] expected = expected(0);
+        try (SegmentedZeroCopyOutputStream out = new SegmentedZeroCopyOutputStream(arena, 1021)) {
+            writeRandom(out, 0);
+            assertEquals(expected.length, out.position());
+            assertEquals((expected.length + 1020) / 1021, out.getSegmentCount());
+
+            final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            out.writeTo(streamed);
+            assertArrayEquals(expected, streamed.toByteArray());
+
+            // not a GatheringByteChannel
+            final ByteArrayOutputStream transferred = new ByteArrayOutputStream();
+            assertEquals(expected.length, out.transferTo(Channels.newChannel(transferred)));
+            assertArrayEquals(expected, transferred.toByteArray());
+
+            final Path path = tempDir.newFile().toPath();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                assertEquals(expected.length, out.transferTo(channel));
+            }
+            assertArrayEquals(expected, Files.readAllBytes(path));
+        }
+        assertEquals(0, arena.getAllocatedBytes());
+        arena.close();
+    }
+
+    @Test
+    public void testSegmentsAreReused() throws IOException {
+        final NativeArena arena = NativeArena.builder().setRegionSize(1 << 20).build();
+        final byte[] expected = expected(1);
+        for (int i = 0; i < 3; i++) {
+            try (SegmentedZeroCopyOutputStream out =
+                    new SegmentedZeroCopyOutputStream(arena, 4096)) {
+                writeRandom(out, 1);
+                out.reset();
+                assertEquals(1, out.getSegmentCount());
+                writeRandom(out, 1);
+                assertEquals(expected.length, out.position());
+            }
+        }
+        // the first stream's segments are enough for the others
+        assertEquals(1 << 20, arena.getReservedBytes());
+        assertEquals(0, arena.getAllocatedBytes());
+        arena.close();
+    }
+
+    @Test
+    public void testSharedArena() throws IOException {
+        final byte[] expected = expected(2);
+        try (SegmentedZeroCopyOutputStream out = new SegmentedZeroCopyOutputStream()) {
+            writeRandom(out, 2);
+            final ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            out.writeTo(streamed);
+            assertArrayEquals(expected, streamed.toByteArray());
+        }
+    }
+
+    private interface StreamAction {
+        void apply(SegmentedZeroCopyOutputStream out) throws IOException;
+    }
+
+    @Test
+    public void testClosed() throws IOException {
+        final NativeArena arena = NativeArena.builder().setRegionSize(1 << 20).build();
+        final StreamAction[] actions = {
+            out -> out.writeByte(1),
+            out -> out.writeShort(1),
+            out -> out.writeInt(1),
+            out -> out.writeLong(1),
+            out -> out.write(new byte[10]),
+            out -> out.reset(),
+            out -> out.writeTo(new ByteArrayOutputStream()),
+            out -> out.transferTo(Channels.newChannel(new ByteArrayOutputStream()))
+        };
+        for (final StreamAction action : actions) {
+            final SegmentedZeroCopyOutputStream out =
+                    new SegmentedZeroCopyOutputStream(arena, 4096);
+            out.writeInt(42);
+            out.close();
+            try {
+                action.apply(out);
+                fail();
+            } catch (IOException expected) {
+            }
+            out.close();
+        }
+        assertEquals(0, arena.getAllocatedBytes());
+        arena.close();
+    }
+}
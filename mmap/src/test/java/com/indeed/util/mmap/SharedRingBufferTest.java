@@ -0,0 +1,147 @@
+package com.indeed.util.mmap;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SharedRingBufferTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    @Test
+    public void testAtomicAccessors() throws IOException {
+        for (final ByteOrder order :
+                new ByteOrder[] {ByteOrder.BIG_ENDIAN, ByteOrder.LITTLE_ENDIAN}) {
+            try (NativeBuffer buffer = new NativeBuffer(64, order)) {
+                final DirectMemory memory = buffer.memory();
+                memory.putIntVolatile(0, 0x01020304);
+                assertEquals(0x01020304, memory.getInt(0));
+                assertEquals(0x01020304, memory.getAndAddInt(0, 0x100));
+                assertEquals(0x01020404, memory.getIntVolatile(0));
+                assertFalse(memory.compareAndSwapInt(0, 1, 2));
+                assertTrue(memory.compareAndSwapInt(0, 0x01020404, -1));
+                memory.putIntOrdered(4, 7);
+                assertEquals(7, memory.getInt(4));
+
+                memory.putLong(8, 0x0102030405060708L);
+                assertEquals(0x0102030405060708L, memory.getLongVolatile(8));
+                assertEquals(0x0102030405060708L, memory.getAndAddLong(8, 0xff));
+                assertEquals(0x0102030405060807L, memory.getLong(8));
+                assertTrue(memory.compareAndSwapLong(8, 0x0102030405060807L, 5));
+                memory.putLongOrdered(16, -2);
+                memory.putLongVolatile(24, -3);
+                assertEquals(5, memory.getLong(8));
+                assertEquals(-2, memory.getLong(16));
+                assertEquals(-3, memory.getLongVolatile(24));
+                try {
+                    memory.getLongVolatile(4);
+                    fail();
+                } catch (IllegalArgumentException expected) {
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testOfferPoll() throws IOException {
+        final Path path = tempDir.getRoot().toPath().resolve("ring");
+        try (SharedRingBuffer ring = SharedRingBuffer.create(path, 4, 10)) {
+            assertEquals(4, ring.capacity());
+            assertEquals(12, ring.maxMessageSize());
+            assertNull(ring.poll());
+            for (int i = 0; i < 4; i++) {
+                assertTrue(ring.offer(new byte[] {(byte) i}));
+            }
+            assertFalse(ring.offer(new byte[1]));
+            assertEquals(4, ring.size());
+            for (int round = 0; round < 10; round++) {
+                assertArrayEquals(new byte[] {(byte) round}, ring.poll());
+                assertTrue(ring.offer(new byte[] {(byte) (round + 4)}));
+            }
+            try {
+                ring.offer(new byte[13]);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+        Files.write(path, new byte[] {1, 2, 3});
+        try {
+            SharedRingBuffer.open(path).close();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testSeparateMappings() throws Exception {
+        final Path path = tempDir.getRoot().toPath().resolve("ring");
+        final int messages = 200000;
+        final int consumers = 3;
+        final ExecutorService executor = Executors.newFixedThreadPool(consumers);
+        // every party has its own mapping of the file, as separate processes would
+        try (SharedRingBuffer producer = SharedRingBuffer.create(path, 64, 8)) {
+            final AtomicBoolean done = new AtomicBoolean(false);
+            final List<Future<long[]>> futures = new ArrayList<>();
+            for (int i = 0; i < consumers; i++) {
+                futures.add(
+                        executor.submit(
+                                () -> {
+                                    final long[] sumAndCount = new long[2];
+                                    try (SharedRingBuffer consumer = SharedRingBuffer.open(path)) {
+                                        while (true) {
+                                            final boolean polled =
+                                                    consumer.poll(
+                                                            memory -> {
+                                                                sumAndCount[0] += memory.getLong(0);
+                                                                sumAndCount[1]++;
+                                                            });
+                                            if (!polled) {
+                                                if (done.get() && consumer.size() == 0) {
+                                                    return sumAndCount;
+                                                }
+                                                Thread.yield();
+                                            }
+                                        }
+                                    }
+                                }));
+            }
+            final byte[] message = new byte[8];
+            final HeapMemory messageMemory = new HeapMemory(message, ByteOrder.nativeOrder());
+            for (long i = 1; i <= messages; i++) {
+                messageMemory.putLong(0, i);
+                while (!producer.offer(message)) {
+                    Thread.yield();
+                }
+            }
+            done.set(true);
+            long sum = 0;
+            long count = 0;
+            for (final Future<long[]> future : futures) {
+                final long[] sumAndCount = future.get();
+                sum += sumAndCount[0];
+                count += sumAndCount[1];
+            }
+            assertEquals(messages, count);
+            assertEquals((long) messages * (messages + 1) / 2, sum);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
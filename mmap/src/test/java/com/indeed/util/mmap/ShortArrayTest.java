@@ -119,4 +119,40 @@ public class ShortArrayTest extends TestCase {
             }
         }
     }
+
+    public void testSearch() throws Exception {
+        final ShortArray bigEndian =
+                new NativeBuffer(length * size, ByteOrder.BIG_ENDIAN)
+                        .memory()
+                        .shortArray(0L, length);
+        for (ShortArray shortArray :
+                new ShortArray[] {shortArrays[0], shortArrays[1], shortArrays[2], bigEndian}) {
+            for (int i = 0; i < length; i++) {
+                shortArray.set(i, (short) ((i / 3) * 2 - 3000));
+            }
+            long expected = 0;
+            for (int key = -3002; key < (length / 3) * 2 - 3000 + 2; key++) {
+                while (expected < length && shortArray.get(expected) < key) {
+                    expected++;
+                }
+                final long found =
+                        expected < length && shortArray.get(expected) == key
+                                ? expected
+                                : -expected - 1;
+                assertEquals(expected, shortArray.lowerBound((short) key));
+                assertEquals(found, shortArray.binarySearch((short) key));
+                assertEquals(found, shortArray.exponentialSearch(0, (short) key));
+                assertEquals(found, shortArray.exponentialSearch(expected / 2, (short) key));
+                assertEquals(
+                        Math.min(Math.max(expected, 100), 200),
+                        shortArray.lowerBound(100, 200, (short) key));
+            }
+            assertEquals(-1, shortArray.binarySearch(0, 0, (short) 5));
+            try {
+                shortArray.binarySearch(10, 5, (short) 5);
+                fail();
+            } catch (IndexOutOfBoundsException success) {
+            }
+        }
+    }
 }
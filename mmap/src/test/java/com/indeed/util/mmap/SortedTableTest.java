@@ -0,0 +1,214 @@
+package com.indeed.util.mmap;
+
+import com.google.common.collect.Ordering;
+import com.indeed.util.compress.CompressionCodec;
+import com.indeed.util.compress.GzipCodec;
+import com.indeed.util.compress.SnappyCodec;
+import com.indeed.util.compress.snappy.SnappyCompressor;
+import com.indeed.util.serialization.LongSerializer;
+import com.indeed.util.serialization.Serializer;
+import com.indeed.util.serialization.StringSerializer;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SortedTableTest {
+    @Rule public final TemporaryFolder tempDir = new TemporaryFolder();
+
+    private static final int COUNT = 20000;
+
+    private static String key(final int i) {
+        return String.format("key-%08d", i * 2);
+    }
+
+    private Path write(final CompressionCodec codec) throws IOException {
+        final Path path = tempDir.newFile().toPath();
+        try (SortedTableWriter<String, Long> writer =
+                SortedTableWriter.builder(
+                                path,
+                                new StringSerializer(),
+                                new LongSerializer(),
+                                Ordering.<String>natural())
+                        .setCompressionCodec(codec)
+                        .build()) {
+            for (int i = 0; i < COUNT; i++) {
+                writer.add(key(i), (long) i * i);
+            }
+        }
+        return path;
+    }
+
+    private static SortedTable<String, Long> open(final Path path) throws IOException {
+        return SortedTable.open(
+                path, new StringSerializer(), new LongSerializer(), Ordering.<String>natural());
+    }
+
+    private static void verify(final Path path) throws IOException {
+        try (SortedTable<String, Long> table = open(path)) {
+            assertEquals(COUNT, table.size());
+            assertTrue(table.blockCount() > 1);
+            for (int i = 0; i < COUNT; i++) {
+                assertEquals(Long.valueOf((long) i * i), table.get(key(i)));
+            }
+            assertNull(table.get("a"));
+            assertNull(table.get("key-00000001"));
+            assertNull(table.get(String.format("key-%08d", COUNT * 2 + 1)));
+            assertFalse(table.containsKey("key-00000003"));
+            assertTrue(table.containsKey("key-00000004"));
+
+            final Iterator<Map.Entry<String, Long>> all = table.iterator();
+            for (int i = 0; i < COUNT; i++) {
+                final Map.Entry<String, Long> entry = all.next();
+                assertEquals(key(i), entry.getKey());
+                assertEquals(Long.valueOf((long) i * i), entry.getValue());
+            }
+            assertFalse(all.hasNext());
+
+            final Iterator<Map.Entry<String, Long>> range =
+                    table.range("key-00001001", "key-00003000");
+            for (int i = 501; i < 1500; i++) {
+                assertEquals(key(i), range.next().getKey());
+            }
+            assertFalse(range.hasNext());
+
+            assertFalse(table.range("zzz", null).hasNext());
+            assertEquals(key(0), table.range(null, "key-00000001").next().getKey());
+        }
+    }
+
+    @Test
+    public void testUncompressed() throws IOException {
+        verify(write(null));
+    }
+
+    @Test
+    public void testSnappy() throws IOException {
+        Assume.assumeTrue(SnappyCompressor.isNativeCodeLoaded());
+        final Path path = write(new SnappyCodec());
+        verify(path);
+        assertTrue(path.toFile().length() < write(null).toFile().length());
+    }
+
+    @Test
+    public void testGzip() throws IOException {
+        final CompressionCodec codec;
+        try {
+            codec = new GzipCodec();
+            codec.createCompressor().end();
+        } catch (Throwable t) {
+            Assume.assumeNoException(t);
+            return;
+        }
+        verify(write(codec));
+    }
+
+    @Test
+    public void testEmpty() throws IOException {
+        final Path path = tempDir.newFile().toPath();
+        SortedTableWriter.builder(
+                        path, new StringSerializer(), new LongSerializer(), Ordering.natural())
+                .build()
+                .close();
+        try (SortedTable<String, Long> table = open(path)) {
+            assertEquals(0, table.size());
+            assertNull(table.get("a"));
+            assertFalse(table.iterator().hasNext());
+        }
+    }
+
+    @Test
+    public void testOutOfOrder() throws IOException {
+        final Path path = tempDir.newFile().toPath();
+        try (SortedTableWriter<String, Long> writer =
+                SortedTableWriter.builder(
+                                path,
+                                new StringSerializer(),
+                                new LongSerializer(),
+                                Ordering.<String>natural())
+                        .build()) {
+            writer.add("b", 1L);
+            try {
+                writer.add("a", 2L);
+                fail();
+            } catch (IllegalArgumentException expected) {
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownCodec() throws IOException {
+        try {
+            SortedTableWriter.builder(
+                            tempDir.newFile().toPath(),
+                            new StringSerializer(),
+                            new LongSerializer(),
+                            Ordering.<String>natural())
+                    .setCompressionCodec(new SnappyCodec() {});
+            fail();
+        } catch (IllegalArgumentException expected) {
+        }
+
+        final Path path = write(null);
+        try (RandomAccessFile raf = new RandomAccessFile(path.toFile(), "rw")) {
+            raf.seek(raf.length() - SortedTableWriter.FOOTER_SIZE);
+            raf.seek(raf.readLong());
+            raf.writeByte(42);
+        }
+        try {
+            open(path).close();
+            fail();
+        } catch (IOException expected) {
+        }
+    }
+    @Test
+    public void testFailedWriteKeepsTable() throws IOException {
+        final Path path = write(null);
+        final Serializer<Long> failing =
+                new Serializer<Long>() {
+                    @Override
+                    public void write(final Long value, final DataOutput out) throws IOException {
+                        if (value == 100) {
+                            throw new IOException("failed");
+                        }
+                        out.writeLong(value);
+                    }
+
+                    @Override
+                    public Long read(final DataInput in) throws IOException {
+                        return in.readLong();
+                    }
+                };
+        try (SortedTableWriter<String, Long> writer =
+                SortedTableWriter.builder(
+                                path, new StringSerializer(), failing, Ordering.<String>natural())
+                        .build()) {
+            for (int i = 0; i < COUNT; i++) {
+                writer.add(key(i), (long) i);
+            }
+            fail();
+        } catch (IOException expected) {
+        }
+        // the old table is untouched and the temp file is gone
+        verify(path);
+        try (Stream<Path> files = Files.list(path.getParent())) {
+            assertEquals(1, files.count());
+        }
+    }
+}
@@ -1,18 +1,28 @@
 package com.indeed.util.mmap;
 
+import com.indeed.util.varexport.VarExporter;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.ReadOnlyBufferException;
+import java.nio.channels.Channels;
 import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /** @author jsgroth */
 @SuppressWarnings("deprecation")
@@ -48,9 +58,14 @@ public class TestMMapBuffer {
 
     @Test
     public void testTrackingDisabled() {
-        MMapBuffer.setTrackingEnabled(false);
-        assertFalse(MMapBuffer.isTrackingEnabled());
-        assertNull(MMapBuffer.openBuffersTracker);
+        try {
+            MMapBuffer.setTrackingEnabled(false);
+            assertFalse(MMapBuffer.isTrackingEnabled());
+            assertNull(MMapBuffer.openBuffersTracker);
+            assertEquals(0, MMapBufferMetrics.getMappedBytes());
+        } finally {
+            MMapBuffer.setTrackingEnabled(MMapBuffer.TRACKING_BY_DEFAULT);
+        }
     }
 
     @Test
@@ -81,7 +96,7 @@ public class TestMMapBuffer {
             final boolean tracked = MMapBuffer.openBuffersTracker.mmapBufferSet.containsKey(buffer);
             assertFalse("Closed buffers should not be tracked!", tracked);
         } finally {
-            MMapBuffer.setTrackingEnabled(false);
+            MMapBuffer.setTrackingEnabled(MMapBuffer.TRACKING_BY_DEFAULT);
         }
     }
 
@@ -107,7 +122,232 @@ public class TestMMapBuffer {
 
             MMapBuffer.madviseDontNeedTrackedBuffers();
         } finally {
+            MMapBuffer.setTrackingEnabled(MMapBuffer.TRACKING_BY_DEFAULT);
+        }
+    }
+
+    @Test
+    public void testMappingOptions() throws IOException {
+        final File f = File.createTempFile("TestMMapBuffer", "");
+        try {
+            final byte[] data = new byte[3 * MMapBuffer.PAGE_SIZE + 17];
+            for (int i = 0; i < data.length; i++) {
+                data[i] = (byte) (i * 31);
+            }
+            Files.write(f.toPath(), data);
+
+            for (final Advice advice : new Advice[] {null, Advice.RANDOM, Advice.SEQUENTIAL}) {
+                final MappingOptions options =
+                        MappingOptions.builder()
+                                .setPopulate(true)
+                                .setNoReserve(true)
+                                .setHugePages(true)
+                                .setAdvice(advice)
+                                .build();
+                try (MMapBuffer buffer =
+                        new MMapBuffer(
+                                f.toPath(),
+                                FileChannel.MapMode.READ_ONLY,
+                                ByteOrder.nativeOrder(),
+                                options)) {
+                    final byte[] bytes = new byte[data.length];
+                    buffer.memory().getBytes(0, bytes);
+                    assertArrayEquals(data, bytes);
+                    buffer.advise(MMapBuffer.PAGE_SIZE + 5, 100, Advice.WILLNEED);
+                    buffer.advise(0, data.length, Advice.NORMAL);
+                }
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testHugePageAdviceRejected() {
+        MappingOptions.builder().setAdvice(Advice.HUGEPAGE);
+    }
+
+    @Test
+    public void testPrivateMapping() throws IOException {
+        final File f = File.createTempFile("TestMMapBuffer", "");
+        try {
+            Files.write(f.toPath(), new byte[] {1, 2, 3, 4});
+            try (MMapBuffer buffer =
+                    new MMapBuffer(f, FileChannel.MapMode.PRIVATE, ByteOrder.nativeOrder())) {
+                buffer.memory().putByte(0, (byte) 42);
+                assertEquals(42, buffer.memory().getByte(0));
+            }
+            assertArrayEquals(new byte[] {1, 2, 3, 4}, Files.readAllBytes(f.toPath()));
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testPrivateMappingCannotExtendFile() throws IOException {
+        final File f = File.createTempFile("TestMMapBuffer", "");
+        try {
+            new MMapBuffer(f, 0, 10, FileChannel.MapMode.PRIVATE, ByteOrder.nativeOrder()).close();
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testTrackedBufferClose() throws InterruptedException {
+        final MMapBuffer.TrackedBuffer tracked = new MMapBuffer.TrackedBuffer("file", 0, 10, 0);
+        assertTrue(tracked.tryAcquire());
+        final Thread closer = new Thread(tracked::awaitClose);
+        closer.start();
+        closer.join(100);
+        assertTrue("close should wait for the user", closer.isAlive());
+        tracked.release();
+        closer.join();
+        assertFalse(tracked.tryAcquire());
+    }
+
+    @Test
+    public void testTrackingMetrics() throws IOException {
+        final File f = File.createTempFile("TestMMapBuffer", "");
+        try {
+            MMapBuffer.setTrackingEnabled(true);
+            final int openCount = MMapBufferMetrics.getOpenCount();
+            final long mappedBytes = MMapBufferMetrics.getMappedBytes();
+            try (MMapBuffer buffer =
+                    new MMapBuffer(
+                            f,
+                            0,
+                            3 * MMapBuffer.PAGE_SIZE,
+                            FileChannel.MapMode.READ_WRITE,
+                            ByteOrder.nativeOrder())) {
+                for (long i = 0; i < buffer.memory().length(); i += MMapBuffer.PAGE_SIZE) {
+                    buffer.memory().putByte(i, (byte) 1);
+                }
+                assertEquals(openCount + 1, MMapBufferMetrics.getOpenCount());
+                assertEquals(
+                        mappedBytes + 3 * MMapBuffer.PAGE_SIZE,
+                        MMapBufferMetrics.getMappedBytes());
+                assertEquals(
+                        Long.valueOf(3 * MMapBuffer.PAGE_SIZE),
+                        MMapBufferMetrics.getMappedBytesByFile().get(f.toPath().toString()));
+                assertTrue(MMapBufferMetrics.getResidentBytes() >= 3 * MMapBuffer.PAGE_SIZE);
+                assertTrue(MMapBufferMetrics.getOldestOpenAgeSeconds() >= 0);
+                assertEquals(
+                        openCount + 1,
+                        (int)
+                                VarExporter.forNamespace(MMapBufferMetrics.NAMESPACE)
+                                        .<Integer>getValue("mmap-open-count"));
+            }
+            assertEquals(openCount, MMapBufferMetrics.getOpenCount());
+            assertEquals(mappedBytes, MMapBufferMetrics.getMappedBytes());
+            assertNull(MMapBufferMetrics.getMappedBytesByFile().get(f.toPath().toString()));
+
             MMapBuffer.setTrackingEnabled(false);
+            assertEquals(0, MMapBufferMetrics.getOpenCount());
+        } finally {
+            MMapBuffer.setTrackingEnabled(MMapBuffer.TRACKING_BY_DEFAULT);
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testGrowableMappingsAreTracked() throws IOException {
+        final File f = File.createTempFile("TestMMapBuffer", "");
+        try {
+            MMapBuffer.setTrackingEnabled(true);
+            final long mappedBytes = MMapBufferMetrics.getMappedBytes();
+            try (DynamicMMapBufferDataOutputStream out =
+                    DynamicMMapBufferDataOutputStream.builder(f).setRemapInPlace(true).build()) {
+                for (int i = 0; i < 3 * MMapBuffer.PAGE_SIZE; i += 8) {
+                    out.writeLong(i);
+                }
+                assertTrue(
+                        MMapBufferMetrics.getMappedBytes()
+                                >= mappedBytes + 3 * MMapBuffer.PAGE_SIZE);
+                assertNotNull(MMapBufferMetrics.getMappedBytesByFile().get(f.toPath().toString()));
+                assertTrue(MMapBufferMetrics.getResidentBytes() >= 3 * MMapBuffer.PAGE_SIZE);
+            }
+            assertEquals(mappedBytes, MMapBufferMetrics.getMappedBytes());
+            assertNull(MMapBufferMetrics.getMappedBytesByFile().get(f.toPath().toString()));
+        } finally {
+            MMapBuffer.setTrackingEnabled(MMapBuffer.TRACKING_BY_DEFAULT);
+            f.delete();
+        }
+    }
+
+    private static byte[] transfer(MMapBuffer buffer, long position, long length)
+            throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(length, buffer.transferTo(position, length, Channels.newChannel(out)));
+        return out.toByteArray();
+    }
+
+    @Test
+    public void testTransferTo() throws IOException {
+        final File f = File.createTempFile("TestMMapBuffer", "");
+        try {
+            final byte[] bytes = new byte[3 * MMapBuffer.PAGE_SIZE + 17];
+            new Random(0).nextBytes(bytes);
+            Files.write(f.toPath(), bytes);
+            try (MMapBuffer buffer =
+                            new MMapBuffer(
+                                    f,
+                                    MMapBuffer.PAGE_SIZE,
+                                    bytes.length - MMapBuffer.PAGE_SIZE,
+                                    FileChannel.MapMode.READ_ONLY,
+                                    ByteOrder.nativeOrder());
+                    MMapBuffer privateBuffer =
+                            new MMapBuffer(
+                                    f, FileChannel.MapMode.PRIVATE, ByteOrder.nativeOrder())) {
+                assertArrayEquals(
+                        Arrays.copyOfRange(bytes, MMapBuffer.PAGE_SIZE + 5, bytes.length),
+                        transfer(buffer, 5, bytes.length - MMapBuffer.PAGE_SIZE - 5));
+                assertEquals(0, transfer(buffer, 0, 0).length);
+
+                privateBuffer.memory().putByte(1, (byte) (bytes[1] + 1));
+                final byte[] expected = Arrays.copyOf(bytes, 10);
+                expected[1]++;
+                assertArrayEquals(expected, transfer(privateBuffer, 0, 10));
+
+                // a replaced file is not sent, the data comes from the old mapping
+                f.delete();
+                Files.write(f.toPath(), new byte[bytes.length]);
+                assertArrayEquals(
+                        Arrays.copyOfRange(bytes, MMapBuffer.PAGE_SIZE, MMapBuffer.PAGE_SIZE + 10),
+                        transfer(buffer, 0, 10));
+            }
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testAsByteBuffer() throws IOException {
+        final File f = File.createTempFile("TestMMapBuffer", "");
+        try {
+            Files.write(f.toPath(), new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+            try (MMapBuffer buffer =
+                    new MMapBuffer(f, FileChannel.MapMode.READ_ONLY, ByteOrder.LITTLE_ENDIAN)) {
+                final ByteBuffer view = buffer.asByteBuffer(4, 4);
+                assertTrue(view.isReadOnly());
+                assertEquals(ByteOrder.LITTLE_ENDIAN, view.order());
+                assertEquals(0x08070605, view.getInt(0));
+                try {
+                    view.put(0, (byte) 1);
+                    fail();
+                } catch (ReadOnlyBufferException expected) {
+                }
+                assertEquals(1, buffer.asByteBuffers(0, 8).length);
+            }
+            try (MMapBuffer buffer =
+                    new MMapBuffer(f, FileChannel.MapMode.READ_WRITE, ByteOrder.BIG_ENDIAN)) {
+                final ByteBuffer view = buffer.asByteBuffer(0, 8);
+                assertFalse(view.isReadOnly());
+                view.put(0, (byte) 9);
+                assertEquals(9, buffer.memory().getByte(0));
+            }
+        } finally {
+            f.delete();
         }
     }
 }
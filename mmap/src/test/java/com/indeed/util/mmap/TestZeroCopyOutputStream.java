@@ -3,7 +3,9 @@ package com.indeed.util.mmap;
 import com.google.common.io.ByteStreams;
 import junit.framework.TestCase;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.channels.Channels;
 import java.util.Arrays;
 import java.util.Random;
 
@@ -27,4 +29,15 @@ public final class TestZeroCopyOutputStream extends TestCase {
         assertArrayEquals(ByteStreams.toByteArray(out.getInputStream()), bytes);
         out.close();
     }
+
+    public void testTransferTo() throws IOException {
+        final byte[] bytes = new byte[1024 * 1024];
+        new Random(0).nextBytes(bytes);
+        try (ZeroCopyOutputStream out = new ZeroCopyOutputStream()) {
+            out.write(bytes);
+            final ByteArrayOutputStream copy = new ByteArrayOutputStream();
+            assertEquals(bytes.length, out.transferTo(Channels.newChannel(copy)));
+            assertArrayEquals(bytes, copy.toByteArray());
+        }
+    }
 }
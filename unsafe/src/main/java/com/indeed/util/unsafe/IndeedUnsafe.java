@@ -7,6 +7,12 @@ import java.lang.reflect.Field;
 public class IndeedUnsafe {
     private static final Unsafe UNSAFE;
     public static final long BYTE_ARRAY_BASE_OFFSET;
+    public static final long SHORT_ARRAY_BASE_OFFSET;
+    public static final long CHAR_ARRAY_BASE_OFFSET;
+    public static final long INT_ARRAY_BASE_OFFSET;
+    public static final long LONG_ARRAY_BASE_OFFSET;
+    public static final long FLOAT_ARRAY_BASE_OFFSET;
+    public static final long DOUBLE_ARRAY_BASE_OFFSET;
 
     static {
         try {
@@ -14,6 +20,12 @@ public class IndeedUnsafe {
             theUnsafe.setAccessible(true);
             UNSAFE = (Unsafe) theUnsafe.get(null);
             BYTE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(byte[].class);
+            SHORT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(short[].class);
+            CHAR_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(char[].class);
+            INT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(int[].class);
+            LONG_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(long[].class);
+            FLOAT_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(float[].class);
+            DOUBLE_ARRAY_BASE_OFFSET = UNSAFE.arrayBaseOffset(double[].class);
         } catch (NoSuchFieldException | IllegalAccessException e) {
             throw new RuntimeException(e);
         }
@@ -135,7 +147,100 @@ public class IndeedUnsafe {
         UNSAFE.putDouble(o, offset, x);
     }
 
+    public static int getIntVolatile(long address) {
+        return UNSAFE.getIntVolatile(null, address);
+    }
+
+    public static void putIntVolatile(long address, int x) {
+        UNSAFE.putIntVolatile(null, address, x);
+    }
+
+    public static void putOrderedInt(long address, int x) {
+        UNSAFE.putOrderedInt(null, address, x);
+    }
+
+    public static boolean compareAndSwapInt(long address, int expected, int x) {
+        return UNSAFE.compareAndSwapInt(null, address, expected, x);
+    }
+
+    public static int getAndAddInt(long address, int delta) {
+        return UNSAFE.getAndAddInt(null, address, delta);
+    }
+
+    public static long getLongVolatile(long address) {
+        return UNSAFE.getLongVolatile(null, address);
+    }
+
+    public static void putLongVolatile(long address, long x) {
+        UNSAFE.putLongVolatile(null, address, x);
+    }
+
+    public static void putOrderedLong(long address, long x) {
+        UNSAFE.putOrderedLong(null, address, x);
+    }
+
+    public static boolean compareAndSwapLong(long address, long expected, long x) {
+        return UNSAFE.compareAndSwapLong(null, address, expected, x);
+    }
+
+    public static long getAndAddLong(long address, long delta) {
+        return UNSAFE.getAndAddLong(null, address, delta);
+    }
+
+    public static int getIntVolatile(Object o, long offset) {
+        return UNSAFE.getIntVolatile(o, offset);
+    }
+
+    public static void putIntVolatile(Object o, long offset, int x) {
+        UNSAFE.putIntVolatile(o, offset, x);
+    }
+
+    public static void putOrderedInt(Object o, long offset, int x) {
+        UNSAFE.putOrderedInt(o, offset, x);
+    }
+
+    public static boolean compareAndSwapInt(Object o, long offset, int expected, int x) {
+        return UNSAFE.compareAndSwapInt(o, offset, expected, x);
+    }
+
+    public static int getAndAddInt(Object o, long offset, int delta) {
+        return UNSAFE.getAndAddInt(o, offset, delta);
+    }
+
+    public static long getLongVolatile(Object o, long offset) {
+        return UNSAFE.getLongVolatile(o, offset);
+    }
+
+    public static void putLongVolatile(Object o, long offset, long x) {
+        UNSAFE.putLongVolatile(o, offset, x);
+    }
+
+    public static void putOrderedLong(Object o, long offset, long x) {
+        UNSAFE.putOrderedLong(o, offset, x);
+    }
+
+    public static boolean compareAndSwapLong(Object o, long offset, long expected, long x) {
+        return UNSAFE.compareAndSwapLong(o, offset, expected, x);
+    }
+
+    public static long getAndAddLong(Object o, long offset, long delta) {
+        return UNSAFE.getAndAddLong(o, offset, delta);
+    }
+
     public static void copyMemory(long source, long dest, long length) {
         UNSAFE.copyMemory(source, dest, length);
     }
+
+    public static void copyMemory(
+            Object srcBase, long srcOffset, Object destBase, long destOffset, long length) {
+        UNSAFE.copyMemory(srcBase, srcOffset, destBase, destOffset, length);
+    }
+
+    public static void setMemory(long address, long length, byte value) {
+        UNSAFE.setMemory(address, length, value);
+    }
+
+    public static long objectFieldOffset(Field field) {
+        return UNSAFE.objectFieldOffset(field);
+    }
 }